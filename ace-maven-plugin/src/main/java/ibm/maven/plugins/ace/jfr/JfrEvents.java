@@ -0,0 +1,186 @@
+package ibm.maven.plugins.ace.jfr;
+
+import java.io.File;
+
+/**
+ * Emits the plugin's Java Flight Recorder events. To profile a build, start a recording, e.g.
+ * MAVEN_OPTS="-XX:StartFlightRecording=filename=build.jfr", and look for the category "ACE Maven Plugin".
+ *
+ * All access to the event classes goes through this class. They are only loaded if the JVM supports JFR, and
+ * while no recording is running every begin method returns null after reading a single volatile flag, so the
+ * instrumented code paths don't pay for the events.
+ */
+public final class JfrEvents {
+
+    private static final boolean AVAILABLE = isJfrAvailable();
+
+    /**
+     * maintained by the {@link RecordingStateListener}
+     */
+    static volatile boolean recording;
+
+    static {
+        if (AVAILABLE) {
+            RecordingStateListener.register();
+        }
+    }
+
+    /**
+     * hide the default constructor
+     */
+    private JfrEvents() {
+        super();
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if a flight recording is running
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    public static Object beginProjectParse() {
+        if (!recording) {
+            return null;
+        }
+        ProjectParseEvent event = new ProjectParseEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endProjectParse(Object handle, File projectFile) {
+        if (handle == null) {
+            return;
+        }
+        ProjectParseEvent event = (ProjectParseEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.projectFile = projectFile.getPath();
+            event.commit();
+        }
+    }
+
+    public static Object beginZipRewrite() {
+        if (!recording) {
+            return null;
+        }
+        ZipRewriteEvent event = new ZipRewriteEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endZipRewrite(Object handle, File zipFile, String removePattern, long sizeBefore, long sizeAfter) {
+        if (handle == null) {
+            return;
+        }
+        ZipRewriteEvent event = (ZipRewriteEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.zipFile = zipFile.getPath();
+            event.removePattern = removePattern;
+            event.sizeBefore = sizeBefore;
+            event.sizeAfter = sizeAfter;
+            event.commit();
+        }
+    }
+
+    public static Object beginPropertyValidation() {
+        if (!recording) {
+            return null;
+        }
+        PropertyValidationEvent event = new PropertyValidationEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endPropertyValidation(Object handle, File propertiesFile, int definedProperties, int invalidProperties) {
+        if (handle == null) {
+            return;
+        }
+        PropertyValidationEvent event = (PropertyValidationEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.propertiesFile = propertiesFile.getPath();
+            event.definedProperties = definedProperties;
+            event.invalidProperties = invalidProperties;
+            event.commit();
+        }
+    }
+
+    public static Object beginProcessSpawn() {
+        if (!recording) {
+            return null;
+        }
+        ProcessSpawnEvent event = new ProcessSpawnEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endProcessSpawn(Object handle, String command) {
+        if (handle == null) {
+            return;
+        }
+        ProcessSpawnEvent event = (ProcessSpawnEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.commit();
+        }
+    }
+
+    public static Object beginProcess() {
+        if (!recording) {
+            return null;
+        }
+        ProcessExitEvent event = new ProcessExitEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endProcess(Object handle, String command, int exitCode, long outputLines, long outputChars) {
+        if (handle == null) {
+            return;
+        }
+        ProcessExitEvent event = (ProcessExitEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.exitCode = exitCode;
+            event.outputLines = outputLines;
+            event.outputChars = outputChars;
+            event.commit();
+        }
+    }
+
+    public static Object beginOutputThroughput() {
+        if (!recording) {
+            return null;
+        }
+        OutputThroughputEvent event = new OutputThroughputEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endOutputThroughput(Object handle, String reader, long lines, long chars) {
+        if (handle == null) {
+            return;
+        }
+        OutputThroughputEvent event = (OutputThroughputEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.reader = reader;
+            event.lines = lines;
+            event.chars = chars;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A chunk of output lines read from an external command
+ */
+@Name("ibm.ace.OutputThroughput")
+@Label("Output Throughput")
+@Category({ "ACE Maven Plugin" })
+@Description("A chunk of output lines read from an external command")
+@StackTrace(false)
+class OutputThroughputEvent extends Event {
+
+    @Label("Reader")
+    String reader;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Characters")
+    long chars;
+}
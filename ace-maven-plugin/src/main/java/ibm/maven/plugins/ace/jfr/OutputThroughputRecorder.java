@@ -0,0 +1,53 @@
+package ibm.maven.plugins.ace.jfr;
+
+/**
+ * Emits an output throughput event for every chunk of lines read from an external command. A chunk ends after
+ * {@link #CHUNK_LINES} lines or when the reader has to wait for more output. Not thread safe, to be used by the single
+ * thread reading the output.
+ */
+public class OutputThroughputRecorder {
+
+    static final int CHUNK_LINES = 1000;
+
+    private final String reader;
+
+    private Object event;
+    private long lines;
+    private long chars;
+
+    /**
+     * @param reader the name of the reading thread or command
+     */
+    public OutputThroughputRecorder(String reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param line a line which was read
+     */
+    public void line(String line) {
+        if (event == null) {
+            if (!JfrEvents.isRecording()) {
+                return;
+            }
+            event = JfrEvents.beginOutputThroughput();
+        }
+        lines++;
+        chars += line.length() + 1;
+        if (lines >= CHUNK_LINES) {
+            flush();
+        }
+    }
+
+    /**
+     * ends the current chunk, if any
+     */
+    public void flush() {
+        if (event != null) {
+            JfrEvents.endOutputThroughput(event, reader, lines, chars);
+            event = null;
+            lines = 0;
+            chars = 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Run of an external command, from its start until it exited and its output was read
+ */
+@Name("ibm.ace.ProcessExit")
+@Label("Process Exit")
+@Category({ "ACE Maven Plugin" })
+@Description("Run of an external command, from its start until it exited and its output was read")
+@StackTrace(false)
+class ProcessExitEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Exit Code")
+    int exitCode;
+
+    @Label("Output Lines")
+    long outputLines;
+
+    @Label("Output Characters")
+    long outputChars;
+}
@@ -0,0 +1,22 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Start of an external command, until the process is running
+ */
+@Name("ibm.ace.ProcessSpawn")
+@Label("Process Spawn")
+@Category({ "ACE Maven Plugin" })
+@Description("Start of an external command, until the process is running")
+@StackTrace(false)
+class ProcessSpawnEvent extends Event {
+
+    @Label("Command")
+    String command;
+}
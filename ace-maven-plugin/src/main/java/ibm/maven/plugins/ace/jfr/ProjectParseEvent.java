@@ -0,0 +1,22 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Parsing of an Eclipse .project file
+ */
+@Name("ibm.ace.ProjectParse")
+@Label("Project Parse")
+@Category({ "ACE Maven Plugin" })
+@Description("Parsing of an Eclipse .project file")
+@StackTrace(false)
+class ProjectParseEvent extends Event {
+
+    @Label("Project File")
+    String projectFile;
+}
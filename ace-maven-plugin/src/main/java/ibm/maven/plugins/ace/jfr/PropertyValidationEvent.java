@@ -0,0 +1,28 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Validation of a properties file against the configurable properties of a bar file
+ */
+@Name("ibm.ace.PropertyValidation")
+@Label("Property Validation")
+@Category({ "ACE Maven Plugin" })
+@Description("Validation of a properties file against the configurable properties of a bar file")
+@StackTrace(false)
+class PropertyValidationEvent extends Event {
+
+    @Label("Properties File")
+    String propertiesFile;
+
+    @Label("Defined Properties")
+    int definedProperties;
+
+    @Label("Invalid Properties")
+    int invalidProperties;
+}
@@ -0,0 +1,40 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Keeps {@link JfrEvents#recording} up to date. Only loaded if the JVM supports JFR.
+ */
+class RecordingStateListener implements FlightRecorderListener {
+
+    static void register() {
+        try {
+            FlightRecorder.addListener(new RecordingStateListener());
+        } catch (Throwable t) {
+            // e.g. denied by a security manager - the events stay disabled
+        }
+    }
+
+    public void recorderInitialized(FlightRecorder recorder) {
+        // recordings started with -XX:StartFlightRecording are running before the listener is registered
+        update(recorder);
+    }
+
+    public void recordingStateChanged(Recording recording) {
+        update(FlightRecorder.getFlightRecorder());
+    }
+
+    private static void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        JfrEvents.recording = running;
+    }
+}
@@ -0,0 +1,34 @@
+package ibm.maven.plugins.ace.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Rewriting of a zip (bar) file without the removed entries
+ */
+@Name("ibm.ace.ZipRewrite")
+@Label("Zip Rewrite")
+@Category({ "ACE Maven Plugin" })
+@Description("Rewriting of a zip (bar) file without the removed entries")
+@StackTrace(false)
+class ZipRewriteEvent extends Event {
+
+    @Label("Zip File")
+    String zipFile;
+
+    @Label("Remove Pattern")
+    String removePattern;
+
+    @Label("Size Before")
+    @DataAmount
+    long sizeBefore;
+
+    @Label("Size After")
+    @DataAmount
+    long sizeAfter;
+}
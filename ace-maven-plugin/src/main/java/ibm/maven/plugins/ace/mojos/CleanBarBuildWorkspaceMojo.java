@@ -13,7 +13,7 @@ import org.codehaus.plexus.util.FileUtils;
  * Cleans up the ${ace.workspace} directory. Build errors will appear in the ace Toolkit if .msgflow files are left under the ${ace.workspace} - the path determines the Namespace of the flow and that
  * certainly won't match the original directory structure.
  */
-@Mojo(name = "clean-bar-build-workspace", requiresProject = false)
+@Mojo(name = "clean-bar-build-workspace", requiresProject = false, threadSafe = true)
 public class CleanBarBuildWorkspaceMojo extends AbstractMojo {
 
     /**
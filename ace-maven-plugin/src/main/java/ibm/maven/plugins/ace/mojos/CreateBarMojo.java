@@ -1,8 +1,17 @@
 package ibm.maven.plugins.ace.mojos;
 
+import ibm.maven.plugins.ace.utils.BarIndex;
+import ibm.maven.plugins.ace.utils.BipMessageClassifier;
+import ibm.maven.plugins.ace.utils.BuildTimings;
 import ibm.maven.plugins.ace.utils.CommandExecutionUtil;
+import ibm.maven.plugins.ace.utils.DeltaBars;
 import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
 import ibm.maven.plugins.ace.utils.ProcessOutputLogger;
+import ibm.maven.plugins.ace.utils.ProcessScheduler;
+import ibm.maven.plugins.ace.utils.ProcessScheduler.ProcessType;
+import ibm.maven.plugins.ace.utils.ToolOutputSink;
+import ibm.maven.plugins.ace.utils.TraceFileFollower;
+import ibm.maven.plugins.ace.utils.WorkspaceLocks;
 import ibm.maven.plugins.ace.utils.ZipUtils;
 
 import java.io.File;
@@ -11,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
@@ -31,7 +41,7 @@ import org.codehaus.plexus.util.FileUtils;
  * Implemented with help from: https://github.com/TimMoore/mojo-executor/blob/master/README.md
  */
 
-@Mojo(name = "create-bar", defaultPhase = LifecyclePhase.COMPILE)
+@Mojo(name = "create-bar", defaultPhase = LifecyclePhase.COMPILE, threadSafe = true)
 public class CreateBarMojo extends AbstractMojo {
 
     /**
@@ -47,6 +57,35 @@ public class CreateBarMojo extends AbstractMojo {
     @Parameter(property = "ace.applybaroverride", defaultValue = "true", required = true)
     protected Boolean applyBarOverride;
 
+    /**
+     * Writes an index of the bar file next to it (&lt;bar&gt;.index), listing every entry including the content of the
+     * nested applications and libraries with its size, CRC, SHA-256 and owning project, and the hash of every
+     * deployment descriptor. Tools comparing or deploying bar files can use it instead of opening the bar.
+     */
+    @Parameter(property = "ace.barIndex", defaultValue = "false")
+    protected boolean barIndex;
+
+    /**
+     * Also creates a delta bar (e.g. ${project.artifactId}-${project.version}-delta.bar), containing only the
+     * applications and libraries that are new or whose content or deployment descriptor changed compared to the bar
+     * file of a previous release in the local repository.
+     */
+    @Parameter(property = "ace.deltaBar", defaultValue = "false")
+    protected boolean deltaBar;
+
+    /**
+     * The version of the previous release the delta bar is created against. By default the highest release version
+     * lower than the project version found in the local repository.
+     */
+    @Parameter(property = "ace.deltaBaselineVersion")
+    protected String deltaBaselineVersion;
+
+    /**
+     * The local repository, which contains the previous releases
+     */
+    @Parameter(defaultValue = "${settings.localRepository}", readonly = true)
+    protected File localRepository;
+
     /**
      * Refreshes the projects in the workspace and then invokes a clean build before new items are added to the BAR file.
      */
@@ -59,6 +98,21 @@ public class CreateBarMojo extends AbstractMojo {
     @Parameter(property = "ace.createBarTraceFile", defaultValue = "${project.build.directory}/createbartrace.txt", required = true)
     protected File createBarTraceFile;
 
+    /**
+     * Regular expressions (comma separated) matched against the output and the trace file of mqsicreatebar. As soon as
+     * a line matches, mqsicreatebar (including the toolkit it started) is stopped and the build fails, instead of
+     * waiting for the toolkit to finish. E.g. "BIP\d{4}[ES]" stops on the first error message. Empty disables the check.
+     */
+    @Parameter(property = "ace.createBarFatalPatterns", defaultValue = "")
+    protected String createBarFatalPatterns;
+
+    /**
+     * The directory the complete output of mqsicreatebar and mqsipackagebar is written to. The console only shows the
+     * BIP messages of the severity set with ace.toolOutputLevel (default WARNING, ALL for every line) and a summary.
+     */
+    @Parameter(property = "ace.toolLogDirectory", defaultValue = "${project.build.directory}/ace-logs")
+    protected File toolLogDirectory;
+
     /**
      * Include "-deployAsSource" parameter?
      */
@@ -206,17 +260,18 @@ public class CreateBarMojo extends AbstractMojo {
             }
 
             // the projectName is the directoryName is the artifactId
-            projectName = dependency.getArtifactId();
+            // (a local variable - the mojo may be executed for several modules at the same time)
+            String dependencyProjectName = dependency.getArtifactId();
 
             // Updated to exclude Shared library 
-            if (EclipseProjectUtils.isApplication(new File(workspace, projectName), getLog())) {
-                apps.add(projectName);
-            } else if (EclipseProjectUtils.isLibrary(new File(workspace, projectName), getLog())) {
-            	if (!EclipseProjectUtils.isSharedLibrary(new File(workspace, projectName), getLog())){
-                libs.add(projectName);
+            if (EclipseProjectUtils.isApplication(new File(workspace, dependencyProjectName), getLog())) {
+                apps.add(dependencyProjectName);
+            } else if (EclipseProjectUtils.isLibrary(new File(workspace, dependencyProjectName), getLog())) {
+            	if (!EclipseProjectUtils.isSharedLibrary(new File(workspace, dependencyProjectName), getLog())){
+                libs.add(dependencyProjectName);
             	}
-            else if (EclipseProjectUtils.isPolicyProject(new File(workspace, projectName), getLog())) {
-            	policies.add(projectName);
+            else if (EclipseProjectUtils.isPolicyProject(new File(workspace, dependencyProjectName), getLog())) {
+            	policies.add(dependencyProjectName);
                 }
             }
         }
@@ -346,24 +401,32 @@ public class CreateBarMojo extends AbstractMojo {
 
         File barDir = barName.getParentFile();
         if (!barDir.exists()) {
-            barDir.getParentFile().mkdirs();
+            barDir.mkdirs();
         }
 
         boolean packageBar = EclipseProjectUtils.isTestProject(new File(workspace, applicationName), getLog());
         List<String> params = constructParams(packageBar);
 
-        if (packageBar) {
-            CommandExecutionUtil.runCommand(aceRunDir, "mqsipackagebar", params, getLog());
-        } else {
-            executeMqsiCreateBar(params);
+        // modules sharing a workspace can't build at the same time
+        ReentrantLock workspaceLock = WorkspaceLocks.lock(workspace, getLog());
+        try {
+            if (packageBar) {
+                CommandExecutionUtil.runCommand(aceRunDir, "mqsipackagebar", params, toolLogDirectory, getLog());
+            } else {
+                executeMqsiCreateBar(params);
+            }
+        } finally {
+            workspaceLock.unlock();
         }
 
+        // the bar file is indexed while the jars are removed
+        BarIndex index = null;
         try {
             // if classloaders are in use, all jars are to be removed
             if (useClassloaders) {
                 getLog().info(
                         "Classloaders in use. All jars will be removed from the bar file.");
-                ZipUtils.removeFiles(barName, "**/*.jar");
+                index = ZipUtils.removeFiles(barName, "**/*.jar");
             } else {
                 // remove the jars specified with discardJarsPattern
                 if (discardJarsPattern != null
@@ -371,7 +434,7 @@ public class CreateBarMojo extends AbstractMojo {
                     getLog().info(
                             "Classloaders are not in use. The following jars will be removed from the bar file: "
                                     + discardJarsPattern);
-                    ZipUtils.removeFiles(barName, discardJarsPattern);
+                    index = ZipUtils.removeFiles(barName, discardJarsPattern);
                 }
             }
         } catch (IOException e) {
@@ -379,6 +442,97 @@ public class CreateBarMojo extends AbstractMojo {
                     "Error removing jar files from bar file", e);
         }
 
+        if (barIndex) {
+            index = writeBarIndex(barName, index);
+        }
+
+        if (deltaBar) {
+            createDeltaBar(index);
+        }
+
+    }
+
+    /**
+     * writes the index of a bar file next to it
+     *
+     * @param bar the bar file
+     * @param index the index if it was collected while writing the bar file, otherwise the bar file is read
+     * @return the index
+     * @throws MojoFailureException If the bar file can't be read or the index can't be written
+     */
+    protected BarIndex writeBarIndex(File bar, BarIndex index) throws MojoFailureException {
+        try {
+            if (index == null) {
+                index = BarIndex.create(bar);
+            }
+            getLog().info("Bar index written: " + BarIndex.writeIndexFile(bar, index));
+            return index;
+        } catch (IOException e) {
+            throw new MojoFailureException("Error writing the bar index of " + bar, e);
+        }
+    }
+
+    /**
+     * writes the delta bar, containing the applications and libraries changed since the baseline
+     *
+     * @param index the index of the bar file if it is known already
+     * @throws MojoFailureException If a bar file can't be read or written, or the baseline has no bar file
+     */
+    protected void createDeltaBar(BarIndex index) throws MojoFailureException {
+        File deltaBarFile = DeltaBars.getDeltaBarFile(barName);
+        // a delta bar of a previous build must not be packaged
+        deltaBarFile.delete();
+        BarIndex.getIndexFile(deltaBarFile).delete();
+
+        String baselineVersion = deltaBaselineVersion;
+        if (baselineVersion == null || baselineVersion.isEmpty()) {
+            baselineVersion = DeltaBars.findBaselineVersion(localRepository, project.getGroupId(), project.getArtifactId(),
+                    project.getVersion());
+            if (baselineVersion == null) {
+                getLog().warn("No release of " + project.getArtifactId() + " before " + project.getVersion()
+                        + " found in the local repository, no delta bar created");
+                return;
+            }
+        }
+        String baselineBarName = DeltaBars.getBaselineBarName(barName.getName(), project.getArtifactId(), project.getVersion(),
+                baselineVersion);
+        if (baselineBarName == null) {
+            throw new MojoFailureException("The bar file " + barName.getName() + " isn't named " + project.getArtifactId() + "-"
+                    + project.getVersion() + "[-<classifier>].bar, the bar file of the baseline " + baselineVersion + " can't be found");
+        }
+
+        try {
+            BarIndex baseline = DeltaBars.readBaseline(localRepository, project.getGroupId(), project.getArtifactId(),
+                    baselineVersion, baselineBarName);
+            if (baseline == null) {
+                throw new MojoFailureException("Neither " + baselineBarName + " nor its index found in " + project.getArtifactId() + " "
+                        + baselineVersion + " in the local repository, the delta bar can't be created");
+            }
+            if (index == null) {
+                index = BarIndex.create(barName);
+            }
+
+            for (String removed : DeltaBars.getRemovedProjects(baseline, index)) {
+                getLog().warn("  " + removed + " was removed since " + baselineVersion + ", it has to be deleted when deploying the delta bar");
+            }
+            List<String> changed = DeltaBars.getChangedProjects(baseline, index);
+            if (changed.isEmpty()) {
+                getLog().info("No application or library changed since " + baselineVersion + ", no delta bar created");
+                return;
+            }
+            getLog().info("Creating delta bar file against " + baselineVersion + ": " + deltaBarFile);
+            for (String changedProject : changed) {
+                getLog().info("  " + changedProject);
+            }
+            List<String> entries = new ArrayList<String>(changed);
+            entries.addAll(DeltaBars.getCommonEntries(index));
+            BarIndex deltaIndex = ZipUtils.copyFiles(barName, deltaBarFile, entries);
+            if (barIndex) {
+                writeBarIndex(deltaBarFile, deltaIndex);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Error creating the delta bar file " + deltaBarFile, e);
+        }
     }
 
     /**
@@ -392,9 +546,10 @@ public class CreateBarMojo extends AbstractMojo {
     private void executeMqsiCreateBar(List<String> params)
             throws MojoFailureException {
 
-        File cmdFile = new File(System.getProperty("java.io.tmpdir")
-                + File.separator + "createbarCommand-" + UUID.randomUUID()
+        // next to the trace file, i.e. in the build directory of the module
+        File cmdFile = new File(createBarTraceFile.getAbsoluteFile().getParentFile(), "createbarCommand-" + UUID.randomUUID()
                 + ".cmd");
+        cmdFile.getParentFile().mkdirs();
 
         // make sure that it will be cleaned up on exit
         cmdFile.deleteOnExit();
@@ -427,19 +582,38 @@ public class CreateBarMojo extends AbstractMojo {
         // ProcessBuilder pb = new ProcessBuilder(command);
         ProcessBuilder pb = new ProcessBuilder(cmdFile.getAbsolutePath());
 
+        // a trace file left over from a previous build would be classified again
+        if (createBarTraceFile.exists() && !createBarTraceFile.delete()) {
+            getLog().warn("Could not delete the old trace file: " + createBarTraceFile.getAbsolutePath());
+        }
+        BipMessageClassifier classifier = new BipMessageClassifier(BipMessageClassifier.compilePatterns(createBarFatalPatterns));
+
         pb.directory(workspace);
         // redirect subprocess stderr to stdout
         pb.redirectErrorStream(true);
         Process process;
         ProcessOutputLogger stdOutHandler = null;
         ProcessOutputLogger stdErrorHandler = null;
+        TraceFileFollower traceFileFollower = null;
+        ToolOutputSink sink;
+        try {
+            sink = new ToolOutputSink("mqsicreatebar", ToolOutputSink.getLogFile(toolLogDirectory, "mqsicreatebar"), getLog(), classifier);
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not create the log file of mqsicreatebar in " + toolLogDirectory, e);
+        }
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.TOOLKIT, "mqsicreatebar", getLog());
+        BuildTimings.Timer timer = BuildTimings.startCommand("mqsicreatebar");
         try {
-            process = pb.start();
-            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), getLog());
-            stdErrorHandler = new ProcessOutputLogger(process.getErrorStream(), getLog());
+            process = CommandExecutionUtil.startProcess(pb, "mqsicreatebar");
+            classifier.watch(process);
+            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), sink);
+            stdErrorHandler = new ProcessOutputLogger(process.getErrorStream(), sink);
+            traceFileFollower = new TraceFileFollower(createBarTraceFile, classifier);
             stdOutHandler.start();
             stdErrorHandler.start();
+            traceFileFollower.start();
             process.waitFor();
+            timer.set("exitCode", process.exitValue());
         } catch (IOException e) {
             throw new MojoFailureException("Error executing: "
                     + getCommandLine(command), e);
@@ -463,6 +637,33 @@ public class CreateBarMojo extends AbstractMojo {
                     // this should never happen, so ignore this one
                 }
             }
+            if (traceFileFollower != null) {
+                traceFileFollower.interrupt();
+                try {
+                    traceFileFollower.join();
+                } catch (InterruptedException e) {
+                    // this should never happen, so ignore this one
+                }
+            }
+            if (stdOutHandler != null && stdErrorHandler != null) {
+                timer.set("outputLines", stdOutHandler.getLineCount() + stdErrorHandler.getLineCount());
+                timer.set("outputChars", stdOutHandler.getCharCount() + stdErrorHandler.getCharCount());
+            }
+            sink.close();
+            timer.set("errors", classifier.getErrorCount());
+            timer.set("warnings", classifier.getWarningCount());
+            timer.stop();
+            cmdFile.delete();
+            permit.release();
+        }
+
+        getLog().info("mqsicreatebar reported " + classifier.getErrorCount() + " error(s) and " + classifier.getWarningCount() + " warning(s)");
+
+        if (classifier.isAborted()) {
+            if (!classifier.isProcessTreeStopped()) {
+                getLog().warn("Only the command file of mqsicreatebar could be stopped, the toolkit it started may still be running");
+            }
+            throw new MojoFailureException("mqsicreatebar was stopped after a fatal message: " + classifier.getFatalLine());
         }
 
         if (process.exitValue() != 0) {
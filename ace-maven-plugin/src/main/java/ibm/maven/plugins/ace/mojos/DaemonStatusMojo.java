@@ -0,0 +1,156 @@
+package ibm.maven.plugins.ace.mojos;
+
+import ibm.maven.plugins.ace.utils.CommandDaemonClient;
+import ibm.maven.plugins.ace.utils.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Shows the latency and throughput of the commands run by the command daemon of an ace runtime (see
+ * -Dace.inProcessCommands), and stops it on request. Can be run without a project, e.g. mvn
+ * ibm.maven.plugins:ace-maven-plugin:daemon-status -Dace.aceRunDir=/opt/ibm/ace-12/server/bin
+ */
+@Mojo(name = "daemon-status", requiresProject = false, threadSafe = true)
+public class DaemonStatusMojo extends AbstractMojo {
+
+    private static final String[] METRICS = { "count", "failures", "meanMillis", "p50Millis", "p95Millis", "maxMillis", "perMinute" };
+
+    /**
+     * Installation directory of the ace runtime
+     */
+    @Parameter(property = "ace.aceRunDir", required = true)
+    protected File aceRunDir;
+
+    /**
+     * The directory of the directories of the command daemons.
+     */
+    @Parameter(property = "ace.commandDaemonDirectory", defaultValue = "${user.home}/.ace-maven-plugin/daemons")
+    protected File commandDaemonDirectory;
+
+    /**
+     * Stops the daemon once the commands it's running have finished.
+     */
+    @Parameter(property = "ace.stopDaemon", defaultValue = "false")
+    protected boolean stopDaemon;
+
+    /**
+     * The file to write the status to as JSON. Empty to only log it.
+     */
+    @Parameter(property = "ace.daemonStatusReport")
+    protected File daemonStatusReport;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File directory;
+        try {
+            directory = CommandDaemonClient.getDirectory(commandDaemonDirectory, aceRunDir);
+        } catch (IOException e) {
+            throw new MojoFailureException("Error determining the command daemon of " + aceRunDir, e);
+        }
+        CommandDaemonClient daemon = CommandDaemonClient.find(directory);
+        if (daemon == null) {
+            getLog().info("No command daemon is running for " + aceRunDir + " (" + directory + ")");
+            return;
+        }
+
+        Properties status;
+        try {
+            status = daemon.getStatus();
+        } catch (IOException e) {
+            throw new MojoFailureException("Error reading the status of the command daemon in " + directory, e);
+        }
+        getLog().info("Command daemon in " + directory + ": up for " + status.getProperty("uptimeSeconds") + " s, "
+                + status.getProperty("activeRequests") + " active requests, stopped after " + status.getProperty("idleTimeoutSeconds")
+                + " s without a command");
+        TreeSet<String> commands = getCommands(status);
+        if (commands.isEmpty()) {
+            getLog().info("No commands run yet");
+        } else {
+            getLog().info(String.format("%-24s %8s %8s %8s %8s %8s %8s %8s", "command", "count", "failed", "mean ms", "p50 ms", "p95 ms",
+                    "max ms", "per min"));
+            for (String command : commands) {
+                Object[] values = new Object[METRICS.length + 1];
+                values[0] = command;
+                for (int i = 0; i < METRICS.length; i++) {
+                    values[i + 1] = status.getProperty("command." + command + "." + METRICS[i]);
+                }
+                getLog().info(String.format("%-24s %8s %8s %8s %8s %8s %8s %8s", values));
+            }
+        }
+
+        if (daemonStatusReport != null && !daemonStatusReport.getPath().isEmpty()) {
+            try {
+                writeReport(directory, status, commands);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error writing the status to " + daemonStatusReport, e);
+            }
+            getLog().info("Status written to " + daemonStatusReport);
+        }
+
+        if (stopDaemon) {
+            try {
+                daemon.stop();
+            } catch (IOException e) {
+                throw new MojoFailureException("Error stopping the command daemon in " + directory, e);
+            }
+            getLog().info("Command daemon stopped");
+        }
+    }
+
+    private static TreeSet<String> getCommands(Properties status) {
+        TreeSet<String> commands = new TreeSet<String>();
+        for (String key : status.stringPropertyNames()) {
+            if (key.startsWith("command.") && key.endsWith(".count")) {
+                commands.add(key.substring("command.".length(), key.length() - ".count".length()));
+            }
+        }
+        return commands;
+    }
+
+    private void writeReport(File directory, Properties status, TreeSet<String> commands) throws IOException {
+        File parent = daemonStatusReport.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(daemonStatusReport), StandardCharsets.UTF_8);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("directory").value(directory.getAbsolutePath());
+            json.name("aceRunDir").value(status.getProperty("aceRunDir"));
+            json.name("uptimeSeconds").value(Long.parseLong(status.getProperty("uptimeSeconds")));
+            json.name("activeRequests").value(Long.parseLong(status.getProperty("activeRequests")));
+            json.name("commands").beginArray();
+            for (String command : commands) {
+                json.beginObject();
+                json.name("command").value(command);
+                for (String metric : METRICS) {
+                    String value = status.getProperty("command." + command + "." + metric);
+                    if (value.contains(".")) {
+                        json.name(metric).value(Double.parseDouble(value));
+                    } else {
+                        json.name(metric).value(Long.parseLong(value));
+                    }
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ibm.maven.plugins.ace.mojos;
+
+import ibm.maven.plugins.ace.utils.BarDiff;
+import ibm.maven.plugins.ace.utils.BuildTimings;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Shows what changed between two bar files: added, removed and changed entries, including the content of nested
+ * applications and libraries, and the configurable properties added, removed or changed in the deployment descriptors.
+ * Can be run without a project, e.g. mvn ibm.maven.plugins:ace-maven-plugin:diff-bar -Dace.baseBar=old.bar -Dace.bar=new.bar
+ */
+@Mojo(name = "diff-bar", requiresProject = false, threadSafe = true)
+public class DiffBarMojo extends AbstractMojo {
+
+    /**
+     * The bar file to compare against, e.g. the one of the previous release.
+     */
+    @Parameter(property = "ace.baseBar", required = true)
+    protected File baseBar;
+
+    /**
+     * The bar file to compare.
+     */
+    @Parameter(property = "ace.bar", defaultValue = "${project.build.directory}/ace/${project.artifactId}-${project.version}.bar", required = true)
+    protected File bar;
+
+    /**
+     * The file to write the differences to as JSON. Empty to only log them.
+     */
+    @Parameter(property = "ace.diffReport", defaultValue = "${project.build.directory}/bar-diff.json")
+    protected File diffReport;
+
+    /**
+     * Fails the build if the bar files differ.
+     */
+    @Parameter(property = "ace.failOnDiff", defaultValue = "false")
+    protected boolean failOnDiff;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        for (File file : new File[] { baseBar, bar }) {
+            if (!file.isFile()) {
+                throw new MojoFailureException("Bar file not found: " + file.getAbsolutePath());
+            }
+        }
+
+        getLog().info("Comparing " + bar + " with " + baseBar);
+        BarDiff diff;
+        BuildTimings.Timer timer = BuildTimings.startStep("diff-bar");
+        try {
+            diff = BarDiff.compare(baseBar, bar);
+            timer.set("changes", diff.getEntries().size());
+            timer.set("inflated", diff.getInflatedEntries());
+        } catch (IOException e) {
+            throw new MojoFailureException("Error comparing " + bar + " with " + baseBar, e);
+        } finally {
+            timer.stop();
+        }
+
+        for (String line : diff.toText()) {
+            getLog().info(line);
+        }
+        getLog().info(diff.getEntries().size() + " entries and " + diff.getProperties().size() + " properties differ, "
+                + diff.getUnchangedEntries() + " entries are unchanged, " + diff.getRepackagedArchives()
+                + " nested archives were only packaged again");
+
+        if (diffReport != null && !diffReport.getPath().isEmpty()) {
+            try {
+                diff.writeJson(diffReport);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error writing the differences to " + diffReport, e);
+            }
+            getLog().info("Differences written to " + diffReport);
+        }
+
+        if (failOnDiff && !diff.isEmpty()) {
+            throw new MojoFailureException("The bar files differ");
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package ibm.maven.plugins.ace.mojos;
 
+import ibm.maven.plugins.ace.utils.BarIndex;
+import ibm.maven.plugins.ace.utils.BuildTimings;
 import ibm.maven.plugins.ace.utils.CommandExecutionUtil;
 import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
+import ibm.maven.plugins.ace.utils.PortAllocator;
+import ibm.maven.plugins.ace.utils.ProcessScheduler;
+import ibm.maven.plugins.ace.utils.ProcessScheduler.ProcessType;
+import ibm.maven.plugins.ace.utils.TestOutputParser;
+import ibm.maven.plugins.ace.utils.TestProjectReport;
+import ibm.maven.plugins.ace.utils.TestShards;
+import ibm.maven.plugins.ace.utils.WarmWorkDir;
+import ibm.maven.plugins.ace.utils.WorkDirTemplates;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -20,7 +38,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
-@Mojo(name = "execute-test-project", defaultPhase = LifecyclePhase.INTEGRATION_TEST)
+@Mojo(name = "execute-test-project", defaultPhase = LifecyclePhase.INTEGRATION_TEST, threadSafe = true)
 public class ExecuteTestProjectMojo extends AbstractMojo {
 
     /**
@@ -35,6 +53,81 @@ public class ExecuteTestProjectMojo extends AbstractMojo {
     @Parameter(property = "ace.applicationName", defaultValue = "")
     protected String applicationName;
 
+    /**
+     * The test projects to execute, each in an integration server and work directory of its own. Several test projects
+     * run at the same time (see ace.testThreads). Comma separated on the command line; applicationName if empty.
+     */
+    @Parameter(property = "ace.testProjects")
+    protected List<String> testProjects;
+
+    /**
+     * The number of test projects run at the same time. 0 (the default) runs as many as the limit of runtime processes
+     * (ace.maxRuntimeProcesses) allows.
+     */
+    @Parameter(property = "ace.testThreads", defaultValue = "0")
+    protected int testThreads;
+
+    /**
+     * The number of integration servers the test classes of a test project are split into. The shards are balanced by
+     * the durations of the test classes recorded in the JUnit XML reports of the previous run (ace.testReportsDirectory)
+     * and run like test projects of their own (see ace.testThreads); their results are merged.
+     */
+    @Parameter(property = "ace.testShards", defaultValue = "1")
+    protected int testShards;
+
+    /**
+     * The report of all test projects run, with the result, duration and log directory of each.
+     */
+    @Parameter(property = "ace.testReport", defaultValue = "${project.build.directory}/ace-test-report.json")
+    protected File testReport;
+
+    /**
+     * The directory the JUnit XML reports of the tests are written to, one per test class.
+     */
+    @Parameter(property = "ace.testReportsDirectory", defaultValue = "${project.build.directory}/surefire-reports")
+    protected File testReportsDirectory;
+
+    /**
+     * The number of slowest tests listed in the summary and the test report.
+     */
+    @Parameter(property = "ace.slowestTests", defaultValue = "10")
+    protected int slowestTests;
+
+    /**
+     * Prepare the work directory (mqsicreateworkdir, the fake queue manager and mqsibar) once per ace runtime and bar
+     * file and start every test project from a copy of it. Not used with ace.warmWorkDirs.
+     */
+    @Parameter(property = "ace.workDirTemplates", defaultValue = "true")
+    protected boolean workDirTemplates;
+
+    /**
+     * The directory the work directory templates are kept in, shared by builds.
+     */
+    @Parameter(property = "ace.workDirCache", defaultValue = "${java.io.tmpdir}/ace-workdir-templates")
+    protected File workDirCache;
+
+    /**
+     * Hard-link the deployed resources of the template into the work directories instead of copying them. Not used
+     * with ace.warmWorkDirs.
+     */
+    @Parameter(property = "ace.workDirLinks", defaultValue = "false")
+    protected boolean workDirLinks;
+
+    /**
+     * Keep the work directory of each test project between builds. The first build creates it; later builds only
+     * deploy the applications and libraries which changed (with mqsibar) before running the test project. Only the
+     * work directory is kept, every run still starts an integration server. Test shards and work directory templates
+     * aren't used with warm work directories.
+     */
+    @Parameter(property = "ace.warmWorkDirs", defaultValue = "false")
+    protected boolean warmWorkDirs;
+
+    /**
+     * The directory of the warm work directories, shared by builds.
+     */
+    @Parameter(property = "ace.warmWorkDirDirectory", defaultValue = "${java.io.tmpdir}/ace-warm-workdirs")
+    protected File warmWorkDirDirectory;
+
     /**
      * The name of the BAR (compressed file format) archive file where the
      * result is stored.
@@ -60,30 +153,259 @@ public class ExecuteTestProjectMojo extends AbstractMojo {
     @Parameter(property = "ace.startFlows", defaultValue = "false", required = true)
     protected Boolean startMessageFlows;
 
+    /**
+     * The directory the complete output of the ace commands is written to, in a subdirectory per test project. The
+     * console only shows the BIP messages of the severity set with ace.toolOutputLevel (default WARNING, ALL for every
+     * line) and a summary.
+     */
+    @Parameter(property = "ace.toolLogDirectory", defaultValue = "${project.build.directory}/ace-logs")
+    protected File toolLogDirectory;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
-        
-        if (EclipseProjectUtils.isTestProject(new File(workspace, applicationName), getLog())) {
-            Path workDir = null;
+        List<String> projects = new ArrayList<String>();
+        for (String project : testProjects != null && !testProjects.isEmpty() ? testProjects : Collections.singletonList(applicationName)) {
+            if (EclipseProjectUtils.isTestProject(new File(workspace, project), getLog())) {
+                projects.add(project);
+            }
+        }
+        if (projects.isEmpty()) {
+            return;
+        }
+        if (warmWorkDirs && (testShards > 1 || workDirLinks)) {
+            getLog().warn("ace.testShards and ace.workDirLinks are ignored with ace.warmWorkDirs, the test projects run unsplit"
+                    + " in their warm work directories");
+        }
+
+        // the shards of every test project, null for all test classes of a project which isn't split
+        Map<String, List<List<String>>> shards = new LinkedHashMap<String, List<List<String>>>();
+        int runs = 0;
+        for (String project : projects) {
+            List<List<String>> projectShards = getShards(project);
+            shards.put(project, projectShards);
+            runs += projectShards.size();
+        }
+
+        TestProjectReport report = new TestProjectReport(slowestTests);
+        if (runs == 1) {
+            report.add(runTestProject(projects.get(0), 0, null, false));
+        } else {
+            int threads = Math.min(runs, testThreads > 0 ? testThreads : ProcessScheduler.getLimit(ProcessType.RUNTIME));
+            final boolean overlapping = threads > 1;
+            getLog().info("Running " + projects.size() + " test projects in " + runs + " integration servers, " + threads + " at a time");
+            Map<String, List<Future<TestProjectReport.Result>>> futures = new LinkedHashMap<String, List<Future<TestProjectReport.Result>>>();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
             try {
-                workDir = Files.createTempDirectory(applicationName);
-                createWorkDir(workDir);
-                if (fakeQueueManager) {
-                    overrideServerConf(workDir);
+                for (final Map.Entry<String, List<List<String>>> project : shards.entrySet()) {
+                    List<Future<TestProjectReport.Result>> projectFutures = new ArrayList<Future<TestProjectReport.Result>>();
+                    for (int i = 0; i < project.getValue().size(); i++) {
+                        final int shard = i;
+                        projectFutures.add(executor.submit(new Callable<TestProjectReport.Result>() {
+                            public TestProjectReport.Result call() {
+                                return runTestProject(project.getKey(), shard, project.getValue().get(shard), overlapping);
+                            }
+                        }));
+                    }
+                    futures.put(project.getKey(), projectFutures);
                 }
-                extractBarFile(workDir);
-                executeTestProject(workDir);
-            } catch (IOException e) {
-                throw new MojoFailureException(e.getLocalizedMessage());
+                for (Map.Entry<String, List<Future<TestProjectReport.Result>>> project : futures.entrySet()) {
+                    List<TestProjectReport.Result> results = new ArrayList<TestProjectReport.Result>();
+                    for (Future<TestProjectReport.Result> future : project.getValue()) {
+                        results.add(future.get());
+                    }
+                    report.add(results.size() == 1 ? results.get(0) : TestProjectReport.merge(project.getKey(), results,
+                            getLogDirectory(project.getKey())));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while running the test projects", e);
+            } catch (ExecutionException e) {
+                throw new MojoExecutionException("Error running the test projects", e.getCause());
             } finally {
-                // Try to clean up
-                try {
-                    if (workDir != null) {
-                        Files.delete(workDir);
+                executor.shutdownNow();
+            }
+        }
+
+        report.log(getLog());
+        try {
+            report.writeJson(testReport);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write the test report " + testReport, e);
+        }
+        List<TestProjectReport.Result> failures = report.getFailures();
+        if (!failures.isEmpty()) {
+            List<String> failed = new ArrayList<String>();
+            for (TestProjectReport.Result failure : failures) {
+                failed.add(failure.getProject());
+            }
+            throw new MojoFailureException(failures.size() + " of " + projects.size() + " test projects failed: " + failed);
+        }
+    }
+
+    /**
+     * @return the test classes of each shard of a test project, a single null shard if the project isn't split
+     */
+    private List<List<String>> getShards(String project) throws MojoExecutionException {
+        List<List<String>> all = Collections.singletonList(null);
+        if (testShards <= 1 || warmWorkDirs) {
+            return all;
+        }
+        List<String> testClasses;
+        try {
+            testClasses = TestShards.findTestClasses(new File(workspace, project));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not find the test classes of " + project, e);
+        }
+        if (testClasses.size() <= 1) {
+            return all;
+        }
+        List<List<String>> shards = TestShards.split(testClasses, TestShards.readDurations(testReportsDirectory, testClasses), testShards);
+        getLog().info("Splitting the " + testClasses.size() + " test classes of " + project + " into " + shards.size() + " shards");
+        for (int i = 0; i < shards.size(); i++) {
+            getLog().debug("  shard " + i + ": " + shards.get(i));
+        }
+        return shards;
+    }
+
+    /**
+     * runs a test project, or a shard of it, in a work directory of its own
+     *
+     * @param testClasses the test classes of the shard, null for all
+     * @param overlapping true if other test projects or shards run at the same time, then the server gets HTTP ports
+     *            of its own
+     * @return the result, failed if a command failed
+     */
+    private TestProjectReport.Result runTestProject(String project, int shard, List<String> testClasses, boolean overlapping) {
+        long start = System.currentTimeMillis();
+        File logDirectory = getLogDirectory(testClasses == null ? project : project + "/shard-" + shard);
+        BuildTimings.Timer timer = BuildTimings.startStep("test-project");
+        timer.set("project", project);
+        if (testClasses != null) {
+            timer.set("shard", shard);
+        }
+        TestOutputParser parser = new TestOutputParser();
+        Path workDir = null;
+        int httpPort = 0;
+        String failure = null;
+        try {
+            // the work directory and the IntegrationServer count as one runtime process
+            ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.RUNTIME, "test project " + project
+                    + (testClasses == null ? "" : " shard " + shard), getLog());
+            try {
+                if (warmWorkDirs) {
+                    httpPort = runInWarmWorkDir(project, logDirectory, parser, overlapping);
+                } else {
+                    workDir = Files.createTempDirectory(project);
+                    if (workDirTemplates) {
+                        WorkDirTemplates.clone(getWorkDirTemplate(), workDir.toFile(), workDirLinks);
+                    } else {
+                        prepareWorkDir(workDir.toFile(), logDirectory);
+                    }
+                    if (overlapping) {
+                        httpPort = PortAllocator.allocate();
+                        overridePorts(workDir, httpPort, PortAllocator.allocate());
                     }
-                } catch (IOException e) {}
+                    executeTestProject(workDir, project, testClasses, logDirectory, parser);
+                }
+            } finally {
+                if (workDir != null) {
+                    WorkDirTemplates.deleteAsync(workDir.toFile());
+                }
+                permit.release();
             }
+        } catch (MojoFailureException e) {
+            failure = e.getMessage();
+        } catch (IOException e) {
+            failure = e.getLocalizedMessage();
+        } finally {
+            parser.finish();
+            timer.set("tests", parser.getTestCases().size());
+            timer.set("passed", failure == null);
+            timer.stop();
+        }
 
-        }    
+        List<TestOutputParser.TestCase> failedTests = parser.getFailures();
+        for (TestOutputParser.TestCase failedTest : failedTests) {
+            getLog().error(failedTest + " " + failedTest.getStatus().name().toLowerCase() + ": " + failedTest.getMessage());
+        }
+        if (failure != null && !failedTests.isEmpty()) {
+            failure = failedTests.size() + " of " + parser.getTestCases().size() + " tests failed";
+        }
+        try {
+            parser.writeReports(testReportsDirectory);
+        } catch (IOException e) {
+            getLog().warn("Could not write the test reports of " + project + ": " + e);
+        }
+        return new TestProjectReport.Result(project, System.currentTimeMillis() - start, failure, httpPort, logDirectory, parser.getTestCases());
+    }
+
+    /**
+     * runs a test project in its warm work directory, bringing it up to date with the bar file first
+     *
+     * @return the HTTP port of the server, 0 for the one of the server.conf.yaml
+     */
+    private int runInWarmWorkDir(String project, final File logDirectory, TestOutputParser parser, boolean overlapping)
+            throws MojoFailureException, IOException {
+        WarmWorkDir warm = WarmWorkDir.lock(WarmWorkDir.getWorkDir(warmWorkDirDirectory, aceRunDir, workspace, project));
+        try {
+            warm.update(barName, readIndex(barName), new WarmWorkDir.Deployer() {
+                public void create(File workDir) throws MojoFailureException, IOException {
+                    createWorkDir(workDir.toPath(), logDirectory);
+                }
+
+                public void deploy(File workDir, File barFile) throws MojoFailureException {
+                    extractBarFile(workDir.toPath(), barFile, logDirectory);
+                }
+            }, getLog());
+            // the overrides are written again for every run, the ports of the last one may be in use by now
+            Path workDir = warm.getWorkDir().toPath();
+            int httpPort = 0;
+            new File(workDir.toFile(), "overrides/server.conf.yaml").delete();
+            if (fakeQueueManager) {
+                overrideServerConf(workDir);
+            }
+            if (overlapping) {
+                httpPort = PortAllocator.allocate();
+                overridePorts(workDir, httpPort, PortAllocator.allocate());
+            }
+            executeTestProject(workDir, project, null, logDirectory, parser);
+            return httpPort;
+        } finally {
+            warm.release();
+        }
+    }
+
+    /**
+     * @return the index of a bar file, read from its index file if it's up to date
+     */
+    private static BarIndex readIndex(File bar) throws IOException {
+        File indexFile = BarIndex.getIndexFile(bar);
+        if (indexFile.isFile() && indexFile.lastModified() >= bar.lastModified()) {
+            return BarIndex.read(indexFile);
+        }
+        return BarIndex.create(bar);
+    }
+
+    /**
+     * @return the template of the work directories, created on first use
+     */
+    private File getWorkDirTemplate() throws MojoFailureException, IOException {
+        String key = WorkDirTemplates.getKey(aceRunDir, barName, "fakeQueueManager=" + fakeQueueManager);
+        return WorkDirTemplates.get(workDirCache, key, new WorkDirTemplates.Creator() {
+            public void create(File workDir) throws MojoFailureException, IOException {
+                prepareWorkDir(workDir, getLogDirectory("workdir-template"));
+            }
+        }, getLog());
+    }
+
+    /**
+     * creates a work directory with the bar file deployed and the fake queue manager
+     */
+    private void prepareWorkDir(File workDir, File logDirectory) throws MojoFailureException, IOException {
+        createWorkDir(workDir.toPath(), logDirectory);
+        if (fakeQueueManager) {
+            overrideServerConf(workDir.toPath());
+        }
+        extractBarFile(workDir.toPath(), barName, logDirectory);
     }
 
     private void overrideServerConf(Path workDir) throws MojoFailureException {
@@ -98,20 +420,39 @@ public class ExecuteTestProjectMojo extends AbstractMojo {
         }
     }
 
-    private void createWorkDir(Path workDir) throws MojoFailureException {
-        CommandExecutionUtil.runCommand(aceRunDir, "mqsicreateworkdir", Collections.singletonList(workDir.toString()), getLog());
+    /**
+     * adds the ports of the HTTP listeners to the server.conf.yaml overrides of a work directory, so that test
+     * projects running at the same time don't compete for the default ports
+     */
+    private void overridePorts(Path workDir, int httpPort, int httpsPort) throws IOException {
+        File serverConfFile = new File(workDir.toFile(), "overrides/server.conf.yaml");
+        PrintWriter out = new PrintWriter(new FileWriter(serverConfFile, true));
+        try {
+            out.println("ResourceManagers:");
+            out.println("  HTTPConnector:");
+            out.println("    ListenerPort: " + httpPort);
+            out.println("  HTTPSConnector:");
+            out.println("    ListenerPort: " + httpsPort);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void createWorkDir(Path workDir, File logDirectory) throws MojoFailureException {
+        CommandExecutionUtil.runCommand(aceRunDir, "mqsicreateworkdir", Collections.singletonList(workDir.toString()), logDirectory, getLog());
     }
 
-    private void extractBarFile(Path workDir) throws MojoFailureException {
+    private void extractBarFile(Path workDir, File barFile, File logDirectory) throws MojoFailureException {
         List<String> params = new ArrayList<String>(10);
         params.add("--bar-file");
-        params.add(barName.toString());
+        params.add(barFile.toString());
         params.add("--working-directory");
         params.add(workDir.toString());
-        CommandExecutionUtil.runCommand(aceRunDir, "mqsibar", params, getLog());
+        CommandExecutionUtil.runCommand(aceRunDir, "mqsibar", params, logDirectory, getLog());
     }
 
-    private void executeTestProject(Path workDir) throws MojoFailureException {
+    private void executeTestProject(Path workDir, String project, List<String> testClasses, File logDirectory, TestOutputParser parser)
+            throws MojoFailureException {
 
         List<String> params = new ArrayList<String>();
         params.add("--work-dir");
@@ -120,10 +461,21 @@ public class ExecuteTestProjectMojo extends AbstractMojo {
         params.add("--admin-rest-api");
         params.add("-1");
         params.add("--test-project");
-        params.add(applicationName);
+        params.add(project);
+        if (testClasses != null) {
+            // the option takes a single class, it's repeated for each of them
+            for (String testClass : testClasses) {
+                params.add("--test-class");
+                params.add(testClass);
+            }
+        }
         params.add("--start-msgflows");
         params.add(startMessageFlows.toString());
 
-        CommandExecutionUtil.runCommand(aceRunDir, "IntegrationServer", params, getLog());
+        CommandExecutionUtil.runCommand(aceRunDir, "IntegrationServer", params, logDirectory, getLog(), parser);
+    }
+
+    private File getLogDirectory(String project) {
+        return toolLogDirectory != null ? new File(toolLogDirectory, project) : null;
     }
 }
@@ -0,0 +1,62 @@
+package ibm.maven.plugins.ace.mojos;
+
+import ibm.maven.plugins.ace.utils.BarOverlay;
+import ibm.maven.plugins.ace.utils.BuildTimings;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Creates the bar file of an environment from the bar file without overrides and the overlay written for the
+ * environment by validate-configurable-properties with ace.barOverlays, e.g. at deploy time. Can be run without a
+ * project, e.g. mvn ibm.maven.plugins:ace-maven-plugin:materialize-bar -Dace.baseBar=app-1.0.bar -Dace.overlay=DEV_1.0.overlay
+ */
+@Mojo(name = "materialize-bar", requiresProject = false, threadSafe = true)
+public class MaterializeBarMojo extends AbstractMojo {
+
+    /**
+     * The bar file without overrides.
+     */
+    @Parameter(property = "ace.baseBar", defaultValue = "${project.build.directory}/ace/${project.artifactId}-${project.version}.bar", required = true)
+    protected File baseBar;
+
+    /**
+     * The overlay of the environment, e.g. DEV_1.0.overlay.
+     */
+    @Parameter(property = "ace.overlay", required = true)
+    protected File overlay;
+
+    /**
+     * The bar file to be written. By default the name of the overlay with the extension .bar, next to it.
+     */
+    @Parameter(property = "ace.materializedBar")
+    protected File materializedBar;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        for (File file : new File[] { baseBar, overlay }) {
+            if (!file.isFile()) {
+                throw new MojoFailureException("File not found: " + file.getAbsolutePath());
+            }
+        }
+        File target = materializedBar != null ? materializedBar : BarOverlay.getBarFile(overlay);
+
+        getLog().info("Materializing " + target + " from " + baseBar + " and " + overlay);
+        BuildTimings.Timer timer = BuildTimings.startStep("materialize-bar");
+        timer.set("file", target.getName());
+        try {
+            BarOverlay.materialize(baseBar, overlay, target);
+        } catch (IOException e) {
+            target.delete();
+            throw new MojoFailureException("Error materializing " + target, e);
+        } finally {
+            timer.stop();
+        }
+        getLog().info("Bar file written: " + target + " (" + target.length() + " bytes)");
+    }
+}
@@ -30,7 +30,7 @@ import org.codehaus.plexus.util.FileUtils;
  * 
  * Implemented with help from: https://github.com/TimMoore/mojo-executor/blob/master/README.md
  */
-@Mojo(name = "package-udn-jar")
+@Mojo(name = "package-udn-jar", threadSafe = true)
 public class PackageUserDefinedNodeJarMojo extends AbstractMojo {
 
     /**
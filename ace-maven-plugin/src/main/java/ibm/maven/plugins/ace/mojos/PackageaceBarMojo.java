@@ -34,7 +34,7 @@ import org.codehaus.plexus.util.IOUtil;
  * 
  * Implemented with help from: https://github.com/TimMoore/mojo-executor/blob/master/README.md
  */
-@Mojo(name = "package-ace-bar")
+@Mojo(name = "package-ace-bar", threadSafe = true)
 public class PackageaceBarMojo extends CreateBarMojo {
 
     /**
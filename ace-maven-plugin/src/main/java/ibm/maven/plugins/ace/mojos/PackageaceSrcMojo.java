@@ -35,7 +35,7 @@ import org.codehaus.plexus.util.IOUtil;
  * 
  * Implemented with help from: https://github.com/TimMoore/mojo-executor/blob/master/README.md
  */
-@Mojo(name = "package-src")
+@Mojo(name = "package-src", threadSafe = true)
 public class PackageaceSrcMojo extends AbstractMojo {
 
     /**
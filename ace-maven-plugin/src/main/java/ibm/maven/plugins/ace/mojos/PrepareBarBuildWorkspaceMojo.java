@@ -10,15 +10,16 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
+import ibm.maven.plugins.ace.utils.BuildTimings;
 import ibm.maven.plugins.ace.utils.PomXmlUtils;
+import ibm.maven.plugins.ace.utils.WorkspaceLocks;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-
-import javax.xml.bind.JAXBException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
@@ -33,8 +34,6 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
 
-import ibm.maven.plugins.ace.generated.maven_pom.Model;
-
 /**
  * Unpacks the dependent WebSphere Message Broker Projects.
  * 
@@ -42,7 +41,7 @@ import ibm.maven.plugins.ace.generated.maven_pom.Model;
  * 
  * requiresDependencyResolution below is required for the unpack-dependencies goal to work correctly. See https://github.com/TimMoore/mojo-executor/issues/3
  */
-@Mojo(name = "prepare-bar-build-workspace", requiresDependencyResolution = ResolutionScope.TEST)
+@Mojo(name = "prepare-bar-build-workspace", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
 public class PrepareBarBuildWorkspaceMojo extends AbstractMojo {
 
     /**
@@ -135,14 +134,14 @@ public class PrepareBarBuildWorkspaceMojo extends AbstractMojo {
      */
     private boolean isJarPackaging(File pomFile) {
         try {
-            Model model = PomXmlUtils.unmarshallPomFile(pomFile);
+            String packaging = PomXmlUtils.readCoordinates(pomFile, "packaging").getPackaging();
 
             // packaging "jar" is the default and may not be defined
-            if (model.getPackaging() == null || model.getPackaging().equals("") || model.getPackaging().equals("jar")) {
+            if (packaging == null || packaging.equals("") || packaging.equals("jar")) {
                 return true;
             }
-        } catch (JAXBException e) {
-            getLog().debug("Exception unmarshalling ('" + pomFile.getAbsolutePath() + "')", e);
+        } catch (IOException e) {
+            getLog().debug("Exception reading ('" + pomFile.getAbsolutePath() + "')", e);
         }
 
         // this should really never happen
@@ -160,9 +159,17 @@ public class PrepareBarBuildWorkspaceMojo extends AbstractMojo {
         workspace.mkdirs();
 
         // unpack all dependencies that match the given scope
-        executeMojo(plugin(groupId("org.apache.maven.plugins"), artifactId("maven-dependency-plugin"), version("2.8")), goal("unpack-dependencies"), configuration(element(name("outputDirectory"),
-                workspace.getAbsolutePath()), element(name("includeTypes"), UNPACK_ace_DEPENDENCY_TYPES), element(name("includeScope"), UNPACK_ace_DEPENDENCY_SCOPE)),
-                executionEnvironment(project, session, buildPluginManager));
+        // modules sharing a workspace must not unpack into it at the same time
+        ReentrantLock workspaceLock = WorkspaceLocks.lock(workspace, getLog());
+        BuildTimings.Timer timer = BuildTimings.startStep("unpack-dependencies");
+        try {
+            executeMojo(plugin(groupId("org.apache.maven.plugins"), artifactId("maven-dependency-plugin"), version("2.8")), goal("unpack-dependencies"), configuration(element(name("outputDirectory"),
+                    workspace.getAbsolutePath()), element(name("includeTypes"), UNPACK_ace_DEPENDENCY_TYPES), element(name("includeScope"), UNPACK_ace_DEPENDENCY_SCOPE)),
+                    executionEnvironment(project, session, buildPluginManager));
+        } finally {
+            timer.stop();
+            workspaceLock.unlock();
+        }
 
         // delete the dependency-maven-plugin-markers directory
         try {
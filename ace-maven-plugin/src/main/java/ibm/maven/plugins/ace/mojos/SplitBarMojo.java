@@ -0,0 +1,116 @@
+package ibm.maven.plugins.ace.mojos;
+
+import ibm.maven.plugins.ace.utils.BarSplitter;
+import ibm.maven.plugins.ace.utils.BuildTimings;
+import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Splits a bar file containing several applications into one bar file per application, each with the libraries the
+ * application needs, so that the applications can be deployed in parallel and rolled back one at a time. Libraries no
+ * application needs and policy projects get a bar file of their own. The split bar files are listed with their SHA-256
+ * in the file SHA256SUMS, which can be verified with sha256sum -c.
+ * Can be run without a project, e.g. mvn ibm.maven.plugins:ace-maven-plugin:split-bar -Dace.bar=app.bar -Dace.splitDirectory=split
+ */
+@Mojo(name = "split-bar", requiresProject = false, threadSafe = true)
+public class SplitBarMojo extends AbstractMojo {
+
+    /**
+     * The bar file to split.
+     */
+    @Parameter(property = "ace.bar", defaultValue = "${project.build.directory}/ace/${project.artifactId}-${project.version}.bar", required = true)
+    protected File bar;
+
+    /**
+     * The directory the split bar files and their checksums are written to.
+     */
+    @Parameter(property = "ace.splitDirectory", defaultValue = "${project.build.directory}/ace/split", required = true)
+    protected File splitDirectory;
+
+    /**
+     * The workspace the bar file was built from. If it exists, the references in the .project files are used in addition
+     * to the references in the application and library descriptors of the bar file.
+     */
+    @Parameter(property = "ace.workspace", defaultValue = "${project.build.directory}/ace/workspace")
+    protected File workspace;
+
+    /**
+     * The number of split bar files written at the same time. 0 for the number of processors.
+     */
+    @Parameter(property = "ace.splitThreads", defaultValue = "0")
+    protected int splitThreads;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!bar.isFile()) {
+            throw new MojoFailureException("Bar file not found: " + bar.getAbsolutePath());
+        }
+
+        BuildTimings.Timer timer = BuildTimings.startStep("split-bar");
+        timer.set("file", bar.getName());
+        try {
+            BarSplitter splitter;
+            try {
+                splitter = new BarSplitter(bar);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error reading " + bar, e);
+            }
+            addWorkspaceReferences(splitter);
+
+            Map<String, List<String>> splits = splitter.getSplits();
+            for (Map.Entry<String, List<String>> split : splits.entrySet()) {
+                getLog().info(splitter.getSplitFile(splitDirectory, split.getKey()).getName() + ": " + split.getValue());
+            }
+            timer.set("bars", splits.size());
+
+            deleteSplits();
+            int threads = splitThreads > 0 ? splitThreads : Runtime.getRuntime().availableProcessors();
+            try {
+                splitter.write(splitDirectory, threads);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error splitting " + bar + " into " + splitDirectory, e);
+            }
+            getLog().info("Split " + bar.getName() + " into " + splits.size() + " bar files in " + splitDirectory + ", checksums written to "
+                    + BarSplitter.CHECKSUM_FILE);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void addWorkspaceReferences(BarSplitter splitter) throws MojoFailureException {
+        if (workspace == null || !workspace.isDirectory()) {
+            getLog().debug("No workspace, only the references in the descriptors are used");
+            return;
+        }
+        for (String project : splitter.getProjects()) {
+            File projectDirectory = new File(workspace, project);
+            if (new File(projectDirectory, ".project").isFile()) {
+                splitter.addReferences(project, EclipseProjectUtils.getReferencedProjects(projectDirectory));
+            }
+        }
+    }
+
+    /**
+     * deletes the split bar files and the checksums of a previous run, which may have contained other applications
+     */
+    private void deleteSplits() throws MojoFailureException {
+        File[] files = splitDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if ((file.getName().endsWith(".bar") || file.getName().equals(BarSplitter.CHECKSUM_FILE)) && !file.delete()) {
+                throw new MojoFailureException("Could not delete " + file);
+            }
+        }
+    }
+}
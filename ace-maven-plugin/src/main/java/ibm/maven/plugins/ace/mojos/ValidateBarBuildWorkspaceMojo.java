@@ -1,11 +1,21 @@
 package ibm.maven.plugins.ace.mojos;
 
+import ibm.maven.plugins.ace.utils.BuildTimings;
 import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
 import ibm.maven.plugins.ace.utils.PomXmlUtils;
+import ibm.maven.plugins.ace.utils.WorkspaceValidationManifest;
 
 import java.io.File;
-
-import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
@@ -18,8 +28,6 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 
-import ibm.maven.plugins.ace.generated.maven_pom.Model;
-
 /**
  * Unpacks the dependent WebSphere Message Broker Projects.
  * 
@@ -27,7 +35,7 @@ import ibm.maven.plugins.ace.generated.maven_pom.Model;
  * 
  * requiresDependencyResolution below is required for the unpack-dependencies goal to work correctly. See https://github.com/TimMoore/mojo-executor/issues/3
  */
-@Mojo(name = "validate-bar-build-workspace", requiresDependencyResolution = ResolutionScope.TEST)
+@Mojo(name = "validate-bar-build-workspace", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
 public class ValidateBarBuildWorkspaceMojo extends AbstractMojo {
 
     /**
@@ -60,6 +68,20 @@ public class ValidateBarBuildWorkspaceMojo extends AbstractMojo {
     @Parameter(property = "ace.unpackDependenciesDirectory", defaultValue = "${project.build.directory}/ace/dependencies", required = true, readonly = true)
     protected File unpackDependenciesDirectory;
 
+    /**
+     * The number of project directories validated at the same time. 0 for the number of processors.
+     */
+    @Parameter(property = "ace.validationThreads", defaultValue = "0")
+    protected int validationThreads;
+
+    /**
+     * The file recording the project directories which passed the validation, so that the next build skips them while
+     * their .project and pom.xml are unchanged. Empty to validate all project directories every time. Kept out of
+     * target/ace, which is packaged by the ace-bar-project assembly.
+     */
+    @Parameter(property = "ace.validationManifest", defaultValue = "${project.build.directory}/ace-validation.manifest")
+    protected File validationManifest;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
 
         // the following code would be a nicer implementation, but breaks the Integration Tests
@@ -77,8 +99,18 @@ public class ValidateBarBuildWorkspaceMojo extends AbstractMojo {
         // String projectDirectoryName = dependency.getArtifactId();
 
 
+        BuildTimings.Timer timer = BuildTimings.startStep("validate-workspace");
+        try {
+            validateProjectDirectories(timer);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void validateProjectDirectories(BuildTimings.Timer timer) throws MojoFailureException {
         // loop through the project directories
         File[] projects = workspace.listFiles();
+        List<File> projectDirectories = new ArrayList<File>();
         //
         for (File projectDirectory : projects) {
             // ignore the directory .metadata
@@ -91,21 +123,116 @@ public class ValidateBarBuildWorkspaceMojo extends AbstractMojo {
                     ||projectDirectory.getName().endsWith("@tmp") ) {
                 continue;
             }
+            projectDirectories.add(projectDirectory);
+        }
+        Collections.sort(projectDirectories);
 
-            String projectDirectoryName = projectDirectory.getName();
-            
+        final WorkspaceValidationManifest manifest = readManifest();
+        manifest.retain(projectDirectories);
 
-            // checks that the directory name is the same as the name in the .project file
-            String eclipseProjectName = EclipseProjectUtils.getProjectName(projectDirectory);
-            if (!projectDirectoryName.equals(eclipseProjectName)) {
-                throw new MojoFailureException("The Project Directory Name ('" + projectDirectoryName + "') is not the same as the Project Name (in .project file) ('" + eclipseProjectName + "')");
+        // the projects are independent of each other, all mismatches are reported (in the order of the names)
+        final AtomicInteger skipped = new AtomicInteger();
+        List<String> mismatches = new ArrayList<String>();
+        int threads = validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, projectDirectories.size())));
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (final File projectDirectory : projectDirectories) {
+                futures.add(executor.submit(new Callable<String>() {
+                    public String call() throws IOException, MojoFailureException {
+                        if (manifest.isValidated(projectDirectory)) {
+                            skipped.incrementAndGet();
+                            return null;
+                        }
+                        String mismatch = validateProjectDirectory(projectDirectory);
+                        if (mismatch == null) {
+                            manifest.validated(projectDirectory);
+                        }
+                        return mismatch;
+                    }
+                }));
             }
+            for (Future<String> future : futures) {
+                String mismatch = get(future);
+                if (mismatch != null) {
+                    mismatches.add(mismatch);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
 
-            // checks that the directory name is the same as the artifactId from the pom.xml file
-            String artifactId = getProjectArtifactId(projectDirectory);
-            if (artifactId != null && !projectDirectoryName.equals(artifactId)) {
-                throw new MojoFailureException("The Project Directory Name ('" + projectDirectoryName + "') is not the same as the Maven artifactId (in pom.xml): " + artifactId);
+        // the valid projects are recorded even if others failed, so that only the fixed ones are validated next time
+        writeManifest(manifest);
+        timer.set("projects", projectDirectories.size()).set("skipped", skipped.get()).set("mismatches", mismatches.size());
+        getLog().info("Validated " + (projectDirectories.size() - skipped.get()) + " project directories, " + skipped.get()
+                + " unchanged since their last validation");
+
+        if (mismatches.size() == 1) {
+            throw new MojoFailureException(mismatches.get(0));
+        } else if (!mismatches.isEmpty()) {
+            StringBuilder message = new StringBuilder(mismatches.size() + " project directories don't match their projects:");
+            for (String mismatch : mismatches) {
+                message.append(System.getProperty("line.separator")).append("  ").append(mismatch);
             }
+            throw new MojoFailureException(message.toString());
+        }
+    }
+
+    /**
+     * @return the mismatch between the project directory and its project, null if there isn't any
+     */
+    private String validateProjectDirectory(File projectDirectory) throws MojoFailureException {
+        String projectDirectoryName = projectDirectory.getName();
+
+        // checks that the directory name is the same as the name in the .project file
+        String eclipseProjectName = EclipseProjectUtils.getProjectName(projectDirectory);
+        if (!projectDirectoryName.equals(eclipseProjectName)) {
+            return "The Project Directory Name ('" + projectDirectoryName + "') is not the same as the Project Name (in .project file) ('" + eclipseProjectName + "')";
+        }
+
+        // checks that the directory name is the same as the artifactId from the pom.xml file
+        String artifactId = getProjectArtifactId(projectDirectory);
+        if (artifactId != null && !projectDirectoryName.equals(artifactId)) {
+            return "The Project Directory Name ('" + projectDirectoryName + "') is not the same as the Maven artifactId (in pom.xml): " + artifactId;
+        }
+        return null;
+    }
+
+    private WorkspaceValidationManifest readManifest() {
+        if (validationManifest == null || validationManifest.getPath().isEmpty()) {
+            return WorkspaceValidationManifest.create();
+        }
+        try {
+            return WorkspaceValidationManifest.read(validationManifest);
+        } catch (IOException e) {
+            getLog().warn("Could not read " + validationManifest + ", validating all project directories: " + e);
+            return WorkspaceValidationManifest.create();
+        }
+    }
+
+    private void writeManifest(WorkspaceValidationManifest manifest) {
+        if (validationManifest == null || validationManifest.getPath().isEmpty()) {
+            return;
+        }
+        try {
+            manifest.write(validationManifest);
+        } catch (IOException e) {
+            getLog().warn("Could not write " + validationManifest + ": " + e);
+        }
+    }
+
+    private static String get(Future<String> future) throws MojoFailureException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while validating the workspace", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoFailureException) {
+                throw (MojoFailureException) e.getCause();
+            }
+            throw new MojoFailureException("Error validating the workspace", e.getCause());
         }
     }
 
@@ -114,16 +241,18 @@ public class ValidateBarBuildWorkspaceMojo extends AbstractMojo {
      * 
      * @param projectDirectory directory containing pom.xml
      * @return the artifactId from the pom.xml
-     * @throws MojoFailureException if something goes wrong
      */
-    private String getProjectArtifactId(File projectDirectory) throws MojoFailureException {
+    private String getProjectArtifactId(File projectDirectory) {
         File pomFile = new File(projectDirectory, "pom.xml");
         String artifactId = null;
+        if (!pomFile.isFile()) {
+            return null;
+        }
         try {
-            Model model = PomXmlUtils.unmarshallPomFile(pomFile);
-            artifactId = model.getArtifactId();
-        } catch (JAXBException e) {
-            getLog().debug("Exception unmarshalling ('" + pomFile.getAbsolutePath() + "')", e);
+            // only the artifactId is read, not the whole model
+            artifactId = PomXmlUtils.readCoordinates(pomFile, "artifactId").getArtifactId();
+        } catch (IOException e) {
+            getLog().debug("Exception reading ('" + pomFile.getAbsolutePath() + "')", e);
         }
         return artifactId;
     }
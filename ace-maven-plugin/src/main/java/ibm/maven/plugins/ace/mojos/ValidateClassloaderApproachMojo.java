@@ -1,5 +1,6 @@
 package ibm.maven.plugins.ace.mojos;
 
+import ibm.maven.plugins.ace.utils.BuildTimings;
 import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
 
 import java.io.BufferedReader;
@@ -18,7 +19,7 @@ import org.apache.maven.plugins.annotations.Parameter;
  * Goal which reads the default.properties file to figure out if the classloader approach for this bar project is consistent. Either all jar nodes in all flows must use a classloader or none of them
  * should.
  */
-@Mojo(name = "validate-classloader-approach")
+@Mojo(name = "validate-classloader-approach", threadSafe = true)
 public class ValidateClassloaderApproachMojo extends AbstractMojo {
 
     /**
@@ -62,6 +63,15 @@ public class ValidateClassloaderApproachMojo extends AbstractMojo {
         // consistent (all defined or all not defined)
         List<String> clProps = ConfigurablePropertiesUtil.getJavaClassLoaderProperties(configurableProperties);
 
+        BuildTimings.Timer timer = BuildTimings.startStep("validate-classloader-approach");
+        try {
+            validateClassloaderProperties(clProps);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void validateClassloaderProperties(List<String> clProps) throws MojoFailureException {
         for (String clProp : clProps) {
             // if clDefined is null, this is the first entry
             boolean clValueDefined = !"".equals(ConfigurablePropertiesUtil.getPropValue(clProp));
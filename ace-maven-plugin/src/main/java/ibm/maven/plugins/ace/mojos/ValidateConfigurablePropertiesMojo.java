@@ -10,17 +10,30 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
+import ibm.maven.plugins.ace.jfr.JfrEvents;
+import ibm.maven.plugins.ace.utils.BarIndex;
+import ibm.maven.plugins.ace.utils.BarOverlay;
+import ibm.maven.plugins.ace.utils.BuildTimings;
+import ibm.maven.plugins.ace.utils.CommandExecutionUtil;
 import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
 import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
+import ibm.maven.plugins.ace.utils.FileCache;
+import ibm.maven.plugins.ace.utils.InProcessCommands;
 import ibm.maven.plugins.ace.utils.ProcessOutputCatcher;
 import ibm.maven.plugins.ace.utils.ProcessOutputLogger;
+import ibm.maven.plugins.ace.utils.ProcessScheduler;
+import ibm.maven.plugins.ace.utils.ProcessScheduler.ProcessType;
+import ibm.maven.plugins.ace.utils.SpillableLineBuffer;
+import ibm.maven.plugins.ace.utils.ToolOutputSink;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.artifact.Artifact;
@@ -29,7 +42,6 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -40,9 +52,19 @@ import org.codehaus.plexus.util.FileUtils;
 /**
  * Goal which reads the a bar file, including creating a list of configurable properties
  */
-@Mojo(name = "validate-configurable-properties", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "validate-configurable-properties", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
 public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
 
+    /**
+     * the line of the mqsireadbar output the configurable properties of an application or library follow
+     */
+    private static final Pattern DEPLOYMENT_DESCRIPTOR = Pattern.compile(" *Deployment descriptor:");
+
+    /**
+     * the configurable properties read by mqsireadbar per bar file, shared by the modules and builds of the JVM
+     */
+    private static final FileCache<List<String>> CONFIGURABLE_PROPERTIES = FileCache.create("configurable-properties", 256);
+
     /**
      * Whether the applybaroverride command should be executed or not
      */
@@ -55,6 +77,20 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
     @Parameter(property = "ace.applyBarOverrideRecursively", defaultValue = "true", required = true)
     protected Boolean applyBarOverrideRecursively;
 
+    /**
+     * Writes an index (&lt;bar&gt;.index) next to every bar file created by applying the overrides, see create-bar.
+     */
+    @Parameter(property = "ace.barIndex", defaultValue = "false")
+    protected boolean barIndex;
+
+    /**
+     * Stores the bar files created by applying the overrides as overlays (&lt;bar&gt;.overlay) of the bar file without
+     * overrides, which is kept: an overlay contains only the files differing from it, i.e. the deployment descriptors.
+     * The bar file of an environment is created from the bar file and its overlay by the materialize-bar goal.
+     */
+    @Parameter(property = "ace.barOverlays", defaultValue = "false")
+    protected boolean barOverlays;
+
     /**
      * The name of the BAR (compressed file format) archive file where the result is stored.
      * 
@@ -126,6 +162,13 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
     @Parameter(property = "ace.applyBarOverrideTraceFile", defaultValue = "${project.build.directory}/applybaroverridetrace.txt", required = true)
     protected File applyBarOverrideTraceFile;
 
+    /**
+     * The directory the complete output of mqsireadbar and mqsiapplybaroverride is written to. The console only shows
+     * the BIP messages of the severity set with ace.toolOutputLevel (default WARNING, ALL for every line) and a summary.
+     */
+    @Parameter(property = "ace.toolLogDirectory", defaultValue = "${project.build.directory}/ace-logs")
+    protected File toolLogDirectory;
+
     /**
      * The Maven Project Object
      */
@@ -158,7 +201,7 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
 
         getLog().info("Reading bar file: " + barName);
 
-        List<String> params = new ArrayList<String>();
+        final List<String> params = new ArrayList<String>();
         params.add("-b");
         params.add(barName.getAbsolutePath());
 
@@ -169,20 +212,48 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
         params.add(readBarTraceFile.getAbsolutePath());
 */
 
-        List<String> output = executeReadBar(params);
-
-        List<String> configurableProperties = getConfigurableProperties(output);
+        List<String> configurableProperties = CONFIGURABLE_PROPERTIES.get(barName,
+                new FileCache.Loader<List<String>, MojoFailureException>() {
+                    public List<String> load(File bar) throws MojoFailureException {
+                        return readConfigurableProperties(params);
+                    }
+                });
 
         writeToFile(configurableProperties, defaultPropertiesFile);
 
         if (applyBarOverride){
-        validatePropertiesFiles(ConfigurablePropertiesUtil.getPropNames(configurableProperties));
+        BuildTimings.Timer timer = BuildTimings.startStep("validate-properties");
+        try {
+            validatePropertiesFiles(ConfigurablePropertiesUtil.getPropNames(configurableProperties));
+        } finally {
+            timer.stop();
+        }
 
         
         executeApplyBarOverrides();
     	}
     }
 
+    /**
+     * runs mqsireadbar on the bar file
+     *
+     * @return the configurable properties of the bar file, unmodifiable as they are cached
+     */
+    private List<String> readConfigurableProperties(List<String> params) throws MojoFailureException {
+        List<String> configurableProperties;
+        SpillableLineBuffer output = executeReadBar(params);
+        try {
+            BuildTimings.Timer timer = BuildTimings.startStep("parse-configurable-properties");
+            timer.set("spilled", output.isSpilled());
+            configurableProperties = getConfigurableProperties(output);
+            timer.set("properties", configurableProperties.size());
+            timer.stop();
+        } finally {
+            output.close();
+        }
+        return Collections.unmodifiableList(configurableProperties);
+    }
+
     private void copyAndFilterResources() throws MojoFailureException, MojoExecutionException {
 
         getLog().debug("Project Build Resources: " + project.getBuild().getResources().toString());
@@ -208,6 +279,7 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
 
         try {
             getLog().info("Applying properties files as bar file overrides");
+            BarIndex baseIndex = null;
             for (File propFile : getTargetPropertiesFiles()) {
 
                 getLog().info("  " + propFile.getAbsolutePath());
@@ -264,17 +336,71 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
                 // (Optional) The name of a library in the BAR file to which to apply overrides.
                 // -y
 
-                executeApplyBarOverride(params);               
+                executeApplyBarOverride(params, "mqsiapplybaroverride-" + FilenameUtils.getBaseName(propFile.getName()));
+
+                BarIndex index = null;
+                if (barIndex) {
+                    index = BarIndex.create(new File(outputBarFile));
+                    getLog().info("Bar index written: " + BarIndex.writeIndexFile(new File(outputBarFile), index));
+                }
+                if (barOverlays) {
+                    if (baseIndex == null) {
+                        baseIndex = readIndex(barName);
+                    }
+                    writeOverlay(new File(outputBarFile), index, baseIndex);
+                }
 
             }
-            // Delete the original bar -- Added by Anand Awasthi
-            barName.delete();
+            if (!barOverlays) {
+                // Delete the original bar -- Added by Anand Awasthi
+                barName.delete();
+            }
+            // the index of the bar without overrides is kept, it's the baseline for the delta bars of later versions
             
         } catch (IOException e) {
             throw new MojoFailureException("Error applying bar overrides", e);
         }
     }
 
+    /**
+     * @return the index of a bar file, read from its index file if it's up to date
+     */
+    private BarIndex readIndex(File bar) throws IOException {
+        File indexFile = BarIndex.getIndexFile(bar);
+        if (indexFile.isFile() && indexFile.lastModified() >= bar.lastModified()) {
+            return BarIndex.read(indexFile);
+        }
+        return BarIndex.create(bar);
+    }
+
+    /**
+     * replaces a bar file created by applying overrides by its overlay, if it can be expressed as one
+     *
+     * @param index the index of the bar file, null if it wasn't created yet
+     */
+    private void writeOverlay(File bar, BarIndex index, BarIndex baseIndex) throws IOException, MojoFailureException {
+        File overlayFile = BarOverlay.getOverlayFile(bar);
+        BuildTimings.Timer timer = BuildTimings.startStep("bar-overlay");
+        timer.set("file", overlayFile.getName());
+        List<String> files;
+        try {
+            files = BarOverlay.write(barName, baseIndex, bar, index != null ? index : BarIndex.create(bar), overlayFile);
+            timer.set("files", files == null ? -1 : files.size());
+        } finally {
+            timer.stop();
+        }
+        if (files == null) {
+            overlayFile.delete();
+            getLog().warn("Files were removed from or added outside of the archives of " + bar.getName()
+                    + ", it can't be stored as an overlay of " + barName.getName());
+            return;
+        }
+        if (!bar.delete()) {
+            throw new MojoFailureException("Could not delete " + bar);
+        }
+        getLog().info("Overlay written: " + overlayFile + " (" + files.size() + " files, " + overlayFile.length() + " bytes)");
+    }
+
     /**
      * @return dummy comment
      * @throws MojoExecutionException If an exception occurs
@@ -322,7 +448,7 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
     }
 
     @SuppressWarnings("unchecked")
-    private void validatePropertiesFiles(List<String> validProps) throws MojoFailureException {
+    protected void validatePropertiesFiles(List<String> validProps) throws MojoFailureException {
 
         boolean invalidPropertiesFound = false;
 
@@ -335,8 +461,12 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
         getLog().info("Validating properties files");
         for (File file : propFiles) {
             getLog().info("  " + file.getAbsolutePath());
+            Object event = JfrEvents.beginPropertyValidation();
+            int definedCount = 0;
+            int invalidCount = 0;
             try {
                 List<String> definedProps = FileUtils.loadFile(file);
+                definedCount = definedProps.size();
 
                 // check if all the defined properties are valid
                 if (!validProps.containsAll(ConfigurablePropertiesUtil.getPropNames(definedProps))) {
@@ -348,12 +478,15 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
                     for (String definedProp : definedProps) {
                         if (!validProps.contains(ConfigurablePropertiesUtil.getPropName(definedProp))) {
                             getLog().error("  " + definedProp);
+                            invalidCount++;
                         }
                     }
                 }
 
             } catch (IOException e) {
                 throw new MojoFailureException("Error loading properties file: " + file.getAbsolutePath(), e);
+            } finally {
+                JfrEvents.endPropertyValidation(event, file, definedCount, invalidCount);
             }
         }
 
@@ -364,9 +497,23 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
 
     /**
      * @param params
+     * @param logName the name of the log file of the command, e.g. mqsiapplybaroverride-DEV
      * @throws MojoFailureException If an exception occurs
      */
-    private void executeApplyBarOverride(List<String> params) throws MojoFailureException {
+    private void executeApplyBarOverride(List<String> params, String logName) throws MojoFailureException {
+        InProcessCommands.Command inProcess = InProcessCommands.resolve(aceRunDir, "mqsiapplybaroverride", getLog());
+        if (inProcess != null) {
+            ToolOutputSink sink = createSink("mqsiapplybaroverride", logName, null);
+            boolean ran = false;
+            try {
+                ran = CommandExecutionUtil.runInProcess(inProcess, params, sink, getLog());
+            } finally {
+                sink.close();
+            }
+            if (ran) {
+                return;
+            }
+        }
 
     	 //Check underlying operating system
         String osName = System.getProperty("os.name").toLowerCase();
@@ -419,12 +566,16 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
         pb.redirectErrorStream(true);
         Process process;
         ProcessOutputLogger stdOutHandler = null;
+        ToolOutputSink sink = createSink("mqsiapplybaroverride", logName, null);
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.CLI, "mqsiapplybaroverride", getLog());
+        BuildTimings.Timer timer = BuildTimings.startCommand("mqsiapplybaroverride");
         try {
             pb.redirectErrorStream(true);
-            process = pb.start();
-            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), getLog());
+            process = CommandExecutionUtil.startProcess(pb, "mqsiapplybaroverride");
+            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), sink);
             stdOutHandler.start();
             process.waitFor();
+            timer.set("exitCode", process.exitValue());
 
         } catch (IOException e) {
             throw new MojoFailureException("Error executing: " + getCommandLine(command), e);
@@ -438,7 +589,12 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
                 } catch (InterruptedException e) {
                     // this should never happen, so ignore this one
                 }
+                timer.set("outputLines", stdOutHandler.getLineCount());
+                timer.set("outputChars", stdOutHandler.getCharCount());
             }
+            sink.close();
+            timer.stop();
+            permit.release();
         }
 
         if (process.exitValue() != 0) {
@@ -452,11 +608,42 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
 
     /**
      * @param params the parameters to be used with the mqsireadbar command
-     * @return the screen output of the executed mqsireadbar command
+     * @return the screen output of the executed mqsireadbar command, to be closed by the caller
      * @throws MojoFailureException If an exception occurs
      */
-    private List<String> executeReadBar(List<String> params) throws MojoFailureException {
-        ArrayList<String> output = new ArrayList<String>();
+    private SpillableLineBuffer executeReadBar(List<String> params) throws MojoFailureException {
+        final SpillableLineBuffer output = new SpillableLineBuffer("mqsireadbar");
+
+        InProcessCommands.Command inProcess = InProcessCommands.resolve(aceRunDir, "mqsireadbar", getLog());
+        if (inProcess != null) {
+            final IOException[] error = new IOException[1];
+            ToolOutputSink sink = createSink("mqsireadbar", "mqsireadbar", new ToolOutputSink.Listener() {
+                public void line(String line) {
+                    try {
+                        output.add(line);
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            boolean ran = false;
+            try {
+                ran = CommandExecutionUtil.runInProcess(inProcess, params, sink, getLog());
+            } catch (MojoFailureException e) {
+                output.close();
+                throw e;
+            } finally {
+                // delivers the remaining lines to the buffer
+                sink.close();
+            }
+            if (error[0] != null) {
+                output.close();
+                throw new MojoFailureException("Error reading the output of mqsireadbar", error[0]);
+            }
+            if (ran) {
+                return output;
+            }
+        }
 
      
         //Check underlying operating system
@@ -511,12 +698,16 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
         pb.redirectErrorStream(true);
         Process process;
         ProcessOutputCatcher stdOutHandler = null;
+        ToolOutputSink sink = createSink("mqsireadbar", "mqsireadbar", null);
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.CLI, "mqsireadbar", getLog());
+        BuildTimings.Timer timer = BuildTimings.startCommand("mqsireadbar");
         try {
             pb.redirectErrorStream(true);
-            process = pb.start();
-            stdOutHandler = new ProcessOutputCatcher(process.getInputStream(), output);
+            process = CommandExecutionUtil.startProcess(pb, "mqsireadbar");
+            stdOutHandler = new ProcessOutputCatcher(process.getInputStream(), output, sink);
             stdOutHandler.start();
             process.waitFor();
+            timer.set("exitCode", process.exitValue());
 
         } catch (IOException e) {
             throw new MojoFailureException("Error executing: " + getCommandLine(command), e.getCause());
@@ -530,7 +721,12 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
                 } catch (InterruptedException e) {
                     // this should never happen, so ignore this one
                 }
+                timer.set("outputLines", stdOutHandler.getLineCount());
+                timer.set("outputChars", stdOutHandler.getCharCount());
             }
+            sink.close();
+            timer.stop();
+            permit.release();
         }
 
         if (process.exitValue() != 0) {
@@ -538,16 +734,27 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
             throw new MojoFailureException("mqsireadbar finished with exit code: " + process.exitValue());
         }
 
-        getLog().info("mqsireadbar complete");
-        if (getLog().isDebugEnabled()) {
-            Log log = getLog();
-            for (String outputLine : output) {
-                log.debug(outputLine);
-            }
+        if (stdOutHandler.getError() != null) {
+            throw new MojoFailureException("Error reading the output of mqsireadbar", stdOutHandler.getError());
         }
+
+        getLog().info("mqsireadbar complete");
         return output;
     }
 
+    /**
+     * @param command the name of the command, e.g. mqsireadbar
+     * @param logName the name of the log file in the tool log directory
+     * @param listener optional listener every line is passed to, may be null
+     */
+    private ToolOutputSink createSink(String command, String logName, ToolOutputSink.Listener listener) throws MojoFailureException {
+        try {
+            return new ToolOutputSink(command, ToolOutputSink.getLogFile(toolLogDirectory, logName), getLog(), null, listener);
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not create the log file of " + command + " in " + toolLogDirectory, e);
+        }
+    }
+
     private void writeToFile(List<String> configurableProperties, File file) throws MojoFailureException {
 
         getLog().info("Writing configurable properties to: " + defaultPropertiesFile.getAbsolutePath());
@@ -574,10 +781,10 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
     }
 
     /**
-     * @param output the output of the mqsireadbar command for a given bar file
+     * @param output the output of the mqsireadbar command for a given bar file, read once
      * @return a list of properties that can be overriden for a given bar file
      */
-    protected List<String> getConfigurableProperties(List<String> output) {
+    protected List<String> getConfigurableProperties(Iterable<String> output) {
         // extract the configurable properties
 
         // output format changed for ace9...
@@ -595,13 +802,13 @@ public class ValidateConfigurablePropertiesMojo extends AbstractMojo {
         for (String outputLine : output) {
            
         	// Code added by Anand
-        	if (outputLine.matches(" *Deployment descriptor:")) {
+        	if (DEPLOYMENT_DESCRIPTOR.matcher(outputLine).matches()) {
                 inDeploymentDescriptor = false;               
             }
         	// Addition done
         	
         	if (!inDeploymentDescriptor) {
-                if (outputLine.matches(" *Deployment descriptor:")) {
+                if (DEPLOYMENT_DESCRIPTOR.matcher(outputLine).matches()) {
                     inDeploymentDescriptor = true;
 
                     // calculate how far indented the outputLine is
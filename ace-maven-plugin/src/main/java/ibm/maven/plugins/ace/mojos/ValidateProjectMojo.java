@@ -13,7 +13,7 @@ import org.apache.maven.project.MavenProject;
 /**
  * Validates the ace project
  */
-@Mojo(name = "validate-project")
+@Mojo(name = "validate-project", threadSafe = true)
 public class ValidateProjectMojo extends AbstractMojo {
 
 
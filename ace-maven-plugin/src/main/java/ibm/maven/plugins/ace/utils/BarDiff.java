@@ -0,0 +1,436 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Differences between two bar files, including the content of the nested application and library archives and the
+ * configurable properties in their deployment descriptors.
+ *
+ * Entries are compared by the CRC and size in the central directory of the zip files, so unchanged entries are never
+ * inflated. Nested archives that differ are inflated into temporary files to read their central directories,
+ * deployment descriptors that differ are streamed through a StAX parser. Memory use doesn't depend on the size of the
+ * bar files. A nested archive is only listed as changed if its content differs; one which was merely packaged again
+ * (e.g. with new timestamps or another compression) is counted as repackaged.
+ */
+public final class BarDiff {
+
+    public enum Change {
+        ADDED("+"), REMOVED("-"), CHANGED("~");
+
+        private final String symbol;
+
+        private Change(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    /**
+     * an entry that was added, removed or changed. Paths of entries of nested archives are prefixed with the path of the
+     * archive and "!/", as in the {@link BarIndex}.
+     */
+    public static final class EntryDiff {
+
+        private final String path;
+        private final Change change;
+        private final ZipEntry baseEntry;
+        private final ZipEntry entry;
+
+        EntryDiff(String path, Change change, ZipEntry baseEntry, ZipEntry entry) {
+            this.path = path;
+            this.change = change;
+            this.baseEntry = baseEntry;
+            this.entry = entry;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        /**
+         * @return the size in the base bar, -1 if the entry was added
+         */
+        public long getBaseSize() {
+            return baseEntry == null ? -1 : baseEntry.getSize();
+        }
+
+        /**
+         * @return the size in the bar, -1 if the entry was removed
+         */
+        public long getSize() {
+            return entry == null ? -1 : entry.getSize();
+        }
+
+        public long getBaseCrc() {
+            return baseEntry == null ? -1 : baseEntry.getCrc();
+        }
+
+        public long getCrc() {
+            return entry == null ? -1 : entry.getCrc();
+        }
+    }
+
+    /**
+     * a configurable property that was added, removed or whose value changed
+     */
+    public static final class PropertyDiff {
+
+        private final String descriptor;
+        private final String uri;
+        private final Change change;
+        private final String baseValue;
+        private final String value;
+
+        PropertyDiff(String descriptor, String uri, Change change, String baseValue, String value) {
+            this.descriptor = descriptor;
+            this.uri = uri;
+            this.change = change;
+            this.baseValue = baseValue;
+            this.value = value;
+        }
+
+        /**
+         * @return the path of the deployment descriptor
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public String getBaseValue() {
+            return baseValue;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final File baseBar;
+    private final File bar;
+    private final List<EntryDiff> entries = new ArrayList<EntryDiff>();
+    private final List<PropertyDiff> properties = new ArrayList<PropertyDiff>();
+    private int unchangedEntries;
+    private int inflatedEntries;
+    private int repackagedArchives;
+
+    private BarDiff(File baseBar, File bar) {
+        this.baseBar = baseBar;
+        this.bar = bar;
+    }
+
+    /**
+     * compares two bar files
+     *
+     * @param baseBar the old bar file
+     * @param bar the new bar file
+     */
+    public static BarDiff compare(File baseBar, File bar) throws IOException {
+        BarDiff diff = new BarDiff(baseBar, bar);
+        diff.compareArchives("", baseBar, bar);
+        return diff;
+    }
+
+    public File getBaseBar() {
+        return baseBar;
+    }
+
+    public File getBar() {
+        return bar;
+    }
+
+    /**
+     * @return the added, removed and changed entries. Changed archives are listed before their content.
+     */
+    public List<EntryDiff> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public List<PropertyDiff> getProperties() {
+        return Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * @return the number of entries found to be equal without inflating them
+     */
+    public int getUnchangedEntries() {
+        return unchangedEntries;
+    }
+
+    /**
+     * @return the number of nested archives whose bytes differ while their entries are equal
+     */
+    public int getRepackagedArchives() {
+        return repackagedArchives;
+    }
+
+    /**
+     * @return the number of entries that had to be inflated, i.e. the changed nested archives and deployment descriptors
+     */
+    public int getInflatedEntries() {
+        return inflatedEntries;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private void compareArchives(String prefix, File baseFile, File file) throws IOException {
+        ZipFile baseZip = new ZipFile(baseFile);
+        try {
+            ZipFile zip = new ZipFile(file);
+            try {
+                Map<String, ZipEntry> baseEntries = getEntries(baseZip);
+                for (ZipEntry entry : getEntries(zip).values()) {
+                    String path = prefix + entry.getName();
+                    ZipEntry baseEntry = baseEntries.remove(entry.getName());
+                    if (baseEntry == null) {
+                        entries.add(new EntryDiff(path, Change.ADDED, null, entry));
+                    } else if (baseEntry.getCrc() == entry.getCrc() && baseEntry.getSize() == entry.getSize()) {
+                        unchangedEntries++;
+                    } else if (BarIndex.isArchive(entry.getName())) {
+                        int index = entries.size();
+                        compareNestedArchives(path, baseZip, baseEntry, zip, entry);
+                        if (entries.size() > index) {
+                            // listed before its content
+                            entries.add(index, new EntryDiff(path, Change.CHANGED, baseEntry, entry));
+                        } else {
+                            repackagedArchives++;
+                        }
+                    } else {
+                        entries.add(new EntryDiff(path, Change.CHANGED, baseEntry, entry));
+                        if (BarIndex.DEPLOYMENT_DESCRIPTOR.equals(entry.getName())) {
+                            compareDescriptors(path, baseZip, baseEntry, zip, entry);
+                        }
+                    }
+                }
+                for (ZipEntry baseEntry : baseEntries.values()) {
+                    entries.add(new EntryDiff(prefix + baseEntry.getName(), Change.REMOVED, baseEntry, null));
+                }
+            } finally {
+                zip.close();
+            }
+        } finally {
+            baseZip.close();
+        }
+    }
+
+    private static Map<String, ZipEntry> getEntries(ZipFile zip) {
+        Map<String, ZipEntry> entries = new LinkedHashMap<String, ZipEntry>();
+        Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry entry = zipEntries.nextElement();
+            if (!entry.isDirectory()) {
+                entries.put(entry.getName(), entry);
+            }
+        }
+        return entries;
+    }
+
+    private void compareNestedArchives(String path, ZipFile baseZip, ZipEntry baseEntry, ZipFile zip, ZipEntry entry) throws IOException {
+        File baseFile = extract(baseZip, baseEntry);
+        try {
+            File file = extract(zip, entry);
+            try {
+                compareArchives(path + BarIndex.NESTED_SEPARATOR, baseFile, file);
+            } finally {
+                file.delete();
+            }
+        } finally {
+            baseFile.delete();
+        }
+    }
+
+    private File extract(ZipFile zip, ZipEntry entry) throws IOException {
+        inflatedEntries++;
+        File file = File.createTempFile("bar-diff-", ".zip");
+        InputStream in = zip.getInputStream(entry);
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                IOUtil.copy(in, out, 64 * 1024);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+        return file;
+    }
+
+    private void compareDescriptors(String path, ZipFile baseZip, ZipEntry baseEntry, ZipFile zip, ZipEntry entry) throws IOException {
+        Map<String, String> baseProperties = readConfigurableProperties(baseZip, baseEntry);
+        Map<String, String> properties = readConfigurableProperties(zip, entry);
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String uri = property.getKey();
+            if (!baseProperties.containsKey(uri)) {
+                this.properties.add(new PropertyDiff(path, uri, Change.ADDED, null, property.getValue()));
+            } else {
+                String baseValue = baseProperties.remove(uri);
+                if (!baseValue.equals(property.getValue())) {
+                    this.properties.add(new PropertyDiff(path, uri, Change.CHANGED, baseValue, property.getValue()));
+                }
+            }
+        }
+        for (Map.Entry<String, String> baseProperty : baseProperties.entrySet()) {
+            this.properties.add(new PropertyDiff(path, baseProperty.getKey(), Change.REMOVED, baseProperty.getValue(), null));
+        }
+    }
+
+    /**
+     * @return the configurable properties of a deployment descriptor by uri, with the override or "" as value
+     */
+    private Map<String, String> readConfigurableProperties(ZipFile zip, ZipEntry entry) throws IOException {
+        inflatedEntries++;
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        InputStream in = zip.getInputStream(entry);
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "ConfigurableProperty".equals(reader.getLocalName())) {
+                        String uri = reader.getAttributeValue(null, "uri");
+                        String override = reader.getAttributeValue(null, "override");
+                        if (uri != null) {
+                            properties.put(uri, override == null ? "" : override);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Error reading the deployment descriptor " + entry.getName() + " of " + zip.getName(), e);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * @return the differences as text, one line per entry or property
+     */
+    public List<String> toText() {
+        List<String> lines = new ArrayList<String>();
+        for (EntryDiff entry : entries) {
+            String line = entry.getChange().getSymbol() + " " + entry.getPath();
+            if (entry.getChange() == Change.CHANGED) {
+                line += " (" + entry.getBaseSize() + " -> " + entry.getSize() + " bytes)";
+            }
+            lines.add(line);
+            for (PropertyDiff property : properties) {
+                if (property.getDescriptor().equals(entry.getPath())) {
+                    lines.add("    " + property.getChange().getSymbol() + " " + property.getUri() + toText(property));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String toText(PropertyDiff property) {
+        switch (property.getChange()) {
+        case ADDED:
+            return " = " + property.getValue();
+        case REMOVED:
+            return " = " + property.getBaseValue();
+        default:
+            return ": " + property.getBaseValue() + " -> " + property.getValue();
+        }
+    }
+
+    /**
+     * writes the differences as JSON
+     */
+    public void writeJson(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("baseBar").value(baseBar.getPath());
+            json.name("bar").value(bar.getPath());
+            json.name("unchangedEntries").value(unchangedEntries);
+            json.name("inflatedEntries").value(inflatedEntries);
+            json.name("repackagedArchives").value(repackagedArchives);
+            json.name("entries").beginArray();
+            for (EntryDiff entry : entries) {
+                json.beginObject();
+                json.name("path").value(entry.getPath());
+                json.name("change").value(entry.getChange().name().toLowerCase());
+                if (entry.getChange() != Change.ADDED) {
+                    json.name("baseSize").value(entry.getBaseSize());
+                    json.name("baseCrc").value(String.format("%08x", entry.getBaseCrc()));
+                }
+                if (entry.getChange() != Change.REMOVED) {
+                    json.name("size").value(entry.getSize());
+                    json.name("crc").value(String.format("%08x", entry.getCrc()));
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.name("properties").beginArray();
+            for (PropertyDiff property : properties) {
+                json.beginObject();
+                json.name("descriptor").value(property.getDescriptor());
+                json.name("uri").value(property.getUri());
+                json.name("change").value(property.getChange().name().toLowerCase());
+                if (property.getChange() != Change.ADDED) {
+                    json.name("baseValue").value(property.getBaseValue());
+                }
+                if (property.getChange() != Change.REMOVED) {
+                    json.name("value").value(property.getValue());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Index of the content of a bar file, written next to it as a sidecar (&lt;bar&gt;.index), so that tools comparing,
+ * caching or deploying bars don't have to open them.
+ *
+ * The index lists every entry of the bar, including the entries of the nested application, library and policy archives
+ * (e.g. "App.appzip!/META-INF/broker.xml"), with its uncompressed size, CRC-32, SHA-256 and the project owning it, and
+ * the SHA-256 of the deployment descriptor (META-INF/broker.xml) of every project. The owner of an entry is the name of
+ * the archive it belongs to without the extension, libraries nested into an application are owned by "App/Lib", entries
+ * outside of any project archive by "".
+ *
+ * The file is a text file with one tab separated record per line: a header line, an "E" line per entry (path, owner,
+ * size, CRC, SHA-256) and a "D" line per deployment descriptor (owner, SHA-256).
+ */
+public final class BarIndex {
+
+    public static final String FILE_SUFFIX = ".index";
+
+    public static final String DEPLOYMENT_DESCRIPTOR = "META-INF/broker.xml";
+
+    /**
+     * separates the path of an archive and the path of an entry in it
+     */
+    public static final String NESTED_SEPARATOR = "!/";
+
+    private static final String HEADER = "# ace-bar-index 1";
+
+    private static final String[] ARCHIVE_EXTENSIONS = { ".appzip", ".libzip", ".shlibzip", ".policyxml" };
+
+    /**
+     * an entry of a bar file or of an archive nested in it
+     */
+    public static final class Entry {
+
+        private final String path;
+        private final String owner;
+        private final long size;
+        private final long crc;
+        private final String sha256;
+
+        public Entry(String path, String owner, long size, long crc, String sha256) {
+            this.path = path;
+            this.owner = owner;
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * @return the path of the entry, entries of nested archives are prefixed with the path of the archive and "!/"
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * @return true if the entry is in the bar itself, not in a nested archive
+         */
+        public boolean isTopLevel() {
+            return !path.contains(NESTED_SEPARATOR);
+        }
+    }
+
+    /**
+     * the indexes of bar files and the index files read, shared by the modules and builds of the JVM
+     */
+    private static final FileCache<BarIndex> INDEXES = FileCache.create("bar-indexes", 256);
+
+    private static final FileCache.Loader<BarIndex, IOException> CREATE = new FileCache.Loader<BarIndex, IOException>() {
+        public BarIndex load(File barFile) throws IOException {
+            return index(barFile);
+        }
+    };
+
+    private static final FileCache.Loader<BarIndex, IOException> READ = new FileCache.Loader<BarIndex, IOException>() {
+        public BarIndex load(File file) throws IOException {
+            return read(new FileInputStream(file), file.getPath());
+        }
+    };
+
+    private final List<Entry> entries;
+    private final Map<String, String> descriptorHashes;
+
+    private BarIndex(List<Entry> entries, Map<String, String> descriptorHashes) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.descriptorHashes = Collections.unmodifiableMap(descriptorHashes);
+    }
+
+    /**
+     * @return the entries in the order of the bar file, every archive before its content
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the entry with the given path or null
+     */
+    public Entry getEntry(String path) {
+        for (Entry entry : entries) {
+            if (entry.getPath().equals(path)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the SHA-256 of the deployment descriptor per owner
+     */
+    public Map<String, String> getDescriptorHashes() {
+        return descriptorHashes;
+    }
+
+    /**
+     * @return the SHA-256 of the deployment descriptor of a project or null if it has none
+     */
+    public String getDescriptorHash(String owner) {
+        return descriptorHashes.get(owner);
+    }
+
+    /**
+     * @return the index file of a bar file
+     */
+    public static File getIndexFile(File barFile) {
+        return new File(barFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * @return true if the name is the name of a project archive, which is indexed recursively
+     */
+    public static boolean isArchive(String name) {
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name of the project packaged into an archive, e.g. "App" for "App.appzip"
+     */
+    public static String getProjectName(String archiveName) {
+        String name = archiveName.substring(archiveName.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * indexes an existing bar file. Used for bar files the plugin doesn't write itself, e.g. the output of
+     * mqsiapplybaroverride. The index is cached as long as the bar file doesn't change.
+     */
+    public static BarIndex create(File barFile) throws IOException {
+        return INDEXES.get(barFile, CREATE);
+    }
+
+    private static BarIndex index(File barFile) throws IOException {
+        BuildTimings.Timer timer = BuildTimings.startStep("bar-index");
+        timer.set("file", barFile.getName());
+        Builder builder = new Builder();
+        ZipFile zipFile = new ZipFile(barFile);
+        try {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                InputStream content = zipFile.getInputStream(zipEntry);
+                try {
+                    builder.add(zipEntry.getName(), content);
+                } finally {
+                    content.close();
+                }
+            }
+        } finally {
+            zipFile.close();
+            timer.stop();
+        }
+        return builder.build();
+    }
+
+    /**
+     * writes the index file of a bar file
+     *
+     * @param barFile the bar file
+     * @param index the index if it was collected while writing the bar file, otherwise the bar file is read
+     * @return the index file
+     */
+    public static File writeIndexFile(File barFile, BarIndex index) throws IOException {
+        if (index == null) {
+            index = create(barFile);
+        }
+        File indexFile = getIndexFile(barFile);
+        index.write(indexFile);
+        return indexFile;
+    }
+
+    /**
+     * writes the index to a file
+     */
+    public void write(File file) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Entry entry : entries) {
+                writer.write("E\t" + entry.getPath() + "\t" + entry.getOwner() + "\t" + entry.getSize() + "\t"
+                        + String.format("%08x", entry.getCrc()) + "\t" + entry.getSha256() + "\n");
+            }
+            for (Map.Entry<String, String> descriptor : descriptorHashes.entrySet()) {
+                writer.write("D\t" + descriptor.getKey() + "\t" + descriptor.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * reads an index written by {@link #write(File)}, cached as long as the file doesn't change
+     */
+    public static BarIndex read(File file) throws IOException {
+        return INDEXES.get(file, READ);
+    }
+
+    /**
+     * reads an index written by {@link #write(File)}, e.g. from a packaged artifact
+     *
+     * @param in the content of the index, closed when read
+     * @param source the name of the index in error messages
+     */
+    public static BarIndex read(InputStream in, String source) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        Map<String, String> descriptorHashes = new LinkedHashMap<String, String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException("Not a bar index: " + source);
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split("\t", -1);
+                try {
+                    if ("E".equals(fields[0]) && fields.length == 6) {
+                        entries.add(new Entry(fields[1], fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4], 16), fields[5]));
+                    } else if ("D".equals(fields[0]) && fields.length == 3) {
+                        descriptorHashes.put(fields[1], fields[2]);
+                    } else if (!line.isEmpty()) {
+                        throw new IOException("Invalid line " + lineNumber + " in the bar index " + source + ": " + line);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid line " + lineNumber + " in the bar index " + source + ": " + line, e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new BarIndex(entries, descriptorHashes);
+    }
+
+    /**
+     * Collects the index while a bar is read or written, the content of every entry is read once.
+     */
+    public static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private final Map<String, String> descriptorHashes = new LinkedHashMap<String, String>();
+
+        /**
+         * indexes an entry of the bar file, recursing into project archives
+         *
+         * @param name the name of the entry in the bar
+         * @param content the uncompressed content of the entry, read to the end but not closed
+         */
+        public void add(String name, InputStream content) throws IOException {
+            add(name, isArchive(name) ? getProjectName(name) : "", name, content);
+        }
+
+        private void add(String path, String owner, String name, InputStream content) throws IOException {
+            // keep the archive in front of its content
+            int position = entries.size();
+            entries.add(null);
+
+            HashingInputStream in = new HashingInputStream(content);
+            if (isArchive(name)) {
+                ZipInputStream archive = new ZipInputStream(in);
+                ZipEntry zipEntry;
+                while ((zipEntry = archive.getNextEntry()) != null) {
+                    if (zipEntry.isDirectory()) {
+                        continue;
+                    }
+                    String nestedName = zipEntry.getName();
+                    String nestedOwner = isArchive(nestedName) ? owner + "/" + getProjectName(nestedName) : owner;
+                    add(path + NESTED_SEPARATOR + nestedName, nestedOwner, nestedName, archive);
+                }
+            }
+            // the rest of the archive (central directory) or the whole content of a plain entry
+            in.skipToEnd();
+
+            String sha256 = in.getSha256();
+            if (DEPLOYMENT_DESCRIPTOR.equals(name)) {
+                descriptorHashes.put(owner, sha256);
+            }
+            entries.set(position, new Entry(path, owner, in.getCount(), in.getCrc(), sha256));
+        }
+
+        public BarIndex build() {
+            return new BarIndex(new ArrayList<Entry>(entries), new LinkedHashMap<String, String>(descriptorHashes));
+        }
+    }
+
+    /**
+     * computes the size, CRC-32 and SHA-256 of everything read through it. Closing it doesn't close the underlying
+     * stream, nested archives are read from the stream of their parent.
+     */
+    private static final class HashingInputStream extends FilterInputStream {
+
+        private final MessageDigest digest;
+        private final CRC32 crc = new CRC32();
+        private long count;
+
+        HashingInputStream(InputStream in) {
+            super(in);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every Java platform supports SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                digest.update((byte) b);
+                crc.update(b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                digest.update(b, off, n);
+                crc.update(b, off, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes have to be hashed as well
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream belongs to the caller
+        }
+
+        void skipToEnd() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // just hash
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getCrc() {
+            return crc.getValue();
+        }
+
+        String getSha256() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        }
+    }
+}
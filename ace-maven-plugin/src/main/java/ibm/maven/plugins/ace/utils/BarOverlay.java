@@ -0,0 +1,338 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Stores a bar file as the difference to a base bar file: the bar files created by applying the overrides of an
+ * environment differ from the bar file without overrides in their deployment descriptors only. An overlay
+ * (&lt;bar&gt;.overlay, e.g. DEV_1.0.overlay for DEV_1.0.bar) is a zip file containing the files of the bar that differ
+ * from the base, by their path in the bar (e.g. "App.appzip!/META-INF/broker.xml"), and META-INF/overlay.properties
+ * identifying the base.
+ *
+ * The bar file is materialized from the base and the overlay in one pass over the base: unchanged entries are copied
+ * without inflating them, archives containing changed files are rewritten with their unchanged entries copied the same
+ * way and added uncompressed, as their entries are compressed already.
+ */
+public final class BarOverlay {
+
+    public static final String FILE_SUFFIX = ".overlay";
+
+    public static final String PROPERTIES = "META-INF/overlay.properties";
+
+    private static final String BAR_SUFFIX = ".bar";
+    private static final String PROPERTY_BASE = "base";
+    private static final String PROPERTY_BASE_SIZE = "baseSize";
+    private static final String PROPERTY_CRC_PREFIX = "crc.";
+
+    /**
+     * hide the default constructor
+     */
+    private BarOverlay() {
+        super();
+    }
+
+    /**
+     * @return the overlay file of a bar file, e.g. target/ace/DEV_1.0.overlay for target/ace/DEV_1.0.bar
+     */
+    public static File getOverlayFile(File barFile) {
+        String name = barFile.getName();
+        if (name.endsWith(BAR_SUFFIX)) {
+            name = name.substring(0, name.length() - BAR_SUFFIX.length());
+        }
+        return new File(barFile.getParentFile(), name + FILE_SUFFIX);
+    }
+
+    /**
+     * @return the bar file materialized from an overlay file, e.g. DEV_1.0.bar for DEV_1.0.overlay
+     */
+    public static File getBarFile(File overlayFile) {
+        String name = overlayFile.getName();
+        if (name.endsWith(FILE_SUFFIX)) {
+            name = name.substring(0, name.length() - FILE_SUFFIX.length());
+        }
+        return new File(overlayFile.getParentFile(), name + BAR_SUFFIX);
+    }
+
+    /**
+     * writes the overlay of a bar file. Only files added or changed compared to the base can be expressed by an overlay,
+     * in archives the base contains as well.
+     *
+     * @return the paths of the files in the overlay, or null if the bar file can't be expressed as an overlay of the base
+     */
+    public static List<String> write(File baseBar, BarIndex baseIndex, File bar, BarIndex index, File overlayFile)
+            throws IOException {
+        Map<String, String> baseFiles = getFiles(baseIndex);
+        Set<String> baseArchives = new HashSet<String>();
+        for (BarIndex.Entry entry : baseIndex.getEntries()) {
+            if (BarIndex.isArchive(entry.getPath())) {
+                baseArchives.add(entry.getPath());
+            }
+        }
+
+        Map<String, String> files = getFiles(index);
+        if (!files.keySet().containsAll(baseFiles.keySet())) {
+            return null;
+        }
+        List<String> changed = new ArrayList<String>();
+        Set<String> changedArchives = new HashSet<String>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            if (file.getValue().equals(baseFiles.get(file.getKey()))) {
+                continue;
+            }
+            String path = file.getKey();
+            for (int separator = path.indexOf(BarIndex.NESTED_SEPARATOR); separator > 0; separator = path.indexOf(
+                    BarIndex.NESTED_SEPARATOR, separator + 1)) {
+                String archive = path.substring(0, separator);
+                if (!baseArchives.contains(archive)) {
+                    return null;
+                }
+                changedArchives.add(archive);
+            }
+            changed.add(path);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(PROPERTY_BASE, baseBar.getName());
+        properties.setProperty(PROPERTY_BASE_SIZE, Long.toString(baseBar.length()));
+        RawZipCopier base = new RawZipCopier(baseBar);
+        for (String archive : changedArchives) {
+            if (!archive.contains(BarIndex.NESTED_SEPARATOR)) {
+                properties.setProperty(PROPERTY_CRC_PREFIX + archive, String.format("%08x", base.getCrc(archive)));
+            }
+        }
+
+        ZipOutputStream overlay = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(overlayFile)));
+        try {
+            overlay.putNextEntry(new ZipEntry(PROPERTIES));
+            properties.store(overlay, "overlay of " + bar.getName());
+            overlay.closeEntry();
+            ZipFile zip = new ZipFile(bar);
+            try {
+                Set<String> wanted = new HashSet<String>(changed);
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (wanted.contains(entry.getName()) || changedArchives.contains(entry.getName())) {
+                        InputStream in = zip.getInputStream(entry);
+                        try {
+                            copyFiles(entry.getName(), in, wanted, changedArchives, overlay);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        } finally {
+            overlay.close();
+        }
+        return changed;
+    }
+
+    /**
+     * copies a changed file into the overlay or the changed files of an archive, recursively
+     */
+    private static void copyFiles(String path, InputStream in, Set<String> wanted, Set<String> changedArchives,
+            ZipOutputStream overlay) throws IOException {
+        if (wanted.contains(path)) {
+            overlay.putNextEntry(new ZipEntry(path));
+            IOUtil.copy(in, overlay, 64 * 1024);
+            overlay.closeEntry();
+            return;
+        }
+        // the nested stream isn't closed, it would close the stream of the parent archive
+        ZipInputStream archive = new ZipInputStream(in);
+        for (ZipEntry entry = archive.getNextEntry(); entry != null; entry = archive.getNextEntry()) {
+            String nestedPath = path + BarIndex.NESTED_SEPARATOR + entry.getName();
+            if (wanted.contains(nestedPath) || changedArchives.contains(nestedPath)) {
+                copyFiles(nestedPath, archive, wanted, changedArchives, overlay);
+            }
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the files (all entries but the nested archives) by their path
+     */
+    private static Map<String, String> getFiles(BarIndex index) {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            if (!BarIndex.isArchive(entry.getPath())) {
+                files.put(entry.getPath(), entry.getSha256());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * writes the bar file of an overlay
+     *
+     * @throws IOException if the overlay doesn't belong to the base bar file
+     */
+    public static void materialize(File baseBar, File overlayFile, File targetBar) throws IOException {
+        Properties properties = new Properties();
+        Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        ZipFile overlay = new ZipFile(overlayFile);
+        try {
+            Enumeration<? extends ZipEntry> entries = overlay.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                InputStream in = overlay.getInputStream(entry);
+                try {
+                    if (PROPERTIES.equals(entry.getName())) {
+                        properties.load(in);
+                    } else {
+                        files.put(entry.getName(), IOUtil.toByteArray(in));
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            overlay.close();
+        }
+
+        RawZipCopier base = new RawZipCopier(baseBar);
+        checkBase(base, properties, overlayFile);
+        if (targetBar.getParentFile() != null) {
+            targetBar.getParentFile().mkdirs();
+        }
+        RawZipCopier.Writer writer = new RawZipCopier.Writer(new FileOutputStream(targetBar));
+        try {
+            patch(base, files, writer, targetBar.getAbsoluteFile().getParentFile());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void checkBase(RawZipCopier base, Properties properties, File overlayFile) throws IOException {
+        String baseName = properties.getProperty(PROPERTY_BASE);
+        if (baseName == null) {
+            throw new IOException(overlayFile + " is not an overlay, " + PROPERTIES + " is missing");
+        }
+        boolean matches = Long.toString(base.getFile().length()).equals(properties.getProperty(PROPERTY_BASE_SIZE));
+        for (String name : properties.stringPropertyNames()) {
+            if (matches && name.startsWith(PROPERTY_CRC_PREFIX)) {
+                String archive = name.substring(PROPERTY_CRC_PREFIX.length());
+                matches = base.getNames().contains(archive)
+                        && String.format("%08x", base.getCrc(archive)).equals(properties.getProperty(name));
+            }
+        }
+        if (!matches) {
+            throw new IOException(overlayFile + " is an overlay of " + baseName + ", it doesn't match " + base.getFile());
+        }
+    }
+
+    /**
+     * writes the entries of a zip file, replacing and adding the given files
+     *
+     * @param files the files by their path in the zip file, files of nested archives are prefixed by the path of the
+     *            archive and "!/"
+     * @param tempDirectory the directory for the archives to be rewritten
+     */
+    private static void patch(RawZipCopier source, Map<String, byte[]> files, RawZipCopier.Writer writer, File tempDirectory)
+            throws IOException {
+        Map<String, byte[]> direct = new LinkedHashMap<String, byte[]>();
+        Map<String, Map<String, byte[]>> nested = new LinkedHashMap<String, Map<String, byte[]>>();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            int separator = file.getKey().indexOf(BarIndex.NESTED_SEPARATOR);
+            if (separator < 0) {
+                direct.put(file.getKey(), file.getValue());
+                continue;
+            }
+            String archive = file.getKey().substring(0, separator);
+            Map<String, byte[]> archiveFiles = nested.get(archive);
+            if (archiveFiles == null) {
+                archiveFiles = new LinkedHashMap<String, byte[]>();
+                nested.put(archive, archiveFiles);
+            }
+            archiveFiles.put(file.getKey().substring(separator + BarIndex.NESTED_SEPARATOR.length()), file.getValue());
+        }
+
+        RandomAccessFile in = new RandomAccessFile(source.getFile(), "r");
+        try {
+            for (String name : source.getNames()) {
+                if (direct.containsKey(name)) {
+                    writer.addDeflated(name, source.getDosTime(name), direct.remove(name));
+                } else if (nested.containsKey(name)) {
+                    patchArchive(source, name, nested.remove(name), writer, tempDirectory);
+                } else {
+                    writer.copy(source, in, name);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (!nested.isEmpty()) {
+            throw new IOException("Archives not found in " + source.getFile() + ": " + nested.keySet());
+        }
+        int now = RawZipCopier.toDosTime(System.currentTimeMillis());
+        for (Map.Entry<String, byte[]> file : direct.entrySet()) {
+            writer.addDeflated(file.getKey(), now, file.getValue());
+        }
+    }
+
+    /**
+     * rewrites an archive of a zip file with the given files and adds it uncompressed
+     */
+    private static void patchArchive(RawZipCopier source, String name, Map<String, byte[]> files, RawZipCopier.Writer writer,
+            File tempDirectory) throws IOException {
+        File extracted = File.createTempFile("overlay-", ".zip", tempDirectory);
+        File patched = File.createTempFile("overlay-", ".zip", tempDirectory);
+        try {
+            extract(source.getFile(), name, extracted);
+            CRC32 crc = new CRC32();
+            RawZipCopier.Writer archiveWriter = new RawZipCopier.Writer(new CheckedOutputStream(new FileOutputStream(patched), crc));
+            try {
+                patch(new RawZipCopier(extracted), files, archiveWriter, tempDirectory);
+            } finally {
+                archiveWriter.close();
+            }
+            writer.addStored(name, source.getDosTime(name), patched, crc.getValue());
+        } finally {
+            extracted.delete();
+            patched.delete();
+        }
+    }
+
+    private static void extract(File zipFile, String name, File target) throws IOException {
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            InputStream in = zip.getInputStream(zip.getEntry(name));
+            try {
+                OutputStream out = new FileOutputStream(target);
+                try {
+                    IOUtil.copy(in, out, 64 * 1024);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+        } finally {
+            zip.close();
+        }
+    }
+}
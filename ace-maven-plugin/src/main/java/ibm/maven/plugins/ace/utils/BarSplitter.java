@@ -0,0 +1,287 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+/**
+ * Splits a bar file along application boundaries: one bar file per application containing the application and the
+ * libraries it references (transitively), so that the applications can be deployed and rolled back one at a time.
+ * Libraries no application references and policy projects get a bar file of their own. Entries of the bar file that
+ * aren't project archives are copied into every split.
+ *
+ * The references are read from the application.descriptor and library.descriptor of the archives and can be added
+ * from the workspace. The entries are copied without inflating them, the split bar files are written concurrently and
+ * listed with their SHA-256 in a checksum manifest, in the format of sha256sum.
+ */
+public final class BarSplitter {
+
+    public static final String CHECKSUM_FILE = "SHA256SUMS";
+
+    private static final String[] REFERENCE_DESCRIPTORS = { "application.descriptor", "library.descriptor" };
+    private static final String[] LIBRARY_EXTENSIONS = { ".libzip", ".shlibzip" };
+
+    private final File bar;
+    private final RawZipCopier copier;
+    /** the project archives by project name, in the order of the bar file */
+    private final Map<String, String> archives = new LinkedHashMap<String, String>();
+    private final List<String> commonEntries = new ArrayList<String>();
+    private final Map<String, Set<String>> references = new LinkedHashMap<String, Set<String>>();
+
+    /**
+     * reads the central directory of a bar file and the references of its applications and libraries
+     */
+    public BarSplitter(File bar) throws IOException {
+        this.bar = bar;
+        this.copier = new RawZipCopier(bar);
+        for (String name : copier.getNames()) {
+            if (BarIndex.isArchive(name) && name.indexOf('/') < 0) {
+                archives.put(BarIndex.getProjectName(name), name);
+            } else {
+                commonEntries.add(name);
+            }
+        }
+        readReferences();
+    }
+
+    /**
+     * @return the names of the projects in the bar file, in its order
+     */
+    public Set<String> getProjects() {
+        return Collections.unmodifiableSet(archives.keySet());
+    }
+
+    /**
+     * adds references of a project, e.g. from its .project file in the workspace
+     */
+    public void addReferences(String project, Collection<String> referencedProjects) {
+        if (archives.containsKey(project)) {
+            getReferences(project).addAll(referencedProjects);
+        }
+    }
+
+    /**
+     * @return the names of the split bar files (the application or the project not needed by an application) with the
+     *         names of their entries, in the order of the bar file
+     */
+    public Map<String, List<String>> getSplits() {
+        Map<String, List<String>> splits = new LinkedHashMap<String, List<String>>();
+        Set<String> needed = new HashSet<String>();
+        for (Map.Entry<String, String> archive : archives.entrySet()) {
+            if (archive.getValue().endsWith(".appzip")) {
+                Set<String> projects = new HashSet<String>();
+                collectProjects(archive.getKey(), projects);
+                needed.addAll(projects);
+                splits.put(archive.getKey(), getEntries(projects));
+            }
+        }
+        for (String project : archives.keySet()) {
+            if (!needed.contains(project)) {
+                splits.put(project, getEntries(Collections.singleton(project)));
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * @return the split bar file of a project, e.g. split/app-1.0.0-App.bar for app-1.0.0.bar
+     */
+    public File getSplitFile(File directory, String project) {
+        String name = bar.getName();
+        int dot = name.lastIndexOf('.');
+        String splitName = dot > 0 ? name.substring(0, dot) + "-" + project + name.substring(dot) : name + "-" + project;
+        return new File(directory, splitName);
+    }
+
+    /**
+     * writes the split bar files and the checksum manifest into a directory
+     *
+     * @param threads the number of bar files written at the same time
+     * @return the SHA-256 of the split bar files
+     */
+    public Map<File, String> write(File directory, int threads) throws IOException {
+        directory.mkdirs();
+        Map<File, Future<String>> futures = new LinkedHashMap<File, Future<String>>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (final Map.Entry<String, List<String>> split : getSplits().entrySet()) {
+                final File splitFile = getSplitFile(directory, split.getKey());
+                futures.put(splitFile, executor.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        BuildTimings.Timer timer = BuildTimings.startStep("zip-split");
+                        timer.set("file", splitFile.getName());
+                        try {
+                            return copier.copy(splitFile, new HashSet<String>(split.getValue()));
+                        } finally {
+                            timer.stop();
+                        }
+                    }
+                }));
+            }
+            Map<File, String> checksums = new LinkedHashMap<File, String>();
+            for (Map.Entry<File, Future<String>> future : futures.entrySet()) {
+                checksums.put(future.getKey(), get(future.getValue(), future.getKey()));
+            }
+            writeChecksums(new File(directory, CHECKSUM_FILE), checksums);
+            return checksums;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String get(Future<String> future, File splitFile) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + splitFile, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error writing " + splitFile, e.getCause());
+        }
+    }
+
+    /**
+     * writes the checksums like sha256sum does, so that they can be verified with sha256sum -c
+     */
+    private static void writeChecksums(File file, Map<File, String> checksums) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            for (Map.Entry<File, String> checksum : checksums.entrySet()) {
+                writer.write(checksum.getValue() + "  " + checksum.getKey().getName() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * collects a project and the libraries it references, transitively
+     */
+    private void collectProjects(String project, Set<String> projects) {
+        if (!projects.add(project)) {
+            return;
+        }
+        for (String reference : getReferences(project)) {
+            String archive = archives.get(reference);
+            if (archive != null && isLibrary(archive)) {
+                collectProjects(reference, projects);
+            }
+        }
+    }
+
+    /**
+     * @return the common entries and the archives of the projects, in the order of the bar file
+     */
+    private List<String> getEntries(Set<String> projects) {
+        List<String> entries = new ArrayList<String>(commonEntries);
+        for (Map.Entry<String, String> archive : archives.entrySet()) {
+            if (projects.contains(archive.getKey())) {
+                entries.add(archive.getValue());
+            }
+        }
+        return entries;
+    }
+
+    private Set<String> getReferences(String project) {
+        Set<String> projectReferences = references.get(project);
+        if (projectReferences == null) {
+            projectReferences = new LinkedHashSet<String>();
+            references.put(project, projectReferences);
+        }
+        return projectReferences;
+    }
+
+    private static boolean isLibrary(String archive) {
+        for (String extension : LIBRARY_EXTENSIONS) {
+            if (archive.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * reads the names of the referenced libraries from the descriptors of the applications and libraries
+     */
+    private void readReferences() throws IOException {
+        ZipFile zip = new ZipFile(bar);
+        try {
+            for (Map.Entry<String, String> archive : archives.entrySet()) {
+                if (!archive.getValue().endsWith(".appzip") && !isLibrary(archive.getValue())) {
+                    continue;
+                }
+                ZipInputStream in = new ZipInputStream(zip.getInputStream(zip.getEntry(archive.getValue())));
+                try {
+                    for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                        for (String descriptor : REFERENCE_DESCRIPTORS) {
+                            if (descriptor.equals(entry.getName())) {
+                                getReferences(archive.getKey()).addAll(readLibraryNames(in, archive.getValue() + "!/" + descriptor));
+                            }
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * @return the libraryName elements of a descriptor, e.g. of its sharedLibraryReference elements
+     */
+    private static List<String> readLibraryNames(InputStream in, String source) throws IOException {
+        List<String> names = new ArrayList<String>();
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            // the parser closes the stream at the end of the document, the archive is read on
+            XMLStreamReader reader = factory.createXMLStreamReader(new CloseShieldInputStream(in));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "libraryName".equals(reader.getLocalName())) {
+                        names.add(reader.getElementText().trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Error reading " + source, e);
+        }
+        return names;
+    }
+}
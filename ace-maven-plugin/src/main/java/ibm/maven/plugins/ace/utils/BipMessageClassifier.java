@@ -0,0 +1,188 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies the output of the ace tools line by line. BIP message codes (e.g. BIP0130E) are recognized, errors and
+ * warnings are counted and, if fatal patterns are configured, the watched process is stopped as soon as one of them
+ * matches.
+ */
+public class BipMessageClassifier {
+
+    /**
+     * BIP message code followed by the severity character, e.g. BIP8071I
+     */
+    private static final Pattern BIP_MESSAGE = Pattern.compile("\\b(BIP\\d{4})([IWES])\\b");
+
+    public enum Severity {
+        NONE, INFO, WARNING, ERROR, SEVERE;
+
+        /**
+         * @return true for errors and severe errors
+         */
+        public boolean isError() {
+            return this == ERROR || this == SEVERE;
+        }
+    }
+
+    private final List<Pattern> fatalPatterns;
+
+    private Process process;
+
+    private int infoCount;
+    private int warningCount;
+    private int errorCount;
+
+    private String fatalLine;
+    private boolean processTreeStopped = true;
+
+    /**
+     * @param fatalPatterns patterns which stop the watched process when they match an output line. May be empty.
+     */
+    public BipMessageClassifier(List<Pattern> fatalPatterns) {
+        this.fatalPatterns = fatalPatterns;
+    }
+
+    /**
+     * @param commaSeparatedPatterns regular expressions, comma separated. null or "" results in an empty list.
+     * @return the compiled patterns
+     */
+    public static List<Pattern> compilePatterns(String commaSeparatedPatterns) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        if (commaSeparatedPatterns == null) {
+            return patterns;
+        }
+        for (String pattern : commaSeparatedPatterns.split(",")) {
+            if (!pattern.trim().equals("")) {
+                patterns.add(Pattern.compile(pattern.trim()));
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * @param line an output line of an ace tool
+     * @return the severity of the first BIP message in the line, NONE if there is none
+     */
+    public static Severity getSeverity(String line) {
+        Matcher matcher = BIP_MESSAGE.matcher(line);
+        if (!matcher.find()) {
+            return Severity.NONE;
+        }
+        switch (matcher.group(2).charAt(0)) {
+        case 'I':
+            return Severity.INFO;
+        case 'W':
+            return Severity.WARNING;
+        case 'E':
+            return Severity.ERROR;
+        default:
+            return Severity.SEVERE;
+        }
+    }
+
+    /**
+     * @param line an output line of an ace tool
+     * @return the BIP message code (without severity) of the first BIP message in the line, null if there is none
+     */
+    public static String getMessageCode(String line) {
+        Matcher matcher = BIP_MESSAGE.matcher(line);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * The process to be stopped if a fatal pattern matches
+     *
+     * @param process the process producing the classified output
+     */
+    public synchronized void watch(Process process) {
+        this.process = process;
+        if (fatalLine != null) {
+            processTreeStopped = CommandExecutionUtil.destroyProcessTree(process);
+        }
+    }
+
+    /**
+     * counts the line and stops the watched process if the line matches one of the fatal patterns
+     *
+     * @param line an output line of an ace tool
+     * @return the severity of the line
+     */
+    public synchronized Severity processLine(String line) {
+        Severity severity = getSeverity(line);
+        switch (severity) {
+        case INFO:
+            infoCount++;
+            break;
+        case WARNING:
+            warningCount++;
+            break;
+        case ERROR:
+        case SEVERE:
+            errorCount++;
+            break;
+        default:
+            break;
+        }
+        checkFatal(line);
+        return severity;
+    }
+
+    /**
+     * stops the watched process if the line matches one of the fatal patterns, without counting it. For a second source
+     * of the same messages, e.g. the trace file of the tool, which would count them twice.
+     *
+     * @param line an output line of an ace tool
+     */
+    public synchronized void checkFatal(String line) {
+        if (fatalLine == null) {
+            for (Pattern fatalPattern : fatalPatterns) {
+                if (fatalPattern.matcher(line).find()) {
+                    fatalLine = line;
+                    if (process != null) {
+                        processTreeStopped = CommandExecutionUtil.destroyProcessTree(process);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a fatal pattern matched and the process was (or will be) stopped
+     */
+    public synchronized boolean isAborted() {
+        return fatalLine != null;
+    }
+
+    /**
+     * @return false if only the watched process itself could be stopped after a fatal pattern matched, its child
+     *         processes may still be running
+     */
+    public synchronized boolean isProcessTreeStopped() {
+        return processTreeStopped;
+    }
+
+    /**
+     * @return the first line matching a fatal pattern, null if none matched
+     */
+    public synchronized String getFatalLine() {
+        return fatalLine;
+    }
+
+    public synchronized int getInfoCount() {
+        return infoCount;
+    }
+
+    public synchronized int getWarningCount() {
+        return warningCount;
+    }
+
+    public synchronized int getErrorCount() {
+        return errorCount;
+    }
+
+}
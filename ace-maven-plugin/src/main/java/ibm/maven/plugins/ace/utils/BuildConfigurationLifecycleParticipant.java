@@ -0,0 +1,47 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.util.Properties;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Configures the JVM wide facilities of the plugin when a build starts: the process limits of the
+ * {@link ProcessScheduler}, the {@link ToolOutputSink}, the in-process commands, the command daemon and the
+ * {@link FileCache}s, resetting the statistics of the caches. Registered in META-INF/plexus/components.xml, so it only
+ * runs for builds using this plugin as an extension (which is required for the ace packagings anyway).
+ *
+ * The settings are read from the properties of the top level project, overridden by the system properties and the
+ * user properties (-D on the command line). They apply to the whole build, the properties of the other modules are
+ * ignored.
+ */
+public class BuildConfigurationLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    @Override
+    public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        Properties properties = getProperties(session);
+        try {
+            ProcessScheduler.configure(properties);
+            ToolOutputSink.configure(properties);
+            InProcessCommands.configure(properties);
+            CommandDaemonClient.configure(properties);
+            FileCache.configure(properties);
+        } catch (IllegalArgumentException e) {
+            throw new MavenExecutionException(e.getMessage(), e);
+        }
+    }
+
+    private static Properties getProperties(MavenSession session) {
+        Properties properties = new Properties();
+        MavenProject topLevelProject = session.getTopLevelProject();
+        if (topLevelProject != null) {
+            properties.putAll(topLevelProject.getProperties());
+        }
+        properties.putAll(session.getSystemProperties());
+        properties.putAll(session.getUserProperties());
+        return properties;
+    }
+
+}
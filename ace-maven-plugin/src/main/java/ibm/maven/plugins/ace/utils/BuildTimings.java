@@ -0,0 +1,376 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ibm.maven.plugins.ace.jfr.JfrEvents;
+
+/**
+ * Recorder for the time spent in mojo executions, external commands, internal steps of the plugin and waiting for a
+ * process slot of the {@link ProcessScheduler}.
+ *
+ * The events are recorded in the {@link Recording} of the build session the current thread works for, which is held
+ * by the {@link BuildTimingsListener} of the session; without a listener nothing is recorded. The listener writes the
+ * events per project to target/ace/build-timings.json and (in the Chrome trace-event format, to be opened with
+ * chrome://tracing or https://ui.perfetto.dev) to target/ace/build-timings.trace.json. Events are assigned to the
+ * project which is being built by the current thread.
+ */
+public final class BuildTimings {
+
+    public static final String CATEGORY_MOJO = "mojo";
+    public static final String CATEGORY_COMMAND = "command";
+    public static final String CATEGORY_STEP = "step";
+    public static final String CATEGORY_QUEUE = "queue";
+
+    public static final String UNKNOWN_PROJECT = "unknown";
+
+    /**
+     * inheritable, so that helper threads started by a mojo are assigned to the same session and project
+     */
+    private static final ThreadLocal<Recording> CURRENT_RECORDING = new InheritableThreadLocal<Recording>();
+    private static final ThreadLocal<String> CURRENT_PROJECT = new InheritableThreadLocal<String>();
+
+    /**
+     * hide the default constructor
+     */
+    private BuildTimings() {
+        super();
+    }
+
+    /**
+     * The events of a build session. Several sessions may run in the same JVM at the same time (e.g. mvnd), each
+     * records into its own.
+     */
+    public static final class Recording {
+
+        private final List<Timer> events = new ArrayList<Timer>();
+        private boolean closed;
+
+        synchronized void add(Timer event) {
+            if (!closed) {
+                events.add(event);
+            }
+        }
+
+        /**
+         * @return all recorded events
+         */
+        public synchronized List<Timer> getEvents() {
+            return new ArrayList<Timer>(events);
+        }
+
+        /**
+         * @return the recorded events of a project
+         */
+        public List<Timer> getEvents(String projectId) {
+            List<Timer> projectEvents = new ArrayList<Timer>();
+            for (Timer event : getEvents()) {
+                if (event.getProjectId().equals(projectId)) {
+                    projectEvents.add(event);
+                }
+            }
+            return projectEvents;
+        }
+
+        /**
+         * forgets the events and ignores those stopped later, e.g. by helper threads outliving the session
+         */
+        public synchronized void close() {
+            closed = true;
+            events.clear();
+        }
+    }
+
+    /**
+     * A single timed event. Events are recorded when they are stopped.
+     */
+    public static class Timer {
+
+        private final Recording recording;
+        private final String category;
+        private final String name;
+        private final String projectId;
+        private final String threadName;
+        private final long threadId;
+        private final long startMillis;
+        private final long startNanos;
+        private long durationNanos = -1;
+        private final Map<String, Object> args = new LinkedHashMap<String, Object>();
+        private final Object jfrEvent;
+
+        Timer(String category, String name, String projectId) {
+            this.recording = CURRENT_RECORDING.get();
+            this.category = category;
+            this.name = name;
+            this.projectId = projectId;
+            this.threadName = Thread.currentThread().getName();
+            this.threadId = Thread.currentThread().getId();
+            this.startMillis = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+            this.jfrEvent = CATEGORY_COMMAND.equals(category) ? JfrEvents.beginProcess() : null;
+        }
+
+        /**
+         * adds an argument (e.g. exit code, output volume) to the event
+         */
+        public synchronized Timer set(String key, Object value) {
+            args.put(key, value);
+            return this;
+        }
+
+        /**
+         * stops the timer and records the event, if it was started for a session. Further calls are ignored.
+         */
+        public void stop() {
+            synchronized (this) {
+                if (durationNanos >= 0) {
+                    return;
+                }
+                durationNanos = System.nanoTime() - startNanos;
+            }
+            if (recording != null) {
+                recording.add(this);
+            }
+            if (jfrEvent != null) {
+                Map<String, Object> values = getArgs();
+                JfrEvents.endProcess(jfrEvent, name, toInt(values.get("exitCode")), toLong(values.get("outputLines")),
+                        toLong(values.get("outputChars")));
+            }
+        }
+
+        private static int toInt(Object value) {
+            return value instanceof Number ? ((Number) value).intValue() : -1;
+        }
+
+        private static long toLong(Object value) {
+            return value instanceof Number ? ((Number) value).longValue() : -1;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getProjectId() {
+            return projectId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public synchronized long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public long getDurationMillis() {
+            return getDurationNanos() / 1000000L;
+        }
+
+        public synchronized Map<String, Object> getArgs() {
+            return new LinkedHashMap<String, Object>(args);
+        }
+    }
+
+    /**
+     * @param recording the recording of the session the current thread works for, null to reset
+     * @param projectId the project built by the current thread, null to reset
+     */
+    public static void setCurrentProject(Recording recording, String projectId) {
+        if (recording == null) {
+            CURRENT_RECORDING.remove();
+        } else {
+            CURRENT_RECORDING.set(recording);
+        }
+        if (projectId == null) {
+            CURRENT_PROJECT.remove();
+        } else {
+            CURRENT_PROJECT.set(projectId);
+        }
+    }
+
+    /**
+     * @return the project built by the current thread or {@link #UNKNOWN_PROJECT}
+     */
+    public static String getCurrentProject() {
+        String projectId = CURRENT_PROJECT.get();
+        return projectId == null ? UNKNOWN_PROJECT : projectId;
+    }
+
+    public static Timer startMojo(String projectId, String name) {
+        return new Timer(CATEGORY_MOJO, name, projectId);
+    }
+
+    /**
+     * @param name the name of the external command, e.g. mqsicreatebar
+     */
+    public static Timer startCommand(String name) {
+        return new Timer(CATEGORY_COMMAND, name, getCurrentProject());
+    }
+
+    /**
+     * @param name the name of the internal step, e.g. zip-rewrite
+     */
+    public static Timer startStep(String name) {
+        return new Timer(CATEGORY_STEP, name, getCurrentProject());
+    }
+
+    /**
+     * @param name the process type and command waiting for a process slot, e.g. "toolkit: mqsicreatebar"
+     */
+    public static Timer startQueue(String name) {
+        return new Timer(CATEGORY_QUEUE, name, getCurrentProject());
+    }
+
+    /**
+     * @return the events sorted by descending duration
+     */
+    public static List<Timer> sortByDuration(List<Timer> events) {
+        List<Timer> sorted = new ArrayList<Timer>(events);
+        Collections.sort(sorted, new Comparator<Timer>() {
+            public int compare(Timer t1, Timer t2) {
+                return Long.compare(t2.getDurationNanos(), t1.getDurationNanos());
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * writes the events as a JSON report
+     *
+     * @param file the file to be written
+     * @param title the title of the report, e.g. the project id
+     * @param events the events to be written
+     * @throws IOException if the file can't be written
+     */
+    public static void writeJson(File file, String title, List<Timer> events) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+        for (Timer event : events) {
+            long[] total = totals.get(event.getCategory());
+            if (total == null) {
+                total = new long[2];
+                totals.put(event.getCategory(), total);
+            }
+            total[0]++;
+            total[1] += event.getDurationMillis();
+        }
+
+        Writer writer = open(file);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("title").value(title);
+            json.name("totals").beginObject();
+            for (Map.Entry<String, long[]> total : totals.entrySet()) {
+                json.name(total.getKey()).beginObject();
+                json.name("count").value(total.getValue()[0]);
+                json.name("durationMs").value(total.getValue()[1]);
+                json.endObject();
+            }
+            json.endObject();
+            json.name("events").beginArray();
+            for (Timer event : events) {
+                json.beginObject();
+                json.name("category").value(event.getCategory());
+                json.name("name").value(event.getName());
+                json.name("project").value(event.getProjectId());
+                json.name("thread").value(event.getThreadName());
+                json.name("start").value(dateFormat.format(new Date(event.getStartMillis())));
+                json.name("end").value(dateFormat.format(new Date(event.getStartMillis() + event.getDurationMillis())));
+                json.name("durationMs").value(event.getDurationMillis());
+                for (Map.Entry<String, Object> arg : event.getArgs().entrySet()) {
+                    json.name(arg.getKey()).value(arg.getValue());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * writes the events in the Chrome trace-event format. Every project is shown as a separate process.
+     *
+     * @param file the file to be written
+     * @param events the events to be written
+     * @throws IOException if the file can't be written
+     */
+    public static void writeChromeTrace(File file, List<Timer> events) throws IOException {
+        List<String> projects = new ArrayList<String>();
+        for (Timer event : events) {
+            if (!projects.contains(event.getProjectId())) {
+                projects.add(event.getProjectId());
+            }
+        }
+
+        Writer writer = open(file);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("traceEvents").beginArray();
+            for (int i = 0; i < projects.size(); i++) {
+                json.beginObject();
+                json.name("name").value("process_name");
+                json.name("ph").value("M");
+                json.name("pid").value(i + 1);
+                json.name("args").beginObject().name("name").value(projects.get(i)).endObject();
+                json.endObject();
+            }
+            for (Timer event : events) {
+                json.beginObject();
+                json.name("name").value(event.getName());
+                json.name("cat").value(event.getCategory());
+                json.name("ph").value("X");
+                json.name("ts").value(event.getStartMillis() * 1000L);
+                json.name("dur").value(event.getDurationNanos() / 1000L);
+                json.name("pid").value(projects.indexOf(event.getProjectId()) + 1);
+                json.name("tid").value(event.getThreadId());
+                json.name("args").beginObject();
+                json.name("thread").value(event.getThreadName());
+                for (Map.Entry<String, Object> arg : event.getArgs().entrySet()) {
+                    json.name(arg.getKey()).value(arg.getValue());
+                }
+                json.endObject();
+                json.endObject();
+            }
+            json.endArray();
+            json.name("displayTimeUnit").value("ms");
+            json.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        return new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    }
+}
@@ -0,0 +1,42 @@
+package ibm.maven.plugins.ace.utils;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Registers the {@link BuildTimingsListener} for builds using this plugin as an extension (which is required for the
+ * ace packagings anyway). Registered in META-INF/plexus/components.xml.
+ *
+ * The timing reports can be switched off with -Dace.buildTimings=false
+ */
+public class BuildTimingsLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    /**
+     * injected by the container, see components.xml
+     */
+    private Logger logger;
+
+    @Override
+    public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        String enabled = session.getUserProperties().getProperty("ace.buildTimings",
+                session.getSystemProperties().getProperty("ace.buildTimings", "true"));
+        if (!Boolean.parseBoolean(enabled)) {
+            return;
+        }
+
+        MavenExecutionRequest request = session.getRequest();
+        ExecutionListener currentListener = request.getExecutionListener();
+        if (currentListener instanceof BuildTimingsListener) {
+            // registered by another project of the reactor using the same extension
+            return;
+        }
+
+        // the listener holds the events of this session only, other builds of the same JVM (e.g. mvnd) keep theirs
+        request.setExecutionListener(new BuildTimingsListener(currentListener, logger));
+    }
+
+}
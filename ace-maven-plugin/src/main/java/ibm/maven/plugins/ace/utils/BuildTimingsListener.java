@@ -0,0 +1,267 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Records the wall time of every mojo execution in {@link BuildTimings} and writes the timing reports: one per project
+ * (using this plugin) when the project is finished and a reactor summary, including the statistics of the
+ * {@link FileCache}s, when the session ends. The events of the session are kept in a recording of its own, which is
+ * closed once the summary is written. All events are passed on to the listener which was registered before.
+ */
+public class BuildTimingsListener implements ExecutionListener {
+
+    private static final String PLUGIN_GROUP_ID = "ibm.maven.plugins";
+    private static final String PLUGIN_ARTIFACT_ID = "ace-maven-plugin";
+
+    private static final int SUMMARY_ENTRIES = 10;
+
+    private final ExecutionListener delegate;
+    private final Logger logger;
+    private final BuildTimings.Recording recording = new BuildTimings.Recording();
+
+    private final Map<MojoExecution, BuildTimings.Timer> mojoTimers = new IdentityHashMap<MojoExecution, BuildTimings.Timer>();
+
+    /**
+     * the projects executing at least one mojo of this plugin - only these get a report
+     */
+    private final Set<String> aceProjects = new HashSet<String>();
+
+    /**
+     * @param delegate the previously registered listener, may be null
+     * @param logger the logger for the reactor summary
+     */
+    public BuildTimingsListener(ExecutionListener delegate, Logger logger) {
+        this.delegate = delegate;
+        this.logger = logger;
+    }
+
+    public static String getProjectId(MavenProject project) {
+        return project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion();
+    }
+
+    public void projectDiscoveryStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectDiscoveryStarted(event);
+        }
+    }
+
+    public void sessionStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.sessionStarted(event);
+        }
+    }
+
+    public void sessionEnded(ExecutionEvent event) {
+        try {
+            writeReactorSummary(event);
+        } finally {
+            recording.close();
+            BuildTimings.setCurrentProject(null, null);
+            if (delegate != null) {
+                delegate.sessionEnded(event);
+            }
+        }
+    }
+
+    public void projectSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectSkipped(event);
+        }
+    }
+
+    public void projectStarted(ExecutionEvent event) {
+        BuildTimings.setCurrentProject(recording, getProjectId(event.getProject()));
+        if (delegate != null) {
+            delegate.projectStarted(event);
+        }
+    }
+
+    public void projectSucceeded(ExecutionEvent event) {
+        try {
+            writeProjectReport(event.getProject());
+        } finally {
+            BuildTimings.setCurrentProject(null, null);
+            if (delegate != null) {
+                delegate.projectSucceeded(event);
+            }
+        }
+    }
+
+    public void projectFailed(ExecutionEvent event) {
+        try {
+            writeProjectReport(event.getProject());
+        } finally {
+            BuildTimings.setCurrentProject(null, null);
+            if (delegate != null) {
+                delegate.projectFailed(event);
+            }
+        }
+    }
+
+    public void mojoSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoSkipped(event);
+        }
+    }
+
+    public void mojoStarted(ExecutionEvent event) {
+        MojoExecution mojoExecution = event.getMojoExecution();
+        String projectId = getProjectId(event.getProject());
+        BuildTimings.setCurrentProject(recording, projectId);
+        synchronized (this) {
+            if (PLUGIN_GROUP_ID.equals(mojoExecution.getGroupId()) && PLUGIN_ARTIFACT_ID.equals(mojoExecution.getArtifactId())) {
+                aceProjects.add(projectId);
+            }
+            mojoTimers.put(mojoExecution, BuildTimings.startMojo(projectId,
+                    mojoExecution.getArtifactId() + ":" + mojoExecution.getGoal() + " (" + mojoExecution.getExecutionId() + ")"));
+        }
+        if (delegate != null) {
+            delegate.mojoStarted(event);
+        }
+    }
+
+    public void mojoSucceeded(ExecutionEvent event) {
+        stopMojoTimer(event, "success");
+        if (delegate != null) {
+            delegate.mojoSucceeded(event);
+        }
+    }
+
+    public void mojoFailed(ExecutionEvent event) {
+        stopMojoTimer(event, "failure");
+        if (delegate != null) {
+            delegate.mojoFailed(event);
+        }
+    }
+
+    public void forkStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkStarted(event);
+        }
+    }
+
+    public void forkSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkSucceeded(event);
+        }
+    }
+
+    public void forkFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkFailed(event);
+        }
+    }
+
+    public void forkedProjectStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectStarted(event);
+        }
+    }
+
+    public void forkedProjectSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectSucceeded(event);
+        }
+    }
+
+    public void forkedProjectFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectFailed(event);
+        }
+    }
+
+    private void stopMojoTimer(ExecutionEvent event, String result) {
+        BuildTimings.Timer timer;
+        synchronized (this) {
+            timer = mojoTimers.remove(event.getMojoExecution());
+        }
+        if (timer != null) {
+            timer.set("result", result);
+            timer.stop();
+        }
+    }
+
+    private void writeProjectReport(MavenProject project) {
+        String projectId = getProjectId(project);
+        synchronized (this) {
+            if (!aceProjects.contains(projectId)) {
+                return;
+            }
+        }
+        File aceDirectory = new File(project.getBuild().getDirectory(), "ace");
+        List<BuildTimings.Timer> events = recording.getEvents(projectId);
+        try {
+            BuildTimings.writeJson(new File(aceDirectory, "build-timings.json"), projectId, events);
+            BuildTimings.writeChromeTrace(new File(aceDirectory, "build-timings.trace.json"), events);
+        } catch (IOException e) {
+            logger.warn("Could not write the build timings of " + projectId + ": " + e.getMessage());
+        }
+    }
+
+    private void writeReactorSummary(ExecutionEvent event) {
+        synchronized (this) {
+            if (aceProjects.isEmpty()) {
+                return;
+            }
+        }
+        List<BuildTimings.Timer> events = recording.getEvents();
+
+        MavenProject topLevelProject = event.getSession().getTopLevelProject();
+        if (topLevelProject != null) {
+            File aceDirectory = new File(topLevelProject.getBuild().getDirectory(), "ace");
+            try {
+                BuildTimings.writeJson(new File(aceDirectory, "reactor-timings.json"), "reactor", events);
+                BuildTimings.writeChromeTrace(new File(aceDirectory, "reactor-timings.trace.json"), events);
+                FileCache.writeJson(new File(aceDirectory, "reactor-caches.json"));
+                logger.info("ace build timings written to " + aceDirectory.getAbsolutePath());
+            } catch (IOException e) {
+                logger.warn("Could not write the reactor build timings: " + e.getMessage());
+            }
+        }
+
+        List<FileCache<?>> caches = FileCache.getUsedCaches();
+        if (!caches.isEmpty()) {
+            logger.info("ace caches:");
+            for (FileCache<?> cache : caches) {
+                logger.info("  " + cache);
+            }
+        }
+
+        List<BuildTimings.Timer> commandsAndSteps = new ArrayList<BuildTimings.Timer>();
+        long queueCount = 0;
+        long queueMillis = 0;
+        for (BuildTimings.Timer timer : events) {
+            if (BuildTimings.CATEGORY_QUEUE.equals(timer.getCategory())) {
+                queueCount++;
+                queueMillis += timer.getDurationMillis();
+            }
+            if (!BuildTimings.CATEGORY_MOJO.equals(timer.getCategory())) {
+                commandsAndSteps.add(timer);
+            }
+        }
+        if (queueCount > 0) {
+            logger.info("ace commands waited " + queueCount + " time(s) for a free process slot, " + queueMillis + " ms in total");
+        }
+        if (commandsAndSteps.isEmpty()) {
+            return;
+        }
+        logger.info("Slowest ace commands and steps:");
+        List<BuildTimings.Timer> sorted = BuildTimings.sortByDuration(commandsAndSteps);
+        for (BuildTimings.Timer timer : sorted.subList(0, Math.min(SUMMARY_ENTRIES, sorted.size()))) {
+            logger.info(String.format("  %8d ms  %-8s %-28s %s", timer.getDurationMillis(), timer.getCategory(), timer.getName(), timer.getProjectId()));
+        }
+    }
+}
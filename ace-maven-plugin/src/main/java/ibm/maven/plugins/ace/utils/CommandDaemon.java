@@ -0,0 +1,391 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived JVM running the Java based ace commands for the builds of a machine, see {@link InProcessCommands}:
+ * the classes of the commands stay loaded and compiled across modules and builds. It's started by the first build
+ * needing it (see {@link CommandDaemonClient}) in a directory of its own per ace runtime and plugin version, serves
+ * the requests of several builds at the same time and stops once it hasn't had a request for the idle timeout.
+ *
+ * The daemon listens on a port of the loopback interface. The port and a random token, which every request has to
+ * start with, are kept in {@link #STATE_FILE} of its directory, readable by its owner only. A request is the token and
+ * an operation: {@link #RUN} (the command and its arguments; answered by the output in batches of lines and the exit
+ * code), {@link #STATUS} (answered by the latency and throughput metrics per command) or {@link #STOP}. A connection
+ * which doesn't start with a token of the right length or doesn't send its request in time is closed without an
+ * answer, it can't keep the daemon from stopping.
+ *
+ * This class runs outside of maven; apart from the JDK it only uses {@link InProcessCommands}.
+ */
+public final class CommandDaemon {
+
+    public static final String STATE_FILE = "daemon.properties";
+    public static final String LOG_FILE = "daemon.log";
+
+    static final byte RUN = 1;
+    static final byte STATUS = 2;
+    static final byte STOP = 3;
+    static final byte LINES = 'L';
+    static final byte EXIT = 'X';
+    static final byte ERROR = 'E';
+
+    private static final long POLL_MILLIS = 1000;
+    private static final long STOP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int TOKEN_LENGTH = 32;
+    private static final int RECENT_LATENCIES = 1024;
+
+    private final File directory;
+    private final String aceRunDir;
+    private final long idleTimeoutMillis;
+    private final String token;
+    private final ServerSocket serverSocket;
+    private final ExecutorService requests;
+    private final long started = System.currentTimeMillis();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong lastUsed = new AtomicLong(started);
+    private final Map<String, Metrics> metrics = new TreeMap<String, Metrics>();
+    private volatile boolean stopping;
+
+    private CommandDaemon(File directory, String aceRunDir, long idleTimeoutMillis) throws IOException {
+        this.directory = directory;
+        this.aceRunDir = aceRunDir;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        byte[] random = new byte[TOKEN_LENGTH / 2];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        this.token = hex.toString();
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.requests = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ace-command-daemon-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param args the directory of the daemon, the idle timeout in seconds and the ace runtime it's started for
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args[1]));
+        // the daemon runs nothing but commands, the traps stay installed for its lifetime
+        if (!InProcessCommands.installTraps()) {
+            System.out.println("System.exit can't be trapped (a security manager is set or can't be set), the daemon can't run commands");
+            System.exit(1);
+        }
+        CommandDaemon daemon = new CommandDaemon(directory, args.length > 2 ? args[2] : "", idleTimeoutMillis);
+        daemon.writeState();
+        System.out.println("Command daemon for " + daemon.aceRunDir + " listening on port " + daemon.serverSocket.getLocalPort()
+                + ", stopped after " + args[1] + " s without a request");
+        try {
+            daemon.serve();
+        } finally {
+            daemon.deleteState();
+        }
+        System.out.println("Command daemon stopped");
+        System.exit(0);
+    }
+
+    private void writeState() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(serverSocket.getLocalPort()));
+        state.setProperty("token", token);
+        state.setProperty("aceRunDir", aceRunDir);
+        File tmp = new File(directory, STATE_FILE + ".tmp");
+        tmp.delete();
+        try {
+            Files.createFile(tmp.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system, protected by the permissions of the user's directory
+        }
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            state.store(out, "ace command daemon");
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), new File(directory, STATE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * deletes the state file unless a newer daemon replaced it
+     */
+    private void deleteState() {
+        File stateFile = new File(directory, STATE_FILE);
+        try {
+            Properties state = new Properties();
+            state.load(new ByteArrayInputStream(Files.readAllBytes(stateFile.toPath())));
+            if (token.equals(state.getProperty("token"))) {
+                stateFile.delete();
+            }
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    private void serve() throws IOException {
+        serverSocket.setSoTimeout((int) POLL_MILLIS);
+        while (!stopping) {
+            try {
+                final Socket socket = serverSocket.accept();
+                active.incrementAndGet();
+                requests.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            handle(socket);
+                        } finally {
+                            active.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (SocketTimeoutException e) {
+                if (active.get() == 0 && System.currentTimeMillis() - lastUsed.get() > idleTimeoutMillis) {
+                    System.out.println("Idle for more than " + idleTimeoutMillis / 1000 + " s");
+                    stopping = true;
+                }
+            }
+        }
+        serverSocket.close();
+        long deadline = System.currentTimeMillis() + STOP_MILLIS;
+        while (active.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            try {
+                // only the request is read, the output of a command may take as long as it runs
+                socket.setSoTimeout((int) Math.min(READ_TIMEOUT_MILLIS, idleTimeoutMillis));
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                // the length is checked before anything is allocated for a connection which isn't authenticated yet
+                int length = in.readInt();
+                if (length != TOKEN_LENGTH) {
+                    return;
+                }
+                byte[] received = new byte[length];
+                in.readFully(received);
+                if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), received)) {
+                    return;
+                }
+                byte operation = in.readByte();
+                if (operation == RUN) {
+                    run(in, out);
+                } else if (operation == STATUS) {
+                    StringWriter status = new StringWriter();
+                    getStatus().store(status, null);
+                    out.writeByte(EXIT);
+                    out.writeInt(0);
+                    writeString(out, status.toString());
+                } else if (operation == STOP) {
+                    System.out.println("Stop requested");
+                    stopping = true;
+                    out.writeByte(EXIT);
+                    out.writeInt(0);
+                } else {
+                    out.writeByte(ERROR);
+                    writeString(out, "Unknown operation " + operation);
+                }
+                out.flush();
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // the client went away or didn't send its request in time, nothing to answer
+        } catch (RuntimeException e) {
+            // a malformed request, the daemon keeps serving the others
+            System.out.println("Could not handle a request: " + e);
+        }
+    }
+
+    private void run(DataInputStream in, final DataOutputStream out) throws IOException {
+        String name = readString(in);
+        String mainClass = readString(in);
+        List<URL> classpath = new ArrayList<URL>();
+        try {
+            for (String entry : readStrings(in)) {
+                classpath.add(new URL(entry));
+            }
+        } catch (MalformedURLException e) {
+            out.writeByte(ERROR);
+            writeString(out, "Invalid class path of " + name + ": " + e.getMessage());
+            return;
+        }
+        List<String> arguments = readStrings(in);
+        List<String> params = readStrings(in);
+        InProcessCommands.Command command = new InProcessCommands.Command(null, name, classpath, mainClass, arguments);
+
+        final IOException[] failure = new IOException[1];
+        long start = System.nanoTime();
+        int exitCode = InProcessCommands.run(command, params, new InProcessCommands.Output() {
+            public void accept(List<String> lines) {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeByte(LINES);
+                    out.writeInt(lines.size());
+                    for (String line : lines) {
+                        writeString(out, line);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    // the client went away, the command runs to the end anyway
+                    failure[0] = e;
+                }
+            }
+        });
+        getMetrics(name).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), exitCode != 0);
+        // only commands keep the daemon running, not status requests
+        lastUsed.set(System.currentTimeMillis());
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+    }
+
+    private Metrics getMetrics(String name) {
+        synchronized (metrics) {
+            Metrics result = metrics.get(name);
+            if (result == null) {
+                result = new Metrics();
+                metrics.put(name, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return the state of the daemon and the metrics of each command: command.&lt;name&gt;.count, .failures,
+     *         .meanMillis, .p50Millis, .p95Millis, .maxMillis and .perMinute (the requests per minute of uptime)
+     */
+    private Properties getStatus() {
+        long now = System.currentTimeMillis();
+        Properties status = new Properties();
+        status.setProperty("aceRunDir", aceRunDir);
+        status.setProperty("uptimeSeconds", String.valueOf((now - started) / 1000));
+        status.setProperty("idleTimeoutSeconds", String.valueOf(idleTimeoutMillis / 1000));
+        // this request is one of them
+        status.setProperty("activeRequests", String.valueOf(active.get() - 1));
+        double minutes = Math.max(1, now - started) / 60000.0;
+        synchronized (metrics) {
+            for (Map.Entry<String, Metrics> entry : metrics.entrySet()) {
+                entry.getValue().store(status, "command." + entry.getKey() + ".", minutes);
+            }
+        }
+        return status;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * the latencies of the calls of a command; the percentiles are those of the most recent calls
+     */
+    private static final class Metrics {
+
+        private final long[] recent = new long[RECENT_LATENCIES];
+        private long count;
+        private long failures;
+        private long totalMillis;
+        private long maxMillis;
+
+        synchronized void record(long millis, boolean failed) {
+            recent[(int) (count % recent.length)] = millis;
+            count++;
+            failures += failed ? 1 : 0;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        synchronized void store(Properties status, String prefix, double minutes) {
+            long[] sorted = Arrays.copyOf(recent, (int) Math.min(count, recent.length));
+            Arrays.sort(sorted);
+            status.setProperty(prefix + "count", String.valueOf(count));
+            status.setProperty(prefix + "failures", String.valueOf(failures));
+            status.setProperty(prefix + "meanMillis", String.valueOf(count > 0 ? totalMillis / count : 0));
+            status.setProperty(prefix + "p50Millis", String.valueOf(percentile(sorted, 50)));
+            status.setProperty(prefix + "p95Millis", String.valueOf(percentile(sorted, 95)));
+            status.setProperty(prefix + "maxMillis", String.valueOf(maxMillis));
+            status.setProperty(prefix + "perMinute", String.format(Locale.ROOT, "%.2f", count / minutes));
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percent / 100.0 * sorted.length) - 1];
+        }
+    }
+}
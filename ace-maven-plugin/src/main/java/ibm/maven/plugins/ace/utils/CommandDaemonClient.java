@@ -0,0 +1,350 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs the in-process commands (see {@link InProcessCommands}) in a {@link CommandDaemon} shared by the modules and
+ * builds of the machine, started on first use. The daemon stops after
+ * ace.commandDaemonIdleTimeout seconds without a command (default 1800) and keeps its state in a directory per ace
+ * runtime and plugin version below ace.commandDaemonDirectory (default ~/.ace-maven-plugin/daemons), so that a new
+ * runtime or plugin version gets a daemon of its own.
+ */
+public final class CommandDaemonClient {
+
+    public static final String IDLE_TIMEOUT_PROPERTY = "ace.commandDaemonIdleTimeout";
+    public static final String DIRECTORY_PROPERTY = "ace.commandDaemonDirectory";
+
+    static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 1800;
+    static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final String LOCK_FILE = "daemon.lock";
+
+    private static final ConcurrentMap<File, CommandDaemonClient> CLIENTS = new ConcurrentHashMap<File, CommandDaemonClient>();
+
+    private static volatile long idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+    private static volatile File daemonsDirectory = getDefaultDirectory();
+
+    private final File directory;
+    private final int port;
+    private final String token;
+
+    private CommandDaemonClient(File directory, int port, String token) {
+        this.directory = directory;
+        this.port = port;
+        this.token = token;
+    }
+
+    /**
+     * sets the idle timeout and directory of the daemons, e.g. at the beginning of a build
+     *
+     * @param properties the user and system properties of the build
+     */
+    public static synchronized void configure(Properties properties) {
+        String timeout = properties.getProperty(IDLE_TIMEOUT_PROPERTY);
+        try {
+            idleTimeoutSeconds = timeout != null ? Long.parseLong(timeout.trim()) : DEFAULT_IDLE_TIMEOUT_SECONDS;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + IDLE_TIMEOUT_PROPERTY + ": " + timeout, e);
+        }
+        String directory = properties.getProperty(DIRECTORY_PROPERTY);
+        daemonsDirectory = directory != null && !directory.trim().isEmpty() ? new File(directory.trim()) : getDefaultDirectory();
+        CLIENTS.clear();
+    }
+
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home"), ".ace-maven-plugin/daemons");
+    }
+
+    /**
+     * @param directory the directory of the directories of the daemons
+     * @return the directory of the daemon of an ace runtime and the version of the plugin
+     */
+    public static File getDirectory(File directory, File aceRunDir) throws IOException {
+        File pluginClasses = new File(getPluginClasspath().get(0));
+        File profile = new File(aceRunDir, "mqsiprofile");
+        String version = aceRunDir.getCanonicalPath() + "\n" + profile.length() + "\n" + profile.lastModified() + "\n"
+                + pluginClasses.getAbsolutePath() + "\n" + pluginClasses.lastModified();
+        return new File(directory, aceRunDir.getName() + "-" + Integer.toHexString(version.hashCode()));
+    }
+
+    /**
+     * @return the client of the daemon of an ace runtime in the configured directory, started if it isn't running
+     */
+    public static CommandDaemonClient connect(File aceRunDir, Log log) throws IOException {
+        File directory = getDirectory(daemonsDirectory, aceRunDir);
+        CommandDaemonClient client = CLIENTS.get(directory);
+        if (client == null) {
+            client = findOrStart(directory, aceRunDir, log);
+            CLIENTS.put(directory, client);
+        }
+        return client;
+    }
+
+    /**
+     * @param directory the directory of the daemon, see {@link #getDirectory(File, File)}
+     * @return the client of the daemon running in the directory, null if there is none or it doesn't answer
+     */
+    public static CommandDaemonClient find(File directory) {
+        File stateFile = new File(directory, CommandDaemon.STATE_FILE);
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try {
+            Properties state = new Properties();
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+            CommandDaemonClient client = new CommandDaemonClient(directory, Integer.parseInt(state.getProperty("port")),
+                    state.getProperty("token"));
+            client.getStatus();
+            return client;
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // an incomplete state file
+            return null;
+        }
+    }
+
+    /**
+     * finds the daemon of the directory or starts one, locked against other builds doing the same
+     */
+    private static synchronized CommandDaemonClient findOrStart(File directory, File aceRunDir, Log log) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        RandomAccessFile lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                CommandDaemonClient client = find(directory);
+                if (client != null) {
+                    log.debug("Using the command daemon of " + directory + " (port " + client.port + ")");
+                    return client;
+                }
+                return start(directory, aceRunDir, log);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private static CommandDaemonClient start(File directory, File aceRunDir, Log log) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (getJavaVersion() >= 18) {
+            // System.exit of the commands is trapped by a security manager, see InProcessCommands
+            command.add("-Djava.security.manager=allow");
+        }
+        command.add("-cp");
+        StringBuilder classpath = new StringBuilder();
+        for (String entry : getPluginClasspath()) {
+            classpath.append(classpath.length() > 0 ? File.pathSeparator : "").append(entry);
+        }
+        command.add(classpath.toString());
+        command.add(CommandDaemon.class.getName());
+        command.add(directory.getAbsolutePath());
+        command.add(String.valueOf(idleTimeoutSeconds));
+        command.add(aceRunDir.getAbsolutePath());
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(directory);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(directory, CommandDaemon.LOG_FILE)));
+        pb.redirectInput(ProcessBuilder.Redirect.from(new File(System.getProperty("os.name").toLowerCase().contains("windows") ? "NUL"
+                : "/dev/null")));
+
+        log.info("Starting a command daemon in " + directory + " (stopped after " + idleTimeoutSeconds + " s without a command)");
+        BuildTimings.Timer timer = BuildTimings.startStep("command-daemon-start");
+        try {
+            Process daemon = CommandExecutionUtil.startProcess(pb, "CommandDaemon");
+            long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+            while (true) {
+                CommandDaemonClient client = find(directory);
+                if (client != null) {
+                    return client;
+                }
+                if (waitFor(daemon, 100)) {
+                    throw new IOException("The command daemon stopped, see " + new File(directory, CommandDaemon.LOG_FILE));
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    daemon.destroy();
+                    throw new IOException("The command daemon didn't start within " + STARTUP_TIMEOUT_MILLIS / 1000 + " s, see "
+                            + new File(directory, CommandDaemon.LOG_FILE));
+                }
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @return the feature version of the running java, e.g. 8 or 17
+     */
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        try {
+            return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    private static boolean waitFor(Process process, long millis) throws IOException {
+        try {
+            return process.waitFor(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting the command daemon", e);
+        }
+    }
+
+    /**
+     * @return the locations of the plugin's classes and of the maven classes they refer to, the class path of the
+     *         daemon
+     */
+    private static List<String> getPluginClasspath() throws IOException {
+        List<String> classpath = new ArrayList<String>();
+        for (Class<?> type : new Class<?>[] { CommandDaemon.class, Log.class }) {
+            try {
+                classpath.add(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath());
+            } catch (URISyntaxException e) {
+                throw new IOException("Could not determine the location of " + type.getName(), e);
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * removes a client which doesn't answer anymore, so that the next call starts a new daemon
+     */
+    public static void forget(CommandDaemonClient client) {
+        CLIENTS.remove(client.directory, client);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * runs a command in the daemon, passing its output to a receiver
+     *
+     * @return the exit code of the command
+     */
+    public int run(InProcessCommands.Command command, List<String> params, InProcessCommands.Output output) throws IOException {
+        Socket socket = open();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            CommandDaemon.writeString(out, token);
+            out.writeByte(CommandDaemon.RUN);
+            CommandDaemon.writeString(out, command.getName());
+            CommandDaemon.writeString(out, command.getMainClass());
+            List<String> classpath = new ArrayList<String>();
+            for (URL entry : command.getClasspath()) {
+                classpath.add(entry.toString());
+            }
+            CommandDaemon.writeStrings(out, classpath);
+            CommandDaemon.writeStrings(out, command.getArguments());
+            CommandDaemon.writeStrings(out, params);
+            out.flush();
+            return readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())), output);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the state of the daemon and the metrics of its commands
+     */
+    public Properties getStatus() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        Socket socket = open();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            CommandDaemon.writeString(out, token);
+            out.writeByte(CommandDaemon.STATUS);
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            readResponse(in, null);
+            text.append(CommandDaemon.readString(in));
+        } finally {
+            socket.close();
+        }
+        Properties status = new Properties();
+        status.load(new StringReader(text.toString()));
+        return status;
+    }
+
+    /**
+     * stops the daemon once the commands it's running have finished
+     */
+    public void stop() throws IOException {
+        Socket socket = open();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            CommandDaemon.writeString(out, token);
+            out.writeByte(CommandDaemon.STOP);
+            out.flush();
+            readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())), null);
+        } finally {
+            socket.close();
+        }
+        forget(this);
+    }
+
+    private Socket open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    private static int readResponse(DataInputStream in, InProcessCommands.Output output) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == CommandDaemon.LINES) {
+                List<String> lines = CommandDaemon.readStrings(in);
+                if (output != null) {
+                    output.accept(lines);
+                }
+            } else if (type == CommandDaemon.EXIT) {
+                return in.readInt();
+            } else if (type == CommandDaemon.ERROR) {
+                throw new IOException("The command daemon failed: " + CommandDaemon.readString(in));
+            } else {
+                throw new IOException("Unexpected answer of the command daemon: " + type);
+            }
+        }
+    }
+}
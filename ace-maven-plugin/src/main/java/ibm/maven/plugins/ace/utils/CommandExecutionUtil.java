@@ -1,15 +1,29 @@
 package ibm.maven.plugins.ace.utils;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.FileUtils;
 
+import ibm.maven.plugins.ace.jfr.JfrEvents;
+
 public final class CommandExecutionUtil {
 
     /**
@@ -19,7 +33,60 @@ public final class CommandExecutionUtil {
         super();
     }
 
-    public static void runCommand(File aceRunDir, String cmd, List<String> params, Log log) throws MojoFailureException {
+    /**
+     * Starts a process, recording the time needed to spawn it as flight recorder event.
+     *
+     * @param pb the process to be started
+     * @param name the name of the command, e.g. mqsicreatebar
+     * @return the started process
+     * @throws IOException if the process can't be started
+     */
+    public static Process startProcess(ProcessBuilder pb, String name) throws IOException {
+        Object event = JfrEvents.beginProcessSpawn();
+        try {
+            return pb.start();
+        } finally {
+            JfrEvents.endProcessSpawn(event, name);
+        }
+    }
+
+    /**
+     * Runs an ace command through mqsiprofile. The output is written to the log file of the command, see
+     * {@link ToolOutputSink}.
+     *
+     * @param logDirectory the directory of the log file, e.g. target/ace-logs, null for none
+     */
+    public static void runCommand(File aceRunDir, String cmd, List<String> params, File logDirectory, Log log) throws MojoFailureException {
+        runCommand(aceRunDir, cmd, params, logDirectory, log, null);
+    }
+
+    /**
+     * Runs an ace command through mqsiprofile, passing its output to a listener as well.
+     *
+     * @param logDirectory the directory of the log file, e.g. target/ace-logs, null for none
+     * @param listener optional listener every line of the output is passed to, may be null
+     */
+    public static void runCommand(File aceRunDir, String cmd, List<String> params, File logDirectory, Log log, ToolOutputSink.Listener listener)
+            throws MojoFailureException {
+        InProcessCommands.Command inProcess = InProcessCommands.resolve(aceRunDir, cmd, log);
+        if (inProcess != null) {
+            ToolOutputSink sink;
+            try {
+                sink = new ToolOutputSink(cmd, ToolOutputSink.getLogFile(logDirectory, cmd), log, null, listener);
+            } catch (IOException e) {
+                throw new MojoFailureException("Could not create the log file of " + cmd + " in " + logDirectory, e);
+            }
+            boolean ran = false;
+            try {
+                ran = runInProcess(inProcess, params, sink, log);
+            } finally {
+                sink.close();
+            }
+            if (ran) {
+                return;
+            }
+        }
+
         // Check underlying operating system
         String osName = System.getProperty("os.name").toLowerCase();
         String executable = null;
@@ -71,12 +138,21 @@ public final class CommandExecutionUtil {
         pb.redirectErrorStream(true);
         Process process;
         ProcessOutputLogger stdOutHandler = null;
+        ToolOutputSink sink;
+        try {
+            sink = new ToolOutputSink(cmd, ToolOutputSink.getLogFile(logDirectory, cmd), log, null, listener);
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not create the log file of " + cmd + " in " + logDirectory, e);
+        }
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessScheduler.ProcessType.forCommand(cmd), cmd, log);
+        BuildTimings.Timer timer = BuildTimings.startCommand(cmd);
         try {
             pb.redirectErrorStream(true);
-            process = pb.start();
-            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), log);
+            process = startProcess(pb, cmd);
+            stdOutHandler = new ProcessOutputLogger(process.getInputStream(), sink);
             stdOutHandler.start();
             process.waitFor();
+            timer.set("exitCode", process.exitValue());
 
         } catch (IOException e) {
             throw new MojoFailureException("Error executing: " + getCommandLine(command), e);
@@ -90,7 +166,12 @@ public final class CommandExecutionUtil {
                 } catch (InterruptedException e) {
                     // this should never happen, so ignore this one
                 }
+                timer.set("outputLines", stdOutHandler.getLineCount());
+                timer.set("outputChars", stdOutHandler.getCharCount());
             }
+            sink.close();
+            timer.stop();
+            permit.release();
         }
 
         if (process.exitValue() != 0) {
@@ -101,6 +182,177 @@ public final class CommandExecutionUtil {
         log.debug(cmd + " complete");
     }
 
+    /**
+     * Runs an ace command in the {@link CommandDaemon} of its ace runtime, see {@link InProcessCommands}. The commands
+     * aren't run in the JVM of the build itself: trapping their System.exit and output means replacing the security
+     * manager and System.out and System.err of the whole JVM, which would affect everything else running in it (e.g.
+     * the other builds and plugins of the maven daemon).
+     *
+     * @param command the command, resolved by {@link InProcessCommands#resolve(File, String, Log)}
+     * @param sink the sink the output is passed to, closed by the caller
+     * @return false if the command daemon can't be started, the command is to be run as a process then
+     */
+    public static boolean runInProcess(InProcessCommands.Command command, List<String> params, ToolOutputSink sink, Log log)
+            throws MojoFailureException {
+        String cmd = command.getName();
+        CommandDaemonClient daemon = connectDaemon(command, log);
+        if (daemon == null) {
+            return false;
+        }
+        List<String> commandLine = new ArrayList<String>();
+        commandLine.add(cmd);
+        commandLine.addAll(params);
+        log.info("Command (daemon):" + getCommandLine(commandLine));
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessScheduler.ProcessType.forCommand(cmd), cmd, log);
+        BuildTimings.Timer timer = BuildTimings.startCommand(cmd);
+        int exitCode;
+        try {
+            timer.set("inProcess", true);
+            timer.set("daemon", true);
+            exitCode = runInDaemon(daemon, command, params, sink, log);
+            timer.set("exitCode", exitCode);
+        } finally {
+            timer.stop();
+            permit.release();
+        }
+        if (exitCode != 0) {
+            throw new MojoFailureException(cmd + " finished with exit code: " + exitCode);
+        }
+        log.debug(cmd + " complete");
+        return true;
+    }
+
+    /**
+     * @return the client of the daemon of the command's ace runtime, null if it can't be started
+     */
+    private static CommandDaemonClient connectDaemon(InProcessCommands.Command command, Log log) {
+        try {
+            return CommandDaemonClient.connect(command.getAceRunDir(), log);
+        } catch (IOException e) {
+            log.warn("The command daemon is not available, " + command.getName() + " is run as a process: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static int runInDaemon(CommandDaemonClient daemon, InProcessCommands.Command command, List<String> params,
+            final ToolOutputSink sink, Log log) throws MojoFailureException {
+        InProcessCommands.Output output = new InProcessCommands.Output() {
+            public void accept(List<String> lines) {
+                sink.accept(lines);
+            }
+        };
+        try {
+            try {
+                return daemon.run(command, params, output);
+            } catch (ConnectException e) {
+                // stopped since the last command of this JVM (e.g. idle between two builds of mvnd), nothing ran yet
+                CommandDaemonClient.forget(daemon);
+                return CommandDaemonClient.connect(command.getAceRunDir(), log).run(command, params, output);
+            }
+        } catch (IOException e) {
+            CommandDaemonClient.forget(daemon);
+            throw new MojoFailureException("Error running " + command.getName() + " in the command daemon of " + daemon.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Stops a process including all of its child processes. mqsicreatebar, for example, is started through a command
+     * file which starts the toolkit, so stopping only the started process would leave the toolkit running.
+     * 
+     * On Java 9 or later the child processes are determined through java.lang.ProcessHandle. On Java 8 they are read
+     * from the process table (ps) on Linux and Mac OS; on Windows they can't be determined, only the started process
+     * itself is stopped.
+     * 
+     * @param process the process to be stopped
+     * @return false if only the process itself could be stopped, its child processes may still be running
+     */
+    public static boolean destroyProcessTree(Process process) {
+        // the children are stopped first, once their parent is gone they can't be found anymore
+        boolean tree = destroyDescendants(process);
+        process.destroyForcibly();
+        return tree;
+    }
+
+    private static boolean destroyDescendants(Process process) {
+        try {
+            Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            Object processHandle = Process.class.getMethod("toHandle").invoke(process);
+            Object descendants = processHandleClass.getMethod("descendants").invoke(processHandle);
+            Object[] children = ((Stream<?>) descendants).toArray();
+            Method destroyForcibly = processHandleClass.getMethod("destroyForcibly");
+            for (Object child : children) {
+                destroyForcibly.invoke(child);
+            }
+            return true;
+        } catch (ClassNotFoundException e) {
+            // Java 8, see below
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+
+        String osName = System.getProperty("os.name").toLowerCase();
+        if (!osName.contains("linux") && !osName.contains("mac os x")) {
+            return false;
+        }
+        try {
+            // java.lang.UNIXProcess, the processes of Java 8 on Linux and Mac OS
+            Field pidField = process.getClass().getDeclaredField("pid");
+            pidField.setAccessible(true);
+            List<String> descendants = findDescendants(String.valueOf(pidField.getInt(process)));
+            if (!descendants.isEmpty()) {
+                List<String> kill = new ArrayList<String>();
+                kill.add("kill");
+                kill.add("-9");
+                kill.addAll(descendants);
+                new ProcessBuilder(kill).redirectErrorStream(true).start().waitFor();
+            }
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return the ids of the descendants of a process, read from the process table
+     */
+    private static List<String> findDescendants(String pid) throws IOException, InterruptedException {
+        Process ps = new ProcessBuilder("ps", "-A", "-o", "pid=", "-o", "ppid=").redirectErrorStream(true).start();
+        Map<String, List<String>> children = new HashMap<String, List<String>>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ps.getInputStream(), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] ids = line.trim().split("\\s+");
+                if (ids.length == 2) {
+                    if (!children.containsKey(ids[1])) {
+                        children.put(ids[1], new ArrayList<String>());
+                    }
+                    children.get(ids[1]).add(ids[0]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (ps.waitFor() != 0) {
+            throw new IOException("ps finished with exit code " + ps.exitValue());
+        }
+        List<String> descendants = new ArrayList<String>();
+        Deque<String> parents = new ArrayDeque<String>(Collections.singleton(pid));
+        while (!parents.isEmpty()) {
+            List<String> found = children.get(parents.poll());
+            if (found != null) {
+                descendants.addAll(found);
+                parents.addAll(found);
+            }
+        }
+        return descendants;
+    }
+
     private static String getCommandLine(List<String> command) {
         String ret = "";
         for (String element : command) {
@@ -0,0 +1,225 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Delta bars contain only the applications and libraries of a bar file that are new or changed compared to a baseline,
+ * the bar file of a previous release found in the local repository. The bar files are compared by their
+ * {@link BarIndex}: a project changed if the content of any of its files or its deployment descriptor differs. Nested
+ * archives are compared by their content, as the archives themselves contain timestamps.
+ */
+public final class DeltaBars {
+
+    public static final String DELTA_SUFFIX = "-delta";
+
+    private static final String BAR_SUFFIX = ".bar";
+
+    /**
+     * hide the default constructor
+     */
+    private DeltaBars() {
+        super();
+    }
+
+    /**
+     * @return the delta bar file of a bar file, e.g. target/ace/app-1.1.0-delta.bar for target/ace/app-1.1.0.bar
+     */
+    public static File getDeltaBarFile(File barFile) {
+        String name = barFile.getName();
+        int dot = name.lastIndexOf('.');
+        String deltaName = dot > 0 ? name.substring(0, dot) + DELTA_SUFFIX + name.substring(dot) : name + DELTA_SUFFIX;
+        return new File(barFile.getParentFile(), deltaName);
+    }
+
+    /**
+     * @return the names of the project archives in the bar (e.g. App.appzip) that are new or changed, in the order of
+     *         the bar file
+     */
+    public static List<String> getChangedProjects(BarIndex baseline, BarIndex index) {
+        Map<String, Map<String, String>> baselineContents = getProjectContents(baseline);
+        List<String> changed = new ArrayList<String>();
+        for (Map.Entry<String, Map<String, String>> project : getProjectContents(index).entrySet()) {
+            if (!project.getValue().equals(baselineContents.get(project.getKey()))) {
+                changed.add(project.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the names of the project archives in the baseline that are missing in the bar
+     */
+    public static List<String> getRemovedProjects(BarIndex baseline, BarIndex index) {
+        List<String> removed = new ArrayList<String>(getProjectContents(baseline).keySet());
+        removed.removeAll(getProjectContents(index).keySet());
+        return removed;
+    }
+
+    /**
+     * @return the entries of the bar that aren't in a project archive and are copied into every delta bar
+     */
+    public static List<String> getCommonEntries(BarIndex index) {
+        List<String> common = new ArrayList<String>();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            if (entry.isTopLevel() && !BarIndex.isArchive(entry.getPath())) {
+                common.add(entry.getPath());
+            }
+        }
+        return common;
+    }
+
+    /**
+     * @return per project archive, the SHA-256 of its files (including the deployment descriptor and the files of
+     *         nested libraries) by their path in the archive
+     */
+    static Map<String, Map<String, String>> getProjectContents(BarIndex index) {
+        Map<String, Map<String, String>> contents = new LinkedHashMap<String, Map<String, String>>();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            String path = entry.getPath();
+            if (entry.isTopLevel()) {
+                if (BarIndex.isArchive(path)) {
+                    contents.put(path, new LinkedHashMap<String, String>());
+                }
+                continue;
+            }
+            if (BarIndex.isArchive(path)) {
+                // nested archives differ by their timestamps, their content is compared
+                continue;
+            }
+            int separator = path.indexOf(BarIndex.NESTED_SEPARATOR);
+            Map<String, String> content = contents.get(path.substring(0, separator));
+            if (content != null) {
+                content.put(path.substring(separator + BarIndex.NESTED_SEPARATOR.length()), entry.getSha256());
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * @return the highest release version of an artifact in the local repository lower than the given version, or null
+     */
+    public static String findBaselineVersion(File localRepository, String groupId, String artifactId, String version) {
+        File[] versionDirectories = getArtifactDirectory(localRepository, groupId, artifactId).listFiles();
+        if (versionDirectories == null) {
+            return null;
+        }
+        ComparableVersion current = new ComparableVersion(version);
+        ComparableVersion baseline = null;
+        for (File versionDirectory : versionDirectories) {
+            if (!versionDirectory.isDirectory() || versionDirectory.getName().endsWith("-SNAPSHOT")) {
+                continue;
+            }
+            ComparableVersion candidate = new ComparableVersion(versionDirectory.getName());
+            if (candidate.compareTo(current) < 0 && (baseline == null || candidate.compareTo(baseline) > 0)) {
+                baseline = candidate;
+            }
+        }
+        return baseline == null ? null : baseline.toString();
+    }
+
+    /**
+     * @param barName the name of the bar file of the project, &lt;artifactId&gt;-&lt;version&gt;[-&lt;classifier&gt;].bar
+     * @return the name of the bar file with the same artifactId and classifier in the baseline version, null if the bar
+     *         file isn't named like that
+     */
+    public static String getBaselineBarName(String barName, String artifactId, String version, String baselineVersion) {
+        String prefix = artifactId + "-" + version;
+        if (!barName.startsWith(prefix) || !barName.endsWith(BAR_SUFFIX)) {
+            return null;
+        }
+        String classifier = barName.substring(prefix.length(), barName.length() - BAR_SUFFIX.length());
+        if (!classifier.isEmpty() && !classifier.startsWith("-")) {
+            return null;
+        }
+        return artifactId + "-" + baselineVersion + classifier + BAR_SUFFIX;
+    }
+
+    /**
+     * Reads the index of a baseline bar file from the local repository. The installed artifact is searched for the index
+     * of the bar file (written by create-bar and kept when the overrides are applied) and then for the bar file itself.
+     *
+     * @param barName the name of the bar file in the baseline, e.g. app-1.0.0.bar
+     * @return the index or null if the artifact isn't installed or contains neither the index nor the bar file
+     */
+    public static BarIndex readBaseline(File localRepository, String groupId, String artifactId, String version, String barName)
+            throws IOException {
+        File[] files = new File(getArtifactDirectory(localRepository, groupId, artifactId), version).listFiles();
+        if (files == null) {
+            return null;
+        }
+        String indexName = barName + BarIndex.FILE_SUFFIX;
+        for (File file : files) {
+            if (file.getName().equals(indexName)) {
+                return BarIndex.read(file);
+            }
+            if (file.getName().equals(barName)) {
+                return BarIndex.create(file);
+            }
+            if (!file.getName().startsWith(artifactId + "-" + version) || file.getName().endsWith(".pom")) {
+                continue;
+            }
+            BarIndex index = readFromArtifact(file, indexName, barName);
+            if (index != null) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static BarIndex readFromArtifact(File artifact, String indexName, String barName) throws IOException {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(artifact);
+        } catch (ZipException e) {
+            // a checksum, signature etc.
+            return null;
+        }
+        try {
+            ZipEntry indexEntry = zip.getEntry(indexName);
+            if (indexEntry != null) {
+                return BarIndex.read(zip.getInputStream(indexEntry), artifact.getName() + "!/" + indexName);
+            }
+            ZipEntry barEntry = zip.getEntry(barName);
+            if (barEntry == null) {
+                return null;
+            }
+            File barFile = File.createTempFile("baseline-", ".bar");
+            try {
+                InputStream in = zip.getInputStream(barEntry);
+                try {
+                    OutputStream out = new FileOutputStream(barFile);
+                    try {
+                        IOUtil.copy(in, out, 64 * 1024);
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+                return BarIndex.create(barFile);
+            } finally {
+                barFile.delete();
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static File getArtifactDirectory(File localRepository, String groupId, String artifactId) {
+        return new File(new File(localRepository, groupId.replace('.', File.separatorChar)), artifactId);
+    }
+}
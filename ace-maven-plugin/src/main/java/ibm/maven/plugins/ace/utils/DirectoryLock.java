@@ -0,0 +1,119 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock of a directory shared by the threads of a build and by other builds of the machine: the lock of the file
+ * &lt;directory&gt;.lock next to it, held by one thread of one JVM at a time.
+ */
+public final class DirectoryLock {
+
+    private static final String SUFFIX = ".lock";
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final ReentrantLock lock;
+    private final RandomAccessFile file;
+    private final FileLock fileLock;
+
+    private DirectoryLock(ReentrantLock lock, RandomAccessFile file, FileLock fileLock) {
+        this.lock = lock;
+        this.file = file;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * waits until the directory isn't locked by another thread or build and locks it
+     *
+     * @param directory the directory, which doesn't need to exist
+     */
+    public static DirectoryLock lock(File directory) throws IOException {
+        File lockFile = new File(directory.getAbsoluteFile().getParentFile(), directory.getName() + SUFFIX);
+        ReentrantLock lock = getLock(lockFile);
+        // a file lock is held by the JVM, the threads of the build wait for each other first
+        lock.lock();
+        try {
+            lockFile.getParentFile().mkdirs();
+            RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+            try {
+                return new DirectoryLock(lock, file, file.getChannel().lock());
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            lock.unlock();
+            throw e;
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * locks the directory if it isn't locked by another thread or build
+     *
+     * @param directory the directory, which doesn't need to exist
+     * @return the lock, null if the directory is locked
+     */
+    public static DirectoryLock tryLock(File directory) throws IOException {
+        File lockFile = new File(directory.getAbsoluteFile().getParentFile(), directory.getName() + SUFFIX);
+        ReentrantLock lock = getLock(lockFile);
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            lockFile.getParentFile().mkdirs();
+            RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+            FileLock fileLock;
+            try {
+                fileLock = file.getChannel().tryLock();
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            if (fileLock == null) {
+                file.close();
+                lock.unlock();
+                return null;
+            }
+            return new DirectoryLock(lock, file, fileLock);
+        } catch (IOException e) {
+            lock.unlock();
+            throw e;
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * releases the lock, by the thread which holds it
+     */
+    public void release() throws IOException {
+        try {
+            fileLock.release();
+            file.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReentrantLock getLock(File lockFile) {
+        String key = lockFile.getAbsolutePath();
+        ReentrantLock lock = LOCKS.get(key);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+}
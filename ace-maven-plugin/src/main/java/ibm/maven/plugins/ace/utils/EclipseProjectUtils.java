@@ -12,6 +12,7 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
 import ibm.maven.plugins.ace.generated.eclipse_project.ProjectDescription;
+import ibm.maven.plugins.ace.jfr.JfrEvents;
 
 /**
  * @author u209936
@@ -19,13 +20,25 @@ import ibm.maven.plugins.ace.generated.eclipse_project.ProjectDescription;
  */
 public class EclipseProjectUtils {
 
+    /**
+     * the parsed .project files, shared by the modules and builds of the JVM
+     */
+    private static final FileCache<ProjectDescription> PROJECT_DESCRIPTIONS = FileCache.create("project-descriptions", 10000);
+
+    private static final FileCache.Loader<ProjectDescription, JAXBException> PROJECT_DESCRIPTION_LOADER = new FileCache.Loader<ProjectDescription, JAXBException>() {
+        public ProjectDescription load(File projectFile) throws JAXBException {
+            return unmarshallEclipseProjectFile(projectFile);
+        }
+    };
+
+    private static volatile JAXBContext context;
+
     private static ProjectDescription getProjectDescription(File projectDirectory) throws MojoFailureException {
         ProjectDescription projectDescription = new ProjectDescription();
         try {
             // unmarshall the .project file, which is in the temp workspace
             // under a directory of the same name as the projectName
-            projectDescription = unmarshallEclipseProjectFile(new File(
-                    projectDirectory, ".project"));
+            projectDescription = PROJECT_DESCRIPTIONS.get(new File(projectDirectory, ".project"), PROJECT_DESCRIPTION_LOADER);
         } catch (JAXBException e) {
             throw (new MojoFailureException(
                     "Error parsing .project file in: " + projectDirectory.getPath(), e));
@@ -71,6 +84,23 @@ public class EclipseProjectUtils {
         return getProjectDescription(projectDirectory).getName();
     }
 
+    /**
+     * returns the names of the projects referenced in the .project file
+     *
+     * @param projectDirectory the (workspace) directory containing the project
+     * @return the names of the referenced projects, e.g. the libraries of an application
+     * @throws MojoFailureException if something goes wrong
+     */
+    public static List<String> getReferencedProjects(File projectDirectory) throws MojoFailureException {
+
+        ProjectDescription.Projects projects = getProjectDescription(projectDirectory).getProjects();
+        if (projects == null) {
+            return new ArrayList<String>();
+        }
+        // the description is cached, the caller gets a list of its own
+        return new ArrayList<String>(projects.getProject());
+    }
+
     /**
      * @param projectDirectory the (workspace) directory containing the project
      * @param log logger to be used if debugging information should be produced
@@ -174,10 +204,24 @@ public class EclipseProjectUtils {
      */
     protected static ProjectDescription unmarshallEclipseProjectFile(File projectFile)
             throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(ProjectDescription.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-        return (ProjectDescription) unmarshaller.unmarshal(projectFile);
+        Object event = JfrEvents.beginProjectParse();
+        try {
+            Unmarshaller unmarshaller = getContext().createUnmarshaller();
+            return (ProjectDescription) unmarshaller.unmarshal(projectFile);
+        } finally {
+            JfrEvents.endProjectParse(event, projectFile);
+        }
 
     }
 
+    /**
+     * @return the JAXB context of .project files, created once: it's thread-safe, unlike its unmarshallers
+     */
+    private static JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(ProjectDescription.class);
+        }
+        return context;
+    }
+
 }
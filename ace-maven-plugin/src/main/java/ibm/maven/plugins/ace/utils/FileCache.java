@@ -0,0 +1,329 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of what the plugin reads from files (project descriptions, bar indexes, configurable properties),
+ * kept in a static field so that it survives from one build to the next while the plugin's classes stay loaded, e.g.
+ * under the maven daemon (mvnd). An entry is used as long as the file has the same file key (inode), size and
+ * modification time as when it was read.
+ *
+ * The caches are bounded: each keeps at most ace.cache.&lt;name&gt;.maxEntries entries (least recently used ones are
+ * evicted) and holds them through soft references, which the garbage collector clears when memory gets short. All
+ * caches are switched off with -Dace.caches=false. Their statistics are reset at the beginning of every build, see
+ * {@link #configure(Properties)}.
+ *
+ * @param <V> the type of the values, which must not be modified by the callers
+ */
+public final class FileCache<V> {
+
+    public static final String ENABLED_PROPERTY = "ace.caches";
+    static final String PREFIX = "ace.cache.";
+
+    private static final List<FileCache<?>> CACHES = new CopyOnWriteArrayList<FileCache<?>>();
+    private static volatile boolean enabled = true;
+
+    /**
+     * reads the value of a file on a cache miss
+     *
+     * @param <V> the type of the value
+     * @param <E> the exception thrown if the file can't be read
+     */
+    public interface Loader<V, E extends Exception> {
+
+        V load(File file) throws E;
+    }
+
+    private final String name;
+    private final int defaultMaxEntries;
+    private volatile int maxEntries;
+    private final LinkedHashMap<String, CachedValue<V>> entries = new LinkedHashMap<String, CachedValue<V>>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong collected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    private FileCache(String name, int maxEntries) {
+        this.name = name;
+        this.defaultMaxEntries = maxEntries;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param name the name of the cache in the statistics and properties
+     * @param maxEntries the number of entries kept unless ace.cache.&lt;name&gt;.maxEntries is set
+     */
+    public static <V> FileCache<V> create(String name, int maxEntries) {
+        FileCache<V> cache = new FileCache<V>(name, maxEntries);
+        CACHES.add(cache);
+        return cache;
+    }
+
+    /**
+     * sets the sizes of the caches and resets their statistics, e.g. at the beginning of a build
+     *
+     * @param properties the user and system properties of the build
+     */
+    public static synchronized void configure(Properties properties) {
+        enabled = Boolean.parseBoolean(properties.getProperty(ENABLED_PROPERTY, "true"));
+        for (FileCache<?> cache : CACHES) {
+            String maxEntries = properties.getProperty(PREFIX + cache.name + ".maxEntries");
+            try {
+                cache.setMaxEntries(maxEntries != null ? Integer.parseInt(maxEntries.trim()) : cache.defaultMaxEntries);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + PREFIX + cache.name + ".maxEntries: " + maxEntries, e);
+            }
+            if (!enabled) {
+                cache.clear();
+            }
+            cache.resetStatistics();
+        }
+    }
+
+    /**
+     * empties all caches, e.g. between tests
+     */
+    public static void clearAll() {
+        for (FileCache<?> cache : CACHES) {
+            cache.clear();
+            cache.resetStatistics();
+        }
+    }
+
+    /**
+     * @return the caches used since their statistics were reset
+     */
+    public static List<FileCache<?>> getUsedCaches() {
+        List<FileCache<?>> used = new ArrayList<FileCache<?>>();
+        for (FileCache<?> cache : CACHES) {
+            if (cache.getHits() + cache.getMisses() > 0) {
+                used.add(cache);
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return the value of the file, read by the loader unless it's cached for the current state of the file
+     */
+    public <E extends Exception> V get(File file, Loader<V, E> loader) throws E {
+        if (!enabled || maxEntries <= 0) {
+            return loader.load(file);
+        }
+        String key = file.getAbsolutePath();
+        FileState state = FileState.of(file);
+        if (state != null) {
+            synchronized (entries) {
+                CachedValue<V> cached = entries.get(key);
+                if (cached != null) {
+                    V value = cached.value.get();
+                    if (value != null && cached.state.equals(state)) {
+                        hits.incrementAndGet();
+                        return value;
+                    }
+                    entries.remove(key);
+                    (value == null ? collected : stale).incrementAndGet();
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        V value = loader.load(file);
+        loadNanos.addAndGet(System.nanoTime() - start);
+        // a file modified while it was read is read again next time
+        if (state != null && value != null && state.equals(FileState.of(file))) {
+            synchronized (entries) {
+                entries.put(key, new CachedValue<V>(state, value));
+                Iterator<CachedValue<V>> eldest = entries.values().iterator();
+                while (entries.size() > maxEntries && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                    evicted.incrementAndGet();
+                }
+            }
+        }
+        return value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of files read, including the stale and collected entries
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries dropped because their file changed
+     */
+    public long getStale() {
+        return stale.get();
+    }
+
+    /**
+     * @return the number of entries cleared by the garbage collector
+     */
+    public long getCollected() {
+        return collected.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the maximum number of entries
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    public long getLoadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(loadNanos.get());
+    }
+
+    private void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        synchronized (entries) {
+            Iterator<CachedValue<V>> eldest = entries.values().iterator();
+            while (entries.size() > Math.max(0, maxEntries) && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        stale.set(0);
+        collected.set(0);
+        evicted.set(0);
+        loadNanos.set(0);
+    }
+
+    /**
+     * writes the statistics of the used caches as JSON
+     */
+    public static void writeJson(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("caches").beginArray();
+            for (FileCache<?> cache : getUsedCaches()) {
+                json.beginObject();
+                json.name("name").value(cache.getName());
+                json.name("size").value(cache.getSize());
+                json.name("hits").value(cache.getHits());
+                json.name("misses").value(cache.getMisses());
+                json.name("stale").value(cache.getStale());
+                json.name("collected").value(cache.getCollected());
+                json.name("evicted").value(cache.getEvicted());
+                json.name("loadMillis").value(cache.getLoadMillis());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-24s %6d hits %6d misses (%d stale, %d collected) %6d evicted %6d entries %8d ms reading", name, getHits(),
+                getMisses(), getStale(), getCollected(), getEvicted(), getSize(), getLoadMillis());
+    }
+
+    private static final class CachedValue<V> {
+
+        private final FileState state;
+        private final SoftReference<V> value;
+
+        CachedValue(FileState state, V value) {
+            this.state = state;
+            this.value = new SoftReference<V>(value);
+        }
+    }
+
+    /**
+     * the identity and version of a file
+     */
+    private static final class FileState {
+
+        private final Object fileKey;
+        private final long size;
+        private final long modifiedNanos;
+
+        private FileState(Object fileKey, long size, long modifiedNanos) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+        }
+
+        /**
+         * @return the state of the file, null if it doesn't exist
+         */
+        static FileState of(File file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return new FileState(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState) obj;
+            return size == other.size && modifiedNanos == other.modifiedNanos
+                    && (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (size ^ modifiedNanos);
+        }
+    }
+}
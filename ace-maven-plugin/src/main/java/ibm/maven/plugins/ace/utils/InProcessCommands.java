@@ -0,0 +1,569 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs the ace commands which are Java programs (e.g. mqsireadbar, mqsiapplybaroverride, mqsipackagebar) in a JVM
+ * which is already running instead of a process of their own, saving the start of a shell, mqsiprofile and a JVM per
+ * call. The jars of a command are loaded by a class loader which sees nothing but them and the JDK, kept for later
+ * calls. The builds don't run the commands in their own JVM but in a {@link CommandDaemon}, see
+ * {@link CommandExecutionUtil#runInProcess(Command, List, ToolOutputSink, Log)}.
+ *
+ * The commands to be run in-process are listed in {@link #COMMANDS_PROPERTY}. The main class and class path of a
+ * command are taken from ace.inProcess.&lt;command&gt;.mainClass and ace.inProcess.&lt;command&gt;.classpath (entries
+ * separated by the path separator, relative to aceRunDir, "dir/*" for all jars of a directory), or else from the
+ * launcher script of the command in aceRunDir or aceRunDir/server/bin if it starts java with a literal class path.
+ * Commands which can't be resolved are run as processes.
+ *
+ * While commands are running, the output they write to System.out and System.err is captured per thread (including
+ * the threads they start) and System.exit is turned into the exit code of the command, by a security manager. Both are
+ * installed by the first running command and removed again, restoring the previous streams, when the last one
+ * finishes. As the tools keep static state, a class loader runs one call at a time; concurrent calls of a command get
+ * class loaders of their own, which are kept for later calls. The environment of mqsiprofile isn't applied.
+ */
+public final class InProcessCommands {
+
+    public static final String COMMANDS_PROPERTY = "ace.inProcessCommands";
+    static final String PREFIX = "ace.inProcess.";
+
+    /**
+     * receives the output of a command in batches of lines
+     */
+    public interface Output {
+
+        void accept(List<String> lines);
+    }
+
+    /**
+     * a resolved command
+     */
+    public static final class Command {
+
+        private final File aceRunDir;
+        private final String name;
+        private final List<URL> classpath;
+        private final String mainClass;
+        private final List<String> arguments;
+
+        Command(File aceRunDir, String name, List<URL> classpath, String mainClass, List<String> arguments) {
+            this.aceRunDir = aceRunDir;
+            this.name = name;
+            this.classpath = classpath;
+            this.mainClass = mainClass;
+            this.arguments = arguments;
+        }
+
+        public File getAceRunDir() {
+            return aceRunDir;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<URL> getClasspath() {
+            return classpath;
+        }
+
+        public String getMainClass() {
+            return mainClass;
+        }
+
+        /**
+         * @return the arguments passed before the ones of the call, e.g. from the launcher script
+         */
+        public List<String> getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public String toString() {
+            return mainClass + " " + classpath;
+        }
+    }
+
+    static final int BATCH_LINES = 256;
+
+    private static final Command UNRESOLVED = new Command(null, null, null, null, null);
+    private static final ConcurrentMap<String, Command> COMMANDS = new ConcurrentHashMap<String, Command>();
+    private static final ConcurrentMap<String, Deque<URLClassLoader>> LOADERS = new ConcurrentHashMap<String, Deque<URLClassLoader>>();
+    private static final InheritableThreadLocal<LineCollector> CURRENT = new InheritableThreadLocal<LineCollector>();
+
+    private static volatile Properties configuration = new Properties();
+    private static volatile Set<String> enabled = Collections.emptySet();
+    private static int trapped;
+    private static ExitTrap exitTrap;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+
+    /**
+     * hide the default constructor
+     */
+    private InProcessCommands() {
+        super();
+    }
+
+    /**
+     * sets the commands run in-process, e.g. at the beginning of a build
+     *
+     * @param properties the user and system properties of the build
+     */
+    public static synchronized void configure(Properties properties) {
+        Set<String> commands = new HashSet<String>();
+        for (String command : properties.getProperty(COMMANDS_PROPERTY, "").split(",")) {
+            if (!command.trim().isEmpty()) {
+                commands.add(command.trim());
+            }
+        }
+        Properties newConfiguration = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PREFIX)) {
+                newConfiguration.setProperty(key, properties.getProperty(key));
+            }
+        }
+        configuration = newConfiguration;
+        enabled = commands;
+        COMMANDS.clear();
+    }
+
+    /**
+     * @return the command if it's to be run in-process and can be, null otherwise
+     */
+    public static Command resolve(File aceRunDir, String name, Log log) {
+        if (!enabled.contains(name)) {
+            return null;
+        }
+        String key = aceRunDir.getAbsolutePath() + File.pathSeparator + name;
+        Command command = COMMANDS.get(key);
+        if (command == null) {
+            command = resolve(aceRunDir, name);
+            if (command == null) {
+                log.warn(name + " can't be run in-process, neither " + PREFIX + name + ".mainClass is set nor does its launcher script in "
+                        + aceRunDir + " start java with a literal class path; it's run as a process");
+                command = UNRESOLVED;
+            } else {
+                log.debug(name + " is run in-process: " + command);
+            }
+            COMMANDS.put(key, command);
+        }
+        return command == UNRESOLVED ? null : command;
+    }
+
+    static Command resolve(File aceRunDir, String name) {
+        String mainClass = configuration.getProperty(PREFIX + name + ".mainClass");
+        if (mainClass != null) {
+            List<URL> classpath = new ArrayList<URL>();
+            for (String entry : configuration.getProperty(PREFIX + name + ".classpath", "").split(File.pathSeparator)) {
+                if (!entry.trim().isEmpty()) {
+                    File file = new File(entry.trim());
+                    addClasspathEntry(classpath, file.isAbsolute() ? file : new File(aceRunDir, entry.trim()));
+                }
+            }
+            return new Command(aceRunDir, name, classpath, mainClass.trim(), Collections.<String> emptyList());
+        }
+        for (File script : new File[] { new File(aceRunDir, name), new File(aceRunDir, "server/bin/" + name) }) {
+            if (script.isFile()) {
+                try {
+                    Command command = parseLauncher(name, new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8));
+                    return command == null ? null : new Command(aceRunDir, name, command.classpath, command.mainClass, command.arguments);
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the command started by the java command line of a launcher script, null if there is none or it uses
+     *         variables
+     */
+    static Command parseLauncher(String name, String script) {
+        for (String line : script.split("\n")) {
+            List<String> tokens = tokenize(line.trim());
+            int java = -1;
+            for (int i = 0; i < tokens.size() && java < 0; i++) {
+                if (tokens.get(i).equals("java") || tokens.get(i).endsWith("/java") || tokens.get(i).endsWith("\\java.exe")) {
+                    java = i;
+                }
+            }
+            if (java < 0) {
+                continue;
+            }
+            List<URL> classpath = null;
+            for (int i = java + 1; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if ((token.equals("-cp") || token.equals("-classpath")) && i + 1 < tokens.size()) {
+                    classpath = new ArrayList<URL>();
+                    for (String entry : tokens.get(++i).split(File.pathSeparator)) {
+                        if (entry.contains("$") || entry.contains("%")) {
+                            return null;
+                        }
+                        addClasspathEntry(classpath, new File(entry));
+                    }
+                } else if (!token.startsWith("-")) {
+                    List<String> arguments = new ArrayList<String>();
+                    for (String argument : tokens.subList(i + 1, tokens.size())) {
+                        if (argument.equals("$@") || argument.equals("%*")) {
+                            break;
+                        }
+                        if (argument.contains("$") || argument.contains("%")) {
+                            return null;
+                        }
+                        arguments.add(argument);
+                    }
+                    return classpath == null || token.contains("$") ? null : new Command(null, name, classpath, token, arguments);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * splits a shell command line into words, removing single and double quotes
+     */
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                token = token == null ? new StringBuilder() : token;
+            } else if (Character.isWhitespace(c)) {
+                if (token != null) {
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            } else if (c == '#' && token == null) {
+                break;
+            } else {
+                token = token == null ? new StringBuilder() : token;
+                token.append(c);
+            }
+        }
+        if (token != null) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    private static void addClasspathEntry(List<URL> classpath, File entry) {
+        try {
+            if (entry.getName().equals("*")) {
+                File[] jars = entry.getParentFile().listFiles();
+                if (jars != null) {
+                    Arrays.sort(jars);
+                    for (File jar : jars) {
+                        if (jar.getName().endsWith(".jar")) {
+                            classpath.add(jar.toURI().toURL());
+                        }
+                    }
+                }
+            } else {
+                classpath.add(entry.toURI().toURL());
+            }
+        } catch (MalformedURLException e) {
+            // a file URL is always valid
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return a class loader of a command, isolated from the classes of maven and the plugin, not used by another call
+     *         until it's released
+     */
+    static URLClassLoader acquireClassLoader(Command command) {
+        Deque<URLClassLoader> idle = getIdleLoaders(command);
+        URLClassLoader loader = idle.pollFirst();
+        if (loader == null) {
+            // the parent is the loader of the JDK's extensions, not the one of the application (maven)
+            loader = new URLClassLoader(command.classpath.toArray(new URL[command.classpath.size()]), ClassLoader.getSystemClassLoader()
+                    .getParent());
+        }
+        return loader;
+    }
+
+    static void releaseClassLoader(Command command, URLClassLoader loader) {
+        getIdleLoaders(command).offerFirst(loader);
+    }
+
+    private static Deque<URLClassLoader> getIdleLoaders(Command command) {
+        String key = command.classpath.toString();
+        Deque<URLClassLoader> idle = LOADERS.get(key);
+        if (idle == null) {
+            Deque<URLClassLoader> newIdle = new ConcurrentLinkedDeque<URLClassLoader>();
+            idle = LOADERS.putIfAbsent(key, newIdle);
+            if (idle == null) {
+                idle = newIdle;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * runs a command, passing its output to a receiver
+     *
+     * @return the exit code, 0 if the main method returned, the status passed to System.exit or 1 if it threw an
+     *         exception
+     */
+    public static int run(Command command, List<String> params, Output output) {
+        if (!installTraps()) {
+            throw new IllegalStateException("System.exit can't be trapped, a security manager is set or can't be set");
+        }
+        try {
+            return runTrapped(command, params, output);
+        } finally {
+            removeTraps();
+        }
+    }
+
+    private static int runTrapped(Command command, List<String> params, Output output) {
+        List<String> arguments = new ArrayList<String>(command.arguments);
+        arguments.addAll(params);
+        LineCollector collector = new LineCollector(output);
+        URLClassLoader loader = acquireClassLoader(command);
+        try {
+            Thread thread = Thread.currentThread();
+            ClassLoader contextLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            CURRENT.set(collector);
+            try {
+                Method main = loader.loadClass(command.mainClass).getMethod("main", String[].class);
+                main.invoke(null, (Object) arguments.toArray(new String[arguments.size()]));
+                return 0;
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof ExitException) {
+                    return ((ExitException) e.getCause()).status;
+                }
+                collector.exception(e.getCause());
+                return 1;
+            } catch (ReflectiveOperationException e) {
+                collector.exception(e);
+                return 1;
+            } catch (LinkageError e) {
+                collector.exception(e);
+                return 1;
+            } finally {
+                CURRENT.remove();
+                thread.setContextClassLoader(contextLoader);
+                collector.close();
+            }
+        } finally {
+            releaseClassLoader(command, loader);
+        }
+    }
+
+    /**
+     * routes System.out and System.err of the threads running a command to the command, and turns its System.exit
+     * into an exception, until {@link #removeTraps()} is called as often as this method returned true
+     *
+     * @return false if a security manager of someone else is set or one can't be set (Java 18 and later)
+     */
+    static synchronized boolean installTraps() {
+        if (trapped > 0) {
+            trapped++;
+            return true;
+        }
+        if (System.getSecurityManager() != null) {
+            return false;
+        }
+        ExitTrap trap = new ExitTrap();
+        try {
+            System.setSecurityManager(trap);
+        } catch (UnsupportedOperationException e) {
+            return false;
+        } catch (SecurityException e) {
+            return false;
+        }
+        exitTrap = trap;
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(new PrintStream(new RoutingOutputStream(originalOut), true));
+        System.setErr(new PrintStream(new RoutingOutputStream(originalErr), true));
+        trapped = 1;
+        return true;
+    }
+
+    /**
+     * restores the streams and the security manager replaced by {@link #installTraps()} once no command is running
+     */
+    static synchronized void removeTraps() {
+        if (trapped == 0 || --trapped > 0) {
+            return;
+        }
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        // unless someone else has replaced it in the meantime
+        if (System.getSecurityManager() == exitTrap) {
+            System.setSecurityManager(null);
+        }
+        exitTrap = null;
+        originalOut = null;
+        originalErr = null;
+    }
+
+    /**
+     * thrown by System.exit of a command
+     */
+    private static final class ExitException extends SecurityException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ExitException(int status) {
+            super("System.exit(" + status + ") of an in-process command");
+            this.status = status;
+        }
+    }
+
+    /**
+     * permits everything but System.exit of the threads running a command
+     */
+    private static final class ExitTrap extends SecurityManager {
+
+        @Override
+        public void checkExit(int status) {
+            if (CURRENT.get() != null) {
+                throw new ExitException(status);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            // permitted
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            // permitted
+        }
+    }
+
+    /**
+     * writes to the collector of the current thread, or to the original stream if it isn't running a command or is a
+     * thread the command started which outlived it
+     */
+    private static final class RoutingOutputStream extends OutputStream {
+
+        private final OutputStream original;
+
+        RoutingOutputStream(OutputStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            LineCollector collector = CURRENT.get();
+            if (collector == null || !collector.write(b, off, len)) {
+                original.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            original.flush();
+        }
+    }
+
+    /**
+     * splits the output of a command into lines, passed on in batches
+     */
+    static final class LineCollector {
+
+        private final Output output;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private List<String> batch = new ArrayList<String>(BATCH_LINES);
+        private boolean closed;
+
+        LineCollector(Output output) {
+            this.output = output;
+        }
+
+        /**
+         * @return false if the command has finished, e.g. for a thread it started which is still running
+         */
+        synchronized boolean write(byte[] b, int off, int len) {
+            if (closed) {
+                return false;
+            }
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    endLine();
+                } else {
+                    line.write(b[i]);
+                }
+            }
+            return true;
+        }
+
+        private void endLine() {
+            String text = new String(line.toByteArray(), Charset.defaultCharset());
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            line.reset();
+            batch.add(text);
+            if (batch.size() >= BATCH_LINES) {
+                output.accept(batch);
+                batch = new ArrayList<String>(BATCH_LINES);
+            }
+        }
+
+        synchronized void exception(Throwable t) {
+            StringBuilder text = new StringBuilder(t.toString());
+            for (StackTraceElement element : t.getStackTrace()) {
+                text.append("\n\tat ").append(element);
+            }
+            byte[] bytes = (text + "\n").getBytes(Charset.defaultCharset());
+            write(bytes, 0, bytes.length);
+        }
+
+        synchronized void close() {
+            if (line.size() > 0) {
+                endLine();
+            }
+            output.accept(batch);
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer for the reports written by the plugin. It only keeps track of where commas are
+ * required, the caller is responsible for a well formed nesting of objects and arrays.
+ */
+public class JsonWriter {
+
+    private final Writer writer;
+
+    /**
+     * one entry per open object or array - true until the first member was written
+     */
+    private final Deque<Boolean> first = new ArrayDeque<Boolean>();
+
+    /**
+     * true directly after a name was written, i.e. the next value must not be preceded by a comma
+     */
+    private boolean afterName;
+
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        writer.write('{');
+        first.push(Boolean.TRUE);
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        first.pop();
+        writer.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        writer.write('[');
+        first.push(Boolean.TRUE);
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        first.pop();
+        writer.write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writer.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        writer.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writer.write(Boolean.toString(value));
+        return this;
+    }
+
+    /**
+     * writes a String, Number or Boolean value. Anything else is written as String.
+     */
+    public JsonWriter value(Object value) throws IOException {
+        if (value instanceof Long || value instanceof Integer) {
+            return value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            return value(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        return value(value == null ? null : value.toString());
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!first.isEmpty()) {
+            if (first.peek()) {
+                first.pop();
+                first.push(Boolean.FALSE);
+            } else {
+                writer.write(',');
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                writer.write("\\\"");
+                break;
+            case '\\':
+                writer.write("\\\\");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\t':
+                writer.write("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    writer.write(String.format("\\u%04x", (int) c));
+                } else {
+                    writer.write(c);
+                }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -1,11 +1,25 @@
 package ibm.maven.plugins.ace.utils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.JAXBIntrospector;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import ibm.maven.plugins.ace.generated.maven_pom.Model;
 
@@ -15,16 +29,133 @@ import ibm.maven.plugins.ace.generated.maven_pom.Model;
  */
 public class PomXmlUtils {
 
+    /**
+     * the coordinates read by {@link #readCoordinates(File, String...)} unless others are given
+     */
+    public static final List<String> COORDINATES = Arrays.asList("groupId", "artifactId", "version", "packaging");
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private static volatile JAXBContext context;
+
+    /**
+     * the coordinates of a pom, as far as they are defined in the pom itself (not inherited from the parent)
+     */
+    public static final class Coordinates {
+
+        private final Map<String, String> values;
+
+        Coordinates(Map<String, String> values) {
+            this.values = values;
+        }
+
+        public String getGroupId() {
+            return values.get("groupId");
+        }
+
+        public String getArtifactId() {
+            return values.get("artifactId");
+        }
+
+        public String getVersion() {
+            return values.get("version");
+        }
+
+        /**
+         * @return the packaging, null if it isn't defined (i.e. "jar")
+         */
+        public String getPackaging() {
+            return values.get("packaging");
+        }
+    }
+
     /**
      * @param pomFile
-     * @return
+     * @return the model of the pom
      * @throws JAXBException
      */
     public static Model unmarshallPomFile(File pomFile)
             throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(Model.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = getContext().createUnmarshaller();
         return (Model) JAXBIntrospector.getValue(unmarshaller.unmarshal(pomFile));
+    }
+
+    /**
+     * reads coordinates of a pom with a streaming parser instead of unmarshalling the whole model: only the direct
+     * children of the project element are looked at and the reading stops as soon as the requested ones are found.
+     *
+     * @param elements the coordinates to read, see {@link #COORDINATES}; all of them if none are given
+     * @return the coordinates, those not requested or not defined are null
+     * @throws IOException if the pom can't be read or isn't well-formed up to the requested coordinates
+     */
+    public static Coordinates readCoordinates(File pomFile, String... elements) throws IOException {
+        Set<String> missing = new HashSet<String>(elements.length > 0 ? Arrays.asList(elements) : COORDINATES);
+        Map<String, String> values = new HashMap<String, String>();
+        InputStream in = new BufferedInputStream(new FileInputStream(pomFile));
+        try {
+            XMLStreamReader xml;
+            synchronized (XML_INPUT_FACTORY) {
+                xml = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                int depth = 0;
+                while (!missing.isEmpty() && xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        if (depth == 2 && missing.remove(xml.getLocalName())) {
+                            // moves to the end element
+                            values.put(xml.getLocalName(), xml.getElementText().trim());
+                            depth--;
+                        } else if (depth == 2) {
+                            skipElement(xml);
+                            depth--;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Error reading " + pomFile, e);
+        } finally {
+            in.close();
+        }
+        return new Coordinates(values);
+    }
+
+    /**
+     * skips the content of the current element, e.g. the dependencies, up to its end element
+     */
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
 
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * @return the JAXB context of the maven model, created once: it's thread-safe, unlike its unmarshallers
+     */
+    private static JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(Model.class);
+        }
+        return context;
     }
 }
@@ -0,0 +1,42 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hands out free TCP ports for integration servers started by the build, e.g. for the HTTP listeners of test projects
+ * run at the same time. A port is free when it can be bound on the loopback interface; ports handed out once aren't
+ * handed out again by this JVM, as the integration server may not have bound them yet.
+ */
+public final class PortAllocator {
+
+    private static final Set<Integer> ALLOCATED = new HashSet<Integer>();
+
+    /**
+     * hide the default constructor
+     */
+    private PortAllocator() {
+        super();
+    }
+
+    /**
+     * @return a free port, which hasn't been handed out before
+     * @throws IOException if no port can be bound
+     */
+    public static synchronized int allocate() throws IOException {
+        while (true) {
+            ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            try {
+                int port = socket.getLocalPort();
+                if (ALLOCATED.add(port)) {
+                    return port;
+                }
+            } finally {
+                socket.close();
+            }
+        }
+    }
+}
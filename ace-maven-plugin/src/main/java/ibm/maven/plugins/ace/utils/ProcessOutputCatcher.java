@@ -4,41 +4,84 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.util.List;
 
+import ibm.maven.plugins.ace.jfr.OutputThroughputRecorder;
+
+/**
+ * Captures the output of a process in a {@link SpillableLineBuffer}, to be parsed once the process has finished.
+ */
 public class ProcessOutputCatcher extends Thread {
 
     private InputStream is;
-    private ArrayList<String> output;
+    private SpillableLineBuffer output;
+    private ToolOutputSink sink;
+    private volatile IOException error;
+
+    /**
+     * only written by this thread, volatile to be read by others
+     */
+    private volatile long lineCount;
+    private volatile long charCount;
+
+    public ProcessOutputCatcher(InputStream is, SpillableLineBuffer output) {
+        this(is, output, null);
+    }
 
-    public ProcessOutputCatcher(InputStream is, ArrayList<String> output) {
+    /**
+     * @param is the output of the process
+     * @param output the buffer the lines are added to
+     * @param sink optional sink the lines are passed to as well, e.g. for the log file, may be null
+     */
+    public ProcessOutputCatcher(InputStream is, SpillableLineBuffer output, ToolOutputSink sink) {
         this.is = is;
         this.output = output;
+        this.sink = sink;
     }
 
     @Override
     public void run() {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
         String line = null;
+        OutputThroughputRecorder throughput = new OutputThroughputRecorder(getName());
+        List<String> batch = ToolOutputSink.newBatch();
+        long batchChars = 0;
         try {
             while (true) {
                 line = bufferedReader.readLine();
                 if (line != null) {
                     output.add(line);
+                    lineCount++;
+                    charCount += line.length() + 1;
+                    throughput.line(line);
+                    if (sink != null) {
+                        batch.add(line);
+                        batchChars += line.length() + 1;
+                        if (ToolOutputSink.isFull(batch, batchChars) || !bufferedReader.ready()) {
+                            sink.accept(batch);
+                            batch = ToolOutputSink.newBatch();
+                            batchChars = 0;
+                        }
+                    }
                     line = null;
                 } else {
+                    throughput.flush();
                     Thread.sleep(500);
                 }
             }
         } catch (IOException ioe) {
-            // TODO handle this better
-            ioe.printStackTrace();
+            // the captured output is incomplete
+            error = ioe;
         } catch (InterruptedException ie) {
             // this is to be expected when the child process is finished
         } catch (Throwable t) {
             // TODO handle this better
             t.printStackTrace();
         } finally {
+            if (sink != null) {
+                sink.accept(batch);
+            }
+            throughput.flush();
             try {
                 bufferedReader.close();
             } catch (IOException e) {
@@ -46,4 +89,25 @@ public class ProcessOutputCatcher extends Thread {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the error reading the output or writing the buffer, null if the output is complete
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * @return the number of lines read so far
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the number of characters (including line ends) read so far
+     */
+    public long getCharCount() {
+        return charCount;
+    }
+}
@@ -4,30 +4,58 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
 
-import org.apache.maven.plugin.logging.Log;
+import ibm.maven.plugins.ace.jfr.OutputThroughputRecorder;
 
+/**
+ * Reads the output of a process and passes it to a {@link ToolOutputSink} in batches of lines. A batch is passed on
+ * when it's full or when no more output is available for the moment, so lines aren't held back.
+ */
 public class ProcessOutputLogger extends Thread {
 
     private InputStream is;
-    private Log log;
+    private ToolOutputSink sink;
 
-    public ProcessOutputLogger(InputStream is, Log log) {
+    /**
+     * only written by this thread, volatile to be read by others
+     */
+    private volatile long lineCount;
+    private volatile long charCount;
+
+    /**
+     * @param is the output of the process
+     * @param sink the sink every line is passed to, may be shared with other loggers of the process
+     */
+    public ProcessOutputLogger(InputStream is, ToolOutputSink sink) {
         this.is = is;
-        this.log = log;
+        this.sink = sink;
     }
 
     @Override
     public void run() {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
         String line = null;
+        OutputThroughputRecorder throughput = new OutputThroughputRecorder(getName());
+        List<String> batch = ToolOutputSink.newBatch();
+        long batchChars = 0;
         try {
             while (true) {
                 line = bufferedReader.readLine();
                 if (line != null) {
-                    log.info(line);
+                    batch.add(line);
+                    batchChars += line.length() + 1;
+                    lineCount++;
+                    charCount += line.length() + 1;
+                    throughput.line(line);
                     line = null;
+                    if (ToolOutputSink.isFull(batch, batchChars) || !bufferedReader.ready()) {
+                        sink.accept(batch);
+                        batch = ToolOutputSink.newBatch();
+                        batchChars = 0;
+                    }
                 } else {
+                    throughput.flush();
                     Thread.sleep(500);
                 }
             }
@@ -40,6 +68,8 @@ public class ProcessOutputLogger extends Thread {
             // TODO handle this better
             e.printStackTrace();
         } finally {
+            sink.accept(batch);
+            throughput.flush();
             try {
                 bufferedReader.close();
             } catch (IOException e) {
@@ -47,4 +77,18 @@ public class ProcessOutputLogger extends Thread {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the number of lines read so far
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the number of characters (including line ends) read so far
+     */
+    public long getCharCount() {
+        return charCount;
+    }
+}
@@ -0,0 +1,231 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * JVM wide limits for the number of concurrently running ACE processes, so that parallel builds (mvn -T) don't make the
+ * build agent swap. A toolkit (mqsicreatebar) needs up to 2 GB of memory, an IntegrationServer about 1 GB, the other
+ * commands are light.
+ *
+ * The number of processes per type can be set with the properties ace.maxToolkitProcesses, ace.maxRuntimeProcesses and
+ * ace.maxCliProcesses, -D on the command line or in the properties of the top level pom. They are read by the
+ * {@link BuildConfigurationLifecycleParticipant} when the build starts, which requires the plugin to be declared with
+ * &lt;extensions&gt;true&lt;/extensions&gt;. By default they are derived from the physical memory not used by the
+ * Maven JVM and the number of cores. Time spent waiting for a process slot is recorded in the
+ * {@link BuildTimings} (category "queue").
+ *
+ * Permits are reentrant per thread: a thread holding a permit of a type can start more processes of this type, e.g. the
+ * execute-test-project mojo holds a runtime permit for the whole test run, including the IntegrationServer.
+ */
+public final class ProcessScheduler {
+
+    private static final long MB = 1024L * 1024L;
+
+    /**
+     * the types of processes, each with its own limit
+     */
+    public enum ProcessType {
+
+        TOOLKIT("toolkit", "ace.maxToolkitProcesses", 2048), RUNTIME("runtime", "ace.maxRuntimeProcesses", 1024), CLI("cli",
+                "ace.maxCliProcesses", 0);
+
+        private final String label;
+        private final String property;
+        private final int memoryMb;
+
+        private ProcessType(String label, String property, int memoryMb) {
+            this.label = label;
+            this.property = property;
+            this.memoryMb = memoryMb;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the property setting the maximum number of processes of this type
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        /**
+         * @param command the name of the command, e.g. mqsicreatebar
+         * @return the type of the process running the command
+         */
+        public static ProcessType forCommand(String command) {
+            if ("mqsicreatebar".equals(command)) {
+                return TOOLKIT;
+            }
+            if ("IntegrationServer".equals(command)) {
+                return RUNTIME;
+            }
+            return CLI;
+        }
+    }
+
+    private static Map<ProcessType, Semaphore> semaphores;
+    private static Map<ProcessType, Integer> limits;
+
+    private static final ThreadLocal<int[]> HELD = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[ProcessType.values().length];
+        }
+    };
+
+    /**
+     * hide the default constructor
+     */
+    private ProcessScheduler() {
+        super();
+    }
+
+    /**
+     * A permit to run processes of a type, to be released in a finally block.
+     */
+    public static final class Permit {
+
+        private final ProcessType type;
+        private final Semaphore semaphore;
+        private boolean released;
+
+        Permit(ProcessType type, Semaphore semaphore) {
+            this.type = type;
+            this.semaphore = semaphore;
+        }
+
+        /**
+         * releases the permit. Further calls are ignored.
+         */
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            HELD.get()[type.ordinal()]--;
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * sets the limits, e.g. at the beginning of a build. Permits held at this time are released to the old limits.
+     *
+     * @param properties the user and system properties of the build, limits not set in them are derived from the
+     *            machine
+     */
+    public static synchronized void configure(Properties properties) {
+        Map<ProcessType, Integer> newLimits = new EnumMap<ProcessType, Integer>(ProcessType.class);
+        Map<ProcessType, Semaphore> newSemaphores = new EnumMap<ProcessType, Semaphore>(ProcessType.class);
+        for (ProcessType type : ProcessType.values()) {
+            int limit = getDefaultLimit(type);
+            String value = properties.getProperty(type.getProperty());
+            if (value != null && !value.trim().isEmpty()) {
+                try {
+                    limit = Math.max(1, Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value for " + type.getProperty() + ": " + value, e);
+                }
+            }
+            newLimits.put(type, limit);
+            newSemaphores.put(type, new Semaphore(limit, true));
+        }
+        limits = newLimits;
+        semaphores = newSemaphores;
+    }
+
+    /**
+     * @return the maximum number of concurrent processes of a type
+     */
+    public static int getLimit(ProcessType type) {
+        return getLimits().get(type);
+    }
+
+    private static synchronized Map<ProcessType, Integer> getLimits() {
+        if (limits == null) {
+            configure(System.getProperties());
+        }
+        return limits;
+    }
+
+    private static synchronized Semaphore getSemaphore(ProcessType type) {
+        if (semaphores == null) {
+            configure(System.getProperties());
+        }
+        return semaphores.get(type);
+    }
+
+    /**
+     * waits until a process of the given type may be started
+     *
+     * @param type the type of the process
+     * @param name the name of the command, used in the log and the build timings
+     * @param log used to report that the process has to wait
+     * @return the permit, to be released when the process has finished
+     * @throws MojoFailureException if the thread is interrupted while waiting
+     */
+    public static Permit acquire(ProcessType type, String name, Log log) throws MojoFailureException {
+        int[] held = HELD.get();
+        if (held[type.ordinal()] > 0) {
+            held[type.ordinal()]++;
+            return new Permit(type, null);
+        }
+        Semaphore semaphore = getSemaphore(type);
+        if (!semaphore.tryAcquire()) {
+            log.info("Waiting for a free " + type.getLabel() + " process slot to run " + name + " (at most " + getLimit(type)
+                    + " concurrently, see " + type.getProperty() + ")");
+            BuildTimings.Timer timer = BuildTimings.startQueue(type.getLabel() + ": " + name);
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoFailureException("Interrupted while waiting to run " + name, e);
+            } finally {
+                timer.stop();
+            }
+        }
+        held[type.ordinal()]++;
+        return new Permit(type, semaphore);
+    }
+
+    /**
+     * @return the default limit for a type: as many processes as fit into the physical memory not used by the Maven
+     *         JVM, at most one per core
+     */
+    static int getDefaultLimit(ProcessType type) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (type.memoryMb == 0) {
+            return Math.max(2, cores);
+        }
+        long physicalMemory = getPhysicalMemory();
+        if (physicalMemory <= 0) {
+            // unknown, be careful
+            return Math.max(1, type == ProcessType.TOOLKIT ? cores / 4 : cores / 2);
+        }
+        long freeMb = (physicalMemory - Runtime.getRuntime().maxMemory()) / MB;
+        return (int) Math.max(1, Math.min(cores, freeMb / type.memoryMb));
+    }
+
+    private static long getPhysicalMemory() {
+        try {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+            }
+        } catch (Throwable t) {
+            // not a HotSpot based JVM
+        }
+        return -1;
+    }
+}
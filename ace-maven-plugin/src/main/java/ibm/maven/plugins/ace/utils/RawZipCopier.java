@@ -0,0 +1,384 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Copies entries of a zip file into new zip files without inflating and deflating them: the local header, the
+ * compressed data and the data descriptor of every entry are copied as they are, followed by a new central directory
+ * with the new offsets of the entries. The central directory of the source is read once, copies can be written by
+ * several threads at the same time. New entries can be added with a {@link Writer}.
+ *
+ * Zip64 archives (more than 65535 entries or 4 GB) aren't supported, a ZipException is thrown for them.
+ */
+final class RawZipCopier {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int VERSION = 20;
+    private static final long MAX_UNSIGNED_INT = 0xffffffffL;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File zipFile;
+    private final Map<String, Entry> entries;
+
+    /**
+     * reads the central directory of a zip file
+     *
+     * @throws ZipException if the file isn't a zip file or a zip64 archive
+     */
+    RawZipCopier(File zipFile) throws IOException {
+        this.zipFile = zipFile;
+        RandomAccessFile in = new RandomAccessFile(zipFile, "r");
+        try {
+            entries = Collections.unmodifiableMap(readCentralDirectory(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    File getFile() {
+        return zipFile;
+    }
+
+    /**
+     * @return the names of the entries, in the order of the zip file
+     */
+    List<String> getNames() {
+        return new ArrayList<String>(entries.keySet());
+    }
+
+    /**
+     * @return the CRC-32 of the uncompressed content of an entry
+     */
+    long getCrc(String name) {
+        return getUnsignedInt(ByteBuffer.wrap(getEntry(name).header).order(ByteOrder.LITTLE_ENDIAN), 16);
+    }
+
+    /**
+     * @return the modification time of an entry in MS-DOS format
+     */
+    int getDosTime(String name) {
+        return ByteBuffer.wrap(getEntry(name).header).order(ByteOrder.LITTLE_ENDIAN).getInt(12);
+    }
+
+    private Entry getEntry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException(name + " not found in " + zipFile);
+        }
+        return entry;
+    }
+
+    /**
+     * writes a zip file with the given entries, in the order of the source
+     *
+     * @return the SHA-256 of the written zip file, in hex
+     */
+    String copy(File targetFile, Collection<String> names) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        RandomAccessFile in = new RandomAccessFile(zipFile, "r");
+        try {
+            Writer writer = new Writer(new DigestOutputStream(new FileOutputStream(targetFile), digest));
+            try {
+                for (String name : entries.keySet()) {
+                    if (names.contains(name)) {
+                        writer.copy(this, in, name);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return the length of the local header, the compressed data and the data descriptor of an entry
+     */
+    private long getRawLength(RandomAccessFile in, Entry entry) throws IOException {
+        ByteBuffer header = read(in, entry.offset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + entry.name + " in " + zipFile);
+        }
+        long length = LOCAL_HEADER_SIZE + getUnsignedShort(header, 26) + getUnsignedShort(header, 28) + entry.compressedSize;
+        if ((entry.flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            // the signature of the data descriptor is optional
+            boolean signature = read(in, entry.offset + length, 4).getInt(0) == DATA_DESCRIPTOR_SIGNATURE;
+            length += signature ? 16 : 12;
+        }
+        return length;
+    }
+
+    private Map<String, Entry> readCentralDirectory(RandomAccessFile in) throws IOException {
+        long fileLength = in.length();
+        int tailLength = (int) Math.min(fileLength, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(in, fileLength - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE && i + END_SIZE + getUnsignedShort(tail, i + 20) <= tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("Not a zip file: " + zipFile);
+        }
+        int total = getUnsignedShort(tail, end + 10);
+        long size = getUnsignedInt(tail, end + 12);
+        long offset = getUnsignedInt(tail, end + 16);
+        if (total == 0xffff || size == MAX_UNSIGNED_INT || offset == MAX_UNSIGNED_INT) {
+            throw new ZipException("Zip64 is not supported: " + zipFile);
+        }
+        if (getUnsignedShort(tail, end + 4) != 0 || getUnsignedShort(tail, end + 6) != 0) {
+            throw new ZipException("Multi-volume zip files are not supported: " + zipFile);
+        }
+
+        ByteBuffer directory = read(in, offset, (int) size);
+        Map<String, Entry> result = new LinkedHashMap<String, Entry>();
+        int position = 0;
+        for (int i = 0; i < total; i++) {
+            if (position + CENTRAL_HEADER_SIZE > size || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory in " + zipFile);
+            }
+            int nameLength = getUnsignedShort(directory, position + 28);
+            int headerLength = CENTRAL_HEADER_SIZE + nameLength + getUnsignedShort(directory, position + 30)
+                    + getUnsignedShort(directory, position + 32);
+            long compressedSize = getUnsignedInt(directory, position + 20);
+            long entryOffset = getUnsignedInt(directory, position + 42);
+            if (compressedSize == MAX_UNSIGNED_INT || getUnsignedInt(directory, position + 24) == MAX_UNSIGNED_INT
+                    || entryOffset == MAX_UNSIGNED_INT) {
+                throw new ZipException("Zip64 is not supported: " + zipFile);
+            }
+            byte[] header = new byte[headerLength];
+            directory.position(position);
+            directory.get(header);
+            String name = new String(header, CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            result.put(name, new Entry(name, getUnsignedShort(directory, position + 8), compressedSize, entryOffset, header));
+            position += headerLength;
+        }
+        return result;
+    }
+
+    private static ByteBuffer read(RandomAccessFile in, long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.seek(offset);
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int getUnsignedShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xffff;
+    }
+
+    private static long getUnsignedInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & MAX_UNSIGNED_INT;
+    }
+
+    /**
+     * @return a time in MS-DOS format, as stored in zip files
+     */
+    static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = Math.max(calendar.get(Calendar.YEAR), 1980);
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * an entry of the central directory
+     */
+    private static final class Entry {
+
+        private final String name;
+        private final int flags;
+        private final long compressedSize;
+        private final long offset;
+        /** the header in the central directory, including the name, extra data and comment */
+        private final byte[] header;
+
+        Entry(String name, int flags, long compressedSize, long offset, byte[] header) {
+            this.name = name;
+            this.flags = flags;
+            this.compressedSize = compressedSize;
+            this.offset = offset;
+            this.header = header;
+        }
+    }
+
+    /**
+     * writes a zip file: entries copied raw from other zip files and new entries. The central directory is written when
+     * the writer is closed.
+     */
+    static final class Writer implements Closeable {
+
+        private final OutputStream out;
+        private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long position;
+        private int count;
+
+        Writer(OutputStream out) {
+            this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+
+        /**
+         * copies an entry of a zip file as it is
+         *
+         * @param in the zip file of the source, opened for reading
+         */
+        void copy(RawZipCopier source, RandomAccessFile in, String name) throws IOException {
+            Entry entry = source.getEntry(name);
+            long length = source.getRawLength(in, entry);
+            checkOffset();
+            in.seek(entry.offset);
+            for (long remaining = length; remaining > 0;) {
+                int n = (int) Math.min(remaining, buffer.length);
+                in.readFully(buffer, 0, n);
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+            byte[] header = entry.header.clone();
+            ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).putInt(42, (int) position);
+            centralDirectory.write(header);
+            position += length;
+            count++;
+        }
+
+        /**
+         * adds a deflated entry, e.g. a deployment descriptor
+         */
+        void addDeflated(String name, int dosTime, byte[] content) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } finally {
+                deflater.end();
+            }
+            writeLocalHeader(name, METHOD_DEFLATED, dosTime, crc.getValue(), compressed.size(), content.length);
+            compressed.writeTo(out);
+            position += compressed.size();
+        }
+
+        /**
+         * adds a stored entry, e.g. an archive whose entries are compressed already
+         *
+         * @param crc the CRC-32 of the content
+         */
+        void addStored(String name, int dosTime, File content, long crc) throws IOException {
+            long size = content.length();
+            writeLocalHeader(name, METHOD_STORED, dosTime, crc, size, size);
+            InputStream in = new FileInputStream(content);
+            try {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            position += size;
+        }
+
+        private void writeLocalHeader(String name, int method, int dosTime, long crc, long compressedSize, long size)
+                throws IOException {
+            checkOffset();
+            if (compressedSize >= MAX_UNSIGNED_INT || size >= MAX_UNSIGNED_INT) {
+                throw new ZipException("Zip64 is not supported, " + name + " is too large");
+            }
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            local.putInt(LOCAL_HEADER_SIGNATURE).putShort((short) VERSION).putShort((short) FLAG_UTF8).putShort((short) method)
+                    .putInt(dosTime).putInt((int) crc).putInt((int) compressedSize).putInt((int) size)
+                    .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes);
+            out.write(local.array());
+
+            ByteBuffer central = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            central.putInt(CENTRAL_HEADER_SIGNATURE).putShort((short) VERSION).putShort((short) VERSION).putShort((short) FLAG_UTF8)
+                    .putShort((short) method).putInt(dosTime).putInt((int) crc).putInt((int) compressedSize).putInt((int) size)
+                    .putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) 0).putInt(0).putInt((int) position).put(nameBytes);
+            centralDirectory.write(central.array());
+
+            position += local.capacity();
+            count++;
+        }
+
+        private void checkOffset() throws ZipException {
+            if (position > MAX_UNSIGNED_INT) {
+                throw new ZipException("Zip64 is not supported, the zip file is too large");
+            }
+        }
+
+        /**
+         * writes the central directory and closes the stream
+         */
+        public void close() throws IOException {
+            try {
+                if (count > 0xffff || position > MAX_UNSIGNED_INT) {
+                    throw new ZipException("Zip64 is not supported, the zip file is too large");
+                }
+                centralDirectory.writeTo(out);
+                ByteBuffer end = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                end.putInt(END_SIGNATURE).putShort((short) 0).putShort((short) 0).putShort((short) count).putShort((short) count)
+                        .putInt(centralDirectory.size()).putInt((int) position).putShort((short) 0);
+                out.write(end.array());
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lines of output kept in memory up to a limit and spilled to a temporary file beyond it, so that capturing the output
+ * of a command, e.g. mqsireadbar for a bar with hundreds of applications, doesn't need heap in proportion to the
+ * output. Lines are added by one thread and iterated lazily once the output is complete; iterators over a spilled
+ * buffer read the file. {@link #close()} deletes the file.
+ */
+public final class SpillableLineBuffer implements Iterable<String>, Closeable {
+
+    /**
+     * the number of characters kept in memory by default
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 4 * 1024 * 1024;
+
+    private final long memoryLimit;
+    private final String prefix;
+
+    private List<String> lines = new ArrayList<String>();
+    private long memoryChars;
+    private long lineCount;
+
+    private File file;
+    private BufferedWriter writer;
+    private final List<Closeable> readers = new ArrayList<Closeable>();
+
+    /**
+     * @param prefix the prefix of the temporary file, e.g. the name of the command
+     */
+    public SpillableLineBuffer(String prefix) {
+        this(prefix, DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * @param prefix the prefix of the temporary file, e.g. the name of the command
+     * @param memoryLimit the number of characters kept in memory before the lines are spilled to a file
+     */
+    public SpillableLineBuffer(String prefix, long memoryLimit) {
+        this.prefix = prefix;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * adds a line, spilling the lines to the file if the memory limit is exceeded
+     *
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void add(String line) throws IOException {
+        lineCount++;
+        if (writer == null) {
+            lines.add(line);
+            memoryChars += line.length() + 1;
+            if (memoryChars > memoryLimit) {
+                spill();
+            }
+        } else {
+            writer.write(line);
+            writer.newLine();
+        }
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile(prefix + "-", ".txt");
+        file.deleteOnExit();
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        for (String line : lines) {
+            writer.write(line);
+            writer.newLine();
+        }
+        lines = null;
+        memoryChars = 0;
+    }
+
+    /**
+     * @return the number of lines added
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return true if the lines were spilled to a file
+     */
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return the file the lines were spilled to, null if they are in memory
+     */
+    synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * @return an iterator over the lines added so far. Lines added while iterating may be missed.
+     * @throws UncheckedIOException if the spilled lines can't be read
+     */
+    public synchronized Iterator<String> iterator() {
+        if (file == null) {
+            return Collections.unmodifiableList(new ArrayList<String>(lines)).iterator();
+        }
+        try {
+            writer.flush();
+            BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+            readers.add(reader);
+            return new LineIterator(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+
+    /**
+     * closes the open iterators and deletes the file
+     */
+    public synchronized void close() {
+        closeQuietly(writer);
+        for (Closeable reader : readers) {
+            closeQuietly(reader);
+        }
+        readers.clear();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore this one
+            }
+        }
+    }
+
+    private static final class LineIterator implements Iterator<String> {
+
+        private final BufferedReader reader;
+        private String next;
+
+        LineIterator(BufferedReader reader) {
+            this.reader = reader;
+            advance();
+        }
+
+        private void advance() {
+            try {
+                next = reader.readLine();
+                if (next == null) {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            advance();
+            return line;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Parses the output of an integration server running a test project while it is written, e.g.
+ *
+ * <pre>
+ * [ RUN      ] com.example.sum_api_test.Sum_API_Test_Flow0.test0
+ * [       OK ] com.example.sum_api_test.Sum_API_Test_Flow0.test0 (12 ms)
+ * [ RUN      ] com.example.sum_api_test.Sum_API_Test_Flow0.test1
+ * com/example/sum_api_test/Sum_API_Test_Flow0.java:1: Failure
+ * Expected: &lt;true&gt; but was: &lt;false&gt;
+ * [  FAILED  ] com.example.sum_api_test.Sum_API_Test_Flow0.test1 (3 ms)
+ * </pre>
+ *
+ * and writes the results as JUnit XML reports like surefire does, one per test class, named by the fully qualified
+ * class names the tests are printed with. Only the results and the output
+ * of the running test (up to {@link #MAX_MESSAGE_CHARS} characters) are kept.
+ */
+public final class TestOutputParser implements ToolOutputSink.Listener {
+
+    static final int MAX_MESSAGE_CHARS = 16 * 1024;
+
+    private static final Pattern RUN = Pattern.compile("\\[ RUN      \\] (\\S+)");
+    private static final Pattern RESULT = Pattern.compile("\\[ {0,7}(OK|FAILED|SKIPPED) *\\] (\\S+) \\((\\d+) ms\\)");
+
+    /**
+     * the result of a test
+     */
+    public static final class TestCase {
+
+        public enum Status {
+            PASSED, FAILED, SKIPPED, ERROR
+        }
+
+        private final String className;
+        private final String name;
+        private final long durationMillis;
+        private final Status status;
+        private final String message;
+
+        public TestCase(String className, String name, long durationMillis, Status status, String message) {
+            this.className = className;
+            this.name = name;
+            this.durationMillis = durationMillis;
+            this.status = status;
+            this.message = message;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the output of a failed test, null for other tests
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return className + "." + name;
+        }
+    }
+
+    private final List<TestCase> testCases = new ArrayList<TestCase>();
+
+    private String running;
+    private long runningSince;
+    private final StringBuilder output = new StringBuilder();
+
+    public synchronized void line(String line) {
+        Matcher result = RESULT.matcher(line);
+        if (result.find()) {
+            if (result.group(2).equals(running)) {
+                TestCase.Status status = "OK".equals(result.group(1)) ? TestCase.Status.PASSED
+                        : "FAILED".equals(result.group(1)) ? TestCase.Status.FAILED : TestCase.Status.SKIPPED;
+                add(running, Long.parseLong(result.group(3)), status);
+            }
+            // else the list of failed tests at the end of the run
+            return;
+        }
+        Matcher run = RUN.matcher(line);
+        if (run.find()) {
+            if (running != null) {
+                add(running, System.currentTimeMillis() - runningSince, TestCase.Status.ERROR);
+            }
+            running = run.group(1);
+            runningSince = System.currentTimeMillis();
+            output.setLength(0);
+        } else if (running != null && output.length() < MAX_MESSAGE_CHARS) {
+            output.append(line, 0, Math.min(line.length(), MAX_MESSAGE_CHARS - output.length())).append('\n');
+        }
+    }
+
+    /**
+     * records a test still running as error, e.g. when the integration server stopped
+     */
+    public synchronized void finish() {
+        if (running != null) {
+            output.append("The test didn't finish\n");
+            add(running, System.currentTimeMillis() - runningSince, TestCase.Status.ERROR);
+        }
+    }
+
+    private void add(String test, long durationMillis, TestCase.Status status) {
+        int separator = test.lastIndexOf('.');
+        String className = separator > 0 ? test.substring(0, separator) : test;
+        String name = separator > 0 ? test.substring(separator + 1) : test;
+        String message = status == TestCase.Status.FAILED || status == TestCase.Status.ERROR ? output.toString().trim() : null;
+        testCases.add(new TestCase(className, name, durationMillis, status, message));
+        running = null;
+        output.setLength(0);
+    }
+
+    /**
+     * @return the tests in the order they ran
+     */
+    public synchronized List<TestCase> getTestCases() {
+        return Collections.unmodifiableList(new ArrayList<TestCase>(testCases));
+    }
+
+    /**
+     * @return the tests which failed or didn't finish
+     */
+    public synchronized List<TestCase> getFailures() {
+        List<TestCase> failures = new ArrayList<TestCase>();
+        for (TestCase testCase : testCases) {
+            if (testCase.getStatus() == TestCase.Status.FAILED || testCase.getStatus() == TestCase.Status.ERROR) {
+                failures.add(testCase);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the slowest tests, the slowest first
+     */
+    public static List<TestCase> getSlowest(List<TestCase> testCases, int count) {
+        List<TestCase> sorted = new ArrayList<TestCase>(testCases);
+        Collections.sort(sorted, new Comparator<TestCase>() {
+            public int compare(TestCase a, TestCase b) {
+                return Long.compare(b.getDurationMillis(), a.getDurationMillis());
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    /**
+     * writes a JUnit XML report (TEST-&lt;class&gt;.xml) per test class, in the format of surefire
+     *
+     * @return the written reports
+     */
+    public List<File> writeReports(File directory) throws IOException {
+        Map<String, List<TestCase>> classes = new LinkedHashMap<String, List<TestCase>>();
+        for (TestCase testCase : getTestCases()) {
+            List<TestCase> tests = classes.get(testCase.getClassName());
+            if (tests == null) {
+                tests = new ArrayList<TestCase>();
+                classes.put(testCase.getClassName(), tests);
+            }
+            tests.add(testCase);
+        }
+        directory.mkdirs();
+        List<File> reports = new ArrayList<File>();
+        for (Map.Entry<String, List<TestCase>> testClass : classes.entrySet()) {
+            File report = new File(directory, "TEST-" + testClass.getKey() + ".xml");
+            writeReport(report, testClass.getKey(), testClass.getValue());
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    private static void writeReport(File file, String className, List<TestCase> testCases) throws IOException {
+        int failures = 0;
+        int errors = 0;
+        int skipped = 0;
+        long durationMillis = 0;
+        for (TestCase testCase : testCases) {
+            failures += testCase.getStatus() == TestCase.Status.FAILED ? 1 : 0;
+            errors += testCase.getStatus() == TestCase.Status.ERROR ? 1 : 0;
+            skipped += testCase.getStatus() == TestCase.Status.SKIPPED ? 1 : 0;
+            durationMillis += testCase.getDurationMillis();
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("testsuite");
+            xml.writeAttribute("name", className);
+            xml.writeAttribute("tests", String.valueOf(testCases.size()));
+            xml.writeAttribute("failures", String.valueOf(failures));
+            xml.writeAttribute("errors", String.valueOf(errors));
+            xml.writeAttribute("skipped", String.valueOf(skipped));
+            xml.writeAttribute("time", seconds(durationMillis));
+            for (TestCase testCase : testCases) {
+                xml.writeCharacters("\n  ");
+                xml.writeStartElement("testcase");
+                xml.writeAttribute("name", testCase.getName());
+                xml.writeAttribute("classname", className);
+                xml.writeAttribute("time", seconds(testCase.getDurationMillis()));
+                if (testCase.getStatus() == TestCase.Status.PASSED) {
+                    xml.writeEndElement();
+                    continue;
+                }
+                if (testCase.getStatus() == TestCase.Status.SKIPPED) {
+                    xml.writeEmptyElement("skipped");
+                } else {
+                    String message = testCase.getMessage();
+                    xml.writeStartElement(testCase.getStatus() == TestCase.Status.FAILED ? "failure" : "error");
+                    xml.writeAttribute("message", message.isEmpty() ? testCase.getStatus().name().toLowerCase(Locale.ROOT)
+                            : message.split("\n")[0]);
+                    xml.writeCharacters(message);
+                    xml.writeEndElement();
+                }
+                xml.writeEndElement();
+            }
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write " + file, e);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+}
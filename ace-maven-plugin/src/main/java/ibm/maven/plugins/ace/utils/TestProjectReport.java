@@ -0,0 +1,238 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The results of the test projects run by execute-test-project, logged as a summary and written as JSON report.
+ */
+public final class TestProjectReport {
+
+    /**
+     * the result of one test project
+     */
+    public static final class Result {
+
+        private final String project;
+        private final long durationMillis;
+        private final String failure;
+        private final int httpPort;
+        private final File logDirectory;
+        private final List<TestOutputParser.TestCase> testCases;
+
+        /**
+         * @param failure the reason the test project failed, null if it passed
+         * @param httpPort the HTTP port of the server, 0 for the one of its server.conf.yaml
+         * @param testCases the results of the tests of the project
+         */
+        public Result(String project, long durationMillis, String failure, int httpPort, File logDirectory,
+                List<TestOutputParser.TestCase> testCases) {
+            this.project = project;
+            this.durationMillis = durationMillis;
+            this.failure = failure;
+            this.httpPort = httpPort;
+            this.logDirectory = logDirectory;
+            this.testCases = testCases;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isPassed() {
+            return failure == null;
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+
+        public int getHttpPort() {
+            return httpPort;
+        }
+
+        public File getLogDirectory() {
+            return logDirectory;
+        }
+
+        public List<TestOutputParser.TestCase> getTestCases() {
+            return testCases;
+        }
+
+        /**
+         * @return the number of tests which failed or didn't finish
+         */
+        public int getFailedTests() {
+            int failed = 0;
+            for (TestOutputParser.TestCase testCase : testCases) {
+                if (testCase.getStatus() == TestOutputParser.TestCase.Status.FAILED
+                        || testCase.getStatus() == TestOutputParser.TestCase.Status.ERROR) {
+                    failed++;
+                }
+            }
+            return failed;
+        }
+    }
+
+    private final int slowestTests;
+
+    private final List<Result> results = new ArrayList<Result>();
+
+    /**
+     * @param slowestTests the number of slowest tests listed
+     */
+    public TestProjectReport(int slowestTests) {
+        this.slowestTests = slowestTests;
+    }
+
+    /**
+     * merges the results of the shards of a test project (see {@link TestShards}) into one result: the duration is the
+     * one of the longest shard, the tests are the ones of all shards, the HTTP port is the one of the first shard
+     *
+     * @param logDirectory the log directory of the project, containing the ones of the shards
+     */
+    public static Result merge(String project, List<Result> shards, File logDirectory) {
+        long durationMillis = 0;
+        List<TestOutputParser.TestCase> testCases = new ArrayList<TestOutputParser.TestCase>();
+        int failedTests = 0;
+        List<String> failures = new ArrayList<String>();
+        for (int i = 0; i < shards.size(); i++) {
+            Result shard = shards.get(i);
+            durationMillis = Math.max(durationMillis, shard.getDurationMillis());
+            testCases.addAll(shard.getTestCases());
+            failedTests += shard.getFailedTests();
+            if (!shard.isPassed()) {
+                failures.add("shard " + i + ": " + shard.getFailure());
+            }
+        }
+        String failure = null;
+        if (failedTests > 0) {
+            failure = failedTests + " of " + testCases.size() + " tests failed";
+        } else if (!failures.isEmpty()) {
+            failure = failures.toString();
+        }
+        return new Result(project, durationMillis, failure, shards.get(0).getHttpPort(), logDirectory, testCases);
+    }
+
+    public synchronized void add(Result result) {
+        results.add(result);
+    }
+
+    /**
+     * @return the results in the order the test projects finished
+     */
+    public synchronized List<Result> getResults() {
+        return Collections.unmodifiableList(new ArrayList<Result>(results));
+    }
+
+    /**
+     * @return the results of the failed test projects
+     */
+    public synchronized List<Result> getFailures() {
+        List<Result> failures = new ArrayList<Result>();
+        for (Result result : results) {
+            if (!result.isPassed()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the tests of all test projects
+     */
+    public List<TestOutputParser.TestCase> getTestCases() {
+        List<TestOutputParser.TestCase> testCases = new ArrayList<TestOutputParser.TestCase>();
+        for (Result result : getResults()) {
+            testCases.addAll(result.getTestCases());
+        }
+        return testCases;
+    }
+
+    /**
+     * logs one line per test project and the slowest tests, failures as errors
+     */
+    public void log(Log log) {
+        List<Result> results = getResults();
+        log.info("Test projects: " + results.size() + " run, " + getFailures().size() + " failed");
+        for (Result result : results) {
+            String line = String.format("  %-40s %-6s %8d ms %5d tests %5d failed", result.getProject(), result.isPassed() ? "PASSED" : "FAILED",
+                    result.getDurationMillis(), result.getTestCases().size(), result.getFailedTests());
+            if (result.isPassed()) {
+                log.info(line);
+            } else {
+                log.error(line + "  " + result.getFailure() + (result.getLogDirectory() != null ? " (see " + result.getLogDirectory() + ")" : ""));
+            }
+        }
+        List<TestOutputParser.TestCase> slowest = TestOutputParser.getSlowest(getTestCases(), slowestTests);
+        if (!slowest.isEmpty()) {
+            log.info("Slowest tests:");
+            for (TestOutputParser.TestCase testCase : slowest) {
+                log.info(String.format("  %8d ms  %s", testCase.getDurationMillis(), testCase));
+            }
+        }
+    }
+
+    /**
+     * writes the results as JSON
+     */
+    public void writeJson(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        List<Result> results = getResults();
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8);
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("projects").value(results.size());
+            json.name("failed").value(getFailures().size());
+            json.name("results").beginArray();
+            for (Result result : results) {
+                json.beginObject();
+                json.name("project").value(result.getProject());
+                json.name("passed").value(result.isPassed());
+                json.name("durationMillis").value(result.getDurationMillis());
+                if (result.getHttpPort() > 0) {
+                    json.name("httpPort").value(result.getHttpPort());
+                }
+                json.name("tests").value(result.getTestCases().size());
+                json.name("failedTests").value(result.getFailedTests());
+                if (result.getFailure() != null) {
+                    json.name("failure").value(result.getFailure());
+                }
+                if (result.getLogDirectory() != null) {
+                    json.name("logDirectory").value(result.getLogDirectory().getPath());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.name("slowestTests").beginArray();
+            for (TestOutputParser.TestCase testCase : TestOutputParser.getSlowest(getTestCases(), slowestTests)) {
+                json.beginObject();
+                json.name("test").value(testCase.toString());
+                json.name("durationMillis").value(testCase.getDurationMillis());
+                json.name("status").value(testCase.getStatus().name().toLowerCase());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Splits the test classes of a test project into shards, each run by an integration server of its own. The shards are
+ * balanced by the durations of the test classes recorded in the JUnit XML reports of the previous run (see
+ * {@link TestOutputParser#writeReports(File)}): the longest classes are assigned first, each to the shard with the
+ * shortest total so far. Classes without a recorded duration count as the average of the recorded ones. The classes
+ * are named by their fully qualified names, like the integration server prints them.
+ */
+public final class TestShards {
+
+    private static final Pattern TEST_ANNOTATION = Pattern.compile("@(org\\.junit\\.jupiter\\.api\\.)?Test\\b");
+    private static final Pattern CLASS = Pattern.compile("\\bpublic\\s+(?:final\\s+)?class\\s+(\\w+)");
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    /**
+     * hide the default constructor
+     */
+    private TestShards() {
+        super();
+    }
+
+    /**
+     * @param projectDirectory the test project in the workspace
+     * @return the fully qualified names of the classes with tests, found in the java sources of the project, sorted
+     */
+    public static List<String> findTestClasses(File projectDirectory) throws IOException {
+        final TreeSet<String> classes = new TreeSet<String>();
+        if (!projectDirectory.isDirectory()) {
+            return new ArrayList<String>();
+        }
+        Files.walkFileTree(projectDirectory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // the compiled classes and the settings of the toolkit
+                String name = dir.getFileName().toString();
+                return name.startsWith(".") || name.equals("bin") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.getFileName().toString().endsWith(".java")) {
+                    String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    Matcher testClass = CLASS.matcher(source);
+                    if (TEST_ANNOTATION.matcher(source).find() && testClass.find()) {
+                        Matcher packageName = PACKAGE.matcher(source);
+                        classes.add(packageName.find() ? packageName.group(1) + "." + testClass.group(1) : testClass.group(1));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new ArrayList<String>(classes);
+    }
+
+    /**
+     * @param reportsDirectory the directory of the JUnit XML reports of the previous run
+     * @param testClasses the fully qualified names of the test classes, see {@link #findTestClasses(File)}
+     * @return the recorded durations in milliseconds of the test classes, by class name; missing and unreadable reports
+     *         are ignored
+     */
+    public static Map<String, Long> readDurations(File reportsDirectory, List<String> testClasses) {
+        Map<String, Long> durations = new HashMap<String, Long>();
+        if (reportsDirectory == null || !reportsDirectory.isDirectory()) {
+            return durations;
+        }
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        for (String testClass : testClasses) {
+            File report = new File(reportsDirectory, "TEST-" + testClass + ".xml");
+            if (!report.isFile()) {
+                continue;
+            }
+            try {
+                Long duration = readDuration(factory, report);
+                if (duration != null) {
+                    durations.put(testClass, duration);
+                }
+            } catch (IOException e) {
+                // balanced without it
+            } catch (XMLStreamException e) {
+                // balanced without it
+            } catch (NumberFormatException e) {
+                // balanced without it
+            }
+        }
+        return durations;
+    }
+
+    private static Long readDuration(XMLInputFactory factory, File report) throws IOException, XMLStreamException {
+        InputStream in = new BufferedInputStream(new FileInputStream(report));
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+                        String time = "testsuite".equals(xml.getLocalName()) ? xml.getAttributeValue(null, "time") : null;
+                        return time != null ? Long.valueOf(Math.round(Double.parseDouble(time) * 1000)) : null;
+                    }
+                }
+                return null;
+            } finally {
+                xml.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * splits the test classes into at most the given number of shards, none of them empty
+     *
+     * @param durations the recorded durations of the test classes in milliseconds, see
+     *            {@link #readDurations(File, List)}
+     * @return the classes of each shard, in the order of the given classes
+     */
+    public static List<List<String>> split(List<String> testClasses, final Map<String, Long> durations, int shards) {
+        long recorded = 0;
+        int known = 0;
+        for (String testClass : testClasses) {
+            if (durations.containsKey(testClass)) {
+                recorded += durations.get(testClass);
+                known++;
+            }
+        }
+        final long unknown = known > 0 ? Math.max(1, recorded / known) : 1;
+
+        List<String> longestFirst = new ArrayList<String>(testClasses);
+        Collections.sort(longestFirst, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return Long.compare(getDuration(b), getDuration(a));
+            }
+
+            private long getDuration(String testClass) {
+                return durations.containsKey(testClass) ? durations.get(testClass) : unknown;
+            }
+        });
+
+        int count = Math.max(1, Math.min(shards, testClasses.size()));
+        long[] totals = new long[count];
+        List<List<String>> assigned = new ArrayList<List<String>>();
+        for (int i = 0; i < count; i++) {
+            assigned.add(new ArrayList<String>());
+        }
+        for (String testClass : longestFirst) {
+            int shortest = 0;
+            for (int i = 1; i < count; i++) {
+                if (totals[i] < totals[shortest]) {
+                    shortest = i;
+                }
+            }
+            assigned.get(shortest).add(testClass);
+            totals[shortest] += durations.containsKey(testClass) ? durations.get(testClass) : unknown;
+        }
+
+        List<List<String>> result = new ArrayList<List<String>>();
+        for (List<String> shard : assigned) {
+            if (!shard.isEmpty()) {
+                List<String> ordered = new ArrayList<String>(testClasses);
+                ordered.retainAll(shard);
+                result.add(ordered);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,345 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+import ibm.maven.plugins.ace.utils.BipMessageClassifier.Severity;
+
+/**
+ * Receives the output of an ace tool in batches of lines and processes it in a thread of its own, so that reading the
+ * output isn't slowed down by the console: every line is written to the log file of the command, only BIP messages of
+ * the configured severity (warnings and errors by default) are logged, plus a summary of the output every
+ * {@link #SUMMARY_INTERVAL_MILLIS} ms and when the command has finished. With -X (debug) all lines are logged.
+ *
+ * The console severity can be set with the property ace.toolOutputLevel (ALL, INFO, WARNING or ERROR), ALL logs every
+ * line like before. At most {@link #QUEUE_BATCHES} batches are queued, readers wait when the queue is full, so the
+ * memory used doesn't depend on the amount of output.
+ *
+ * A line the classifier, the listener or the log fails on is skipped, the first failure is logged when the sink is
+ * closed. Should the writer thread end anyway, the lines are discarded instead of waiting for it forever.
+ */
+public final class ToolOutputSink implements Closeable {
+
+    /**
+     * receives every line of the output in the thread of the sink, e.g. to parse it while the command runs
+     */
+    public interface Listener {
+
+        void line(String line);
+    }
+
+    public static final String LEVEL_PROPERTY = "ace.toolOutputLevel";
+
+    static final int BATCH_LINES = 256;
+    static final int BATCH_CHARS = 64 * 1024;
+    static final int QUEUE_BATCHES = 16;
+    static final long SUMMARY_INTERVAL_MILLIS = 10000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PUT_TIMEOUT_MILLIS = 100;
+    private static final List<String> END = Collections.emptyList();
+
+    /**
+     * the minimum severity of lines logged, NONE for all lines
+     */
+    private static volatile Severity consoleLevel = Severity.WARNING;
+
+    private final String command;
+    private final File logFile;
+    private final Log log;
+    private final BipMessageClassifier classifier;
+    private final Listener listener;
+    private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(QUEUE_BATCHES);
+    private final Thread writer;
+
+    /**
+     * only written by the writer thread, read after it has finished
+     */
+    private long lineCount;
+    private long warningCount;
+    private long errorCount;
+    private String lastMessage;
+    private IOException writeError;
+    private RuntimeException processError;
+    private boolean closed;
+
+    /**
+     * @param command the name of the command, used in the summaries
+     * @param logFile the file all lines are written to, null for none
+     * @param log the log for the console output
+     * @param classifier optional classifier every line is passed to, may be null
+     */
+    public ToolOutputSink(String command, File logFile, Log log, BipMessageClassifier classifier) throws IOException {
+        this(command, logFile, log, classifier, null);
+    }
+
+    /**
+     * @param command the name of the command, used in the summaries
+     * @param logFile the file all lines are written to, null for none
+     * @param log the log for the console output
+     * @param classifier optional classifier every line is passed to, may be null
+     * @param listener optional listener every line is passed to, may be null
+     */
+    public ToolOutputSink(String command, File logFile, Log log, BipMessageClassifier classifier, Listener listener) throws IOException {
+        this.command = command;
+        this.logFile = logFile;
+        this.log = log;
+        this.classifier = classifier;
+        this.listener = listener;
+        final FileChannel channel;
+        if (logFile != null) {
+            logFile.getAbsoluteFile().getParentFile().mkdirs();
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        } else {
+            channel = null;
+        }
+        writer = new Thread("ace-output-" + command) {
+            @Override
+            public void run() {
+                process(channel);
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * sets the console severity, e.g. at the beginning of a build
+     *
+     * @param properties the user and system properties of the build
+     */
+    public static void configure(Properties properties) {
+        String value = properties.getProperty(LEVEL_PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            consoleLevel = Severity.WARNING;
+        } else if ("ALL".equalsIgnoreCase(value.trim())) {
+            consoleLevel = Severity.NONE;
+        } else {
+            try {
+                consoleLevel = Severity.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value for " + LEVEL_PROPERTY + ": " + value + " (ALL, INFO, WARNING or ERROR)", e);
+            }
+        }
+    }
+
+    /**
+     * @return the log file of a command in a directory, null if the directory is null
+     */
+    public static File getLogFile(File directory, String name) {
+        return directory == null ? null : new File(directory, name + ".log");
+    }
+
+    /**
+     * queues a batch of lines, waiting while the queue is full. Interrupting the calling thread doesn't discard the
+     * batch, the interrupt is kept for the caller. The batch is discarded if the writer thread has ended.
+     */
+    public void accept(List<String> lines) {
+        if (!lines.isEmpty()) {
+            put(lines);
+        }
+    }
+
+    private void put(List<String> lines) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (!writer.isAlive() || queue.offer(lines, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return a new batch, to be filled by a reader
+     */
+    static List<String> newBatch() {
+        return new ArrayList<String>(BATCH_LINES);
+    }
+
+    /**
+     * @return true if a batch with the given number of lines and chars is to be passed on
+     */
+    static boolean isFull(List<String> batch, long chars) {
+        return batch.size() >= BATCH_LINES || chars >= BATCH_CHARS;
+    }
+
+    /**
+     * waits until all lines are processed, closes the log file and logs the summary. An error writing the log file or
+     * processing a line is logged as warning, it doesn't fail the command.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(END);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (lineCount > 0) {
+            log.info(getSummary() + (logFile != null ? ", written to " + logFile : ""));
+        }
+        if (writeError != null) {
+            log.warn("Could not write the output of " + command + " to " + logFile + ": " + writeError);
+        }
+        if (processError != null) {
+            log.warn("Could not process all lines of the output of " + command + ": " + processError, processError);
+        }
+    }
+
+    private void process(FileChannel channel) {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CharBuffer lineEnd = CharBuffer.wrap("\n");
+        long nextSummary = System.currentTimeMillis() + SUMMARY_INTERVAL_MILLIS;
+        try {
+            while (true) {
+                List<String> batch = queue.poll(SUMMARY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == END) {
+                    break;
+                }
+                if (batch != null) {
+                    for (String line : batch) {
+                        try {
+                            processLine(line);
+                            if (listener != null) {
+                                listener.line(line);
+                            }
+                        } catch (RuntimeException e) {
+                            // the line is still written, the thread has to keep taking the batches
+                            if (processError == null) {
+                                processError = e;
+                            }
+                        }
+                        if (channel != null && writeError == null) {
+                            try {
+                                write(channel, encoder, buffer, CharBuffer.wrap(line));
+                                write(channel, encoder, buffer, lineEnd.duplicate());
+                            } catch (IOException e) {
+                                writeError = e;
+                            }
+                        }
+                    }
+                }
+                if (System.currentTimeMillis() >= nextSummary) {
+                    if (lineCount > 0) {
+                        log.info(getSummary() + " so far");
+                    }
+                    nextSummary = System.currentTimeMillis() + SUMMARY_INTERVAL_MILLIS;
+                }
+            }
+        } catch (InterruptedException e) {
+            // the sink isn't interrupted, only closed
+            Thread.currentThread().interrupt();
+        } finally {
+            if (channel != null) {
+                try {
+                    if (writeError == null) {
+                        flush(channel, buffer);
+                    }
+                    channel.close();
+                } catch (IOException e) {
+                    if (writeError == null) {
+                        writeError = e;
+                    }
+                }
+            }
+        }
+    }
+
+    private void processLine(String line) {
+        lineCount++;
+        Severity severity = classifier != null ? classifier.processLine(line) : BipMessageClassifier.getSeverity(line);
+        if (severity == Severity.WARNING) {
+            warningCount++;
+        } else if (severity.isError()) {
+            errorCount++;
+        }
+        if (severity != Severity.NONE) {
+            lastMessage = line.trim();
+        }
+
+        Severity level = consoleLevel;
+        if (severity.compareTo(level) < 0 || (level != Severity.NONE && severity == Severity.NONE)) {
+            if (log.isDebugEnabled()) {
+                log.debug(line);
+            }
+        } else if (severity.isError()) {
+            log.error(line);
+        } else if (severity == Severity.WARNING) {
+            log.warn(line);
+        } else {
+            log.info(line);
+        }
+    }
+
+    private static void write(FileChannel channel, CharsetEncoder encoder, ByteBuffer buffer, CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                flush(channel, buffer);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private String getSummary() {
+        return command + ": " + lineCount + " lines of output, " + warningCount + " warning(s), " + errorCount + " error(s)"
+                + (lastMessage != null ? ", last message: " + lastMessage : "");
+    }
+
+    /**
+     * @return the number of lines processed, complete after {@link #close()}
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+}
@@ -0,0 +1,103 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Follows a trace file while it is being written by an ace tool and checks every new line for the fatal patterns of a
+ * {@link BipMessageClassifier}. The messages are counted from the output of the tool only, which contains them as
+ * well. A line is passed on once its line break is written, the last one when the tool has finished. The file does not
+ * need to exist when the thread is started.
+ */
+public class TraceFileFollower extends Thread {
+
+    private File traceFile;
+    private BipMessageClassifier classifier;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder pending = new StringBuilder();
+
+    public TraceFileFollower(File traceFile, BipMessageClassifier classifier) {
+        this.traceFile = traceFile;
+        this.classifier = classifier;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        Reader reader = null;
+        try {
+            // wait for the tool to create the file
+            while (!traceFile.exists()) {
+                Thread.sleep(500);
+            }
+            reader = new FileReader(traceFile);
+            while (true) {
+                if (!read(reader)) {
+                    Thread.sleep(500);
+                }
+            }
+        } catch (InterruptedException ie) {
+            // this is to be expected when the child process is finished - pick up what was written last
+            drain(reader);
+        } catch (IOException ioe) {
+            // the trace is only used for early error detection, the tool's exit code remains authoritative
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                // ignore this one
+            }
+        }
+    }
+
+    /**
+     * passes the complete lines written since the last call, the text after the last line break is kept until the rest
+     * of its line is written
+     *
+     * @return false if nothing was written
+     */
+    private boolean read(Reader reader) throws IOException {
+        int count = reader.read(buffer);
+        if (count <= 0) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == '\n') {
+                passLine();
+            } else {
+                pending.append(buffer[i]);
+            }
+        }
+        return true;
+    }
+
+    private void passLine() {
+        int length = pending.length();
+        if (length > 0 && pending.charAt(length - 1) == '\r') {
+            pending.setLength(length - 1);
+        }
+        classifier.checkFatal(pending.toString());
+        pending.setLength(0);
+    }
+
+    private void drain(Reader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            while (read(reader)) {
+                // until the end of the file
+            }
+            // the tool has finished, the last line is complete even without a line break
+            if (pending.length() > 0) {
+                passLine();
+            }
+        } catch (IOException e) {
+            // ignore this one
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The work directory of a test project kept between builds, for the developer loop. The first build creates it
+ * (mqsicreateworkdir) and deploys the bar file (mqsibar); later builds only deploy the applications and libraries which
+ * changed since the previous build (compared by their {@link BarIndex}, see {@link DeltaBars}) with mqsibar, which
+ * replaces deployed resources of the same name. The tests are then run against the work directory as usual, with
+ * IntegrationServer --test-project. As mqsibar can't remove resources, the work directory is created again if an
+ * application or library has been removed from the bar file.
+ *
+ * The deployed bar file is kept as index in {@link #DEPLOYED_INDEX_FILE} of the work directory. A build uses the work
+ * directory while holding its {@link DirectoryLock}, so that builds of the same test project wait for each other.
+ */
+public final class WarmWorkDir {
+
+    /**
+     * creates a work directory and deploys bar files into it
+     */
+    public interface Deployer {
+
+        /**
+         * @param workDir the work directory to be created (mqsicreateworkdir), which doesn't exist
+         */
+        void create(File workDir) throws MojoFailureException, IOException;
+
+        /**
+         * @param barFile the bar file to be deployed into the work directory (mqsibar)
+         */
+        void deploy(File workDir, File barFile) throws MojoFailureException, IOException;
+    }
+
+    public static final String DEPLOYED_INDEX_FILE = "deployed.bar.index";
+
+    private final File workDir;
+    private final DirectoryLock lock;
+
+    private WarmWorkDir(File workDir, DirectoryLock lock) {
+        this.workDir = workDir;
+        this.lock = lock;
+    }
+
+    /**
+     * @param directory the directory of the warm work directories
+     * @return the work directory of a test project built from a workspace with an ace runtime
+     */
+    public static File getWorkDir(File directory, File aceRunDir, File workspace, String project) throws IOException {
+        String key = project + "-" + Integer.toHexString((aceRunDir.getCanonicalPath() + "\n" + workspace.getCanonicalPath()).hashCode());
+        return new File(directory, key);
+    }
+
+    /**
+     * waits until no other build uses the work directory and locks it, see {@link #release()}
+     */
+    public static WarmWorkDir lock(File workDir) throws IOException {
+        return new WarmWorkDir(workDir, DirectoryLock.lock(workDir));
+    }
+
+    public File getWorkDir() {
+        return workDir;
+    }
+
+    /**
+     * brings the work directory up to date with a bar file, creating it if it doesn't exist
+     *
+     * @param index the index of the bar file, null to create it
+     * @return the number of deployed applications and libraries
+     */
+    public int update(File barFile, BarIndex index, Deployer deployer, Log log) throws MojoFailureException, IOException {
+        if (index == null) {
+            index = BarIndex.create(barFile);
+        }
+        File deployedIndexFile = new File(workDir, DEPLOYED_INDEX_FILE);
+        BarIndex deployed = deployedIndexFile.isFile() ? BarIndex.read(deployedIndexFile) : null;
+        if (deployed != null) {
+            List<String> removed = DeltaBars.getRemovedProjects(deployed, index);
+            if (!removed.isEmpty()) {
+                log.info("Creating the work directory " + workDir + " again, " + removed + " have been removed from the bar file");
+                deployed = null;
+            }
+        }
+
+        BuildTimings.Timer timer = BuildTimings.startStep("warm-workdir-deploy");
+        try {
+            if (deployed == null) {
+                timer.set("created", true);
+                FileUtils.deleteDirectory(workDir);
+                workDir.getAbsoluteFile().getParentFile().mkdirs();
+                deployer.create(workDir);
+                deployer.deploy(workDir, barFile);
+                index.write(deployedIndexFile);
+                return DeltaBars.getChangedProjects(new BarIndex.Builder().build(), index).size();
+            }
+
+            List<String> changed = DeltaBars.getChangedProjects(deployed, index);
+            timer.set("changed", changed.size());
+            if (changed.isEmpty()) {
+                log.info("No application or library changed since the last deployment to " + workDir);
+                return 0;
+            }
+            for (String archive : changed) {
+                log.info("  deploying " + archive);
+            }
+            // the deployed index is only valid again once everything is deployed
+            deployedIndexFile.delete();
+            List<String> entries = new ArrayList<String>(changed);
+            entries.addAll(DeltaBars.getCommonEntries(index));
+            File deltaBar = new File(workDir.getAbsoluteFile().getParentFile(), workDir.getName() + "-deploy.bar");
+            ZipUtils.copyFiles(barFile, deltaBar, entries);
+            try {
+                deployer.deploy(workDir, deltaBar);
+            } finally {
+                deltaBar.delete();
+            }
+            index.write(deployedIndexFile);
+            return changed.size();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * releases the work directory for other builds
+     */
+    public void release() throws IOException {
+        lock.release();
+    }
+}
@@ -0,0 +1,303 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Prepared work directories for test projects. Creating a work directory (mqsicreateworkdir) and deploying the bar file
+ * into it (mqsibar) start a JVM each, so the prepared work directory is kept as template per ace runtime, bar file
+ * content and configuration, and every test run starts from a clone of it. Files of the deployed resources (run/) can
+ * be hard-linked instead of copied, the integration server doesn't change them.
+ *
+ * Templates are created in a temporary directory and moved into place, so that builds sharing the cache directory never
+ * see incomplete templates. Only the most recently used {@link #MAX_TEMPLATES} templates are kept. A template is cloned
+ * while holding its {@link DirectoryLock}, templates which are being cloned by another thread or build aren't evicted.
+ * Clones and evicted templates are deleted in the background.
+ */
+public final class WorkDirTemplates {
+
+    /**
+     * creates the content of a template
+     */
+    public interface Creator {
+
+        /**
+         * @param workDir the empty work directory to be prepared
+         */
+        void create(File workDir) throws MojoFailureException, IOException;
+    }
+
+    public static final int MAX_TEMPLATES = 8;
+
+    private static final String TEMP_PREFIX = ".tmp-";
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+    private static final ExecutorService DELETER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ace-workdir-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        // give the pending deletes a chance to finish before the build's JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread("ace-workdir-cleanup-wait") {
+            @Override
+            public void run() {
+                DELETER.shutdown();
+                try {
+                    DELETER.awaitTermination(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // exit anyway
+                }
+            }
+        });
+    }
+
+    /**
+     * hide the default constructor
+     */
+    private WorkDirTemplates() {
+        super();
+    }
+
+    /**
+     * @param aceRunDir the installation directory of the ace runtime, the runtime version is derived from its
+     *            mqsiprofile
+     * @param barFile the bar file deployed into the template
+     * @param configuration anything else the template depends on, e.g. the overrides
+     * @return the key of a template, a hex string
+     */
+    public static String getKey(File aceRunDir, File barFile, String configuration) throws IOException {
+        MessageDigest digest = newDigest();
+        File profile = new File(aceRunDir, "mqsiprofile");
+        digest.update((aceRunDir.getCanonicalPath() + "\n" + profile.length() + "\n" + profile.lastModified() + "\n" + configuration + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[64 * 1024];
+        InputStream in = new FileInputStream(barFile);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : Arrays.copyOf(digest.digest(), 16)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * returns the template with the given key, creating it if it doesn't exist
+     *
+     * @param cacheDirectory the directory of the templates
+     * @return the template directory
+     */
+    public static File get(File cacheDirectory, String key, Creator creator, Log log) throws MojoFailureException, IOException {
+        File template = new File(cacheDirectory, key);
+        ReentrantLock lock = getLock(template);
+        lock.lock();
+        try {
+            if (template.isDirectory()) {
+                log.debug("Using the work directory template " + template);
+                template.setLastModified(System.currentTimeMillis());
+                return template;
+            }
+            cacheDirectory.mkdirs();
+            File temp = Files.createTempDirectory(cacheDirectory.toPath(), TEMP_PREFIX + key).toFile();
+            BuildTimings.Timer timer = BuildTimings.startStep("workdir-template");
+            try {
+                log.info("Creating the work directory template " + template);
+                creator.create(temp);
+                move(temp, template);
+            } catch (IOException e) {
+                deleteAsync(temp);
+                throw e;
+            } catch (MojoFailureException e) {
+                deleteAsync(temp);
+                throw e;
+            } finally {
+                timer.stop();
+            }
+            evict(cacheDirectory, log);
+            return template;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void move(File temp, File template) throws IOException {
+        try {
+            try {
+                Files.move(temp.toPath(), template.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), template.toPath());
+            }
+        } catch (IOException e) {
+            if (!template.isDirectory()) {
+                throw e;
+            }
+            // created by another build at the same time, which is used
+            deleteAsync(temp);
+        }
+    }
+
+    /**
+     * copies a template into a new work directory
+     *
+     * @param link true to hard-link the files of the deployed resources (run/) instead of copying them, falling back
+     *            to copying if the file system doesn't support hard links
+     */
+    public static void clone(File template, File workDir, final boolean link) throws IOException {
+        BuildTimings.Timer timer = BuildTimings.startStep("workdir-clone");
+        // the template isn't evicted while it's cloned
+        DirectoryLock lock = DirectoryLock.lock(template);
+        try {
+            if (!template.isDirectory()) {
+                throw new IOException("The work directory template " + template + " has been evicted");
+            }
+            final Path source = template.toPath();
+            final Path target = workDir.toPath();
+            final Path run = source.resolve("run");
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path copy = target.resolve(source.relativize(file).toString());
+                    if (link && file.startsWith(run)) {
+                        try {
+                            Files.createLink(copy, file);
+                            return FileVisitResult.CONTINUE;
+                        } catch (UnsupportedOperationException e) {
+                            // no hard links on this file system, copied below
+                        } catch (IOException e) {
+                            // e.g. the work directory is on another file system, copied below
+                        }
+                    }
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            lock.release();
+            timer.stop();
+        }
+    }
+
+    /**
+     * deletes a directory in the background
+     */
+    public static void deleteAsync(final File directory) {
+        DELETER.execute(new Runnable() {
+            public void run() {
+                try {
+                    FileUtils.deleteDirectory(directory);
+                } catch (IOException e) {
+                    // left for the next cleanup of the temp directory
+                }
+            }
+        });
+    }
+
+    /**
+     * deletes the least recently used templates beyond {@link #MAX_TEMPLATES}, except the ones being cloned
+     */
+    private static void evict(File cacheDirectory, Log log) {
+        File[] templates = cacheDirectory.listFiles();
+        if (templates == null || templates.length <= MAX_TEMPLATES) {
+            return;
+        }
+        Arrays.sort(templates, new Comparator<File>() {
+            public int compare(File a, File b) {
+                return Long.compare(b.lastModified(), a.lastModified());
+            }
+        });
+        int kept = 0;
+        for (File template : templates) {
+            if (template.getName().startsWith(TEMP_PREFIX) || !template.isDirectory()) {
+                continue;
+            }
+            if (++kept > MAX_TEMPLATES) {
+                evictTemplate(template, log);
+            }
+        }
+    }
+
+    private static void evictTemplate(File template, Log log) {
+        try {
+            DirectoryLock lock = DirectoryLock.tryLock(template);
+            if (lock == null) {
+                log.debug("Keeping the work directory template " + template + ", it's being cloned");
+                return;
+            }
+            try {
+                // moved aside while locked, so that it isn't found anymore when it's deleted
+                File evicted = Files.createTempDirectory(template.getParentFile().toPath(), TEMP_PREFIX + template.getName()).toFile();
+                try {
+                    Files.move(template.toPath(), new File(evicted, template.getName()).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    deleteAsync(evicted);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            log.debug("Could not evict the work directory template " + template + ": " + e);
+        }
+    }
+
+    private static ReentrantLock getLock(File template) {
+        String key = template.getAbsolutePath();
+        ReentrantLock lock = LOCKS.get(key);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
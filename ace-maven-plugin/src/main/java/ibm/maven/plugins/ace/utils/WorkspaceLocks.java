@@ -0,0 +1,62 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * JVM wide locks for workspaces. By default every module builds in its own workspace (target/ace/workspace), but
+ * several modules may be configured to use the same one. The toolkit locks a workspace while mqsicreatebar runs and
+ * unpacking the dependencies of two modules into the same directory at the same time can mix up files, so with
+ * parallel builds (mvn -T) modules sharing a workspace have to take turns.
+ */
+public final class WorkspaceLocks {
+
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+    /**
+     * hide the default constructor
+     */
+    private WorkspaceLocks() {
+        super();
+    }
+
+    /**
+     * locks a workspace, waiting if another module is using it. The lock must be released with unlock() in a finally
+     * block.
+     *
+     * @param workspace the workspace directory
+     * @param log used to report that the workspace is in use
+     * @return the lock held for the workspace
+     */
+    public static ReentrantLock lock(File workspace, Log log) {
+        ReentrantLock lock = getLock(workspace);
+        if (!lock.tryLock()) {
+            log.info("Waiting for the workspace " + workspace + ", which is used by another module");
+            lock.lock();
+        }
+        return lock;
+    }
+
+    static ReentrantLock getLock(File workspace) {
+        String key;
+        try {
+            key = workspace.getCanonicalPath();
+        } catch (IOException e) {
+            key = workspace.getAbsolutePath();
+        }
+        ReentrantLock lock = LOCKS.get(key);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+}
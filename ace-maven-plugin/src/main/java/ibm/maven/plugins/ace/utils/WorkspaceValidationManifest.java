@@ -0,0 +1,197 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The project directories of a workspace which passed the validation of validate-bar-build-workspace, so that
+ * unchanged projects aren't validated again by the next build. A project is recorded with its path, the modification
+ * times of the files the validation reads (.project and pom.xml) and the SHA-256 of their content. It counts as
+ * unchanged if the modification times are the same or, e.g. after the workspace was unpacked again, the content is.
+ */
+public final class WorkspaceValidationManifest {
+
+    static final String[] FILES = { ".project", "pom.xml" };
+
+    private static final String HEADER = "# ace-workspace-validation 1";
+
+    private final ConcurrentMap<String, Project> projects;
+
+    private WorkspaceValidationManifest(Map<String, Project> projects) {
+        this.projects = new ConcurrentHashMap<String, Project>(projects);
+    }
+
+    /**
+     * a validated project directory
+     */
+    private static final class Project {
+
+        private final String modified;
+        private final String sha256;
+
+        Project(String modified, String sha256) {
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * @return an empty manifest
+     */
+    public static WorkspaceValidationManifest create() {
+        return new WorkspaceValidationManifest(new TreeMap<String, Project>());
+    }
+
+    /**
+     * reads a manifest written by {@link #write(File)}
+     *
+     * @return the manifest, empty if the file doesn't exist or was written by another version
+     */
+    public static WorkspaceValidationManifest read(File file) throws IOException {
+        Map<String, Project> projects = new TreeMap<String, Project>();
+        if (!file.isFile()) {
+            return new WorkspaceValidationManifest(projects);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            if (!HEADER.equals(reader.readLine())) {
+                return new WorkspaceValidationManifest(projects);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 4 && fields[0].equals("P")) {
+                    projects.put(fields[1], new Project(fields[2], fields[3]));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new WorkspaceValidationManifest(projects);
+    }
+
+    /**
+     * @return true if the project directory was validated with the same .project and pom.xml, otherwise it's
+     *         forgotten until it's validated again
+     */
+    public boolean isValidated(File projectDirectory) throws IOException {
+        String path = projectDirectory.getAbsolutePath();
+        Project project = projects.get(path);
+        if (project == null) {
+            return false;
+        }
+        String modified = getModified(projectDirectory);
+        if (project.modified.equals(modified)) {
+            return true;
+        }
+        if (project.sha256.equals(getSha256(projectDirectory))) {
+            // touched, not changed: the times are recorded to save the hashing next time
+            projects.put(path, new Project(modified, project.sha256));
+            return true;
+        }
+        projects.remove(path);
+        return false;
+    }
+
+    /**
+     * records a project directory which passed the validation
+     */
+    public void validated(File projectDirectory) throws IOException {
+        projects.put(projectDirectory.getAbsolutePath(), new Project(getModified(projectDirectory), getSha256(projectDirectory)));
+    }
+
+    /**
+     * removes the project directories which aren't in the workspace anymore or failed the validation
+     */
+    public void retain(Collection<File> projectDirectories) {
+        Set<String> paths = new HashSet<String>();
+        for (File projectDirectory : projectDirectories) {
+            paths.add(projectDirectory.getAbsolutePath());
+        }
+        projects.keySet().retainAll(paths);
+    }
+
+    public int size() {
+        return projects.size();
+    }
+
+    /**
+     * writes the manifest, sorted by path
+     */
+    public void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, Project> project : new TreeMap<String, Project>(projects).entrySet()) {
+                writer.write("P\t" + project.getKey() + "\t" + project.getValue().modified + "\t" + project.getValue().sha256 + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return the modification times of the validated files in nanoseconds, -1 for a missing file
+     */
+    private static String getModified(File projectDirectory) throws IOException {
+        StringBuilder modified = new StringBuilder();
+        for (String name : FILES) {
+            long time;
+            try {
+                time = Files.getLastModifiedTime(new File(projectDirectory, name).toPath()).to(TimeUnit.NANOSECONDS);
+            } catch (NoSuchFileException e) {
+                time = -1;
+            }
+            modified.append(modified.length() > 0 ? "," : "").append(time);
+        }
+        return modified.toString();
+    }
+
+    private static String getSha256(File projectDirectory) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String name : FILES) {
+            File file = new File(projectDirectory, name);
+            // a missing file differs from an empty one
+            digest.update((byte) (file.isFile() ? 1 : 0));
+            if (file.isFile()) {
+                digest.update(Files.readAllBytes(file.toPath()));
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
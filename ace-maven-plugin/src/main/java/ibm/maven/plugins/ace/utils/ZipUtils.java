@@ -1,15 +1,42 @@
 package ibm.maven.plugins.ace.utils;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.tools.ant.Project;
-import org.apache.tools.ant.Target;
-import org.apache.tools.ant.taskdefs.Zip;
-import org.apache.tools.ant.types.ZipFileSet;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import ibm.maven.plugins.ace.jfr.JfrEvents;
 
 public final class ZipUtils {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * the default excludes of ant 1.9 (DirectoryScanner.getDefaultExcludes()), which the ant zipfileset formerly used
+     * by {@link #removeFiles(File, String)} removed from every zip file
+     */
+    private static final String[] DEFAULT_EXCLUDES = { "**/*~", "**/#*#", "**/.#*", "**/%*%", "**/._*", "**/CVS", "**/CVS/**",
+            "**/.cvsignore", "**/SCCS", "**/SCCS/**", "**/vssver.scc", "**/.svn", "**/.svn/**", "**/.DS_Store", "**/.git", "**/.git/**",
+            "**/.gitattributes", "**/.gitignore", "**/.gitmodules", "**/.hg", "**/.hg/**", "**/.hgignore", "**/.hgsub",
+            "**/.hgsubstate", "**/.hgtags", "**/.bzr", "**/.bzr/**", "**/.bzrignore" };
+
     /**
      * hide the default constructor
      */
@@ -18,30 +45,195 @@ public final class ZipUtils {
     }
 
     /**
-     * Removes files from a given zip file.
-     * 
+     * Removes files from a given zip file. The content of the remaining entries is read once, to be written to
+     * the new zip file and to be indexed.
+     *
+     * The patterns are those of an ant zipfileset's excludes: separated by commas or spaces, and the files matching
+     * ant's default excludes (e.g. .git, .svn, CVS, *~) are removed as well.
+     *
      * @param zipFile name of the zip file to be modified
-     * @param removePattern pattern of the files to be removed
-     * 
+     * @param removePattern patterns of the files to be removed
+     * @return the index of the modified zip file
+     *
      * @throws IOException
      */
-    public static void removeFiles(File zipFile, String removePattern) throws IOException {
-        String zipFileName = zipFile.getName();
+    public static BarIndex removeFiles(File zipFile, String removePattern) throws IOException {
+        BuildTimings.Timer timer = BuildTimings.startStep("zip-rewrite");
+        timer.set("file", zipFile.getName());
+        Object event = JfrEvents.beginZipRewrite();
+        long sizeBefore = zipFile.length();
+        try {
+            return removeFilesInternal(zipFile, removePattern);
+        } finally {
+            timer.stop();
+            JfrEvents.endZipRewrite(event, zipFile, removePattern, sizeBefore, zipFile.length());
+        }
+    }
+
+    private static BarIndex removeFilesInternal(File zipFile, String removePattern) throws IOException {
         File tmpFile = new File(zipFile.getCanonicalPath() + ".tmp");
-        Project antProject = new Project();
-        Target antTarget = new Target();
-        antProject.addTarget("zip", antTarget);
-        Zip zipTask = new Zip();
-        zipTask.setProject(antProject);
-        zipTask.setDestFile(tmpFile);
-        ZipFileSet set = new ZipFileSet();
-        set.setSrc(zipFile);
-        set.setExcludes(removePattern);
-        zipTask.addZipfileset(set);
-        antTarget.addTask(zipTask);
-        antTarget.execute();
-        zipFile.delete();
-        tmpFile.renameTo(new File(tmpFile.getParentFile(), zipFileName));
+        BarIndex index = copy(zipFile, tmpFile, getPatterns(removePattern), null);
+        if (!zipFile.delete() || !tmpFile.renameTo(zipFile)) {
+            throw new IOException("Could not replace " + zipFile + " with " + tmpFile);
+        }
+        return index;
+    }
+
+    /**
+     * Copies files from a zip file to a new zip file, e.g. the changed applications of a bar file into a delta bar.
+     * The content of the entries is read once, to be written to the new zip file and to be indexed.
+     *
+     * @param zipFile the zip file to copy from
+     * @param targetFile the zip file to be written
+     * @param names the names of the entries to be copied
+     * @return the index of the new zip file
+     * @throws IOException
+     */
+    public static BarIndex copyFiles(File zipFile, File targetFile, Collection<String> names) throws IOException {
+        BuildTimings.Timer timer = BuildTimings.startStep("zip-copy");
+        timer.set("file", targetFile.getName());
+        try {
+            if (targetFile.getParentFile() != null) {
+                targetFile.getParentFile().mkdirs();
+            }
+            return copy(zipFile, targetFile, Collections.<String> emptyList(), new HashSet<String>(names));
+        } finally {
+            timer.stop();
+        }
     }
 
+    /**
+     * @param excludePatterns patterns of the entries not to be copied
+     * @param includeNames the names of the entries to be copied, null for all
+     */
+    private static BarIndex copy(File zipFile, File targetFile, List<String> excludePatterns, Set<String> includeNames)
+            throws IOException {
+        BarIndex.Builder index = new BarIndex.Builder();
+        ZipFile in = new ZipFile(zipFile);
+        try {
+            ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetFile), BUFFER_SIZE));
+            try {
+                Enumeration<? extends ZipEntry> entries = in.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (isExcluded(entry.getName(), excludePatterns) || (includeNames != null && !includeNames.contains(entry.getName()))) {
+                        continue;
+                    }
+                    out.putNextEntry(copyEntry(entry));
+                    if (!entry.isDirectory()) {
+                        InputStream content = new CopyingInputStream(in.getInputStream(entry), out);
+                        try {
+                            // the index reads the content to the end, i.e. it is copied as well
+                            index.add(entry.getName(), content);
+                        } finally {
+                            content.close();
+                        }
+                    }
+                    out.closeEntry();
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return index.build();
+    }
+
+    /**
+     * @return a new entry with the name, time, comment, extra data and compression method of the given one. Stored
+     *         entries stay stored, so that they don't have to be compressed.
+     */
+    private static ZipEntry copyEntry(ZipEntry entry) {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        copy.setComment(entry.getComment());
+        copy.setExtra(entry.getExtra());
+        if (entry.getMethod() == ZipEntry.STORED) {
+            copy.setMethod(ZipEntry.STORED);
+            copy.setSize(entry.getSize());
+            copy.setCompressedSize(entry.getSize());
+            copy.setCrc(entry.getCrc());
+        }
+        return copy;
+    }
+
+    /**
+     * @return the patterns and the default excludes with the separator of the platform, as expected by SelectorUtils
+     */
+    private static List<String> getPatterns(String removePattern) {
+        List<String> tokens = new ArrayList<String>(Arrays.asList(DEFAULT_EXCLUDES));
+        // tokenized like ant's PatternSet
+        StringTokenizer tokenizer = new StringTokenizer(removePattern, ", ", false);
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.nextToken());
+        }
+        List<String> patterns = new ArrayList<String>();
+        for (String token : tokens) {
+            String pattern = token.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            // like ant: a pattern ending with a separator matches everything below it
+            if (pattern.endsWith(File.separator)) {
+                pattern += "**";
+            }
+            patterns.add(pattern);
+        }
+        return patterns;
+    }
+
+    private static boolean isExcluded(String entryName, List<String> patterns) {
+        String name = entryName.replace('/', File.separatorChar);
+        // like ant's archive scanner: a directory entry is matched by its name without the trailing separator
+        if (name.endsWith(File.separator)) {
+            name = name.substring(0, name.length() - 1);
+        }
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * writes everything read through it to the zip file being written
+     */
+    private static final class CopyingInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+
+        CopyingInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                out.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes have to be copied as well
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            return Math.max(read(buffer, 0, buffer.length), 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package ibm.maven.plugins.ace.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrEventsTest {
+
+    @Test
+    public void noEventsWithoutRecordingTest() {
+        assertFalse(JfrEvents.isRecording());
+        assertNull(JfrEvents.beginZipRewrite());
+        // ending a null handle is a no-op
+        JfrEvents.endZipRewrite(null, new File("x.bar"), "**/*.jar", 1, 1);
+    }
+
+    @Test
+    public void recordEventsTest() throws IOException {
+        Path dump = new File("target", UUID.randomUUID() + ".jfr").toPath();
+        Recording recording = new Recording();
+        recording.enable("ibm.ace.ZipRewrite").withThreshold(Duration.ZERO);
+        recording.enable("ibm.ace.OutputThroughput").withThreshold(Duration.ZERO);
+        recording.start();
+        try {
+            assertTrue(JfrEvents.isRecording());
+            JfrEvents.endZipRewrite(JfrEvents.beginZipRewrite(), new File("x.bar"), "**/*.jar", 100, 50);
+
+            OutputThroughputRecorder throughput = new OutputThroughputRecorder("test");
+            for (int i = 0; i < OutputThroughputRecorder.CHUNK_LINES + 1; i++) {
+                throughput.line("BIP8071I: Successful command completion.");
+            }
+            throughput.flush();
+        } finally {
+            recording.stop();
+        }
+        recording.dump(dump);
+        recording.close();
+        assertFalse(JfrEvents.isRecording());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        int zipRewrites = 0;
+        int throughputChunks = 0;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("ibm.ace.ZipRewrite")) {
+                zipRewrites++;
+                assertEquals(50L, event.getLong("sizeAfter"));
+            } else if (name.equals("ibm.ace.OutputThroughput")) {
+                throughputChunks++;
+            }
+        }
+        assertEquals(1, zipRewrites);
+        assertEquals(2, throughputChunks);
+        dump.toFile().delete();
+    }
+}
@@ -0,0 +1,128 @@
+package ibm.maven.plugins.ace.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs create-bar for several modules at the same time, like mvn -T does, against the stub toolchain. Half of the
+ * modules build in their own workspace, the other half share one.
+ */
+public class CreateBarMojoConcurrencyTest {
+
+    private static final int MODULES = 8;
+
+    private File directory;
+    private File aceHome;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        aceHome = StubToolchain.install(new File(directory, "ace"));
+        StubToolchain.setSetting(aceHome, "latency.mqsicreatebar", "200");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void parallelModulesTest() throws Exception {
+        WorkspaceGenerator generator = new WorkspaceGenerator().libraries(MODULES).librariesPerApplication(1).flowsPerProject(3)
+                .propertiesPerFlow(6);
+        GeneratedWorkspace shared = generator.applications(MODULES).generate(new File(directory, "shared"));
+
+        List<CreateBarMojo> mojos = new ArrayList<CreateBarMojo>();
+        List<GeneratedWorkspace> workspaces = new ArrayList<GeneratedWorkspace>();
+        for (int i = 0; i < MODULES; i++) {
+            GeneratedWorkspace workspace = i % 2 == 0 ? shared : generator.applications(i + 1).generate(new File(directory, "module" + i
+                    + "/workspace"));
+            workspaces.add(workspace);
+            mojos.add(createMojo(workspace, workspace.getApplications().get(i), new File(directory, "module" + i + "/target")));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(MODULES);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final CreateBarMojo mojo : mojos) {
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        mojo.execute();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                // rethrows the failure of a module
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(MODULES, StubToolchain.getInvocations(aceHome).size());
+        for (int i = 0; i < MODULES; i++) {
+            CreateBarMojo mojo = mojos.get(i);
+            assertTrue(mojo.barName.isFile());
+            assertTrue(mojo.createBarTraceFile.isFile());
+
+            List<String> properties = ConfigurablePropertiesUtil.getPropNames(new ValidateConfigurablePropertiesMojo()
+                    .getConfigurableProperties(GeneratedWorkspace.readBar(mojo.barName)));
+            List<String> expected = ConfigurablePropertiesUtil.getPropNames(workspaces.get(i).getProperties(mojo.applicationName));
+            assertTrue(mojo.applicationName + ": " + properties, properties.containsAll(expected));
+            // the application, its library nested in it and the library added with -l
+            assertEquals(3 * (3 * 6), properties.size());
+        }
+    }
+
+    private CreateBarMojo createMojo(GeneratedWorkspace workspace, String application, File target) throws IOException {
+        CreateBarMojo mojo = new CreateBarMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.applicationName = application;
+        mojo.barName = new File(target, "ace/" + application + ".bar");
+        mojo.createBarTraceFile = new File(target, "createbartrace.txt");
+        mojo.createBarFatalPatterns = "";
+        mojo.deployAsSource = false;
+        mojo.cleanBuild = true;
+        mojo.skipWSErrorCheck = false;
+        mojo.useClassloaders = false;
+        mojo.discardJarsPattern = "**/javacompute_**.jar,**/jplugin2_**.jar";
+        mojo.toolkitInstallDir = aceHome;
+        mojo.aceRunDir = aceHome;
+        MavenProject project = new MavenProject();
+        for (String library : workspace.getReferencedProjects(application)) {
+            Dependency dependency = new Dependency();
+            dependency.setArtifactId(library);
+            dependency.setType("zip");
+            dependency.setScope("compile");
+            project.getDependencies().add(dependency);
+        }
+        mojo.project = project;
+        return mojo;
+    }
+}
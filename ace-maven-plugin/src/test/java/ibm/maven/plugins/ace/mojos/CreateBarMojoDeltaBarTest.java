@@ -0,0 +1,154 @@
+package ibm.maven.plugins.ace.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+import ibm.maven.plugins.ace.utils.BarIndex;
+import ibm.maven.plugins.ace.utils.DeltaBars;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Builds a delta bar against a release installed into a local repository, using the stub toolchain.
+ */
+public class CreateBarMojoDeltaBarTest {
+
+    private File directory;
+    private File aceHome;
+    private File localRepository;
+    private GeneratedWorkspace workspace;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        aceHome = StubToolchain.install(new File(directory, "ace"));
+        localRepository = new File(directory, "repository");
+        workspace = new WorkspaceGenerator().applications(1).libraries(1).librariesPerApplication(1).flowsPerProject(3)
+                .generate(new File(directory, "workspace"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void deltaBarTest() throws Exception {
+        String application = workspace.getApplications().get(0);
+
+        CreateBarMojo release = createMojo("1.0.0");
+        release.execute();
+        install(release);
+
+        // nothing changed: no delta bar
+        CreateBarMojo unchanged = createMojo("1.0.1");
+        unchanged.execute();
+        assertFalse(DeltaBars.getDeltaBarFile(unchanged.barName).exists());
+
+        // the application changed, its library didn't
+        File esql = (File) FileUtils.listFiles(workspace.getProjectDirectory(application), new String[] { "esql" }, true).iterator()
+                .next();
+        FileUtils.writeStringToFile(esql, FileUtils.readFileToString(esql) + "\n-- changed\n");
+        CreateBarMojo changed = createMojo("1.1.0");
+        changed.execute();
+
+        File deltaBar = DeltaBars.getDeltaBarFile(changed.barName);
+        assertEquals("app-1.1.0-delta.bar", deltaBar.getName());
+        List<String> entries = new ArrayList<String>();
+        for (BarIndex.Entry entry : BarIndex.read(BarIndex.getIndexFile(deltaBar)).getEntries()) {
+            if (entry.isTopLevel()) {
+                entries.add(entry.getPath());
+            }
+        }
+        assertEquals("[" + application + ".appzip]", entries.toString());
+        assertEquals(BarIndex.create(deltaBar).getEntries().size(), BarIndex.read(BarIndex.getIndexFile(deltaBar)).getEntries().size());
+        assertTrue(BarIndex.create(changed.barName).getEntries().size() > BarIndex.create(deltaBar).getEntries().size());
+
+        // a baseline without the bar file fails the build
+        CreateBarMojo missing = createMojo("1.2.0");
+        missing.deltaBaselineVersion = "0.9.0";
+        try {
+            missing.execute();
+            fail("the missing baseline was ignored");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Neither app-0.9.0.bar nor its index found"));
+        }
+    }
+
+    /**
+     * installs the bar index into the local repository, packaged like the ace-bar packaging does
+     */
+    private void install(CreateBarMojo mojo) throws IOException {
+        MavenProject project = mojo.project;
+        File artifact = new File(localRepository, "com/example/" + project.getArtifactId() + "/" + project.getVersion() + "/"
+                + project.getArtifactId() + "-" + project.getVersion() + ".ace-bar");
+        artifact.getParentFile().mkdirs();
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(artifact));
+        try {
+            File index = BarIndex.getIndexFile(mojo.barName);
+            zip.putNextEntry(new ZipEntry(index.getName()));
+            zip.write(Files.readAllBytes(index.toPath()));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private CreateBarMojo createMojo(String version) throws IOException {
+        String application = workspace.getApplications().get(0);
+        File target = new File(directory, version + "/target");
+        CreateBarMojo mojo = new CreateBarMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.applicationName = application;
+        mojo.barName = new File(target, "ace/app-" + version + ".bar");
+        mojo.createBarTraceFile = new File(target, "createbartrace.txt");
+        mojo.createBarFatalPatterns = "";
+        mojo.deployAsSource = false;
+        mojo.cleanBuild = true;
+        mojo.skipWSErrorCheck = false;
+        mojo.useClassloaders = false;
+        mojo.discardJarsPattern = "**/javacompute_**.jar,**/jplugin2_**.jar";
+        mojo.toolkitInstallDir = aceHome;
+        mojo.aceRunDir = aceHome;
+        mojo.barIndex = true;
+        mojo.deltaBar = true;
+        mojo.localRepository = localRepository;
+        MavenProject project = new MavenProject();
+        project.setGroupId("com.example");
+        project.setArtifactId("app");
+        project.setVersion(version);
+        for (String library : workspace.getReferencedProjects(application)) {
+            Dependency dependency = new Dependency();
+            dependency.setArtifactId(library);
+            dependency.setType("zip");
+            dependency.setScope("compile");
+            project.getDependencies().add(dependency);
+        }
+        mojo.project = project;
+        return mojo;
+    }
+}
@@ -0,0 +1,136 @@
+package ibm.maven.plugins.ace.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.utils.BarIndex;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the mojos against the stub toolchain, building the sample project.
+ */
+public class CreateBarMojoStubToolchainTest {
+
+    private File directory;
+    private File aceHome;
+    private File workspace;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        aceHome = StubToolchain.install(new File(directory, "ace"));
+        workspace = new File(directory, "workspace");
+        FileUtils.copyDirectory(new File("../Sample-ace-project/Sum_API"), new File(workspace, "Sum_API"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private CreateBarMojo createMojo() {
+        CreateBarMojo mojo = new CreateBarMojo();
+        mojo.workspace = workspace;
+        mojo.applicationName = "Sum_API";
+        mojo.barName = new File(directory, "target/ace/Sum_API.bar");
+        mojo.createBarTraceFile = new File(directory, "target/createbartrace.txt");
+        mojo.createBarFatalPatterns = "";
+        mojo.deployAsSource = true;
+        mojo.cleanBuild = true;
+        mojo.skipWSErrorCheck = false;
+        mojo.useClassloaders = false;
+        mojo.barIndex = true;
+        mojo.discardJarsPattern = "**/javacompute_**.jar,**/jplugin2_**.jar";
+        mojo.toolkitInstallDir = aceHome;
+        mojo.aceRunDir = aceHome;
+        mojo.project = new MavenProject();
+        return mojo;
+    }
+
+    @Test
+    public void createAndReadBarTest() throws MojoFailureException, MojoExecutionException, IOException, InterruptedException {
+        CreateBarMojo mojo = createMojo();
+        mojo.execute();
+        assertTrue(mojo.barName.isFile());
+        assertTrue(StubToolchain.getInvocations(aceHome).get(0).startsWith("mqsicreatebar -data "));
+
+        List<String> output = readBar(mojo.barName);
+        List<String> properties = new ValidateConfigurablePropertiesMojo().getConfigurableProperties(output);
+        assertTrue(properties.toString(), properties.contains("gen.Sum_API#additionalInstances"));
+        assertTrue(properties.toString(), properties.contains("gen.Sum_API#HTTP Input.URLSpecifier = /sum_api/v1*"));
+
+        BarIndex index = BarIndex.read(BarIndex.getIndexFile(mojo.barName));
+        assertEquals("Sum_API.appzip", index.getEntries().get(0).getPath());
+        assertNotNull(index.getDescriptorHash("Sum_API"));
+    }
+
+    @Test
+    public void fatalMessageTest() throws MojoExecutionException, IOException, InterruptedException {
+        StubToolchain.setSetting(aceHome, "message.mqsicreatebar", "BIP0183E: The project 'Sum_API' could not be built.");
+        StubToolchain.setSetting(aceHome, "latency.mqsicreatebar", "60000");
+        CreateBarMojo mojo = createMojo();
+        mojo.createBarFatalPatterns = "BIP0183E";
+        long start = System.currentTimeMillis();
+        try {
+            mojo.execute();
+            fail("the fatal message should have stopped the build");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains("BIP0183E"));
+        }
+        assertTrue("mqsicreatebar wasn't stopped", System.currentTimeMillis() - start < 30000);
+        // the stub started by the command file is stopped as well
+        assertEquals(Collections.<String> emptyList(), getStubProcesses());
+    }
+
+    /**
+     * @return the command lines of the running processes of the stub toolchain
+     */
+    private List<String> getStubProcesses() throws IOException, InterruptedException {
+        List<String> processes = new ArrayList<String>();
+        for (String line : run(new ProcessBuilder("ps", "-A", "-o", "args="))) {
+            if (line.contains(StubToolchain.class.getName()) && line.contains(aceHome.getPath())) {
+                processes.add(line);
+            }
+        }
+        return processes;
+    }
+
+    private List<String> readBar(File barFile) throws IOException, InterruptedException {
+        return run(new ProcessBuilder("bash", "-c", ". '" + aceHome + "/mqsiprofile' && mqsireadbar -b '" + barFile + "' -r"));
+    }
+
+    private static List<String> run(ProcessBuilder pb) throws IOException, InterruptedException {
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        List<String> output = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            output.add(line);
+        }
+        assertTrue(process.waitFor() == 0);
+        return output;
+    }
+}
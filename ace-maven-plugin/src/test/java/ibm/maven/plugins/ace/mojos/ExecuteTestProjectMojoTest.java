@@ -0,0 +1,256 @@
+package ibm.maven.plugins.ace.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+import ibm.maven.plugins.ace.utils.WarmWorkDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs several test projects at the same time against the stub toolchain.
+ */
+public class ExecuteTestProjectMojoTest {
+
+    private static final Pattern HTTP_PORT = Pattern.compile("\"httpPort\":(\\d+)");
+
+    private File directory;
+    private GeneratedWorkspace workspace;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        workspace = new WorkspaceGenerator().applications(3).testProjects(3).testsPerProject(2).generate(new File(directory, "workspace"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void parallelTestProjectsTest() throws IOException, MojoExecutionException {
+        List<String> testProjects = workspace.getTestProjects();
+        String failingProject = testProjects.get(1);
+        Properties settings = new Properties();
+        settings.setProperty("failingTests", GeneratedWorkspace.getTestClass(failingProject, 0) + ".test1");
+        File aceHome = StubToolchain.install(new File(directory, "ace"), settings);
+
+        ExecuteTestProjectMojo mojo = new ExecuteTestProjectMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.testProjects = testProjects;
+        mojo.testThreads = 2;
+        mojo.barName = workspace.createBar(new File(directory, "tests.bar"), testProjects, Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        mojo.aceRunDir = aceHome;
+        mojo.fakeQueueManager = true;
+        mojo.startMessageFlows = false;
+        mojo.toolLogDirectory = new File(directory, "ace-logs");
+        mojo.testReport = new File(directory, "ace-test-report.json");
+        mojo.workDirTemplates = true;
+        mojo.workDirCache = new File(directory, "templates");
+        mojo.workDirLinks = true;
+        mojo.testReportsDirectory = new File(directory, "surefire-reports");
+        mojo.slowestTests = 3;
+        for (int run = 0; run < 2; run++) {
+            try {
+                mojo.execute();
+                fail("the failing test project was ignored");
+            } catch (MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("1 of 3 test projects failed: [" + failingProject + "]"));
+            }
+        }
+
+        // the work directory was prepared once, every run started from a copy of the template
+        Map<String, Integer> invocations = new HashMap<String, Integer>();
+        for (String invocation : StubToolchain.getInvocations(aceHome)) {
+            String command = invocation.split(" ")[0];
+            invocations.put(command, invocations.containsKey(command) ? invocations.get(command) + 1 : 1);
+        }
+        assertEquals(Integer.valueOf(1), invocations.get(StubToolchain.MQSICREATEWORKDIR));
+        assertEquals(Integer.valueOf(1), invocations.get(StubToolchain.MQSIBAR));
+        assertEquals(Integer.valueOf(6), invocations.get(StubToolchain.INTEGRATION_SERVER));
+        // one template and its lock file
+        String[] templates = mojo.workDirCache.list();
+        Arrays.sort(templates);
+        assertEquals(2, templates.length);
+        assertTrue(new File(mojo.workDirCache, templates[0]).isDirectory());
+        assertEquals(templates[0] + ".lock", templates[1]);
+
+        // every test project ran in its own work directory, with its own log files and ports
+        for (String project : testProjects) {
+            assertTrue(new File(mojo.toolLogDirectory, project + "/IntegrationServer.log").isFile());
+        }
+        String report = new String(Files.readAllBytes(mojo.testReport.toPath()), StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("\"projects\":3"));
+        assertTrue(report, report.contains("\"failed\":1"));
+        assertTrue(report, report.contains("\"slowestTests\":[{"));
+        Set<String> ports = new HashSet<String>();
+        Matcher port = HTTP_PORT.matcher(report);
+        while (port.find()) {
+            ports.add(port.group(1));
+        }
+        assertEquals(3, ports.size());
+
+        // a JUnit XML report per test class, the test marked as failing in the stub failed
+        assertEquals(3, mojo.testReportsDirectory.list().length);
+        String failingReport = new String(Files.readAllBytes(new File(mojo.testReportsDirectory, "TEST-"
+                + GeneratedWorkspace.getTestClass(failingProject, 0) + ".xml").toPath()), StandardCharsets.UTF_8);
+        assertTrue(failingReport, failingReport.contains("tests=\"2\" failures=\"1\""));
+    }
+
+    @Test
+    public void shardedTestProjectTest() throws IOException, MojoExecutionException {
+        workspace = new WorkspaceGenerator().applications(1).testProjects(1).testClassesPerProject(4).testsPerProject(8)
+                .generate(new File(directory, "sharded"));
+        String project = workspace.getTestProjects().get(0);
+        Properties settings = new Properties();
+        settings.setProperty("failingTests", GeneratedWorkspace.getTestClass(project, 3) + ".test7");
+        File aceHome = StubToolchain.install(new File(directory, "ace"), settings);
+
+        ExecuteTestProjectMojo mojo = new ExecuteTestProjectMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.applicationName = project;
+        mojo.testShards = 3;
+        mojo.barName = workspace.createBar(new File(directory, "tests.bar"), workspace.getTestProjects(), Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        mojo.aceRunDir = aceHome;
+        mojo.fakeQueueManager = true;
+        mojo.startMessageFlows = false;
+        mojo.toolLogDirectory = new File(directory, "ace-logs");
+        mojo.testReport = new File(directory, "ace-test-report.json");
+        mojo.testReportsDirectory = new File(directory, "surefire-reports");
+        mojo.slowestTests = 3;
+        mojo.workDirTemplates = true;
+        mojo.workDirCache = new File(directory, "templates");
+        try {
+            mojo.execute();
+            fail("the failing test was ignored");
+        } catch (MojoFailureException e) {
+            assertEquals("1 of 1 test projects failed: [" + project + "]", e.getMessage());
+        }
+
+        // every shard ran some of the test classes in an integration server of its own, given one per option
+        Set<String> testClasses = new HashSet<String>();
+        int servers = 0;
+        for (String invocation : StubToolchain.getInvocations(aceHome)) {
+            if (invocation.startsWith(StubToolchain.INTEGRATION_SERVER + " ")) {
+                servers++;
+                Matcher classes = Pattern.compile("--test-class (\\S+)").matcher(invocation);
+                assertTrue(invocation, classes.find());
+                do {
+                    testClasses.add(classes.group(1));
+                } while (classes.find());
+            }
+        }
+        assertEquals(3, servers);
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 4; i++) {
+            expected.add(GeneratedWorkspace.getTestClass(project, i));
+        }
+        assertEquals(expected, testClasses);
+        for (int shard = 0; shard < 3; shard++) {
+            assertTrue(new File(mojo.toolLogDirectory, project + "/shard-" + shard + "/IntegrationServer.log").isFile());
+        }
+
+        // the results of the shards are merged into one
+        String report = new String(Files.readAllBytes(mojo.testReport.toPath()), StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("\"projects\":1"));
+        assertTrue(report, report.contains("\"tests\":8,\"failedTests\":1,\"failure\":\"1 of 8 tests failed\""));
+        assertEquals(4, mojo.testReportsDirectory.list().length);
+    }
+
+    @Test
+    public void warmWorkDirTest() throws IOException, MojoExecutionException {
+        workspace = new WorkspaceGenerator().applications(1).testProjects(1).testsPerProject(2).generate(new File(directory, "warm"));
+        String project = workspace.getTestProjects().get(0);
+        List<String> applications = new ArrayList<String>(workspace.getApplications());
+        applications.add(project);
+        File aceHome = StubToolchain.install(new File(directory, "ace"));
+
+        ExecuteTestProjectMojo mojo = new ExecuteTestProjectMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.applicationName = project;
+        mojo.barName = workspace.createBar(new File(directory, "tests.bar"), applications, Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        mojo.aceRunDir = aceHome;
+        mojo.fakeQueueManager = true;
+        mojo.startMessageFlows = false;
+        mojo.toolLogDirectory = new File(directory, "ace-logs");
+        mojo.testReport = new File(directory, "ace-test-report.json");
+        mojo.testReportsDirectory = new File(directory, "surefire-reports");
+        mojo.warmWorkDirs = true;
+        mojo.warmWorkDirDirectory = new File(directory, "warm-workdirs");
+        try {
+            mojo.execute();
+            mojo.execute();
+
+            // a test changed: only the test project is deployed again
+            File source = new File(workspace.getProjectDirectory(project), GeneratedWorkspace.getTestClass(project, 0).replace('.', '/') + ".java");
+            String content = new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+            Files.write(source.toPath(), content.replace("test1()", "test1changed()").getBytes(StandardCharsets.UTF_8));
+            workspace.createBar(mojo.barName, applications, Collections.<String> emptyList(), Collections.<String> emptyList());
+            StubToolchain.setSetting(aceHome, "failingTests", GeneratedWorkspace.getTestClass(project, 0) + ".test1changed");
+            mojo.execute();
+            fail("the failing test was ignored");
+        } catch (MojoFailureException e) {
+            assertEquals("1 of 1 test projects failed: [" + project + "]", e.getMessage());
+        }
+
+        // one work directory was created, deployed to twice and the tests ran three times in it
+        File workDir = WarmWorkDir.getWorkDir(mojo.warmWorkDirDirectory, aceHome, mojo.workspace, project);
+        // the only server keeps the default ports
+        String serverConf = new String(Files.readAllBytes(new File(workDir, "overrides/server.conf.yaml").toPath()), StandardCharsets.UTF_8);
+        assertFalse(serverConf, serverConf.contains("ListenerPort"));
+        Map<String, Integer> invocations = new HashMap<String, Integer>();
+        List<String> deployments = new ArrayList<String>();
+        for (String invocation : StubToolchain.getInvocations(aceHome)) {
+            String command = invocation.split(" ")[0];
+            invocations.put(command, invocations.containsKey(command) ? invocations.get(command) + 1 : 1);
+            if (command.equals(StubToolchain.MQSIBAR)) {
+                deployments.add(invocation);
+            }
+            if (command.equals(StubToolchain.INTEGRATION_SERVER)) {
+                assertTrue(invocation, invocation.contains("--work-dir " + workDir.getPath() + " "));
+                assertTrue(invocation, invocation.contains("--test-project " + project));
+            }
+        }
+        assertEquals(Integer.valueOf(1), invocations.get(StubToolchain.MQSICREATEWORKDIR));
+        assertEquals(Integer.valueOf(3), invocations.get(StubToolchain.INTEGRATION_SERVER));
+        assertEquals(2, deployments.size());
+        assertTrue(deployments.get(1), deployments.get(1).contains(workDir.getName() + "-deploy.bar"));
+        assertTrue(new File(workDir, "run/" + project).isDirectory());
+        String report = new String(Files.readAllBytes(mojo.testReport.toPath()), StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("\"tests\":2,\"failedTests\":1"));
+    }
+}
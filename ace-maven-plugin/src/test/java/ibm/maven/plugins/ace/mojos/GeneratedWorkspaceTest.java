@@ -0,0 +1,151 @@
+package ibm.maven.plugins.ace.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+import ibm.maven.plugins.ace.utils.BuildTimings;
+import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
+import ibm.maven.plugins.ace.utils.EclipseProjectUtils;
+import ibm.maven.plugins.ace.utils.WorkspaceValidationManifest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that workspaces written by the {@link WorkspaceGenerator} are accepted by the mojos.
+ */
+public class GeneratedWorkspaceTest {
+
+    private File directory;
+    private GeneratedWorkspace workspace;
+    private BuildTimings.Recording recording;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        workspace = new WorkspaceGenerator().applications(3).libraries(4).sharedLibraries(1).policyProjects(1).testProjects(2)
+                .librariesPerApplication(2).flowsPerProject(3).propertiesPerFlow(7).generate(new File(directory, "workspace"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        BuildTimings.setCurrentProject(null, null);
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void projectTypesTest() throws MojoFailureException {
+        SystemStreamLog log = new SystemStreamLog();
+        assertEquals(workspace.getProjects().size(), EclipseProjectUtils.getWorkspaceProjects(workspace.getDirectory()).size());
+        for (String name : workspace.getApplications()) {
+            assertTrue(name, EclipseProjectUtils.isApplication(workspace.getProjectDirectory(name), log));
+        }
+        for (String name : workspace.getLibraries()) {
+            File project = workspace.getProjectDirectory(name);
+            assertTrue(name, EclipseProjectUtils.isLibrary(project, log) && !EclipseProjectUtils.isSharedLibrary(project, log));
+        }
+        for (String name : workspace.getSharedLibraries()) {
+            assertTrue(name, EclipseProjectUtils.isSharedLibrary(workspace.getProjectDirectory(name), log));
+        }
+        for (String name : workspace.getPolicyProjects()) {
+            assertTrue(name, EclipseProjectUtils.isPolicyProject(workspace.getProjectDirectory(name), log));
+        }
+        for (String name : workspace.getTestProjects()) {
+            assertTrue(name, EclipseProjectUtils.isTestProject(workspace.getProjectDirectory(name), log));
+        }
+        assertEquals(3 * 3 + 5 * 3, workspace.getFlowCount());
+        assertEquals(8 * 3 * 7, workspace.getPropertyCount());
+    }
+
+    @Test
+    public void validateWorkspaceTest() throws MojoExecutionException, MojoFailureException {
+        ValidateBarBuildWorkspaceMojo mojo = new ValidateBarBuildWorkspaceMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.execute();
+    }
+
+    @Test
+    public void validationManifestTest() throws Exception {
+        ValidateBarBuildWorkspaceMojo mojo = new ValidateBarBuildWorkspaceMojo();
+        mojo.workspace = workspace.getDirectory();
+        mojo.validationManifest = new File(directory, "workspace-validation.manifest");
+        startRecording();
+        mojo.execute();
+        int projects = workspace.getProjects().size();
+        assertEquals(0, getValidationArgs().get("skipped"));
+        assertEquals(projects, WorkspaceValidationManifest.read(mojo.validationManifest).size());
+
+        // a touched project with the same content stays validated
+        File pom = new File(workspace.getProjectDirectory(workspace.getApplications().get(0)), "pom.xml");
+        assertTrue(pom.setLastModified(pom.lastModified() - 60000));
+        startRecording();
+        mojo.execute();
+        assertEquals(projects, getValidationArgs().get("skipped"));
+
+        // all mismatches are reported, the other projects stay validated
+        List<String> renamed = workspace.getLibraries().subList(0, 2);
+        for (String name : renamed) {
+            File libraryPom = new File(workspace.getProjectDirectory(name), "pom.xml");
+            String content = FileUtils.readFileToString(libraryPom, "UTF-8");
+            FileUtils.writeStringToFile(libraryPom, content.replaceFirst("<artifactId>" + name + "</artifactId>", "<artifactId>" + name
+                    + "-renamed</artifactId>"), "UTF-8");
+        }
+        startRecording();
+        try {
+            mojo.execute();
+            fail("the renamed artifactIds were accepted");
+        } catch (MojoFailureException e) {
+            for (String name : renamed) {
+                assertTrue(e.getMessage(), e.getMessage().contains(name + "-renamed"));
+            }
+        }
+        assertEquals(projects - 2, getValidationArgs().get("skipped"));
+        assertEquals(projects - 2, WorkspaceValidationManifest.read(mojo.validationManifest).size());
+    }
+
+    private void startRecording() {
+        recording = new BuildTimings.Recording();
+        BuildTimings.setCurrentProject(recording, "test:workspace");
+    }
+
+    private Map<String, Object> getValidationArgs() {
+        for (BuildTimings.Timer timer : recording.getEvents()) {
+            if (timer.getName().equals("validate-workspace")) {
+                return timer.getArgs();
+            }
+        }
+        throw new AssertionError("validate-workspace wasn't timed");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void configurablePropertiesTest() throws IOException {
+        String application = workspace.getApplications().get(0);
+        File bar = workspace.createBar(new File(directory, "test.bar"), Collections.singletonList(application),
+                workspace.getSharedLibraries(), workspace.getPolicyProjects());
+
+        List<String> properties = new ValidateConfigurablePropertiesMojo().getConfigurableProperties(GeneratedWorkspace.readBar(bar));
+        List<String> names = ConfigurablePropertiesUtil.getPropNames(properties);
+        List<String> expected = ConfigurablePropertiesUtil.getPropNames(workspace.getProperties(application));
+        assertEquals(21, expected.size());
+        assertTrue(names.toString(), names.containsAll(expected));
+        // the subflows of the two nested and the shared library
+        assertEquals(expected.size() + 3 * 3 * 7, names.size());
+    }
+}
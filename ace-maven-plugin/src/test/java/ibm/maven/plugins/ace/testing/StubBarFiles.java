@@ -0,0 +1,428 @@
+package ibm.maven.plugins.ace.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes, lists and modifies bar files the way the ACE tools do, for the {@link StubToolchain}.
+ *
+ * A bar file contains one archive per deployable project (.appzip, .libzip, .policyxml), static libraries referenced by
+ * an application are nested into its .appzip. Every archive contains the project's files, a compiled stand-in (.cmf) for
+ * every flow unless deployed as source, and a deployment descriptor META-INF/broker.xml listing the configurable
+ * properties of the flows.
+ */
+final class StubBarFiles {
+
+    static final String DEPLOYMENT_DESCRIPTOR = "META-INF/broker.xml";
+
+    static final String APPLICATION_NATURE = "com.ibm.etools.msgbroker.tooling.applicationNature";
+    static final String LIBRARY_NATURE = "com.ibm.etools.msgbroker.tooling.libraryNature";
+    static final String SHARED_LIBRARY_NATURE = "com.ibm.etools.msgbroker.tooling.sharedLibraryNature";
+
+    private static final Pattern NODE = Pattern.compile("<nodes\\s([^>]*?)/?>(.*?)(</nodes>|(?=<nodes\\s)|$)", Pattern.DOTALL);
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w:]+)=\"([^\"]*)\"");
+    private static final Pattern TRANSLATION = Pattern.compile("<translation[^>]*\\sstring=\"([^\"]*)\"");
+    private static final Pattern REFERENCED_PROJECT = Pattern.compile("<project>([^<]+)</project>");
+    private static final Pattern PROPERTY = Pattern.compile("<ConfigurableProperty(?: override=\"([^\"]*)\")? uri=\"([^\"]*)\"/>");
+
+    /**
+     * hide the default constructor
+     */
+    private StubBarFiles() {
+        super();
+    }
+
+    /**
+     * writes a bar file containing the given projects of a workspace
+     *
+     * @param out receives a line per processed file
+     */
+    static void createBar(File barFile, File workspace, List<String> apps, List<String> libs, List<String> policies,
+            boolean deployAsSource, PrintStream out) throws IOException {
+        if (barFile.getParentFile() != null) {
+            barFile.getParentFile().mkdirs();
+        }
+        ZipOutputStream bar = new ZipOutputStream(new FileOutputStream(barFile));
+        try {
+            for (String app : apps) {
+                File projectDirectory = new File(workspace, app);
+                List<File> nestedLibraries = new ArrayList<File>();
+                for (String referenced : getReferencedProjects(projectDirectory)) {
+                    File referencedDirectory = new File(workspace, referenced);
+                    if (hasNature(referencedDirectory, LIBRARY_NATURE) && !hasNature(referencedDirectory, SHARED_LIBRARY_NATURE)) {
+                        nestedLibraries.add(referencedDirectory);
+                    }
+                }
+                addEntry(bar, app + ".appzip", createArchive(projectDirectory, nestedLibraries, deployAsSource, out));
+            }
+            for (String lib : libs) {
+                addEntry(bar, lib + ".libzip", createArchive(new File(workspace, lib), Collections.<File> emptyList(), deployAsSource, out));
+            }
+            for (String policy : policies) {
+                addEntry(bar, policy + ".policyxml", createArchive(new File(workspace, policy), Collections.<File> emptyList(), true, out));
+            }
+        } finally {
+            bar.close();
+        }
+    }
+
+    private static byte[] createArchive(File projectDirectory, List<File> nestedLibraries, boolean deployAsSource, PrintStream out)
+            throws IOException {
+        if (!new File(projectDirectory, ".project").isFile()) {
+            throw new IOException("BIP0183E The project '" + projectDirectory.getName() + "' does not exist in the workspace.");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream archive = new ZipOutputStream(buffer);
+        StringBuilder descriptor = new StringBuilder();
+        descriptor.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Broker>\n");
+        for (String path : listFiles(projectDirectory)) {
+            File file = new File(projectDirectory, path);
+            byte[] content = Files.readAllBytes(file.toPath());
+            out.println("Processing file '" + projectDirectory.getName() + "/" + path + "'.");
+            if (path.endsWith(".msgflow") || path.endsWith(".subflow")) {
+                appendFlow(descriptor, path, new String(content, StandardCharsets.UTF_8));
+                if (!deployAsSource) {
+                    addEntry(archive, path.substring(0, path.lastIndexOf('.')) + ".cmf", content);
+                    continue;
+                }
+            }
+            addEntry(archive, path, content);
+        }
+        descriptor.append("</Broker>\n");
+        for (File library : nestedLibraries) {
+            addEntry(archive, library.getName() + ".libzip", createArchive(library, Collections.<File> emptyList(), deployAsSource, out));
+        }
+        addEntry(archive, DEPLOYMENT_DESCRIPTOR, descriptor.toString().getBytes(StandardCharsets.UTF_8));
+        archive.close();
+        out.println("Successfully added '" + projectDirectory.getName() + "' to the BAR file.");
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @return the relative paths of the files of a project, without Eclipse metadata and build output
+     */
+    static List<String> listFiles(File projectDirectory) {
+        List<String> paths = new ArrayList<String>();
+        collectFiles(projectDirectory, "", paths);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static void collectFiles(File directory, String prefix, List<String> paths) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(".") || (prefix.isEmpty() && file.getName().equals("target"))) {
+                continue;
+            }
+            if (file.isDirectory()) {
+                collectFiles(file, prefix + file.getName() + "/", paths);
+            } else {
+                paths.add(prefix + file.getName());
+            }
+        }
+    }
+
+    /**
+     * adds the configurable properties of a flow: flow level properties for message flows and a property per node
+     * attribute
+     */
+    private static void appendFlow(StringBuilder descriptor, String path, String content) {
+        String flowName = path.substring(0, path.lastIndexOf('.')).replace('/', '.');
+        descriptor.append("<CompiledMessageFlow name=\"").append(escape(flowName)).append("\">\n");
+        if (path.endsWith(".msgflow")) {
+            appendProperty(descriptor, flowName + "#additionalInstances", null);
+            appendProperty(descriptor, flowName + "#startMode", null);
+        }
+        Matcher node = NODE.matcher(content);
+        while (node.find()) {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            Matcher attribute = ATTRIBUTE.matcher(node.group(1));
+            while (attribute.find()) {
+                attributes.put(attribute.group(1), attribute.group(2));
+            }
+            String type = attributes.remove("xmi:type");
+            String id = attributes.remove("xmi:id");
+            attributes.remove("location");
+            if (type == null || type.startsWith("eflow:")) {
+                // terminals of subflows
+                continue;
+            }
+            Matcher translation = TRANSLATION.matcher(node.group(2));
+            String label = translation.find() ? translation.group(1) : id;
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                appendProperty(descriptor, flowName + "#" + label + "." + entry.getKey(), entry.getValue());
+            }
+            if (type.contains("JavaCompute")) {
+                appendProperty(descriptor, flowName + "#" + label + ".javaClassLoader", null);
+            }
+        }
+        descriptor.append("</CompiledMessageFlow>\n");
+    }
+
+    private static void appendProperty(StringBuilder descriptor, String uri, String override) {
+        descriptor.append("<ConfigurableProperty ");
+        if (override != null) {
+            descriptor.append("override=\"").append(escape(override)).append("\" ");
+        }
+        descriptor.append("uri=\"").append(escape(uri)).append("\"/>\n");
+    }
+
+    /**
+     * writes the listing of a bar file in the format of mqsireadbar
+     *
+     * @param recursive whether the contents of the archives are listed
+     */
+    static void listBar(File barFile, boolean recursive, PrintStream out) throws IOException {
+        out.println(barFile.getAbsolutePath() + ":");
+        Map<String, byte[]> entries = readEntries(new FileInputStream(barFile));
+        String timestamp = formatTimestamp(barFile.lastModified());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            out.println("  " + entry.getKey() + " (" + timestamp + "):");
+            if (recursive && isArchive(entry.getKey())) {
+                listArchive(entry.getValue(), 4, timestamp, out);
+            }
+        }
+    }
+
+    private static void listArchive(byte[] archive, int indentation, String timestamp, PrintStream out) throws IOException {
+        String indent = spaces(indentation);
+        Map<String, byte[]> entries = readEntries(new ByteArrayInputStream(archive));
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (entry.getKey().equals(DEPLOYMENT_DESCRIPTOR)) {
+                continue;
+            }
+            out.println(indent + entry.getKey() + " (" + timestamp + "):");
+            if (isArchive(entry.getKey())) {
+                listArchive(entry.getValue(), indentation + 4, timestamp, out);
+            }
+        }
+        byte[] descriptor = entries.get(DEPLOYMENT_DESCRIPTOR);
+        if (descriptor != null) {
+            out.println(indent + "Deployment descriptor:");
+            Matcher property = PROPERTY.matcher(new String(descriptor, StandardCharsets.UTF_8));
+            while (property.find()) {
+                String override = property.group(1);
+                out.println(indent + "  " + unescape(property.group(2)) + (override == null ? "" : " = " + unescape(override)));
+            }
+        }
+    }
+
+    /**
+     * applies overrides to the deployment descriptors of a bar file
+     *
+     * @param overrides property name to value
+     * @param recursive whether nested archives are changed as well
+     * @return the overrides which didn't match any property
+     */
+    static List<String> applyOverrides(File barFile, File outputFile, Map<String, String> overrides, boolean recursive,
+            PrintStream out) throws IOException {
+        Map<String, String> unused = new LinkedHashMap<String, String>(overrides);
+        Map<String, byte[]> entries = readEntries(new FileInputStream(barFile));
+        Map<String, byte[]> changed = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] content = entry.getValue();
+            if (isArchive(entry.getKey())) {
+                content = applyOverrides(entry.getKey(), content, overrides, unused, recursive, out);
+            }
+            changed.put(entry.getKey(), content);
+        }
+        writeEntries(outputFile, changed);
+        return new ArrayList<String>(unused.keySet());
+    }
+
+    private static byte[] applyOverrides(String name, byte[] archive, Map<String, String> overrides, Map<String, String> unused,
+            boolean recursive, PrintStream out) throws IOException {
+        Map<String, byte[]> entries = readEntries(new ByteArrayInputStream(archive));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(buffer);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] content = entry.getValue();
+            if (entry.getKey().equals(DEPLOYMENT_DESCRIPTOR)) {
+                content = overrideDescriptor(name, new String(content, StandardCharsets.UTF_8), overrides, unused, out)
+                        .getBytes(StandardCharsets.UTF_8);
+            } else if (recursive && isArchive(entry.getKey())) {
+                content = applyOverrides(entry.getKey(), content, overrides, unused, recursive, out);
+            }
+            addEntry(zip, entry.getKey(), content);
+        }
+        zip.close();
+        return buffer.toByteArray();
+    }
+
+    private static String overrideDescriptor(String name, String descriptor, Map<String, String> overrides, Map<String, String> unused,
+            PrintStream out) {
+        StringBuffer result = new StringBuffer();
+        Matcher property = PROPERTY.matcher(descriptor);
+        while (property.find()) {
+            String uri = unescape(property.group(2));
+            String replacement = property.group();
+            if (overrides.containsKey(uri)) {
+                String value = overrides.get(uri);
+                unused.remove(uri);
+                out.println("BIP1140I: Overriding property " + uri + " with '" + value + "' in '" + name + "' ...");
+                replacement = "<ConfigurableProperty override=\"" + escape(value) + "\" uri=\"" + escape(uri) + "\"/>";
+            }
+            property.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        property.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * extracts the deployable archives of a bar file into the run directory of a work directory
+     */
+    static void extractBar(File barFile, File workDirectory, PrintStream out) throws IOException {
+        Map<String, byte[]> entries = readEntries(new FileInputStream(barFile));
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (!isArchive(entry.getKey())) {
+                continue;
+            }
+            String name = entry.getKey().substring(0, entry.getKey().lastIndexOf('.'));
+            File target = new File(new File(workDirectory, "run"), name);
+            // replaces a deployed resource of the same name
+            deleteRecursively(target);
+            extractArchive(entry.getValue(), target);
+            out.println("BIP8149I: Extracted '" + entry.getKey() + "' to '" + target.getAbsolutePath() + "'.");
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void extractArchive(byte[] archive, File target) throws IOException {
+        for (Map.Entry<String, byte[]> entry : readEntries(new ByteArrayInputStream(archive)).entrySet()) {
+            if (entry.getKey().endsWith(".libzip")) {
+                String name = entry.getKey().substring(0, entry.getKey().lastIndexOf('.'));
+                extractArchive(entry.getValue(), new File(target, name));
+                continue;
+            }
+            File file = new File(target, entry.getKey());
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), entry.getValue());
+        }
+    }
+
+    static List<String> getReferencedProjects(File projectDirectory) throws IOException {
+        List<String> projects = new ArrayList<String>();
+        File projectFile = new File(projectDirectory, ".project");
+        if (projectFile.isFile()) {
+            Matcher project = REFERENCED_PROJECT.matcher(new String(Files.readAllBytes(projectFile.toPath()), StandardCharsets.UTF_8));
+            while (project.find()) {
+                projects.add(project.group(1).trim());
+            }
+        }
+        return projects;
+    }
+
+    static boolean hasNature(File projectDirectory, String nature) throws IOException {
+        File projectFile = new File(projectDirectory, ".project");
+        return projectFile.isFile()
+                && new String(Files.readAllBytes(projectFile.toPath()), StandardCharsets.UTF_8).contains("<nature>" + nature + "</nature>");
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(".appzip") || name.endsWith(".libzip") || name.endsWith(".policyxml");
+    }
+
+    static Map<String, byte[]> readEntries(InputStream in) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(in);
+        try {
+            byte[] buffer = new byte[8192];
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+                entries.put(entry.getName(), content.toByteArray());
+            }
+        } finally {
+            zip.close();
+        }
+        return entries;
+    }
+
+    private static void writeEntries(File file, Map<String, byte[]> entries) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                addEntry(zip, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String formatTimestamp(long millis) {
+        return new SimpleDateFormat("M/d/yy h:mm a", Locale.US).format(new Date(millis));
+    }
+
+    private static String spaces(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&quot;", "\"").replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+    }
+}
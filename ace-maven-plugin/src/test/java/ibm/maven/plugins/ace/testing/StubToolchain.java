@@ -0,0 +1,477 @@
+package ibm.maven.plugins.ace.testing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stand-in for an ACE installation, so that the mojos can be run without ACE (e.g. on a plain Linux CI server).
+ *
+ * {@link #install(File)} writes an mqsiprofile and a script for every supported command into a directory, which can
+ * then be used as aceRunDir and toolkitInstallDir. The scripts run this class, which behaves like the real command:
+ * mqsicreatebar and mqsipackagebar write bar files with deployment descriptors derived from the flows, mqsireadbar lists
+ * them in the real format, mqsiapplybaroverride changes the overrides, mqsicreateworkdir, mqsibar and IntegrationServer
+ * prepare a work directory and run the tests of a test project, or of the classes given with --test-class (repeated
+ * for each fully qualified class name). Like the real
+ * mqsibar, deploying a bar file into a work directory replaces the resources of the same name.
+ *
+ * The behaviour can be changed in the file stub-toolchain.properties of the installation directory:
+ * <ul>
+ * <li>latency, latency.&lt;command&gt; - additional run time in milliseconds, also settable with the environment
+ * variables STUB_ACE_LATENCY and STUB_ACE_LATENCY_&lt;COMMAND&gt;</li>
+ * <li>exitCode.&lt;command&gt; - exit code, to simulate failures</li>
+ * <li>message.&lt;command&gt; - an additional line of output, e.g. a BIP error message</li>
+ * <li>testDuration - run time of every test of a test project in milliseconds</li>
+ * <li>failingTests - comma separated names (package.Class.method) of tests which fail</li>
+ * </ul>
+ * Every invocation is appended to the file invocations.log of the installation directory.
+ *
+ * The scripts are written for Linux and Mac OS; the classes of this stub must not depend on anything but the JDK.
+ */
+public final class StubToolchain {
+
+    public static final String MQSICREATEBAR = "mqsicreatebar";
+    public static final String MQSIREADBAR = "mqsireadbar";
+    public static final String MQSIAPPLYBAROVERRIDE = "mqsiapplybaroverride";
+    public static final String MQSIPACKAGEBAR = "mqsipackagebar";
+    public static final String MQSIBAR = "mqsibar";
+    public static final String MQSICREATEWORKDIR = "mqsicreateworkdir";
+    public static final String INTEGRATION_SERVER = "IntegrationServer";
+
+    public static final List<String> COMMANDS = Arrays.asList(MQSICREATEBAR, MQSIREADBAR, MQSIAPPLYBAROVERRIDE, MQSIPACKAGEBAR,
+            MQSIBAR, MQSICREATEWORKDIR, INTEGRATION_SERVER);
+
+    public static final String SETTINGS_FILE = "stub-toolchain.properties";
+    public static final String INVOCATIONS_FILE = "invocations.log";
+
+    private static final String SUCCESS = "BIP8071I: Successful command completion.";
+
+    private static final Pattern TEST_CLASS = Pattern.compile("\\bclass\\s+(\\w+)");
+    private static final Pattern TEST_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final Pattern TEST_METHOD = Pattern.compile("@Test\\s+public\\s+void\\s+(\\w+)\\s*\\(");
+
+    private final File aceHome;
+    private final Properties settings;
+    private final PrintStream out;
+
+    private StubToolchain(File aceHome, Properties settings, PrintStream out) {
+        this.aceHome = aceHome;
+        this.settings = settings;
+        this.out = out;
+    }
+
+    /**
+     * installs the stub toolchain with default settings
+     *
+     * @param aceHome the directory to be used as aceRunDir and toolkitInstallDir
+     * @return aceHome
+     */
+    public static File install(File aceHome) throws IOException {
+        return install(aceHome, new Properties());
+    }
+
+    /**
+     * installs the stub toolchain
+     *
+     * @param aceHome the directory to be used as aceRunDir and toolkitInstallDir
+     * @param settings the settings described in the class comment
+     * @return aceHome
+     */
+    public static File install(File aceHome, Properties settings) throws IOException {
+        aceHome = aceHome.getAbsoluteFile();
+        aceHome.mkdirs();
+        String java = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+        String classpath;
+        try {
+            classpath = new File(StubToolchain.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+        } catch (URISyntaxException e) {
+            throw new IOException("Could not determine the location of the stub classes", e);
+        }
+
+        StringBuilder profile = new StringBuilder();
+        profile.append("# mqsiprofile of the ACE stub toolchain\n");
+        profile.append("export MQSI_VERSION=12.0.0.0\n");
+        profile.append("export MQSI_FILEPATH=").append(quote(aceHome.getPath())).append("\n");
+        profile.append("export PATH=").append(quote(aceHome.getPath())).append(":\"$PATH\"\n");
+        writeExecutable(new File(aceHome, "mqsiprofile"), profile.toString());
+
+        for (String command : COMMANDS) {
+            StringBuilder script = new StringBuilder();
+            script.append("#!/bin/sh\n");
+            script.append("# ").append(command).append(" of the ACE stub toolchain\n");
+            script.append("exec ").append(quote(java)).append(" -Xshare:auto -XX:TieredStopAtLevel=1 -cp ").append(quote(classpath))
+                    .append(' ').append(StubToolchain.class.getName()).append(' ').append(quote(aceHome.getPath())).append(' ')
+                    .append(command).append(" \"$@\"\n");
+            writeExecutable(new File(aceHome, command), script.toString());
+        }
+        storeSettings(aceHome, settings);
+        return aceHome;
+    }
+
+    /**
+     * changes a single setting of an installed stub toolchain
+     */
+    public static void setSetting(File aceHome, String key, String value) throws IOException {
+        Properties settings = loadSettings(aceHome);
+        if (value == null) {
+            settings.remove(key);
+        } else {
+            settings.setProperty(key, value);
+        }
+        storeSettings(aceHome, settings);
+    }
+
+    /**
+     * @return the logged invocations, one line per command with its arguments
+     */
+    public static List<String> getInvocations(File aceHome) throws IOException {
+        File log = new File(aceHome, INVOCATIONS_FILE);
+        if (!log.isFile()) {
+            return new ArrayList<String>();
+        }
+        return Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private static void writeExecutable(File file, String content) throws IOException {
+        StubBarFiles.write(file, content);
+        if (!file.setExecutable(true)) {
+            throw new IOException("Could not make executable: " + file);
+        }
+    }
+
+    private static Properties loadSettings(File aceHome) throws IOException {
+        Properties settings = new Properties();
+        File file = new File(aceHome, SETTINGS_FILE);
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                settings.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return settings;
+    }
+
+    private static void storeSettings(File aceHome, Properties settings) throws IOException {
+        OutputStream out = new FileOutputStream(new File(aceHome, SETTINGS_FILE));
+        try {
+            settings.store(out, "settings of the ACE stub toolchain");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param args the installation directory, the command and its arguments
+     */
+    public static void main(String[] args) throws IOException {
+        File aceHome = new File(args[0]);
+        String command = args[1];
+        List<String> params = Arrays.asList(args).subList(2, args.length);
+        logInvocation(aceHome, command, params);
+
+        StubToolchain stub = new StubToolchain(aceHome, loadSettings(aceHome), System.out);
+        int exitCode;
+        try {
+            exitCode = stub.run(command, params);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            exitCode = 1;
+        }
+        System.out.flush();
+        System.exit(exitCode);
+    }
+
+    private static void logInvocation(File aceHome, String command, List<String> params) throws IOException {
+        StringBuilder line = new StringBuilder(command);
+        for (String param : params) {
+            line.append(' ').append(param);
+        }
+        line.append('\n');
+        // appends of a single write are atomic, even if several builds use the stub concurrently
+        OutputStream out = new FileOutputStream(new File(aceHome, INVOCATIONS_FILE), true);
+        try {
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private int run(String command, List<String> params) throws IOException, InterruptedException {
+        Map<String, List<String>> options = parseOptions(params);
+        String message = settings.getProperty("message." + command);
+        if (message != null) {
+            out.println(message);
+        }
+
+        int exitCode = Integer.parseInt(settings.getProperty("exitCode." + command, "0"));
+        if (MQSICREATEBAR.equals(command)) {
+            createBar(options);
+        } else if (MQSIPACKAGEBAR.equals(command)) {
+            packageBar(options);
+        } else if (MQSIREADBAR.equals(command)) {
+            readBar(options);
+        } else if (MQSIAPPLYBAROVERRIDE.equals(command)) {
+            applyBarOverride(options);
+        } else if (MQSICREATEWORKDIR.equals(command)) {
+            createWorkDir(params);
+        } else if (MQSIBAR.equals(command)) {
+            extractBar(options);
+        } else if (INTEGRATION_SERVER.equals(command)) {
+            if (!options.containsKey("--test-project")) {
+                throw new IOException("The stub IntegrationServer only runs test projects, --test-project is missing");
+            }
+            exitCode = Math.max(exitCode, runTests(options, params));
+        } else {
+            throw new IOException("BIP8013E: Unknown command: " + command);
+        }
+
+        Thread.sleep(getLatency(command));
+        if (exitCode == 0) {
+            out.println(SUCCESS);
+        }
+        return exitCode;
+    }
+
+    private long getLatency(String command) {
+        String latency = System.getenv("STUB_ACE_LATENCY_" + command.toUpperCase(Locale.ROOT));
+        if (latency == null) {
+            latency = System.getenv("STUB_ACE_LATENCY");
+        }
+        if (latency == null) {
+            latency = settings.getProperty("latency." + command, settings.getProperty("latency", "0"));
+        }
+        return Long.parseLong(latency.trim());
+    }
+
+    /**
+     * @return the values of every option (e.g. "-a" or "--bar-file"), arguments before the first option are stored
+     *         with the key ""
+     */
+    static Map<String, List<String>> parseOptions(List<String> params) {
+        Map<String, List<String>> options = new LinkedHashMap<String, List<String>>();
+        List<String> values = new ArrayList<String>();
+        options.put("", values);
+        for (String param : params) {
+            if (param.startsWith("-") && !param.matches("-\\d+")) {
+                values = options.get(param);
+                if (values == null) {
+                    values = new ArrayList<String>();
+                    options.put(param, values);
+                }
+            } else {
+                values.add(param);
+            }
+        }
+        return options;
+    }
+
+    private static List<String> getValues(Map<String, List<String>> options, String option) {
+        List<String> values = options.get(option);
+        return values == null ? new ArrayList<String>() : values;
+    }
+
+    private static String getValue(Map<String, List<String>> options, String option) throws IOException {
+        List<String> values = options.get(option);
+        if (values == null || values.isEmpty()) {
+            throw new IOException("BIP1003E: The required parameter " + option + " is missing.");
+        }
+        return values.get(0);
+    }
+
+    private void createBar(Map<String, List<String>> options) throws IOException {
+        File workspace = new File(getValue(options, "-data"));
+        File barFile = new File(getValue(options, "-b"));
+        out.println("Initializing workspace " + workspace.getAbsolutePath() + " ...");
+        out.println("Building workspace...");
+        traceTo(options, "mqsicreatebar " + barFile.getAbsolutePath());
+        StubBarFiles.createBar(barFile, workspace, getValues(options, "-a"), getValues(options, "-l"), getValues(options, "-x"),
+                options.containsKey("-deployAsSource"), out);
+        out.println("BIP0957I: Bar file '" + barFile.getAbsolutePath() + "' was created.");
+    }
+
+    private void packageBar(Map<String, List<String>> options) throws IOException {
+        File workspace = new File(getValue(options, "-w"));
+        File barFile = new File(getValue(options, "-a"));
+        traceTo(options, "mqsipackagebar " + barFile.getAbsolutePath());
+        List<String> apps = new ArrayList<String>(getValues(options, "-k"));
+        apps.addAll(getValues(options, "-t"));
+        StubBarFiles.createBar(barFile, workspace, apps, getValues(options, "-y"), getValues(options, "-x"), true, out);
+    }
+
+    private void readBar(Map<String, List<String>> options) throws IOException {
+        out.println("BIP1051I: Reading Bar file using toolkit mqsireadbar...");
+        StubBarFiles.listBar(new File(getValue(options, "-b")), options.containsKey("-r"), out);
+        out.println();
+    }
+
+    private void applyBarOverride(Map<String, List<String>> options) throws IOException {
+        File barFile = new File(getValue(options, "-b"));
+        File outputFile = options.containsKey("-o") ? new File(getValue(options, "-o")) : barFile;
+        traceTo(options, "mqsiapplybaroverride " + barFile.getAbsolutePath());
+        out.println("BIP1138I: Applying overrides using runtime mqsiapplybaroverride...");
+
+        Map<String, String> overrides = new LinkedHashMap<String, String>();
+        for (String override : getValues(options, "-p")) {
+            for (String line : Files.readAllLines(new File(override).toPath(), StandardCharsets.UTF_8)) {
+                int separator = line.indexOf('=');
+                if (line.trim().isEmpty() || line.trim().startsWith("#") || separator < 0) {
+                    continue;
+                }
+                overrides.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+            }
+        }
+        for (String unused : StubBarFiles.applyOverrides(barFile, outputFile, overrides, options.containsKey("-r"), out)) {
+            out.println("BIP1143W: The property '" + unused + "' was not found in the deployment descriptor.");
+        }
+    }
+
+    private void createWorkDir(List<String> params) throws IOException {
+        if (params.isEmpty()) {
+            throw new IOException("BIP1003E: The required parameter work directory is missing.");
+        }
+        File workDir = new File(params.get(0));
+        for (String directory : new String[] { "config", "log", "overrides", "run" }) {
+            new File(workDir, directory).mkdirs();
+        }
+        StubBarFiles.write(new File(workDir, "server.conf.yaml"), "# server.conf.yaml of the ACE stub toolchain\n");
+        out.println("mqsicreateworkdir: Copying sample server.config.yaml to work directory");
+        out.println("        1 file(s) copied.");
+    }
+
+    private void extractBar(Map<String, List<String>> options) throws IOException {
+        StubBarFiles.extractBar(new File(getValue(options, "--bar-file")), new File(getValue(options, "--working-directory")), out);
+    }
+
+    /**
+     * runs the tests found in the sources of the test project, printing the results in the format of the
+     * IntegrationServer
+     *
+     * @return the exit code
+     */
+    private int runTests(Map<String, List<String>> options, List<String> params) throws IOException, InterruptedException {
+        File workDir = new File(getValue(options, "--work-dir"));
+        String testProject = getValue(options, "--test-project");
+        out.println("2024-01-01 12:00:00.000000Z: Integration server 'stub' starting initialization; version '12.0.0.0' (64-bit)");
+        out.println("2024-01-01 12:00:00.100000Z: BIP2208I: Integration server (64-bit) starting.");
+        out.println("2024-01-01 12:00:00.200000Z: BIP9905I: Initializing resource managers.");
+
+        File projectDirectory = new File(new File(workDir, "run"), testProject);
+        Map<String, List<String>> tests = findTests(projectDirectory);
+        if (options.containsKey("--test-class")) {
+            List<String> testClasses = getValues(options, "--test-class");
+            if (testClasses.size() != Collections.frequency(params, "--test-class")) {
+                throw new IOException("--test-class takes a single test class, repeat it for more: " + testClasses);
+            }
+            for (String testClass : testClasses) {
+                if (!tests.containsKey(testClass)) {
+                    throw new IOException("The test class '" + testClass + "' was not found in " + testProject);
+                }
+            }
+            tests.keySet().retainAll(testClasses);
+        }
+        out.println("2024-01-01 12:00:01.000000Z: BIP2155I: About to 'Start' the deployed resource '" + testProject + "' of type 'Application'.");
+
+        long testDuration = Long.parseLong(settings.getProperty("testDuration", "0"));
+        List<String> failingTests = Arrays.asList(settings.getProperty("failingTests", "").split("\\s*,\\s*"));
+        int count = 0;
+        for (List<String> methods : tests.values()) {
+            count += methods.size();
+        }
+        List<String> failed = new ArrayList<String>();
+        long start = System.currentTimeMillis();
+        out.println("[==========] Running " + count + " tests from " + tests.size() + " test classes");
+        for (Map.Entry<String, List<String>> testClass : tests.entrySet()) {
+            long classStart = System.currentTimeMillis();
+            out.println("[----------] " + testClass.getValue().size() + " tests from " + testClass.getKey());
+            for (String method : testClass.getValue()) {
+                String name = testClass.getKey() + "." + method;
+                long testStart = System.currentTimeMillis();
+                out.println("[ RUN      ] " + name);
+                Thread.sleep(testDuration);
+                long elapsed = System.currentTimeMillis() - testStart;
+                if (failingTests.contains(name)) {
+                    failed.add(name);
+                    out.println(testClass.getKey().replace('.', '/') + ".java:1: Failure");
+                    out.println("Expected: <true> but was: <false>");
+                    out.println("[  FAILED  ] " + name + " (" + elapsed + " ms)");
+                } else {
+                    out.println("[       OK ] " + name + " (" + elapsed + " ms)");
+                }
+            }
+            out.println("[----------] " + testClass.getValue().size() + " tests from " + testClass.getKey() + " ("
+                    + (System.currentTimeMillis() - classStart) + " ms total)");
+            out.println();
+        }
+        out.println("[==========] " + count + " tests from " + tests.size() + " test classes ran. (" + (System.currentTimeMillis() - start)
+                + " ms total)");
+        out.println("[  PASSED  ] " + (count - failed.size()) + " tests.");
+        if (!failed.isEmpty()) {
+            out.println("[  FAILED  ] " + failed.size() + " tests, listed below:");
+            for (String name : failed) {
+                out.println("[  FAILED  ] " + name);
+            }
+        }
+        out.println("2024-01-01 12:00:02.000000Z: BIP2204I: Integration server 'stub' is shutting down.");
+        return failed.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * @return fully qualified test class name to test methods, found in the java sources of the project
+     */
+    static Map<String, List<String>> findTests(File projectDirectory) throws IOException {
+        Map<String, List<String>> tests = new LinkedHashMap<String, List<String>>();
+        if (!projectDirectory.isDirectory()) {
+            return tests;
+        }
+        for (String path : StubBarFiles.listFiles(projectDirectory)) {
+            if (!path.endsWith(".java")) {
+                continue;
+            }
+            String source = new String(Files.readAllBytes(new File(projectDirectory, path).toPath()), StandardCharsets.UTF_8);
+            Matcher testClass = TEST_CLASS.matcher(source);
+            if (!testClass.find()) {
+                continue;
+            }
+            List<String> methods = new ArrayList<String>();
+            Matcher method = TEST_METHOD.matcher(source);
+            while (method.find()) {
+                methods.add(method.group(1));
+            }
+            if (!methods.isEmpty()) {
+                Matcher packageName = TEST_PACKAGE.matcher(source);
+                tests.put(packageName.find() ? packageName.group(1) + "." + testClass.group(1) : testClass.group(1), methods);
+            }
+        }
+        return tests;
+    }
+
+    private void traceTo(Map<String, List<String>> options, String line) throws IOException {
+        if (options.containsKey("-v")) {
+            File traceFile = new File(getValue(options, "-v"));
+            StubBarFiles.write(traceFile, "Stub trace: " + line + "\n");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ibm.maven.plugins.ace.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.ExternalResource;
+
+/**
+ * The bar files of a test: a rule providing a directory of its own below target, deleted after the test, and helpers
+ * writing the entries and nested archives of bar files.
+ *
+ * The {@link StubToolchain} runs without JUnit, so {@link StubBarFiles} doesn't use this class.
+ */
+public final class TestBarFiles extends ExternalResource {
+
+    private File directory;
+
+    @Override
+    protected void before() {
+        directory = new File("target", UUID.randomUUID().toString());
+        directory.mkdirs();
+    }
+
+    @Override
+    protected void after() {
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not delete " + directory, e);
+        }
+    }
+
+    /**
+     * @param path the path of a file relative to the directory of the test, which doesn't need to exist
+     */
+    public File getFile(String path) {
+        return new File(directory, path);
+    }
+
+    /**
+     * @param namesAndContents the names of the entries, each followed by its content as byte[] or String (UTF-8)
+     * @return the content of an archive (.appzip, .libzip, ...) with the entries
+     */
+    public static byte[] createArchive(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream archive = new ZipOutputStream(buffer);
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            Object content = namesAndContents[i + 1];
+            addEntry(archive, (String) namesAndContents[i], content instanceof String ? ((String) content).getBytes(StandardCharsets.UTF_8)
+                    : (byte[]) content);
+        }
+        archive.close();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * adds a deflated entry
+     */
+    public static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        StubBarFiles.addEntry(zip, name, content);
+    }
+
+    /**
+     * adds an entry which isn't compressed
+     */
+    public static void addStoredEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
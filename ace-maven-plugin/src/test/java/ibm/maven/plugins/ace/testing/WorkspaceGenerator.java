@@ -0,0 +1,587 @@
+package ibm.maven.plugins.ace.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes synthetic ACE workspaces of arbitrary size: applications, libraries, shared libraries, policy projects and
+ * test projects, each with a .project file carrying the natures checked by EclipseProjectUtils and a pom.xml.
+ * Applications and libraries contain message flows (subflows for libraries) with ESQL, applications also properties
+ * files overriding all their configurable properties. The flows are built so that the {@link StubToolchain} derives
+ * exactly the configurable properties reported by {@link GeneratedWorkspace#getProperties(String)}.
+ *
+ * All output is deterministic, so measurements with the same settings are comparable.
+ */
+public class WorkspaceGenerator {
+
+    public static final String APPLICATION_NATURE = StubBarFiles.APPLICATION_NATURE;
+    public static final String LIBRARY_NATURE = StubBarFiles.LIBRARY_NATURE;
+    public static final String SHARED_LIBRARY_NATURE = StubBarFiles.SHARED_LIBRARY_NATURE;
+    public static final String POLICY_NATURE = "com.ibm.etools.mft.policy.ui.Nature";
+    public static final String TEST_PROJECT_NATURE = "com.ibm.etools.msgbroker.tooling.testProjectNature";
+
+    private static final String BROKER_PROJECT_NATURE = "com.ibm.etools.msgbroker.tooling.messageBrokerProjectNature";
+
+    private int applications = 1;
+    private int libraries = 0;
+    private int sharedLibraries = 0;
+    private int policyProjects = 0;
+    private int testProjects = 0;
+    private int librariesPerApplication = 1;
+    private int flowsPerProject = 5;
+    private int propertiesPerFlow = 10;
+    private int testsPerProject = 10;
+    private int testClassesPerProject = 1;
+    private List<String> environments = Collections.singletonList("DEV");
+    private String groupId = "com.example.ace";
+    private String version = "1.0.0-SNAPSHOT";
+    private String pluginVersion;
+
+    /**
+     * @param count number of applications (default 1)
+     */
+    public WorkspaceGenerator applications(int count) {
+        this.applications = count;
+        return this;
+    }
+
+    /**
+     * @param count number of static libraries (default 0)
+     */
+    public WorkspaceGenerator libraries(int count) {
+        this.libraries = count;
+        return this;
+    }
+
+    /**
+     * @param count number of shared libraries (default 0)
+     */
+    public WorkspaceGenerator sharedLibraries(int count) {
+        this.sharedLibraries = count;
+        return this;
+    }
+
+    /**
+     * @param count number of policy projects (default 0)
+     */
+    public WorkspaceGenerator policyProjects(int count) {
+        this.policyProjects = count;
+        return this;
+    }
+
+    /**
+     * @param count number of test projects (default 0), each testing one application
+     */
+    public WorkspaceGenerator testProjects(int count) {
+        this.testProjects = count;
+        return this;
+    }
+
+    /**
+     * @param count number of static libraries referenced by every application (default 1)
+     */
+    public WorkspaceGenerator librariesPerApplication(int count) {
+        this.librariesPerApplication = count;
+        return this;
+    }
+
+    /**
+     * @param count number of message flows per application and subflows per library (default 5)
+     */
+    public WorkspaceGenerator flowsPerProject(int count) {
+        this.flowsPerProject = count;
+        return this;
+    }
+
+    /**
+     * @param count number of configurable properties per message flow, at least 2 (default 10)
+     */
+    public WorkspaceGenerator propertiesPerFlow(int count) {
+        this.propertiesPerFlow = Math.max(2, count);
+        return this;
+    }
+
+    /**
+     * @param count number of test methods per test project (default 10)
+     */
+    public WorkspaceGenerator testsPerProject(int count) {
+        this.testsPerProject = count;
+        return this;
+    }
+
+    /**
+     * @param count number of test classes per test project, the test methods are spread over them (default 1)
+     */
+    public WorkspaceGenerator testClassesPerProject(int count) {
+        this.testClassesPerProject = count;
+        return this;
+    }
+
+    /**
+     * @param names the environments, a properties file is written for each of them (default DEV)
+     */
+    public WorkspaceGenerator environments(String... names) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, names);
+        this.environments = list;
+        return this;
+    }
+
+    public WorkspaceGenerator groupId(String groupId) {
+        this.groupId = groupId;
+        return this;
+    }
+
+    public WorkspaceGenerator version(String version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * @param pluginVersion if set, the poms use the ace-maven-plugin in this version and the workspace gets an
+     *            aggregator pom.xml, so that it can be built with Maven
+     */
+    public WorkspaceGenerator pluginVersion(String pluginVersion) {
+        this.pluginVersion = pluginVersion;
+        return this;
+    }
+
+    /**
+     * writes the projects into a workspace directory
+     *
+     * @param workspace the workspace directory, created if necessary
+     * @return a description of the generated workspace
+     */
+    public GeneratedWorkspace generate(File workspace) throws IOException {
+        workspace = workspace.getAbsoluteFile();
+        workspace.mkdirs();
+        GeneratedWorkspace result = new GeneratedWorkspace(workspace);
+
+        for (int i = 0; i < libraries; i++) {
+            String name = projectName("Lib", i);
+            File project = new File(workspace, name);
+            writeProjectFile(project, name, Collections.<String> emptyList(), LIBRARY_NATURE);
+            writeFlows(project, name, ".subflow", result);
+            writePom(project, name, "ace-src", Collections.<String> emptyList(), workspace);
+            result.libraries.add(name);
+        }
+        for (int i = 0; i < sharedLibraries; i++) {
+            String name = projectName("SharedLib", i);
+            File project = new File(workspace, name);
+            writeProjectFile(project, name, Collections.<String> emptyList(), SHARED_LIBRARY_NATURE);
+            writeFlows(project, name, ".subflow", result);
+            writePom(project, name, "ace-src", Collections.<String> emptyList(), workspace);
+            result.sharedLibraries.add(name);
+        }
+        for (int i = 0; i < policyProjects; i++) {
+            String name = projectName("Policies", i);
+            File project = new File(workspace, name);
+            writeProjectFile(project, name, Collections.<String> emptyList(), POLICY_NATURE);
+            writePolicies(project);
+            writePom(project, name, "ace-src", Collections.<String> emptyList(), workspace);
+            result.policyProjects.add(name);
+        }
+        for (int i = 0; i < applications; i++) {
+            String name = projectName("App", i);
+            File project = new File(workspace, name);
+            List<String> references = new ArrayList<String>();
+            for (int j = 0; j < Math.min(librariesPerApplication, libraries); j++) {
+                references.add(result.libraries.get((i * librariesPerApplication + j) % libraries));
+            }
+            if (sharedLibraries > 0) {
+                references.add(result.sharedLibraries.get(i % sharedLibraries));
+            }
+            writeProjectFile(project, name, references, APPLICATION_NATURE);
+            result.references.put(name, references);
+            List<String> properties = writeFlows(project, name, ".msgflow", result);
+            writePropertiesFiles(project, properties, result);
+            writePom(project, name, "ace-bar", references, workspace);
+            result.applications.add(name);
+            result.properties.put(name, properties);
+        }
+        for (int i = 0; i < testProjects && applications > 0; i++) {
+            String application = result.applications.get(i % applications);
+            String name = application + "_Test" + (i < applications ? "" : "_" + i);
+            File project = new File(workspace, name);
+            writeProjectFile(project, name, Collections.singletonList(application), TEST_PROJECT_NATURE);
+            writeTests(project, name, result);
+            writePom(project, name, "ace-testproj", Collections.<String> emptyList(), workspace);
+            result.testProjects.add(name);
+        }
+        if (pluginVersion != null) {
+            writeAggregatorPom(workspace, result);
+        }
+        return result;
+    }
+
+    private static String projectName(String prefix, int index) {
+        return String.format("%s%04d", prefix, index);
+    }
+
+    private void writeProjectFile(File project, String name, List<String> references, String nature) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<projectDescription>\n");
+        sb.append("\t<name>").append(name).append("</name>\n");
+        sb.append("\t<comment></comment>\n");
+        sb.append("\t<projects>\n");
+        for (String reference : references) {
+            sb.append("\t\t<project>").append(reference).append("</project>\n");
+        }
+        sb.append("\t</projects>\n");
+        sb.append("\t<buildSpec>\n");
+        for (String builder : new String[] { "com.ibm.etools.mft.applib.applibbuilder", "com.ibm.etools.mft.esql.lang.esqllangbuilder",
+                "com.ibm.etools.mft.flow.msgflowbuilder", "com.ibm.etools.mft.bar.ext.barbuilder" }) {
+            sb.append("\t\t<buildCommand>\n");
+            sb.append("\t\t\t<name>").append(builder).append("</name>\n");
+            sb.append("\t\t\t<arguments>\n\t\t\t</arguments>\n");
+            sb.append("\t\t</buildCommand>\n");
+        }
+        sb.append("\t</buildSpec>\n");
+        sb.append("\t<natures>\n");
+        sb.append("\t\t<nature>org.eclipse.m2e.core.maven2Nature</nature>\n");
+        if (!POLICY_NATURE.equals(nature)) {
+            sb.append("\t\t<nature>").append(BROKER_PROJECT_NATURE).append("</nature>\n");
+        }
+        sb.append("\t\t<nature>").append(nature).append("</nature>\n");
+        sb.append("\t</natures>\n");
+        sb.append("</projectDescription>\n");
+        StubBarFiles.write(new File(project, ".project"), sb.toString());
+    }
+
+    /**
+     * writes the flows and their ESQL
+     *
+     * @return the configurable properties of the flows, "name = value"
+     */
+    private List<String> writeFlows(File project, String projectName, String extension, GeneratedWorkspace result) throws IOException {
+        List<String> properties = new ArrayList<String>();
+        String packagePath = "com/example/" + projectName.toLowerCase();
+        String schema = packagePath.replace('/', '.');
+        for (int f = 0; f < flowsPerProject; f++) {
+            String flow = "Flow" + f;
+            String flowName = schema + "." + flow;
+            StringBuilder sb = new StringBuilder();
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\"");
+            sb.append(" xmlns:ComIbmMQInput.msgnode=\"ComIbmMQInput.msgnode\" xmlns:ComIbmCompute.msgnode=\"ComIbmCompute.msgnode\"");
+            sb.append(" xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" xmlns:eflow=\"http://www.ibm.com/wbi/2005/eflow\"");
+            sb.append(" xmlns:utility=\"http://www.ibm.com/wbi/2005/eflow_utility\" nsURI=\"").append(packagePath).append('/').append(flow)
+                    .append(extension).append("\" nsPrefix=\"").append(packagePath.replace('/', '_')).append('_').append(flow).append(extension)
+                    .append("\">\n");
+            sb.append("<eClassifiers xmi:type=\"eflow:FCMComposite\" name=\"FCMComposite_1\">\n");
+            sb.append("<eSuperTypes href=\"http://www.ibm.com/wbi/2005/eflow#//FCMBlock\"/>\n");
+            sb.append("<translation xmi:type=\"utility:TranslatableString\" key=\"").append(flow).append("\" bundleName=\"").append(packagePath)
+                    .append('/').append(flow).append("\" pluginId=\"").append(projectName).append("\"/>\n");
+            sb.append("<composition>\n");
+
+            int remaining = propertiesPerFlow;
+            if (".msgflow".equals(extension)) {
+                properties.add(flowName + "#additionalInstances = 0");
+                properties.add(flowName + "#startMode = Maintained");
+                remaining -= 2;
+            } else {
+                sb.append("<nodes xmi:type=\"eflow:FCMSource\" xmi:id=\"InTerminal.Input_1\" location=\"20,20\">\n");
+                sb.append("<translation xmi:type=\"utility:ConstantString\" string=\"Input\"/>\n</nodes>\n");
+            }
+            int node = 1;
+            if (remaining > 0 && ".msgflow".equals(extension)) {
+                String queue = (projectName + "." + flow + ".IN").toUpperCase();
+                sb.append("<nodes xmi:type=\"ComIbmMQInput.msgnode:FCMComposite_1\" xmi:id=\"FCMComposite_1_").append(node)
+                        .append("\" location=\"20,20\" queueName=\"").append(queue).append("\">\n");
+                sb.append("<translation xmi:type=\"utility:ConstantString\" string=\"MQ Input\"/>\n</nodes>\n");
+                properties.add(flowName + "#MQ Input.queueName = " + queue);
+                remaining--;
+                node++;
+            }
+            while (remaining > 0) {
+                String label = "Compute " + node;
+                String expression = "esql://routine/" + schema + "#" + flow + "_Compute" + node + ".Main";
+                sb.append("<nodes xmi:type=\"ComIbmCompute.msgnode:FCMComposite_1\" xmi:id=\"FCMComposite_1_").append(node)
+                        .append("\" location=\"").append(20 + 100 * node).append(",20\" computeExpression=\"").append(expression).append('"');
+                properties.add(flowName + "#" + label + ".computeExpression = " + expression);
+                remaining--;
+                if (remaining > 0) {
+                    String dataSource = "DS" + (node % 3);
+                    sb.append(" dataSource=\"").append(dataSource).append('"');
+                    properties.add(flowName + "#" + label + ".dataSource = " + dataSource);
+                    remaining--;
+                }
+                sb.append(">\n<translation xmi:type=\"utility:ConstantString\" string=\"").append(label).append("\"/>\n</nodes>\n");
+                node++;
+            }
+            sb.append("</composition>\n</eClassifiers>\n</ecore:EPackage>\n");
+            StubBarFiles.write(new File(project, packagePath + "/" + flow + extension), sb.toString());
+            writeEsql(project, packagePath, schema, flow, node);
+            result.flows++;
+            result.files += 2;
+        }
+        result.propertyCount += properties.size();
+        return properties;
+    }
+
+    private void writeEsql(File project, String packagePath, String schema, String flow, int nodes) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BROKER SCHEMA ").append(schema).append("\n\n");
+        for (int node = 1; node < nodes; node++) {
+            sb.append("CREATE COMPUTE MODULE ").append(flow).append("_Compute").append(node).append("\n");
+            sb.append("\tCREATE FUNCTION Main() RETURNS BOOLEAN\n");
+            sb.append("\tBEGIN\n");
+            sb.append("\t\tSET OutputRoot = InputRoot;\n");
+            sb.append("\t\tSET OutputRoot.XMLNSC.Result.Node = ").append(node).append(";\n");
+            sb.append("\t\tRETURN TRUE;\n");
+            sb.append("\tEND;\n");
+            sb.append("END MODULE;\n\n");
+        }
+        StubBarFiles.write(new File(project, packagePath + "/" + flow + "_Compute.esql"), sb.toString());
+    }
+
+    private void writePropertiesFiles(File project, List<String> properties, GeneratedWorkspace result) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String property : properties) {
+            sb.append(property).append('\n');
+        }
+        for (String environment : environments) {
+            StubBarFiles.write(new File(project, "properties/" + environment + ".properties"), sb.toString());
+            result.files++;
+        }
+    }
+
+    private void writePolicies(File project) throws IOException {
+        StubBarFiles.write(new File(project, "policy.descriptor"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<ns2:policyProjectDescriptor xmlns=\"http://com.ibm.etools.mft.descriptor.base\" xmlns:ns2=\"http://com.ibm.etools.mft.descriptor.policyProject\"/>\n");
+        for (int i = 0; i < 3; i++) {
+            StubBarFiles.write(new File(project, "DataSource" + i + ".policyxml"),
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<policies>\n  <policy policyType=\"JDBCProviders\" policyName=\"DataSource" + i
+                            + "\" policyTemplate=\"DB2_91_Linux\">\n    <databaseName>DB" + i + "</databaseName>\n  </policy>\n</policies>\n");
+        }
+    }
+
+    private void writeTests(File project, String name, GeneratedWorkspace result) throws IOException {
+        for (int c = 0; c < testClassesPerProject; c++) {
+            String testClass = GeneratedWorkspace.getTestClass(name, c);
+            String packageName = testClass.substring(0, testClass.lastIndexOf('.'));
+            String className = testClass.substring(packageName.length() + 1);
+            StringBuilder sb = new StringBuilder();
+            sb.append("package ").append(packageName).append(";\n\n");
+            sb.append("import org.junit.jupiter.api.Test;\n\n");
+            sb.append("public class ").append(className).append(" {\n");
+            for (int i = c; i < testsPerProject; i += testClassesPerProject) {
+                sb.append("\n\t@Test\n\tpublic void test").append(i).append("() throws Exception {\n\t}\n");
+            }
+            sb.append("}\n");
+            StubBarFiles.write(new File(project, testClass.replace('.', '/') + ".java"), sb.toString());
+            result.files++;
+        }
+        result.tests += testsPerProject;
+    }
+
+    private void writePom(File project, String name, String packaging, List<String> dependencies, File workspace) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+        sb.append(" xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\">\n");
+        sb.append("\t<modelVersion>4.0.0</modelVersion>\n");
+        sb.append("\t<groupId>").append(groupId).append("</groupId>\n");
+        sb.append("\t<artifactId>").append(name).append("</artifactId>\n");
+        sb.append("\t<version>").append(version).append("</version>\n");
+        sb.append("\t<packaging>").append(packaging).append("</packaging>\n");
+        if (!dependencies.isEmpty()) {
+            sb.append("\t<dependencies>\n");
+            for (String dependency : dependencies) {
+                sb.append("\t\t<dependency>\n");
+                sb.append("\t\t\t<groupId>").append(groupId).append("</groupId>\n");
+                sb.append("\t\t\t<artifactId>").append(dependency).append("</artifactId>\n");
+                sb.append("\t\t\t<version>").append(version).append("</version>\n");
+                sb.append("\t\t\t<type>zip</type>\n");
+                sb.append("\t\t</dependency>\n");
+            }
+            sb.append("\t</dependencies>\n");
+        }
+        if (pluginVersion != null) {
+            sb.append("\t<build>\n\t\t<plugins>\n\t\t\t<plugin>\n");
+            sb.append("\t\t\t\t<groupId>ibm.maven.plugins</groupId>\n");
+            sb.append("\t\t\t\t<artifactId>ace-maven-plugin</artifactId>\n");
+            sb.append("\t\t\t\t<version>").append(pluginVersion).append("</version>\n");
+            sb.append("\t\t\t\t<extensions>true</extensions>\n");
+            sb.append("\t\t\t\t<configuration>\n");
+            sb.append("\t\t\t\t\t<toolkitInstallDir>${ace.dir}</toolkitInstallDir>\n");
+            sb.append("\t\t\t\t\t<aceRunDir>${ace.rundir}</aceRunDir>\n");
+            sb.append("\t\t\t\t\t<workspace>").append(workspace.getAbsolutePath()).append("</workspace>\n");
+            sb.append("\t\t\t\t\t<applicationName>${project.artifactId}</applicationName>\n");
+            sb.append("\t\t\t\t\t<barName>${project.build.directory}/ace/${project.artifactId}.bar</barName>\n");
+            sb.append("\t\t\t\t\t<configPropFileDirectory>${basedir}/properties</configPropFileDirectory>\n");
+            sb.append("\t\t\t\t\t<defaultPropertiesFile>${project.build.directory}/ace/${project.artifactId}.properties</defaultPropertiesFile>\n");
+            sb.append("\t\t\t\t\t<debugWorkspace>true</debugWorkspace>\n");
+            sb.append("\t\t\t\t</configuration>\n");
+            sb.append("\t\t\t</plugin>\n\t\t</plugins>\n\t</build>\n");
+        }
+        sb.append("</project>\n");
+        StubBarFiles.write(new File(project, "pom.xml"), sb.toString());
+    }
+
+    private void writeAggregatorPom(File workspace, GeneratedWorkspace result) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        sb.append("\t<modelVersion>4.0.0</modelVersion>\n");
+        sb.append("\t<groupId>").append(groupId).append("</groupId>\n");
+        sb.append("\t<artifactId>generated-workspace</artifactId>\n");
+        sb.append("\t<version>").append(version).append("</version>\n");
+        sb.append("\t<packaging>pom</packaging>\n");
+        sb.append("\t<modules>\n");
+        for (String project : result.getProjects()) {
+            sb.append("\t\t<module>").append(project).append("</module>\n");
+        }
+        sb.append("\t</modules>\n");
+        sb.append("</project>\n");
+        StubBarFiles.write(new File(workspace, "pom.xml"), sb.toString());
+    }
+
+    /**
+     * Describes a generated workspace.
+     */
+    public static class GeneratedWorkspace {
+
+        private final File directory;
+        private final List<String> applications = new ArrayList<String>();
+        private final List<String> libraries = new ArrayList<String>();
+        private final List<String> sharedLibraries = new ArrayList<String>();
+        private final List<String> policyProjects = new ArrayList<String>();
+        private final List<String> testProjects = new ArrayList<String>();
+        private final Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+        private final Map<String, List<String>> references = new LinkedHashMap<String, List<String>>();
+        private int flows;
+        private int tests;
+        private int files;
+        private int propertyCount;
+
+        GeneratedWorkspace(File directory) {
+            this.directory = directory;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public File getProjectDirectory(String name) {
+            return new File(directory, name);
+        }
+
+        public List<String> getApplications() {
+            return applications;
+        }
+
+        public List<String> getLibraries() {
+            return libraries;
+        }
+
+        public List<String> getSharedLibraries() {
+            return sharedLibraries;
+        }
+
+        public List<String> getPolicyProjects() {
+            return policyProjects;
+        }
+
+        public List<String> getTestProjects() {
+            return testProjects;
+        }
+
+        /**
+         * @return the fully qualified name of a test class of a test project
+         */
+        public static String getTestClass(String testProject, int index) {
+            return "com.example." + testProject.toLowerCase() + "." + testProject + "_Flow" + index;
+        }
+
+        /**
+         * @return all projects, libraries first
+         */
+        public List<String> getProjects() {
+            List<String> projects = new ArrayList<String>();
+            projects.addAll(libraries);
+            projects.addAll(sharedLibraries);
+            projects.addAll(policyProjects);
+            projects.addAll(applications);
+            projects.addAll(testProjects);
+            return projects;
+        }
+
+        /**
+         * @param application name of an application
+         * @return the configurable properties of the application's own flows ("name = value"), as written to its
+         *         properties files
+         */
+        public List<String> getProperties(String application) {
+            return properties.get(application);
+        }
+
+        /**
+         * writes a bar file in-process, like mqsicreatebar of the {@link StubToolchain}
+         *
+         * @param applications the applications to be added, their static libraries are nested
+         * @param libraries the (shared) libraries to be added
+         * @param policyProjects the policy projects to be added
+         * @return barFile
+         */
+        public File createBar(File barFile, List<String> applications, List<String> libraries, List<String> policyProjects)
+                throws IOException {
+            PrintStream discard = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    // the listing of processed files is not needed
+                }
+            });
+            StubBarFiles.createBar(barFile, directory, applications, libraries, policyProjects, false, discard);
+            return barFile;
+        }
+
+        /**
+         * @return the recursive listing of a bar file in the format of mqsireadbar, as parsed by the plugin
+         */
+        public static List<String> readBar(File barFile) throws IOException {
+            ByteArrayOutputStream listing = new ByteArrayOutputStream();
+            StubBarFiles.listBar(barFile, true, new PrintStream(listing, true, "UTF-8"));
+            return Arrays.asList(new String(listing.toByteArray(), StandardCharsets.UTF_8).split("\r?\n"));
+        }
+
+        /**
+         * @param application name of an application
+         * @return the libraries and shared libraries referenced by the application
+         */
+        public List<String> getReferencedProjects(String application) {
+            return references.get(application);
+        }
+
+        public int getFlowCount() {
+            return flows;
+        }
+
+        /**
+         * @return the number of configurable properties of all flows, including subflows of libraries
+         */
+        public int getPropertyCount() {
+            return propertyCount;
+        }
+
+        public int getTestCount() {
+            return tests;
+        }
+
+        /**
+         * @return the number of generated flow, ESQL, properties and test files
+         */
+        public int getFileCount() {
+            return files;
+        }
+    }
+}
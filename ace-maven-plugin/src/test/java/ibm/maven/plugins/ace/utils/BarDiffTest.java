@@ -0,0 +1,118 @@
+package ibm.maven.plugins.ace.utils;
+
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addStoredEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.createArchive;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import ibm.maven.plugins.ace.testing.TestBarFiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BarDiffTest {
+
+    @Rule
+    public final TestBarFiles files = new TestBarFiles();
+
+    @Test
+    public void compareTest() throws IOException {
+        File baseBar = createBar("base.bar", "flow", descriptor("Flow#additionalInstances", "0", "Flow#queueName", "IN"), "Removed.libzip");
+        File bar = createBar("new.bar", "changed flow", descriptor("Flow#additionalInstances", "2", "Flow#startMode", "Manual"),
+                "Added.libzip");
+
+        BarDiff diff = BarDiff.compare(baseBar, bar);
+
+        assertEquals(Arrays.asList("~ App.appzip (" + files.getFile("base.bar.App").length() + " -> "
+                + files.getFile("new.bar.App").length() + " bytes)", "~ App.appzip!/Flow.cmf (4 -> 12 bytes)",
+                "~ App.appzip!/META-INF/broker.xml (" + descriptor("Flow#additionalInstances", "0", "Flow#queueName", "IN").length
+                        + " -> " + descriptor("Flow#additionalInstances", "2", "Flow#startMode", "Manual").length + " bytes)",
+                "    ~ Flow#additionalInstances: 0 -> 2", "    + Flow#startMode = Manual", "    - Flow#queueName = IN",
+                "+ Added.libzip", "- Removed.libzip"), diff.toText());
+
+        // Shared.libzip and the nested library are equal, only the changed archives and descriptors are inflated
+        assertEquals(2, diff.getUnchangedEntries());
+        assertEquals(4, diff.getInflatedEntries());
+
+        File report = files.getFile("diff.json");
+        diff.writeJson(report);
+        String json = FileUtils.readFileToString(report, "UTF-8");
+        assertTrue(json, json.contains("{\"descriptor\":\"App.appzip!/META-INF/broker.xml\",\"uri\":\"Flow#additionalInstances\","
+                + "\"change\":\"changed\",\"baseValue\":\"0\",\"value\":\"2\"}"));
+        assertTrue(json, json.contains("{\"path\":\"Added.libzip\",\"change\":\"added\",\"size\":"));
+    }
+
+    @Test
+    public void equalTest() throws IOException {
+        File baseBar = createBar("base.bar", "flow", descriptor("Flow#additionalInstances", "0"), "Lib.libzip");
+        File bar = files.getFile("copy.bar");
+        FileUtils.copyFile(baseBar, bar);
+
+        BarDiff diff = BarDiff.compare(baseBar, bar);
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getInflatedEntries());
+        assertEquals(3, diff.getUnchangedEntries());
+    }
+
+    @Test
+    public void repackagedTest() throws IOException {
+        File baseBar = createBar("base.bar", "flow", descriptor("Flow#additionalInstances", "0"), "Lib.libzip");
+        // the same library, packaged again without compression
+        File bar = files.getFile("repackaged.bar");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(bar));
+        try {
+            addEntry(zip, "App.appzip", FileUtils.readFileToByteArray(files.getFile("base.bar.App")));
+            addEntry(zip, "Shared.libzip", createArchive("shared.esql", new byte[10]));
+            ByteArrayOutputStream library = new ByteArrayOutputStream();
+            ZipOutputStream libraryZip = new ZipOutputStream(library);
+            addStoredEntry(libraryZip, "library.esql", new byte[10]);
+            libraryZip.close();
+            addEntry(zip, "Lib.libzip", library.toByteArray());
+        } finally {
+            zip.close();
+        }
+
+        BarDiff diff = BarDiff.compare(baseBar, bar);
+        assertTrue(diff.toText().toString(), diff.isEmpty());
+        assertEquals(1, diff.getRepackagedArchives());
+        assertEquals(2, diff.getInflatedEntries());
+        assertEquals(3, diff.getUnchangedEntries());
+    }
+
+    private File createBar(String name, String flow, byte[] descriptor, String library) throws IOException {
+        byte[] app = createArchive("Flow.cmf", flow.getBytes(StandardCharsets.UTF_8), "Lib.libzip", createArchive(
+                BarIndex.DEPLOYMENT_DESCRIPTOR, descriptor("Lib#property", "")), BarIndex.DEPLOYMENT_DESCRIPTOR, descriptor);
+        FileUtils.writeByteArrayToFile(files.getFile(name + ".App"), app);
+        File file = files.getFile(name);
+        ZipOutputStream bar = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            addEntry(bar, "App.appzip", app);
+            addEntry(bar, "Shared.libzip", createArchive("shared.esql", new byte[10]));
+            addEntry(bar, library, createArchive("library.esql", new byte[10]));
+        } finally {
+            bar.close();
+        }
+        return file;
+    }
+
+    private static byte[] descriptor(String... urisAndOverrides) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Broker>\n<CompiledMessageFlow name=\"Flow\">\n");
+        for (int i = 0; i < urisAndOverrides.length; i += 2) {
+            xml.append("<ConfigurableProperty override=\"").append(urisAndOverrides[i + 1]).append("\" uri=\"").append(urisAndOverrides[i])
+                    .append("\"/>\n");
+        }
+        xml.append("</CompiledMessageFlow>\n</Broker>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,167 @@
+package ibm.maven.plugins.ace.utils;
+
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addStoredEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.createArchive;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import ibm.maven.plugins.ace.testing.TestBarFiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BarIndexTest {
+
+    private static final byte[] DESCRIPTOR = "<Broker><ConfigurableProperty uri=\"Flow#additionalInstances\"/></Broker>"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LIBRARY_DESCRIPTOR = "<Broker/>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FLOW = "compiled flow".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public final TestBarFiles files = new TestBarFiles();
+
+    @Test
+    public void removeFilesTest() throws Exception {
+        File bar = createBar(files.getFile("test.bar"));
+
+        BarIndex index = ZipUtils.removeFiles(bar, "**/javacompute_**.jar, **/jplugin2_**.jar");
+
+        List<String> names = new ArrayList<String>();
+        ZipFile zipFile = new ZipFile(bar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+        } finally {
+            zipFile.close();
+        }
+        assertEquals("[App.appzip, shared.jar, stored.txt, META-INF/broker.xml]", names.toString());
+
+        // the index collected while rewriting is the same as the one read from the result
+        assertEquals(toString(BarIndex.create(bar)), toString(index));
+
+        assertEquals("[App.appzip, App.appzip!/Flow.cmf, App.appzip!/Lib.libzip, App.appzip!/Lib.libzip!/META-INF/broker.xml, "
+                + "App.appzip!/META-INF/broker.xml, shared.jar, stored.txt, META-INF/broker.xml]", getPaths(index).toString());
+
+        BarIndex.Entry flow = index.getEntry("App.appzip!/Flow.cmf");
+        assertEquals("App", flow.getOwner());
+        assertEquals(FLOW.length, flow.getSize());
+        assertEquals(crc(FLOW), flow.getCrc());
+        assertEquals(sha256(FLOW), flow.getSha256());
+        assertFalse(flow.isTopLevel());
+        assertEquals("App/Lib", index.getEntry("App.appzip!/Lib.libzip").getOwner());
+        assertTrue(index.getEntry("App.appzip").isTopLevel());
+        assertEquals("", index.getEntry("shared.jar").getOwner());
+        assertNull(index.getEntry("javacompute_App.jar"));
+
+        assertEquals(sha256(DESCRIPTOR), index.getDescriptorHash("App"));
+        assertEquals(sha256(LIBRARY_DESCRIPTOR), index.getDescriptorHash("App/Lib"));
+        assertEquals(sha256(DESCRIPTOR), index.getDescriptorHash(""));
+    }
+
+    @Test
+    public void removeFilesLikeAntTest() throws Exception {
+        File zip = files.getFile("ant.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            for (String name : Arrays.asList("a.jar", "b.jar", "c.jar", "keep.txt", ".git/config", "lib/.gitignore", "notes.txt~")) {
+                addEntry(out, name, new byte[1]);
+            }
+        } finally {
+            out.close();
+        }
+
+        // separated by spaces and commas, the default excludes of ant are removed as well
+        BarIndex index = ZipUtils.removeFiles(zip, "a.jar b.jar,c.jar");
+        assertEquals("[keep.txt]", getPaths(index).toString());
+    }
+
+    @Test
+    public void writeReadTest() throws Exception {
+        File bar = createBar(files.getFile("test.bar"));
+        BarIndex index = BarIndex.create(bar);
+
+        File indexFile = BarIndex.writeIndexFile(bar, index);
+        assertEquals(files.getFile("test.bar.index"), indexFile);
+
+        BarIndex read = BarIndex.read(indexFile);
+        assertEquals(toString(index), toString(read));
+        assertEquals(index.getDescriptorHashes(), read.getDescriptorHashes());
+        assertNotNull(read.getEntry("javacompute_App.jar"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readInvalidTest() throws IOException {
+        File file = files.getFile("invalid.index");
+        FileUtils.writeStringToFile(file, "App.appzip 42\n");
+        BarIndex.read(file);
+    }
+
+    private static File createBar(File file) throws IOException {
+        ZipOutputStream bar = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            addEntry(bar, "App.appzip", createArchive("Flow.cmf", FLOW, "Lib.libzip", createArchive(BarIndex.DEPLOYMENT_DESCRIPTOR,
+                    LIBRARY_DESCRIPTOR), BarIndex.DEPLOYMENT_DESCRIPTOR, DESCRIPTOR));
+            addEntry(bar, "javacompute_App.jar", new byte[100]);
+            addEntry(bar, "shared.jar", new byte[100]);
+
+            addStoredEntry(bar, "stored.txt", "stored".getBytes(StandardCharsets.UTF_8));
+
+            addEntry(bar, BarIndex.DEPLOYMENT_DESCRIPTOR, DESCRIPTOR);
+        } finally {
+            bar.close();
+        }
+        return file;
+    }
+
+    private static List<String> getPaths(BarIndex index) {
+        List<String> paths = new ArrayList<String>();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            paths.add(entry.getPath());
+        }
+        return paths;
+    }
+
+    private static String toString(BarIndex index) {
+        StringBuilder text = new StringBuilder();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            text.append(entry.getPath()).append(' ').append(entry.getOwner()).append(' ').append(entry.getSize()).append(' ')
+                    .append(entry.getCrc()).append(' ').append(entry.getSha256()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package ibm.maven.plugins.ace.utils;
+
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.createArchive;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import ibm.maven.plugins.ace.testing.TestBarFiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BarOverlayTest {
+
+    @Rule
+    public final TestBarFiles files = new TestBarFiles();
+
+    @Test
+    public void writeAndMaterializeTest() throws IOException {
+        File baseBar = createBar("app-1.0.bar", "0", "", true);
+        File bar = createBar("DEV_1.0.bar", "2", "QUEUE.DEV", true);
+        BarIndex index = BarIndex.create(bar);
+
+        File overlay = BarOverlay.getOverlayFile(bar);
+        assertEquals("DEV_1.0.overlay", overlay.getName());
+        assertEquals(Arrays.asList("App.appzip!/Lib.libzip!/META-INF/broker.xml", "App.appzip!/META-INF/broker.xml"),
+                BarOverlay.write(baseBar, BarIndex.create(baseBar), bar, index, overlay));
+        assertTrue(overlay.length() < bar.length() / 4);
+
+        File materialized = files.getFile("materialized/DEV_1.0.bar");
+        BarOverlay.materialize(baseBar, overlay, materialized);
+        assertEquals(getFiles(index), getFiles(BarIndex.create(materialized)));
+        ZipFile zip = new ZipFile(materialized);
+        try {
+            // rewritten archives are stored, the others are copied as they are
+            assertEquals(ZipEntry.STORED, zip.getEntry("App.appzip").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("Shared.libzip").getMethod());
+        } finally {
+            zip.close();
+        }
+        // the temporary files of the rewritten archives are deleted
+        assertEquals(Arrays.asList("DEV_1.0.bar"), Arrays.asList(materialized.getParentFile().list()));
+
+        // an overlay can only be applied to its base
+        File otherBar = createBar("app-1.1.bar", "1", "", true);
+        try {
+            BarOverlay.materialize(otherBar, overlay, files.getFile("other.bar"));
+            fail("the overlay was applied to another bar file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is an overlay of app-1.0.bar"));
+        }
+    }
+
+    @Test
+    public void removedFileTest() throws IOException {
+        File baseBar = createBar("app-1.0.bar", "0", "", true);
+        File bar = createBar("DEV_1.0.bar", "0", "", false);
+        assertNull(BarOverlay.write(baseBar, BarIndex.create(baseBar), bar, BarIndex.create(bar), BarOverlay.getOverlayFile(bar)));
+    }
+
+    private static Map<String, String> getFiles(BarIndex index) {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        for (BarIndex.Entry entry : index.getEntries()) {
+            if (!BarIndex.isArchive(entry.getPath())) {
+                files.put(entry.getPath(), entry.getSha256());
+            }
+        }
+        return files;
+    }
+
+    private File createBar(String name, String additionalInstances, String queueName, boolean withShared) throws IOException {
+        byte[] library = createArchive("lib.esql", bytes("-- library"), BarIndex.DEPLOYMENT_DESCRIPTOR,
+                descriptor("Lib#queueName", queueName));
+        byte[] jar = new byte[64 * 1024];
+        new Random(1).nextBytes(jar);
+        byte[] app = createArchive("Flow.cmf", bytes("flow"), "lib/app.jar", jar, "Lib.libzip", library,
+                BarIndex.DEPLOYMENT_DESCRIPTOR, descriptor("Flow#additionalInstances", additionalInstances));
+        File file = files.getFile(name);
+        ZipOutputStream bar = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            addEntry(bar, "META-INF/manifest.mf", bytes("Manifest-Version: 1.0\n"));
+            addEntry(bar, "App.appzip", app);
+            if (withShared) {
+                addEntry(bar, "Shared.libzip", createArchive("shared.esql", jar));
+            }
+        } finally {
+            bar.close();
+        }
+        return file;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] descriptor(String uri, String override) {
+        return bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Broker>\n<ConfigurableProperty override=\"" + override + "\" uri=\""
+                + uri + "\"/>\n</Broker>\n");
+    }
+}
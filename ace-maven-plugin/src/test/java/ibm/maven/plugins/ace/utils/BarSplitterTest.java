@@ -0,0 +1,121 @@
+package ibm.maven.plugins.ace.utils;
+
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.addStoredEntry;
+import static ibm.maven.plugins.ace.testing.TestBarFiles.createArchive;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import ibm.maven.plugins.ace.testing.TestBarFiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BarSplitterTest {
+
+    @Rule
+    public final TestBarFiles files = new TestBarFiles();
+
+    @Test
+    public void splitTest() throws Exception {
+        File bar = createBar();
+        BarSplitter splitter = new BarSplitter(bar);
+        // e.g. from the .project file in the workspace
+        splitter.addReferences("App2", Collections.singletonList("Lib"));
+
+        Map<String, List<String>> splits = splitter.getSplits();
+        assertEquals(Arrays.asList("App1", "App2", "Unused", "Policies"), Arrays.asList(splits.keySet().toArray()));
+        assertEquals(Arrays.asList("META-INF/manifest.mf", "App1.appzip", "Shared.shlibzip", "Lib.libzip"), splits.get("App1"));
+        assertEquals(Arrays.asList("META-INF/manifest.mf", "App2.appzip", "Lib.libzip"), splits.get("App2"));
+        assertEquals(Arrays.asList("META-INF/manifest.mf", "Policies.policyxml"), splits.get("Policies"));
+
+        File splitDirectory = files.getFile("split");
+        Map<File, String> checksums = splitter.write(splitDirectory, 2);
+        assertEquals(4, checksums.size());
+
+        StringBuilder manifest = new StringBuilder();
+        for (Map.Entry<String, List<String>> split : splits.entrySet()) {
+            File splitFile = splitter.getSplitFile(splitDirectory, split.getKey());
+            assertEquals("app-1.0.0-" + split.getKey() + ".bar", splitFile.getName());
+            assertEquals(sha256(splitFile), checksums.get(splitFile));
+            manifest.append(checksums.get(splitFile)).append("  ").append(splitFile.getName()).append('\n');
+            assertEntries(bar, splitFile, split.getValue());
+        }
+        assertEquals(manifest.toString(), FileUtils.readFileToString(new File(splitDirectory, BarSplitter.CHECKSUM_FILE), "UTF-8"));
+    }
+
+    /**
+     * the split bar file contains the given entries with the content of the bar file
+     */
+    private static void assertEntries(File bar, File splitFile, List<String> names) throws IOException {
+        ZipFile source = new ZipFile(bar);
+        ZipFile split = new ZipFile(splitFile);
+        try {
+            assertEquals(names.size(), split.size());
+            for (String name : names) {
+                ZipEntry entry = split.getEntry(name);
+                assertEquals(source.getEntry(name).getMethod(), entry.getMethod());
+                assertArrayEquals(name, read(source, source.getEntry(name)), read(split, entry));
+            }
+        } finally {
+            source.close();
+            split.close();
+        }
+    }
+
+    private File createBar() throws IOException {
+        File file = files.getFile("app-1.0.0.bar");
+        ZipOutputStream bar = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            addStoredEntry(bar, "META-INF/manifest.mf", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            addEntry(bar, "App1.appzip", createArchive("Flow.cmf", "flow", "application.descriptor",
+                    "<ns2:appDescriptor xmlns:ns2=\"http://com.ibm.etools.mft.descriptor.app\"><references>"
+                            + "<sharedLibraryReference><libraryName>Shared</libraryName></sharedLibraryReference>"
+                            + "</references></ns2:appDescriptor>"));
+            addEntry(bar, "App2.appzip", createArchive("Flow.cmf", "flow"));
+            addEntry(bar, "Shared.shlibzip", createArchive("shared.esql", "-- shared", "library.descriptor",
+                    "<libraryDescriptor><references><libraryReference><libraryName>Lib</libraryName></libraryReference>"
+                            + "</references></libraryDescriptor>"));
+            addEntry(bar, "Lib.libzip", createArchive("lib.esql", "-- lib"));
+            addEntry(bar, "Unused.libzip", createArchive("unused.esql", "-- unused"));
+            addEntry(bar, "Policies.policyxml", createArchive("DataSource.policyxml", "<policies/>"));
+        } finally {
+            bar.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        InputStream in = zip.getInputStream(entry);
+        try {
+            return IOUtil.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String sha256(File file) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()))) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import ibm.maven.plugins.ace.utils.BipMessageClassifier.Severity;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class BipMessageClassifierTest {
+
+    @Test
+    public void getSeverityTest() {
+        assertEquals(Severity.INFO, BipMessageClassifier.getSeverity("BIP8071I: Successful command completion."));
+        assertEquals(Severity.WARNING, BipMessageClassifier.getSeverity("  BIP0142W: The workspace is out of sync."));
+        assertEquals(Severity.ERROR, BipMessageClassifier.getSeverity("BIP0130E: Error compiling message flow"));
+        assertEquals(Severity.SEVERE, BipMessageClassifier.getSeverity("[main] BIP0001S: Unexpected exception"));
+        assertEquals(Severity.NONE, BipMessageClassifier.getSeverity("Building workspace"));
+        assertEquals(Severity.NONE, BipMessageClassifier.getSeverity("XBIP8071I"));
+        assertEquals("BIP0130", BipMessageClassifier.getMessageCode("BIP0130E: Error compiling message flow"));
+        assertNull(BipMessageClassifier.getMessageCode("Building workspace"));
+    }
+
+    @Test
+    public void compilePatternsTest() {
+        assertTrue(BipMessageClassifier.compilePatterns(null).isEmpty());
+        assertTrue(BipMessageClassifier.compilePatterns("").isEmpty());
+        assertEquals(2, BipMessageClassifier.compilePatterns("BIP0130E, BIP\\d{4}S").size());
+    }
+
+    @Test
+    public void processLineTest() {
+        BipMessageClassifier classifier = new BipMessageClassifier(BipMessageClassifier.compilePatterns("BIP\\d{4}S"));
+        classifier.processLine("BIP0142W: warning");
+        classifier.processLine("BIP0130E: error");
+        assertFalse(classifier.isAborted());
+        classifier.processLine("BIP0001S: severe");
+        classifier.processLine("BIP0002S: severe again");
+        assertTrue(classifier.isAborted());
+        assertEquals("BIP0001S: severe", classifier.getFatalLine());
+        assertEquals(1, classifier.getWarningCount());
+        assertEquals(3, classifier.getErrorCount());
+    }
+
+    @Test
+    public void fatalLineStopsProcessTest() throws Exception {
+        if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            return;
+        }
+        Process process = new ProcessBuilder("sleep", "60").start();
+        BipMessageClassifier classifier = new BipMessageClassifier(Collections.singletonList(Pattern.compile("BIP0130E")));
+        classifier.watch(process);
+        classifier.processLine("BIP0130E: error");
+        process.waitFor();
+        assertTrue(classifier.isAborted());
+        assertTrue(process.exitValue() != 0);
+    }
+}
@@ -0,0 +1,105 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class BuildTimingsTest {
+
+    @Test
+    public void jsonWriterTest() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("a").value("x\"y");
+        json.name("b").beginArray().value(1).value(true).value((String) null).endArray();
+        json.name("c").beginObject().endObject();
+        json.endObject();
+        assertEquals("{\"a\":\"x\\\"y\",\"b\":[1,true,null],\"c\":{}}", out.toString());
+    }
+
+    @Test
+    public void writeReportsTest() throws IOException {
+        String projectId = "test:" + UUID.randomUUID();
+        BuildTimings.Recording recording = new BuildTimings.Recording();
+        BuildTimings.setCurrentProject(recording, projectId);
+        try {
+            BuildTimings.Timer timer = BuildTimings.startCommand("mqsireadbar");
+            timer.set("exitCode", 0);
+            timer.stop();
+            // stopping twice doesn't record the event twice
+            timer.stop();
+            BuildTimings.startStep("zip-rewrite").stop();
+        } finally {
+            BuildTimings.setCurrentProject(null, null);
+        }
+
+        List<BuildTimings.Timer> events = recording.getEvents(projectId);
+        assertEquals(2, events.size());
+
+        File directory = new File("target", UUID.randomUUID().toString());
+        File json = new File(directory, "build-timings.json");
+        File trace = new File(directory, "build-timings.trace.json");
+        BuildTimings.writeJson(json, projectId, events);
+        BuildTimings.writeChromeTrace(trace, events);
+
+        String jsonContent = FileUtils.readFileToString(json);
+        assertTrue(jsonContent.contains("\"name\":\"mqsireadbar\""));
+        assertTrue(jsonContent.contains("\"exitCode\":0"));
+        assertTrue(jsonContent.contains("\"command\":{\"count\":1"));
+        String traceContent = FileUtils.readFileToString(trace);
+        assertTrue(traceContent.startsWith("{\"traceEvents\":["));
+        assertTrue(traceContent.contains("\"ph\":\"X\""));
+
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void sessionsTest() throws InterruptedException {
+        // without a session nothing is recorded
+        BuildTimings.startStep("outside").stop();
+
+        final BuildTimings.Recording first = new BuildTimings.Recording();
+        final BuildTimings.Recording second = new BuildTimings.Recording();
+        Thread[] sessions = new Thread[2];
+        for (int i = 0; i < sessions.length; i++) {
+            final BuildTimings.Recording recording = i == 0 ? first : second;
+            final String step = "step" + i;
+            sessions[i] = new Thread() {
+                @Override
+                public void run() {
+                    BuildTimings.setCurrentProject(recording, "test:project");
+                    BuildTimings.startStep(step).stop();
+                }
+            };
+            sessions[i].start();
+        }
+        for (Thread session : sessions) {
+            session.join();
+        }
+        assertEquals(1, first.getEvents().size());
+        assertEquals("step0", first.getEvents().get(0).getName());
+        assertEquals(1, second.getEvents().size());
+        assertEquals("step1", second.getEvents().get(0).getName());
+
+        // the events stopped after the session are dropped
+        BuildTimings.setCurrentProject(first, "test:project");
+        try {
+            BuildTimings.Timer late = BuildTimings.startStep("late");
+            first.close();
+            late.stop();
+        } finally {
+            BuildTimings.setCurrentProject(null, null);
+        }
+        assertEquals(0, first.getEvents().size());
+        assertEquals(1, second.getEvents().size());
+    }
+}
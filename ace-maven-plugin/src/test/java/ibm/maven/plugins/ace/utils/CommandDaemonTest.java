@@ -0,0 +1,144 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandDaemonTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        InProcessCommands.configure(new Properties());
+        CommandDaemonClient.configure(new Properties());
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void daemonTest() throws Exception {
+        final File aceHome = StubToolchain.install(new File(directory, "ace"));
+        GeneratedWorkspace workspace = new WorkspaceGenerator().applications(2).generate(new File(directory, "workspace"));
+        final File bar = workspace.createBar(new File(directory, "app.bar"), workspace.getApplications(), Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        final SystemStreamLog log = new SystemStreamLog();
+        File daemons = new File(directory, "daemons");
+        Properties properties = new Properties();
+        properties.setProperty(InProcessCommands.COMMANDS_PROPERTY, StubToolchain.MQSIREADBAR);
+        properties.setProperty(CommandDaemonClient.DIRECTORY_PROPERTY, daemons.getPath());
+        properties.setProperty(CommandDaemonClient.IDLE_TIMEOUT_PROPERTY, "3");
+        InProcessCommands.configure(properties);
+        CommandDaemonClient.configure(properties);
+
+        // concurrent requests are served by one daemon, the output goes to the log files of the build
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<File>> results = new ArrayList<Future<File>>();
+        for (int i = 0; i < 4; i++) {
+            final File logDirectory = new File(directory, "logs" + i);
+            results.add(executor.submit(new Callable<File>() {
+                public File call() throws Exception {
+                    CommandExecutionUtil.runCommand(aceHome, StubToolchain.MQSIREADBAR, Arrays.asList("-b", bar.getPath(), "-r"),
+                            logDirectory, log);
+                    return ToolOutputSink.getLogFile(logDirectory, StubToolchain.MQSIREADBAR);
+                }
+            }));
+        }
+        for (Future<File> result : results) {
+            List<String> output = Files.readAllLines(result.get().toPath(), Charset.defaultCharset());
+            assertTrue(output.toString(), output.contains("BIP8071I: Successful command completion."));
+        }
+        executor.shutdown();
+        assertEquals(4, StubToolchain.getInvocations(aceHome).size());
+
+        StubToolchain.setSetting(aceHome, "exitCode." + StubToolchain.MQSIREADBAR, "3");
+        try {
+            CommandExecutionUtil.runCommand(aceHome, StubToolchain.MQSIREADBAR, Arrays.asList("-b", bar.getPath()), new File(directory,
+                    "logs"), log);
+            fail("the exit code was ignored");
+        } catch (MojoFailureException e) {
+            assertEquals("mqsireadbar finished with exit code: 3", e.getMessage());
+        }
+
+        // the metrics of the commands
+        File daemonDirectory = CommandDaemonClient.getDirectory(daemons, aceHome);
+        CommandDaemonClient daemon = CommandDaemonClient.find(daemonDirectory);
+        assertNotNull(daemon);
+
+        // connections without a valid token neither break the daemon nor keep it running
+        File stateFile = new File(daemonDirectory, CommandDaemon.STATE_FILE);
+        Properties state = new Properties();
+        InputStream stateIn = new FileInputStream(stateFile);
+        try {
+            state.load(stateIn);
+        } finally {
+            stateIn.close();
+        }
+        int port = Integer.parseInt(state.getProperty("port"));
+        Socket oversized = new Socket(InetAddress.getLoopbackAddress(), port);
+        DataOutputStream oversizedOut = new DataOutputStream(oversized.getOutputStream());
+        oversizedOut.writeInt(Integer.MAX_VALUE);
+        oversizedOut.flush();
+        assertEquals("the connection wasn't closed", -1, oversized.getInputStream().read());
+        oversized.close();
+        Socket negative = new Socket(InetAddress.getLoopbackAddress(), port);
+        new DataOutputStream(negative.getOutputStream()).writeInt(-1);
+        assertEquals("the connection wasn't closed", -1, negative.getInputStream().read());
+        negative.close();
+        Socket silent = new Socket(InetAddress.getLoopbackAddress(), port);
+
+        Properties status = daemon.getStatus();
+        assertEquals("5", status.getProperty("command." + StubToolchain.MQSIREADBAR + ".count"));
+        assertEquals("1", status.getProperty("command." + StubToolchain.MQSIREADBAR + ".failures"));
+        assertNotNull(status.getProperty("command." + StubToolchain.MQSIREADBAR + ".p95Millis"));
+
+        // the daemon stops once it hasn't had a command for the idle timeout
+        long deadline = System.currentTimeMillis() + 60000;
+        while (stateFile.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        assertTrue("the daemon is still running", !stateFile.exists());
+        assertNull(CommandDaemonClient.find(daemonDirectory));
+        silent.close();
+    }
+}
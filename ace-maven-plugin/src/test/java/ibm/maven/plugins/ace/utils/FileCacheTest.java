@@ -0,0 +1,108 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileCacheTest {
+
+    private final FileCache<String> cache = FileCache.create("test", 2);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final FileCache.Loader<String, IOException> loader = new FileCache.Loader<String, IOException>() {
+        public String load(File file) throws IOException {
+            loads.incrementAndGet();
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+    };
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+        directory.mkdirs();
+        FileCache.configure(new Properties());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileCache.configure(new Properties());
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void validationTest() throws IOException {
+        File file = write("a", "first");
+        String value = cache.get(file, loader);
+        assertEquals("first", value);
+        assertSame(value, cache.get(file, loader));
+        assertEquals(1, loads.get());
+
+        // a changed file is read again
+        write("a", "second, longer");
+        assertEquals("second, longer", cache.get(file, loader));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getStale());
+
+        // a file replaced by another one of the same size and time is a different file
+        long time = System.currentTimeMillis() / 1000 * 1000 - 60000;
+        file.setLastModified(time);
+        assertEquals("second, longer", cache.get(file, loader));
+        File other = write("b", "second, LONGER");
+        other.setLastModified(time);
+        Files.move(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("second, LONGER", cache.get(file, loader));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void boundsTest() throws IOException {
+        File a = write("a", "a");
+        File b = write("b", "b");
+        File c = write("c", "c");
+        String valueA = cache.get(a, loader);
+        cache.get(b, loader);
+        cache.get(a, loader);
+        // the least recently used entry is evicted
+        cache.get(c, loader);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvicted());
+        assertSame(valueA, cache.get(a, loader));
+        cache.get(b, loader);
+        assertEquals(4, loads.get());
+        assertTrue(cache.toString(), cache.toString().startsWith("test"));
+
+        // the size is configured per build, the caches can be switched off
+        Properties properties = new Properties();
+        properties.setProperty("ace.cache.test.maxEntries", "1");
+        FileCache.configure(properties);
+        assertEquals(1, cache.getSize());
+        assertEquals(0, cache.getHits());
+        properties.setProperty(FileCache.ENABLED_PROPERTY, "false");
+        FileCache.configure(properties);
+        assertEquals(0, cache.getSize());
+        assertNotSame(cache.get(a, loader), cache.get(a, loader));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
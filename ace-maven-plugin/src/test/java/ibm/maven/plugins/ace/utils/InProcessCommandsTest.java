@@ -0,0 +1,119 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.testing.StubToolchain;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InProcessCommandsTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        directory = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        InProcessCommands.configure(new Properties());
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void parseLauncherTest() {
+        InProcessCommands.Command command = InProcessCommands.parseLauncher("mqsireadbar", "#!/bin/sh\n# comment\n"
+                + "exec '/opt/java/bin/java' -Xmx512m -cp '/opt/ace/lib/a.jar:/opt/ace/lib/b.jar' com.example.ReadBar 'first arg' -x \"$@\"\n");
+        assertEquals("com.example.ReadBar", command.getMainClass());
+        assertEquals(Arrays.asList("first arg", "-x"), command.getArguments());
+
+        // the class path can't be resolved without running the script
+        assertNull(InProcessCommands.parseLauncher("mqsireadbar", "exec \"$MQSI_JREPATH/bin/java\" -cp \"$CLASSPATH\" com.example.ReadBar \"$@\"\n"));
+        assertNull(InProcessCommands.parseLauncher("mqsireadbar", "#!/bin/sh\n./mqsireadbar.bin \"$@\"\n"));
+    }
+
+    @Test
+    public void runTest() throws IOException, ClassNotFoundException {
+        File aceHome = StubToolchain.install(new File(directory, "ace"));
+        GeneratedWorkspace workspace = new WorkspaceGenerator().applications(2).generate(new File(directory, "workspace"));
+        File bar = workspace.createBar(new File(directory, "app.bar"), workspace.getApplications(), Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        SystemStreamLog log = new SystemStreamLog();
+
+        // not enabled
+        assertNull(InProcessCommands.resolve(aceHome, StubToolchain.MQSIREADBAR, log));
+
+        Properties properties = new Properties();
+        properties.setProperty(InProcessCommands.COMMANDS_PROPERTY, StubToolchain.MQSIREADBAR);
+        InProcessCommands.configure(properties);
+        InProcessCommands.Command command = InProcessCommands.resolve(aceHome, StubToolchain.MQSIREADBAR, log);
+        assertNotNull(command);
+        assertEquals(StubToolchain.class.getName(), command.getMainClass());
+        assertSame(command, InProcessCommands.resolve(aceHome, StubToolchain.MQSIREADBAR, log));
+        assertNull(InProcessCommands.resolve(aceHome, StubToolchain.MQSIPACKAGEBAR, log));
+
+        // the output of the command is captured, System.exit is its exit code and the JVM keeps running
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        final List<String> output = new ArrayList<String>();
+        InProcessCommands.Output collector = new InProcessCommands.Output() {
+            public void accept(List<String> lines) {
+                output.addAll(lines);
+            }
+        };
+        assertEquals(0, InProcessCommands.run(command, Arrays.asList("-b", bar.getPath(), "-r"), collector));
+        assertTrue(output.toString(), output.contains("BIP8071I: Successful command completion."));
+        assertEquals(1, StubToolchain.getInvocations(aceHome).size());
+        StubToolchain.setSetting(aceHome, "exitCode." + StubToolchain.MQSIREADBAR, "3");
+        assertEquals(3, InProcessCommands.run(command, Arrays.asList("-b", bar.getPath()), collector));
+
+        // the traps are removed once no command is running
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+        assertNull(System.getSecurityManager());
+
+        // the command's classes are loaded in isolation, once per concurrent call
+        URLClassLoader loader = InProcessCommands.acquireClassLoader(command);
+        URLClassLoader concurrent = InProcessCommands.acquireClassLoader(command);
+        assertNotSame(loader, concurrent);
+        InProcessCommands.releaseClassLoader(command, concurrent);
+        InProcessCommands.releaseClassLoader(command, loader);
+        assertSame(loader, InProcessCommands.acquireClassLoader(command));
+        InProcessCommands.releaseClassLoader(command, loader);
+        assertNotSame(StubToolchain.class, loader.loadClass(StubToolchain.class.getName()));
+        try {
+            loader.loadClass(MojoFailureException.class.getName());
+            fail("the classes of maven are visible to the command");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import ibm.maven.plugins.ace.generated.maven_pom.Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+
+public class PomXmlUtilsTest {
+
+    /**
+     * the coordinates read with StAX are those of the JAXB model, tested with the local pom.xml
+     */
+    @Test
+    public void readCoordinatesTest() throws IOException, JAXBException {
+        File pomFile = new File("pom.xml");
+        PomXmlUtils.Coordinates coordinates = PomXmlUtils.readCoordinates(pomFile);
+        Model model = PomXmlUtils.unmarshallPomFile(pomFile);
+        assertEquals(model.getGroupId(), coordinates.getGroupId());
+        assertEquals(model.getArtifactId(), coordinates.getArtifactId());
+        assertEquals(model.getVersion(), coordinates.getVersion());
+        assertEquals(model.getPackaging(), coordinates.getPackaging());
+    }
+
+    @Test
+    public void parentAndEarlyStopTest() throws IOException {
+        File pomFile = File.createTempFile("pom", ".xml");
+        try {
+            // the coordinates of the parent aren't those of the project, the packaging is the default
+            Files.write(pomFile.toPath(), ("<?xml version=\"1.0\"?>\n<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                    + "  <parent><groupId>com.example</groupId><artifactId>parent</artifactId><version>1</version></parent>\n"
+                    + "  <artifactId> App1 </artifactId>\n  <dependencies><dependency><artifactId>lib</artifactId></dependency></dependencies>\n"
+                    + "</project>\n").getBytes(StandardCharsets.UTF_8));
+            PomXmlUtils.Coordinates coordinates = PomXmlUtils.readCoordinates(pomFile);
+            assertNull(coordinates.getGroupId());
+            assertEquals("App1", coordinates.getArtifactId());
+            assertNull(coordinates.getVersion());
+            assertNull(coordinates.getPackaging());
+
+            // the reading stops once the requested coordinates are found, the rest isn't even parsed
+            Files.write(pomFile.toPath(), "<project><artifactId>App2</artifactId><dependencies><broken".getBytes(StandardCharsets.UTF_8));
+            coordinates = PomXmlUtils.readCoordinates(pomFile, "artifactId");
+            assertEquals("App2", coordinates.getArtifactId());
+            assertNull(coordinates.getGroupId());
+            try {
+                PomXmlUtils.readCoordinates(pomFile, "artifactId", "packaging");
+                fail("the broken pom was read");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            pomFile.delete();
+        }
+    }
+}
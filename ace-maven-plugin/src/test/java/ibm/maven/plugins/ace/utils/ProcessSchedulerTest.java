@@ -0,0 +1,109 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ibm.maven.plugins.ace.utils.ProcessScheduler.ProcessType;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessSchedulerTest {
+
+    private final Log log = new SystemStreamLog();
+    private final BuildTimings.Recording recording = new BuildTimings.Recording();
+
+    @Before
+    public void setUp() {
+        BuildTimings.setCurrentProject(recording, "test:project");
+    }
+
+    @After
+    public void tearDown() {
+        ProcessScheduler.configure(new Properties());
+        BuildTimings.setCurrentProject(null, null);
+    }
+
+    private static void configure(String property, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(property, value);
+        ProcessScheduler.configure(properties);
+    }
+
+    @Test
+    public void limitTest() throws Exception {
+        configure("ace.maxToolkitProcesses", "1");
+        assertEquals(1, ProcessScheduler.getLimit(ProcessType.TOOLKIT));
+
+        ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.TOOLKIT, "first", log);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    ProcessScheduler.Permit permit = ProcessScheduler.acquire(ProcessType.TOOLKIT, "second", log);
+                    acquired.countDown();
+                    permit.release();
+                } catch (MojoFailureException e) {
+                    failed.set(true);
+                }
+            }
+        };
+        second.start();
+        assertFalse("the limit wasn't applied", acquired.await(300, TimeUnit.MILLISECONDS));
+
+        // other types have their own limits
+        ProcessScheduler.acquire(ProcessType.CLI, "cli", log).release();
+
+        permit.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        second.join();
+        assertFalse(failed.get());
+
+        boolean queued = false;
+        for (BuildTimings.Timer timer : recording.getEvents()) {
+            if (BuildTimings.CATEGORY_QUEUE.equals(timer.getCategory()) && "toolkit: second".equals(timer.getName())) {
+                queued = timer.getDurationMillis() >= 250;
+            }
+        }
+        assertTrue("the wait time wasn't recorded", queued);
+    }
+
+    @Test
+    public void reentrantTest() throws MojoFailureException {
+        configure("ace.maxRuntimeProcesses", "1");
+        ProcessScheduler.Permit outer = ProcessScheduler.acquire(ProcessType.RUNTIME, "test project", log);
+        ProcessScheduler.Permit inner = ProcessScheduler.acquire(ProcessType.forCommand("IntegrationServer"), "IntegrationServer", log);
+        inner.release();
+        inner.release();
+        outer.release();
+
+        // all permits are back
+        ProcessScheduler.acquire(ProcessType.RUNTIME, "again", log).release();
+    }
+
+    @Test
+    public void defaultLimitsTest() {
+        for (ProcessType type : ProcessType.values()) {
+            assertTrue(ProcessScheduler.getDefaultLimit(type) >= 1);
+            assertTrue(ProcessScheduler.getDefaultLimit(type) <= Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        assertEquals(ProcessType.TOOLKIT, ProcessType.forCommand("mqsicreatebar"));
+        assertEquals(ProcessType.CLI, ProcessType.forCommand("mqsireadbar"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLimitTest() {
+        configure("ace.maxCliProcesses", "many");
+    }
+}
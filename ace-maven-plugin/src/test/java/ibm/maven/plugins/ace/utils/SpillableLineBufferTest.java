@@ -0,0 +1,69 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SpillableLineBufferTest {
+
+    @Test
+    public void inMemoryTest() throws IOException {
+        SpillableLineBuffer buffer = new SpillableLineBuffer("test", 1000);
+        try {
+            List<String> lines = addLines(buffer, 10);
+            assertFalse(buffer.isSpilled());
+            assertEquals(lines, toList(buffer));
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        SpillableLineBuffer buffer = new SpillableLineBuffer("test", 1000);
+        File file;
+        try {
+            List<String> lines = addLines(buffer, 1000);
+            assertTrue(buffer.isSpilled());
+            file = buffer.getFile();
+            assertTrue(file.isFile());
+            assertEquals(1000, buffer.getLineCount());
+
+            // the lines can be iterated more than once, also while lines are added
+            Iterator<String> iterator = buffer.iterator();
+            assertEquals(lines.get(0), iterator.next());
+            assertEquals(lines, toList(buffer));
+            lines.addAll(addLines(buffer, 10));
+            assertEquals(lines, toList(buffer));
+        } finally {
+            buffer.close();
+        }
+        assertFalse(file.exists());
+    }
+
+    private static List<String> addLines(SpillableLineBuffer buffer, int count) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            String line = "  Flow#property" + i + " = ä" + i;
+            buffer.add(line);
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static List<String> toList(Iterable<String> lines) {
+        List<String> list = new ArrayList<String>();
+        for (String line : lines) {
+            list.add(line);
+        }
+        return list;
+    }
+}
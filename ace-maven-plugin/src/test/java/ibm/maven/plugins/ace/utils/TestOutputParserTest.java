@@ -0,0 +1,81 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import ibm.maven.plugins.ace.utils.TestOutputParser.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOutputParserTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target", UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void parseTest() throws IOException {
+        TestOutputParser parser = new TestOutputParser();
+        for (String line : Arrays.asList(
+                "2024-01-01 12:00:00.100000Z: BIP2208I: Integration server (64-bit) starting.",
+                "[==========] Running 4 tests from 2 test classes",
+                "[----------] 2 tests from com.example.Flow0",
+                "[ RUN      ] com.example.Flow0.test0",
+                "[       OK ] com.example.Flow0.test0 (12 ms)",
+                "[ RUN      ] com.example.Flow0.test1",
+                "com/example/Flow0.java:1: Failure",
+                "Expected: <true> but was: <false>",
+                "[  FAILED  ] com.example.Flow0.test1 (250 ms)",
+                "[----------] 2 tests from com.example.Flow1",
+                "[ RUN      ] com.example.Flow1.test0",
+                "[  SKIPPED ] com.example.Flow1.test0 (0 ms)",
+                "[ RUN      ] com.example.Flow1.test1",
+                "[  FAILED  ] 1 tests, listed below:",
+                "[  FAILED  ] com.example.Flow0.test1")) {
+            parser.line(line);
+        }
+        // the integration server stopped while Flow1.test1 was running
+        parser.finish();
+
+        List<TestCase> testCases = parser.getTestCases();
+        assertEquals(4, testCases.size());
+        assertEquals(TestCase.Status.PASSED, testCases.get(0).getStatus());
+        assertEquals(12, testCases.get(0).getDurationMillis());
+        assertEquals("com.example.Flow0", testCases.get(1).getClassName());
+        assertEquals("test1", testCases.get(1).getName());
+        assertEquals(TestCase.Status.FAILED, testCases.get(1).getStatus());
+        assertEquals("com/example/Flow0.java:1: Failure\nExpected: <true> but was: <false>", testCases.get(1).getMessage());
+        assertEquals(TestCase.Status.SKIPPED, testCases.get(2).getStatus());
+        assertEquals(TestCase.Status.ERROR, testCases.get(3).getStatus());
+        assertEquals(2, parser.getFailures().size());
+        assertEquals("com.example.Flow0.test1", TestOutputParser.getSlowest(testCases, 1).get(0).toString());
+
+        List<File> reports = parser.writeReports(directory);
+        assertEquals(Arrays.asList(new File(directory, "TEST-com.example.Flow0.xml"), new File(directory, "TEST-com.example.Flow1.xml")),
+                reports);
+        String report = new String(Files.readAllBytes(reports.get(0).toPath()), StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("<testsuite name=\"com.example.Flow0\" tests=\"2\" failures=\"1\" errors=\"0\" skipped=\"0\" time=\"0.262\">"));
+        assertTrue(report, report.contains("<testcase name=\"test0\" classname=\"com.example.Flow0\" time=\"0.012\"></testcase>"));
+        assertTrue(report, report.contains("<failure message=\"com/example/Flow0.java:1: Failure\">"));
+        report = new String(Files.readAllBytes(reports.get(1).toPath()), StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("errors=\"1\" skipped=\"1\""));
+    }
+}
@@ -0,0 +1,83 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestShardsTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target", UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void splitTest() {
+        Map<String, Long> durations = new HashMap<String, Long>();
+        durations.put("A", 10L);
+        durations.put("B", 7L);
+        durations.put("C", 6L);
+        durations.put("D", 5L);
+        durations.put("E", 4L);
+        List<String> classes = Arrays.asList("A", "B", "C", "D", "E");
+
+        // longest first, each to the shard with the shortest total: A | B, C | A, D | B, C, E
+        assertEquals(Arrays.asList(Arrays.asList("A", "D"), Arrays.asList("B", "C", "E")), TestShards.split(classes, durations, 2));
+        assertEquals(Collections.singletonList(classes), TestShards.split(classes, durations, 1));
+        // no empty shards
+        assertEquals(5, TestShards.split(classes, durations, 8).size());
+        // without recorded durations the classes are spread evenly
+        assertEquals(Arrays.asList(Arrays.asList("A", "D"), Arrays.asList("B", "E"), Arrays.asList("C")),
+                TestShards.split(classes, Collections.<String, Long> emptyMap(), 3));
+    }
+
+    @Test
+    public void recordedDurationsTest() throws IOException {
+        TestOutputParser parser = new TestOutputParser();
+        for (String line : Arrays.asList("[ RUN      ] com.example.Flow0.test0", "[       OK ] com.example.Flow0.test0 (1200 ms)",
+                "[ RUN      ] com.example.Flow1.test0", "[  FAILED  ] com.example.Flow1.test0 (30 ms)", "[ RUN      ] other.Flow0.test0",
+                "[       OK ] other.Flow0.test0 (5 ms)")) {
+            parser.line(line);
+        }
+        parser.writeReports(directory);
+        FileUtils.writeStringToFile(new File(directory, "TEST-com.example.Broken.xml"), "<testsuite");
+
+        List<String> classes = Arrays.asList("com.example.Broken", "com.example.Flow0", "com.example.Flow1", "com.example.Flow2");
+        Map<String, Long> durations = TestShards.readDurations(directory, classes);
+        assertEquals(2, durations.size());
+        assertEquals(Long.valueOf(1200), durations.get("com.example.Flow0"));
+        assertEquals(Long.valueOf(30), durations.get("com.example.Flow1"));
+        assertEquals(0, TestShards.readDurations(directory, Arrays.asList("Flow0")).size());
+        assertEquals(0, TestShards.readDurations(new File(directory, "missing"), classes).size());
+    }
+
+    @Test
+    public void findTestClassesTest() throws IOException {
+        String project = new WorkspaceGenerator().testProjects(1).testClassesPerProject(3).testsPerProject(5).generate(directory)
+                .getTestProjects().get(0);
+        assertEquals(Arrays.asList(GeneratedWorkspace.getTestClass(project, 0), GeneratedWorkspace.getTestClass(project, 1),
+                GeneratedWorkspace.getTestClass(project, 2)),
+                TestShards.findTestClasses(new File(directory, project)));
+    }
+}
@@ -0,0 +1,174 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolOutputSinkTest {
+
+    private static final int LINES = 100000;
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target", UUID.randomUUID().toString());
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ToolOutputSink.configure(new Properties());
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void summaryTest() throws Exception {
+        RecordingLog log = new RecordingLog();
+        File logFile = ToolOutputSink.getLogFile(directory, "mqsicreatebar");
+        ToolOutputSink sink = new ToolOutputSink("mqsicreatebar", logFile, log, null);
+        readAll(sink);
+        sink.close();
+
+        assertEquals(LINES, sink.getLineCount());
+        List<String> lines = Files.readAllLines(logFile.toPath(), Charset.defaultCharset());
+        assertEquals(LINES, lines.size());
+        assertEquals(getLine(LINES - 1), lines.get(LINES - 1));
+
+        // only the warnings and errors, and the summary
+        assertEquals(LINES / 1000, log.warnings.size());
+        assertEquals(LINES / 1000, log.errors.size());
+        assertEquals(1, log.infos.size());
+        String summary = log.infos.get(0);
+        assertTrue(summary, summary.startsWith("mqsicreatebar: " + LINES + " lines of output, 100 warning(s), 100 error(s)"));
+        assertTrue(summary, summary.endsWith("written to " + logFile));
+    }
+
+    @Test
+    public void allLevelTest() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(ToolOutputSink.LEVEL_PROPERTY, "ALL");
+        ToolOutputSink.configure(properties);
+
+        RecordingLog log = new RecordingLog();
+        ToolOutputSink sink = new ToolOutputSink("mqsibar", null, log, null);
+        readAll(sink);
+        sink.close();
+
+        assertEquals(LINES - LINES / 1000 * 2 + 1, log.infos.size());
+        assertEquals(getLine(0), log.infos.get(0));
+    }
+
+    @Test(timeout = 60000)
+    public void failingListenerTest() throws Exception {
+        RecordingLog log = new RecordingLog();
+        File logFile = ToolOutputSink.getLogFile(directory, "IntegrationServer");
+        ToolOutputSink sink = new ToolOutputSink("IntegrationServer", logFile, log, null, new ToolOutputSink.Listener() {
+            public void line(String line) {
+                if (line.startsWith("BIP0002E")) {
+                    throw new NumberFormatException("For input string: \"" + line + "\"");
+                }
+            }
+        });
+        readAll(sink);
+        sink.close();
+
+        // every line was processed and written anyway, the first failure is logged
+        assertEquals(LINES, sink.getLineCount());
+        assertEquals(LINES, Files.readAllLines(logFile.toPath(), Charset.defaultCharset()).size());
+        String failure = log.warnings.get(log.warnings.size() - 1);
+        assertTrue(failure, failure.startsWith("Could not process all lines of the output of IntegrationServer: "
+                + "java.lang.NumberFormatException: For input string: \"" + getLine(2) + "\""));
+    }
+
+    @Test(timeout = 60000)
+    public void endedWriterTest() throws Exception {
+        RecordingLog log = new RecordingLog();
+        ToolOutputSink sink = new ToolOutputSink("mqsibar", null, log, null, new ToolOutputSink.Listener() {
+            public void line(String line) {
+                throw new AssertionError("the writer thread ends");
+            }
+        });
+        // more batches than the queue holds, the reader doesn't wait for the ended writer
+        readAll(sink);
+        sink.close();
+        assertEquals(1, sink.getLineCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLevelTest() {
+        Properties properties = new Properties();
+        properties.setProperty(ToolOutputSink.LEVEL_PROPERTY, "LOUD");
+        ToolOutputSink.configure(properties);
+    }
+
+    private static void readAll(ToolOutputSink sink) throws InterruptedException {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            output.append(getLine(i)).append('\n');
+        }
+        ProcessOutputLogger logger = new ProcessOutputLogger(new ByteArrayInputStream(output.toString().getBytes()), sink);
+        logger.start();
+        while (logger.getLineCount() < LINES) {
+            Thread.sleep(10);
+        }
+        logger.interrupt();
+        logger.join();
+    }
+
+    private static String getLine(int i) {
+        if (i % 1000 == 1) {
+            return "BIP0001W: warning " + i;
+        } else if (i % 1000 == 2) {
+            return "BIP0002E: error " + i;
+        }
+        return "line " + i;
+    }
+
+    private static class RecordingLog extends SystemStreamLog {
+
+        private final List<String> infos = new ArrayList<String>();
+        private final List<String> warnings = new ArrayList<String>();
+        private final List<String> errors = new ArrayList<String>();
+
+        @Override
+        public synchronized void info(CharSequence content) {
+            infos.add(content.toString());
+        }
+
+        @Override
+        public synchronized void warn(CharSequence content) {
+            warnings.add(content.toString());
+        }
+
+        @Override
+        public synchronized void warn(CharSequence content, Throwable error) {
+            warnings.add(content.toString());
+        }
+
+        @Override
+        public synchronized void error(CharSequence content) {
+            errors.add(content.toString());
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraceFileFollowerTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target", UUID.randomUUID().toString());
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test(timeout = 60000)
+    public void partialLinesTest() throws Exception {
+        File traceFile = new File(directory, "createbartrace.txt");
+        BipMessageClassifier classifier = new BipMessageClassifier(BipMessageClassifier.compilePatterns("BIP0130E"));
+        TraceFileFollower follower = new TraceFileFollower(traceFile, classifier);
+        OutputStream out = new FileOutputStream(traceFile);
+        try {
+            follower.start();
+            write(out, "BIP0142W: warning\r\nBIP0130E: Error compiling");
+            Thread.sleep(1500);
+            // the second line isn't complete yet
+            assertNull(classifier.getFatalLine());
+
+            write(out, " message flow\n");
+            while (classifier.getFatalLine() == null) {
+                Thread.sleep(100);
+            }
+            assertEquals("BIP0130E: Error compiling message flow", classifier.getFatalLine());
+        } finally {
+            out.close();
+            follower.interrupt();
+            follower.join();
+        }
+        // the messages are counted from the output of the tool only
+        assertEquals(0, classifier.getWarningCount());
+        assertEquals(0, classifier.getErrorCount());
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(Charset.defaultCharset()));
+        out.flush();
+    }
+}
@@ -0,0 +1,83 @@
+package ibm.maven.plugins.ace.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkspaceValidationManifestTest {
+
+    private File directory;
+    private File project;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File("target", UUID.randomUUID().toString());
+        project = new File(directory, "App");
+        FileUtils.writeStringToFile(new File(project, ".project"), "<projectDescription><name>App</name></projectDescription>", "UTF-8");
+        FileUtils.writeStringToFile(new File(project, "pom.xml"), "<project><artifactId>App</artifactId></project>", "UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void touchedTest() throws IOException {
+        File manifestFile = new File(directory, "ace-validation.manifest");
+        WorkspaceValidationManifest manifest = WorkspaceValidationManifest.create();
+        manifest.validated(project);
+        manifest.write(manifestFile);
+
+        // written again with the same content: the modification time differs, the hash doesn't
+        File pom = new File(project, "pom.xml");
+        FileUtils.writeStringToFile(pom, "<project><artifactId>App</artifactId></project>", "UTF-8");
+        assertTrue(pom.setLastModified(pom.lastModified() - 60000));
+        manifest = WorkspaceValidationManifest.read(manifestFile);
+        assertTrue(manifest.isValidated(project));
+        assertEquals(1, manifest.size());
+        // the new time is recorded
+        manifest.write(manifestFile);
+        String content = FileUtils.readFileToString(manifestFile, "UTF-8");
+        assertTrue(content, content.contains("," + TimeUnit.MILLISECONDS.toNanos(pom.lastModified()) + "\t"));
+
+        // changed content
+        FileUtils.writeStringToFile(pom, "<project><artifactId>Renamed</artifactId></project>", "UTF-8");
+        assertTrue(pom.setLastModified(pom.lastModified() - 120000));
+        assertFalse(manifest.isValidated(project));
+        assertEquals(0, manifest.size());
+    }
+
+    @Test
+    public void missingFileTest() throws IOException {
+        WorkspaceValidationManifest manifest = WorkspaceValidationManifest.create();
+        manifest.validated(project);
+
+        // a deleted pom.xml is a change, even though nothing was modified
+        assertTrue(new File(project, "pom.xml").delete());
+        assertFalse(manifest.isValidated(project));
+
+        // a project validated without a pom.xml stays validated while it's missing, but not once it's an empty file
+        manifest.validated(project);
+        assertTrue(manifest.isValidated(project));
+        FileUtils.writeStringToFile(new File(project, "pom.xml"), "", "UTF-8");
+        assertFalse(manifest.isValidated(project));
+
+        // a missing manifest is empty, projects which aren't in the workspace anymore are forgotten
+        assertEquals(0, WorkspaceValidationManifest.read(new File(directory, "missing.manifest")).size());
+        manifest.validated(project);
+        manifest.retain(Collections.singletonList(new File(directory, "Other")));
+        assertEquals(0, manifest.size());
+    }
+}
@@ -0,0 +1,287 @@
+package ibm.maven.plugins.ace.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Generates the inputs of the benchmarks. All generators are deterministic, so that results of different runs are
+ * comparable.
+ */
+public final class BenchmarkInputs {
+
+    /**
+     * number of configurable properties per deployment descriptor in the generated mqsireadbar output
+     */
+    static final int PROPERTIES_PER_DESCRIPTOR = 100;
+
+    public static final String APPLICATION_NATURE = "com.ibm.etools.msgbroker.tooling.applicationNature";
+    public static final String LIBRARY_NATURE = "com.ibm.etools.msgbroker.tooling.libraryNature";
+    public static final String SHARED_LIBRARY_NATURE = "com.ibm.etools.msgbroker.tooling.sharedLibraryNature";
+    public static final String POLICY_NATURE = "com.ibm.etools.mft.policy.ui.Nature";
+    public static final String TEST_PROJECT_NATURE = "com.ibm.etools.msgbroker.tooling.testProjectNature";
+
+    /**
+     * hide the default constructor
+     */
+    private BenchmarkInputs() {
+        super();
+    }
+
+    /**
+     * @param index running number of the property
+     * @return a configurable property entry as listed by mqsireadbar, e.g. "flow.Node#prop = value"
+     */
+    public static String propertyEntry(int index) {
+        String flow = "com.example.flow" + (index / PROPERTIES_PER_DESCRIPTOR) + ".Flow" + (index % 7);
+        if (index % 20 == 0) {
+            return flow + "#JavaCompute" + index + ".javaClassLoader = ";
+        }
+        return flow + "#Node" + index + ".property" + index + " = value" + index;
+    }
+
+    /**
+     * @param count number of entries
+     * @return configurable property entries, as found in a properties file
+     */
+    public static List<String> propertyEntries(int count) {
+        List<String> entries = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(propertyEntry(i));
+        }
+        return entries;
+    }
+
+    /**
+     * @param properties total number of configurable properties
+     * @return mqsireadbar -r output listing the given number of properties in applications and libraries
+     */
+    public static List<String> readBarOutput(int properties) {
+        List<String> output = new ArrayList<String>();
+        output.add("BIP1051I: Reading Bar file using toolkit mqsireadbar...");
+        output.add("/build/target/ace/benchmark-1.0.0.bar:");
+        int app = 0;
+        for (int i = 0; i < properties; i++) {
+            if (i % PROPERTIES_PER_DESCRIPTOR == 0) {
+                if (i % (PROPERTIES_PER_DESCRIPTOR * 5) == 0) {
+                    output.add("  app" + app + ".appzip (1/1/20 12:00 PM):");
+                    app++;
+                }
+                output.add("    lib" + i + ".libzip (1/1/20 12:00 PM):");
+                output.add("        com/example/Flow.msgflow (1/1/20 12:00 PM):");
+                output.add("        com/example/Flow_Compute.esql (1/1/20 12:00 PM):");
+                output.add("        Deployment descriptor:");
+            }
+            output.add("          " + propertyEntry(i));
+        }
+        output.add("");
+        output.add("BIP8071I: Successful command completion.");
+        return output;
+    }
+
+    /**
+     * writes a zip file resembling a bar file: flows, esql and (larger) jar files
+     *
+     * @param zipFile the file to be written
+     * @param entries number of entries
+     * @return the zip file
+     * @throws IOException if the file can't be written
+     */
+    public static File createZip(File zipFile, int entries) throws IOException {
+        zipFile.getParentFile().mkdirs();
+        Random random = new Random(entries);
+        byte[] text = new byte[2048];
+        byte[] binary = new byte[16384];
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+        try {
+            for (int i = 0; i < entries; i++) {
+                String name;
+                byte[] content;
+                switch (i % 4) {
+                case 0:
+                    name = "com/example/lib" + i + ".jar";
+                    random.nextBytes(binary);
+                    content = binary;
+                    break;
+                case 1:
+                    name = "com/example/Flow" + i + ".msgflow";
+                    content = fillText(text, i);
+                    break;
+                case 2:
+                    name = "com/example/Flow" + i + "_Compute.esql";
+                    content = fillText(text, i);
+                    break;
+                default:
+                    name = "com/example/Flow" + i + ".cmf";
+                    content = fillText(text, i);
+                    break;
+                }
+                out.putNextEntry(new ZipEntry(name));
+                out.write(content);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return zipFile;
+    }
+
+    /**
+     * writes a project directory into a zip file, below a directory named like the project (like the ace-src
+     * packaging)
+     *
+     * @param projectDirectory the project to be archived
+     * @param zipFile the file to be written
+     * @return the zip file
+     * @throws IOException if the file can't be written
+     */
+    public static File zipProject(File projectDirectory, File zipFile) throws IOException {
+        zipFile.getParentFile().mkdirs();
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+        try {
+            addToZip(out, projectDirectory, projectDirectory.getName() + "/");
+        } finally {
+            out.close();
+        }
+        return zipFile;
+    }
+
+    private static void addToZip(ZipOutputStream out, File directory, String prefix) throws IOException {
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addToZip(out, file, prefix + file.getName() + "/");
+            } else {
+                out.putNextEntry(new ZipEntry(prefix + file.getName()));
+                out.write(Files.readAllBytes(file.toPath()));
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static byte[] fillText(byte[] buffer, int seed) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) ('a' + (i * 31 + seed) % 26);
+        }
+        return buffer;
+    }
+
+    /**
+     * writes an ace project directory containing a .project file
+     *
+     * @param workspace the workspace directory
+     * @param name name of the project
+     * @param nature the ace specific nature of the project
+     * @return the project directory
+     * @throws IOException if the file can't be written
+     */
+    public static File createProject(File workspace, String name, String nature) throws IOException {
+        File projectDirectory = new File(workspace, name);
+        projectDirectory.mkdirs();
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<projectDescription>\n");
+        sb.append("\t<name>").append(name).append("</name>\n");
+        sb.append("\t<comment></comment>\n");
+        sb.append("\t<projects>\n\t</projects>\n");
+        sb.append("\t<buildSpec>\n");
+        sb.append("\t\t<buildCommand>\n\t\t\t<name>com.ibm.etools.mft.flow.msgflowbuilder</name>\n");
+        sb.append("\t\t\t<arguments>\n\t\t\t</arguments>\n\t\t</buildCommand>\n");
+        sb.append("\t</buildSpec>\n");
+        sb.append("\t<natures>\n");
+        sb.append("\t\t<nature>org.eclipse.m2e.core.maven2Nature</nature>\n");
+        sb.append("\t\t<nature>com.ibm.etools.msgbroker.tooling.messageBrokerProjectNature</nature>\n");
+        sb.append("\t\t<nature>").append(nature).append("</nature>\n");
+        sb.append("\t</natures>\n");
+        sb.append("</projectDescription>\n");
+        FileUtils.fileWrite(new File(projectDirectory, ".project").getAbsolutePath(), "UTF-8", sb.toString());
+        return projectDirectory;
+    }
+
+    /**
+     * @param index running number of the project
+     * @return the ace nature of the index'th generated project, cycling through all project types
+     */
+    public static String natureOf(int index) {
+        String[] natures = { APPLICATION_NATURE, LIBRARY_NATURE, SHARED_LIBRARY_NATURE, POLICY_NATURE,
+                TEST_PROJECT_NATURE };
+        return natures[index % natures.length];
+    }
+
+    /**
+     * writes a pom.xml of an ace project
+     *
+     * @param pomFile the file to be written
+     * @param dependencies number of dependencies
+     * @return the pom file
+     * @throws IOException if the file can't be written
+     */
+    public static File createPom(File pomFile, int dependencies) throws IOException {
+        pomFile.getParentFile().mkdirs();
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        sb.append("\t<modelVersion>4.0.0</modelVersion>\n");
+        sb.append("\t<groupId>com.example</groupId>\n");
+        sb.append("\t<artifactId>benchmark-app</artifactId>\n");
+        sb.append("\t<version>1.0.0</version>\n");
+        sb.append("\t<packaging>ace-bar</packaging>\n");
+        sb.append("\t<dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            sb.append("\t\t<dependency>\n");
+            sb.append("\t\t\t<groupId>com.example</groupId>\n");
+            sb.append("\t\t\t<artifactId>lib").append(i).append("</artifactId>\n");
+            sb.append("\t\t\t<version>1.0.").append(i).append("</version>\n");
+            sb.append("\t\t\t<type>zip</type>\n");
+            sb.append("\t\t</dependency>\n");
+        }
+        sb.append("\t</dependencies>\n");
+        sb.append("</project>\n");
+        FileUtils.fileWrite(pomFile.getAbsolutePath(), "UTF-8", sb.toString());
+        return pomFile;
+    }
+
+    /**
+     * writes the given lines to a file
+     */
+    public static File writeLines(File file, List<String> lines) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            for (String line : lines) {
+                out.write(line.getBytes("UTF-8"));
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * @param name name of the benchmark
+     * @return a new, empty directory below target/benchmark-data
+     */
+    public static File createTempDirectory(String name) throws IOException {
+        File directory = new File("target/benchmark-data", name + "-" + System.nanoTime()).getAbsoluteFile();
+        if (!directory.mkdirs()) {
+            throw new IOException("Could not create directory: " + directory);
+        }
+        return directory;
+    }
+
+    public static void delete(File directory) throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+}
@@ -0,0 +1,34 @@
+package ibm.maven.plugins.ace.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line options (e.g. a benchmark regex or -p to select
+ * scales) and writes the results as JSON to target/jmh-result.json unless -rf / -rff are given.
+ */
+public final class BenchmarkMain {
+
+    static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    /**
+     * hide the default constructor
+     */
+    private BenchmarkMain() {
+        super();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<String>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.add("-rf");
+            jmhArgs.add("json");
+        }
+        if (!jmhArgs.contains("-rff")) {
+            jmhArgs.add("-rff");
+            jmhArgs.add(DEFAULT_RESULT_FILE);
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+    }
+}
@@ -0,0 +1,159 @@
+package ibm.maven.plugins.ace.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.testing.StubToolchain;
+
+/**
+ * Builds the sample project (Sample-ace-project/Sum_API) or a reactor of copies of it with Maven against the
+ * {@link StubToolchain}, so that the overhead of the plugin can be measured without an ACE installation.
+ *
+ * Requires the plugin to be installed in the local repository and Maven to be available (see {@link MavenBuild}).
+ * The location of the sample project can be set with the system property ace.sampleProject.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    static final String SAMPLE_PROJECT = "Sum_API";
+
+    /**
+     * 1 builds the sample project itself, more modules build a reactor of renamed copies
+     */
+    @Param({ "1", "5", "20" })
+    public int modules;
+
+    /**
+     * value of Maven's -T option
+     */
+    @Param({ "1" })
+    public String threads;
+
+    /**
+     * latency of every stub command in milliseconds
+     */
+    @Param({ "0" })
+    public long latency;
+
+    private File directory;
+    private File aceHome;
+    private File buildDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("end-to-end");
+        Properties settings = new Properties();
+        settings.setProperty("latency", Long.toString(latency));
+        aceHome = StubToolchain.install(new File(directory, "ace"), settings);
+
+        File workspace = new File(directory, "workspace");
+        File sample = getSampleProject();
+        if (modules == 1) {
+            buildDirectory = copyProject(sample, workspace, SAMPLE_PROJECT);
+        } else {
+            StringBuilder moduleList = new StringBuilder();
+            for (int i = 0; i < modules; i++) {
+                String name = SAMPLE_PROJECT + "_" + i;
+                copyProject(sample, workspace, name);
+                moduleList.append("\t\t<module>").append(name).append("</module>\n");
+            }
+            BenchmarkInputs.writeLines(new File(workspace, "pom.xml"), Arrays.asList(
+                    "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+                    "\t<modelVersion>4.0.0</modelVersion>",
+                    "\t<groupId>com.ibm.ace</groupId>",
+                    "\t<artifactId>benchmark-reactor</artifactId>",
+                    "\t<version>1.0.0</version>",
+                    "\t<packaging>pom</packaging>",
+                    "\t<modules>",
+                    moduleList.toString() + "\t</modules>",
+                    "</project>"));
+            buildDirectory = workspace;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public void build() throws IOException, InterruptedException {
+        new MavenBuild(buildDirectory, new File(directory, "build.log"))
+                .arguments("-T", threads, "clean", "package", "-Dace.dir=" + aceHome, "-Dace.rundir=" + aceHome)
+                .run();
+    }
+
+    static File getSampleProject() throws IOException {
+        String location = System.getProperty("ace.sampleProject");
+        File[] candidates = location != null ? new File[] { new File(location) }
+                : new File[] { new File("../Sample-ace-project/Sum_API"), new File("Sample-ace-project/Sum_API") };
+        for (File candidate : candidates) {
+            if (new File(candidate, "pom.xml").isFile()) {
+                return candidate;
+            }
+        }
+        throw new IOException("Sample project not found, set the system property ace.sampleProject");
+    }
+
+    /**
+     * copies the sample project into the workspace, renaming it and pointing its pom.xml to the workspace and the
+     * plugin version being benchmarked
+     *
+     * @return the project directory
+     */
+    static File copyProject(File sample, File workspace, String name) throws IOException {
+        File project = new File(workspace, name);
+        FileUtils.copyDirectoryStructure(sample, project);
+        FileUtils.deleteDirectory(new File(project, "target"));
+
+        File projectFile = new File(project, ".project");
+        String description = new String(Files.readAllBytes(projectFile.toPath()), StandardCharsets.UTF_8);
+        description = description.replace("<name>" + SAMPLE_PROJECT + "</name>", "<name>" + name + "</name>");
+        Files.write(projectFile.toPath(), description.getBytes(StandardCharsets.UTF_8));
+
+        File pomFile = new File(project, "pom.xml");
+        String pom = new String(Files.readAllBytes(pomFile.toPath()), StandardCharsets.UTF_8);
+        pom = pom.replace("<artifactId>" + SAMPLE_PROJECT + "</artifactId>", "<artifactId>" + name + "</artifactId>");
+        pom = pom.replaceFirst("(<artifactId>ace-maven-plugin</artifactId>\\s*<version>)[^<]*(</version>)", "$1" + getPluginVersion() + "$2");
+        pom = pom.replaceAll("<workspace>[^<]*</workspace>", "<workspace>" + workspace.getAbsolutePath() + "</workspace>");
+        pom = pom.replace("${basedir}\\properties", "${basedir}/properties");
+        Files.write(pomFile.toPath(), pom.getBytes(StandardCharsets.UTF_8));
+        return project;
+    }
+
+    static String getPluginVersion() throws IOException {
+        Properties properties = new Properties();
+        InputStream in = EndToEndBenchmark.class.getResourceAsStream("/benchmark.properties");
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties.getProperty("pluginVersion");
+    }
+}
@@ -0,0 +1,72 @@
+package ibm.maven.plugins.ace.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs Maven as an external process, as a user of the plugin would.
+ *
+ * The Maven executable is taken from the system property maven.executable, from MAVEN_HOME or from the PATH.
+ */
+public class MavenBuild {
+
+    private final File directory;
+    private final File logFile;
+    private final List<String> arguments = new ArrayList<String>();
+
+    /**
+     * @param directory the directory containing the pom.xml to be built
+     * @param logFile receives the output of the build
+     */
+    public MavenBuild(File directory, File logFile) {
+        this.directory = directory;
+        this.logFile = logFile;
+    }
+
+    public MavenBuild arguments(String... args) {
+        arguments.addAll(Arrays.asList(args));
+        return this;
+    }
+
+    /**
+     * runs the build
+     *
+     * @throws IllegalStateException if the build failed, containing the end of its output
+     */
+    public void run() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(getMavenExecutable());
+        command.add("-B");
+        command.addAll(arguments);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(directory);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(logFile);
+        int exitCode = pb.start().waitFor();
+        if (exitCode != 0) {
+            List<String> output = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+            StringBuilder tail = new StringBuilder();
+            for (String line : output.subList(Math.max(0, output.size() - 30), output.size())) {
+                tail.append(line).append('\n');
+            }
+            throw new IllegalStateException("Maven build in " + directory + " failed with exit code " + exitCode + ":\n" + tail);
+        }
+    }
+
+    static String getMavenExecutable() {
+        String executable = System.getProperty("maven.executable");
+        if (executable != null) {
+            return executable;
+        }
+        String mavenHome = System.getenv("MAVEN_HOME");
+        if (mavenHome != null && new File(mavenHome, "bin/mvn").canExecute()) {
+            return new File(mavenHome, "bin/mvn").getAbsolutePath();
+        }
+        return "mvn";
+    }
+}
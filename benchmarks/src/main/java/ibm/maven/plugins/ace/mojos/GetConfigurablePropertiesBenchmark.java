@@ -0,0 +1,47 @@
+package ibm.maven.plugins.ace.mojos;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Extraction of the configurable properties from the mqsireadbar output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetConfigurablePropertiesBenchmark {
+
+    @Param({ "100", "5000", "50000" })
+    public int properties;
+
+    private ValidateConfigurablePropertiesMojo mojo;
+    private List<String> output;
+
+    @Setup
+    public void setUp() {
+        mojo = new ValidateConfigurablePropertiesMojo();
+        output = BenchmarkInputs.readBarOutput(properties);
+    }
+
+    @Benchmark
+    public List<String> getConfigurableProperties() {
+        return mojo.getConfigurableProperties(output);
+    }
+}
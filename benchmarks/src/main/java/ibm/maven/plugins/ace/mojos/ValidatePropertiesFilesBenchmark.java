@@ -0,0 +1,80 @@
+package ibm.maven.plugins.ace.mojos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+import ibm.maven.plugins.ace.benchmarks.QuietLog;
+import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
+
+/**
+ * Validation of the environment specific properties files against the properties defined in the bar file. Every
+ * properties file overrides all properties, one in a hundred of them is invalid.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatePropertiesFilesBenchmark {
+
+    @Param({ "100", "5000", "50000" })
+    public int properties;
+
+    @Param({ "1", "10" })
+    public int files;
+
+    private File directory;
+    private ValidateConfigurablePropertiesMojo mojo;
+    private List<String> validProperties;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("validate-properties");
+        File configPropFileDirectory = new File(directory, "ace");
+        List<String> entries = BenchmarkInputs.propertyEntries(properties);
+        validProperties = ConfigurablePropertiesUtil.getPropNames(entries);
+        for (int i = 0; i < properties; i += 100) {
+            entries.set(i, "invalid.Flow#Node" + i + ".property = value");
+        }
+        for (int i = 0; i < files; i++) {
+            BenchmarkInputs.writeLines(new File(configPropFileDirectory, "env" + i + ".properties"), entries);
+        }
+
+        MavenProject project = new MavenProject();
+        project.getBuild().setDirectory(directory.getAbsolutePath());
+        mojo = new ValidateConfigurablePropertiesMojo();
+        mojo.setLog(new QuietLog());
+        mojo.project = project;
+        mojo.configPropFileDirectory = configPropFileDirectory;
+        mojo.failOnInvalidProperties = false;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public void validatePropertiesFiles() throws MojoFailureException {
+        mojo.validatePropertiesFiles(validProperties);
+    }
+}
@@ -0,0 +1,166 @@
+package ibm.maven.plugins.ace.mojos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+import ibm.maven.plugins.ace.benchmarks.QuietLog;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator;
+import ibm.maven.plugins.ace.testing.WorkspaceGenerator.GeneratedWorkspace;
+import ibm.maven.plugins.ace.utils.BarIndex;
+import ibm.maven.plugins.ace.utils.ConfigurablePropertiesUtil;
+import ibm.maven.plugins.ace.utils.ZipUtils;
+
+/**
+ * Cost of the workspace related build steps against the size of a generated workspace: unpacking the project zips
+ * (like the dependencies of a bar project), validating the workspace, extracting the configurable properties from the
+ * mqsireadbar output, validating the properties files and removing files from the bar file. Per application the
+ * workspace contains two static libraries, every tenth application adds a shared library; every project has five flows
+ * with ten configurable properties each. The bar file contains all applications and shared libraries.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WorkspaceScalingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Workspace {
+
+        @Param({ "5", "50", "250" })
+        public int applications;
+
+        File directory;
+        GeneratedWorkspace workspace;
+        List<File> projectZips = new ArrayList<File>();
+        File bar;
+        List<String> readBarOutput;
+        List<String> validProperties;
+        File configPropFileDirectory;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            directory = BenchmarkInputs.createTempDirectory("workspace-scaling");
+            workspace = new WorkspaceGenerator().applications(applications).libraries(2 * applications)
+                    .sharedLibraries(Math.max(1, applications / 10)).policyProjects(1).testProjects(applications / 5)
+                    .librariesPerApplication(3).flowsPerProject(5).propertiesPerFlow(10).generate(new File(directory, "workspace"));
+
+            for (String project : workspace.getProjects()) {
+                projectZips.add(BenchmarkInputs.zipProject(workspace.getProjectDirectory(project), new File(directory, "zips/" + project
+                        + ".zip")));
+            }
+
+            bar = workspace.createBar(new File(directory, "template.bar"), workspace.getApplications(), workspace.getSharedLibraries(),
+                    workspace.getPolicyProjects());
+            readBarOutput = GeneratedWorkspace.readBar(bar);
+            validProperties = ConfigurablePropertiesUtil.getPropNames(new ValidateConfigurablePropertiesMojo()
+                    .getConfigurableProperties(readBarOutput));
+
+            configPropFileDirectory = new File(directory, "properties");
+            for (String application : workspace.getApplications()) {
+                FileUtils.copyFile(new File(workspace.getProjectDirectory(application), "properties/DEV.properties"), new File(
+                        configPropFileDirectory, application + "-DEV.properties"));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            BenchmarkInputs.delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class UnpackDirectory {
+
+        File directory;
+
+        @Setup(Level.Invocation)
+        public void create(Workspace workspace) {
+            directory = new File(workspace.directory, "unpacked-" + System.nanoTime());
+            directory.mkdirs();
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            BenchmarkInputs.delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BarCopy {
+
+        File bar;
+
+        @Setup(Level.Invocation)
+        public void copy(Workspace workspace) throws IOException {
+            bar = new File(workspace.directory, "benchmark.bar");
+            FileUtils.copyFile(workspace.bar, bar);
+        }
+    }
+
+    @Benchmark
+    public void unpackProjects(Workspace workspace, UnpackDirectory target) throws ArchiverException {
+        for (File zip : workspace.projectZips) {
+            ZipUnArchiver unArchiver = new ZipUnArchiver(zip);
+            unArchiver.enableLogging(new ConsoleLogger(Logger.LEVEL_DISABLED, "unpack"));
+            unArchiver.setDestDirectory(target.directory);
+            unArchiver.extract();
+        }
+    }
+
+    @Benchmark
+    public void validateWorkspace(Workspace workspace) throws MojoExecutionException, MojoFailureException {
+        ValidateBarBuildWorkspaceMojo mojo = new ValidateBarBuildWorkspaceMojo();
+        mojo.setLog(new QuietLog());
+        mojo.workspace = workspace.workspace.getDirectory();
+        mojo.execute();
+    }
+
+    @Benchmark
+    public List<String> getConfigurableProperties(Workspace workspace) {
+        return new ValidateConfigurablePropertiesMojo().getConfigurableProperties(workspace.readBarOutput);
+    }
+
+    @Benchmark
+    public void validatePropertiesFiles(Workspace workspace) throws MojoFailureException {
+        MavenProject project = new MavenProject();
+        project.getBuild().setDirectory(workspace.directory.getAbsolutePath());
+        ValidateConfigurablePropertiesMojo mojo = new ValidateConfigurablePropertiesMojo();
+        mojo.setLog(new QuietLog());
+        mojo.project = project;
+        mojo.configPropFileDirectory = workspace.configPropFileDirectory;
+        mojo.failOnInvalidProperties = true;
+        mojo.validatePropertiesFiles(workspace.validProperties);
+    }
+
+    @Benchmark
+    public BarIndex removeFilesFromBar(BarCopy copy) throws IOException {
+        return ZipUtils.removeFiles(copy.bar, "**/javacompute_**.jar,**/jplugin2_**.jar");
+    }
+}
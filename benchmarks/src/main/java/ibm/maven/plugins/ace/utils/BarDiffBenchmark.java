@@ -0,0 +1,125 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Comparison of two large bar files with 20 applications of equal size, one of which changed (a flow and a property of
+ * its deployment descriptor). The content of the applications is incompressible, so the size of the bar files is
+ * about the given size.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+@State(Scope.Benchmark)
+public class BarDiffBenchmark {
+
+    private static final int APPLICATIONS = 20;
+
+    @Param({ "100", "1000" })
+    public int sizeMb;
+
+    private File directory;
+    private File baseBar;
+    private File bar;
+
+    @Setup(Level.Trial)
+    public void createBars() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("bar-diff");
+        baseBar = new File(directory, "base.bar");
+        bar = new File(directory, "new.bar");
+        ZipOutputStream base = open(baseBar);
+        ZipOutputStream changed = open(bar);
+        try {
+            Random random = new Random(sizeMb);
+            int jarSize = 1024 * 1024;
+            int jars = Math.max(1, sizeMb / APPLICATIONS);
+            for (int app = 0; app < APPLICATIONS; app++) {
+                byte[] appzip = createApplication(app, jars, jarSize, random, false);
+                addEntry(base, "App" + app + ".appzip", appzip);
+                if (app == APPLICATIONS / 2) {
+                    random.setSeed(sizeMb + app);
+                    appzip = createApplication(app, jars, jarSize, random, true);
+                }
+                addEntry(changed, "App" + app + ".appzip", appzip);
+            }
+        } finally {
+            base.close();
+            changed.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public BarDiff compare() throws IOException {
+        return BarDiff.compare(baseBar, bar);
+    }
+
+    private static ZipOutputStream open(File file) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        zip.setLevel(Deflater.BEST_SPEED);
+        return zip;
+    }
+
+    private static byte[] createApplication(int app, int jars, int jarSize, Random random, boolean changed) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(jars * jarSize + 64 * 1024);
+        ZipOutputStream archive = new ZipOutputStream(buffer);
+        archive.setLevel(Deflater.BEST_SPEED);
+        byte[] jar = new byte[jarSize];
+        for (int i = 0; i < jars; i++) {
+            random.nextBytes(jar);
+            addEntry(archive, "lib" + i + ".jar", jar);
+        }
+        StringBuilder descriptor = new StringBuilder("<Broker>\n");
+        for (int flow = 0; flow < 50; flow++) {
+            addEntry(archive, "com/example/app" + app + "/Flow" + flow + ".cmf", ("flow " + flow + (changed && flow == 0 ? " changed" : ""))
+                    .getBytes(StandardCharsets.UTF_8));
+            for (int property = 0; property < 10; property++) {
+                String override = changed && flow == 0 && property == 0 ? "2" : "0";
+                descriptor.append("<ConfigurableProperty override=\"").append(override).append("\" uri=\"com.example.app").append(app)
+                        .append(".Flow").append(flow).append("#Node.property").append(property).append("\"/>\n");
+            }
+        }
+        descriptor.append("</Broker>\n");
+        addEntry(archive, BarIndex.DEPLOYMENT_DESCRIPTOR, descriptor.toString().getBytes(StandardCharsets.UTF_8));
+        archive.close();
+        return buffer.toByteArray();
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
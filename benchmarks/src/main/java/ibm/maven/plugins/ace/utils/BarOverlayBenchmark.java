@@ -0,0 +1,122 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Materializing the bar file of an environment from the bar file without overrides and its overlay. The bar files have
+ * 20 applications of equal size, the deployment descriptors of the applications of the environment (every
+ * application's or one application's) differ. The content of the applications is incompressible, so the size of the
+ * bar files is about the given size.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+@State(Scope.Benchmark)
+public class BarOverlayBenchmark {
+
+    private static final int APPLICATIONS = 20;
+
+    @Param({ "100", "500" })
+    public int sizeMb;
+
+    @Param({ "1", "20" })
+    public int changedApplications;
+
+    private File directory;
+    private File baseBar;
+    private File overlay;
+
+    @Setup(Level.Trial)
+    public void createOverlay() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("bar-overlay");
+        baseBar = new File(directory, "app-1.0.bar");
+        File bar = new File(directory, "DEV_1.0.bar");
+        ZipOutputStream base = open(baseBar);
+        ZipOutputStream environment = open(bar);
+        try {
+            Random random = new Random(sizeMb);
+            byte[] jar = new byte[sizeMb * 1024 * 1024 / APPLICATIONS];
+            for (int app = 0; app < APPLICATIONS; app++) {
+                random.nextBytes(jar);
+                addEntry(base, "App" + app + ".appzip", createApplication(app, jar, "0"));
+                addEntry(environment, "App" + app + ".appzip", createApplication(app, jar, app < changedApplications ? "2" : "0"));
+            }
+        } finally {
+            base.close();
+            environment.close();
+        }
+        overlay = BarOverlay.getOverlayFile(bar);
+        BarOverlay.write(baseBar, BarIndex.create(baseBar), bar, BarIndex.create(bar), overlay);
+        System.out.println("\n" + overlay.getName() + ": " + overlay.length() + " bytes, " + bar.getName() + ": " + bar.length() + " bytes");
+        bar.delete();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public long materialize() throws IOException {
+        File target = new File(directory, "materialized.bar");
+        BarOverlay.materialize(baseBar, overlay, target);
+        return target.length();
+    }
+
+    private static ZipOutputStream open(File file) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        zip.setLevel(Deflater.BEST_SPEED);
+        return zip;
+    }
+
+    private static byte[] createApplication(int app, byte[] jar, String additionalInstances) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(jar.length + 64 * 1024);
+        ZipOutputStream archive = new ZipOutputStream(buffer);
+        archive.setLevel(Deflater.BEST_SPEED);
+        addEntry(archive, "lib.jar", jar);
+        StringBuilder descriptor = new StringBuilder("<Broker>\n");
+        for (int flow = 0; flow < 50; flow++) {
+            addEntry(archive, "com/example/app" + app + "/Flow" + flow + ".cmf", ("flow " + flow).getBytes(StandardCharsets.UTF_8));
+            descriptor.append("<ConfigurableProperty override=\"").append(additionalInstances).append("\" uri=\"com.example.app")
+                    .append(app).append(".Flow").append(flow).append("#additionalInstances\"/>\n");
+        }
+        descriptor.append("</Broker>\n");
+        addEntry(archive, BarIndex.DEPLOYMENT_DESCRIPTOR, descriptor.toString().getBytes(StandardCharsets.UTF_8));
+        archive.close();
+        return buffer.toByteArray();
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,118 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Splitting a bar file with 20 applications, each with a library of its own, into one bar file per application: with
+ * raw entry copying (split-bar) and, for comparison, by inflating and deflating the entries (ZipUtils.copyFiles, one
+ * split after the other).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx256m" })
+@State(Scope.Benchmark)
+public class BarSplitterBenchmark {
+
+    private static final int APPLICATIONS = 20;
+
+    @Param({ "100", "500" })
+    public int sizeMb;
+
+    private File directory;
+    private File bar;
+
+    @Setup(Level.Trial)
+    public void createBar() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("bar-split");
+        bar = new File(directory, "app.bar");
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(bar), 64 * 1024));
+        zip.setLevel(Deflater.BEST_SPEED);
+        try {
+            Random random = new Random(sizeMb);
+            // half of the size in compressible flows, half in incompressible jars
+            int projectSize = sizeMb * 1024 * 1024 / APPLICATIONS / 2;
+            for (int app = 0; app < APPLICATIONS; app++) {
+                addEntry(zip, "App" + app + ".appzip", createArchive(projectSize, random, "application.descriptor",
+                        "<appDescriptor><libraryName>Lib" + app + "</libraryName></appDescriptor>"));
+            }
+            for (int lib = 0; lib < APPLICATIONS; lib++) {
+                addEntry(zip, "Lib" + lib + ".libzip", createArchive(projectSize, random, "library.descriptor", "<libraryDescriptor/>"));
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public Map<File, String> splitRaw() throws IOException {
+        return new BarSplitter(bar).write(new File(directory, "raw"), Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public int splitRecompressed() throws IOException {
+        BarSplitter splitter = new BarSplitter(bar);
+        File splitDirectory = new File(directory, "recompressed");
+        int entries = 0;
+        for (Map.Entry<String, List<String>> split : splitter.getSplits().entrySet()) {
+            entries += ZipUtils.copyFiles(bar, splitter.getSplitFile(splitDirectory, split.getKey()), split.getValue()).getEntries().size();
+        }
+        return entries;
+    }
+
+    private static byte[] createArchive(int size, Random random, String descriptor, String content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size + 64 * 1024);
+        ZipOutputStream archive = new ZipOutputStream(buffer);
+        archive.setLevel(Deflater.BEST_SPEED);
+        byte[] jar = new byte[size / 2];
+        random.nextBytes(jar);
+        addEntry(archive, "lib.jar", jar);
+        StringBuilder flow = new StringBuilder();
+        while (flow.length() < size / 2) {
+            flow.append("<node id=\"").append(flow.length()).append("\" type=\"ComIbmCompute.msgnode\"/>\n");
+        }
+        addEntry(archive, "Flow.cmf", flow.toString().getBytes("UTF-8"));
+        addEntry(archive, descriptor, content.getBytes("UTF-8"));
+        archive.close();
+        return buffer.toByteArray();
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
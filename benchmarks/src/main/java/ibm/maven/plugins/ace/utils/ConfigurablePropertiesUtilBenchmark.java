@@ -0,0 +1,58 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Parsing of configurable property entries ("name = value").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurablePropertiesUtilBenchmark {
+
+    @Param({ "100", "5000", "50000" })
+    public int properties;
+
+    private List<String> entries;
+
+    @Setup
+    public void setUp() {
+        entries = BenchmarkInputs.propertyEntries(properties);
+    }
+
+    @Benchmark
+    public List<String> getPropNames() {
+        return ConfigurablePropertiesUtil.getPropNames(entries);
+    }
+
+    @Benchmark
+    public List<String> getJavaClassLoaderProperties() {
+        return ConfigurablePropertiesUtil.getJavaClassLoaderProperties(entries);
+    }
+
+    @Benchmark
+    public void getPropValue(Blackhole blackhole) {
+        for (String entry : entries) {
+            blackhole.consume(ConfigurablePropertiesUtil.getPropValue(entry));
+        }
+    }
+}
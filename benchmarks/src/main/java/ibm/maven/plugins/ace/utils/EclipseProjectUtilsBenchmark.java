@@ -0,0 +1,77 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+import ibm.maven.plugins.ace.benchmarks.QuietLog;
+
+/**
+ * Classification of all projects of a workspace by their natures, as done when a bar file is created.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EclipseProjectUtilsBenchmark {
+
+    @Param({ "10", "100", "500" })
+    public int projects;
+
+    private File workspace;
+    private File[] projectDirectories;
+    private final Log log = new QuietLog();
+
+    @Setup
+    public void setUp() throws IOException {
+        workspace = BenchmarkInputs.createTempDirectory("eclipse-projects");
+        projectDirectories = new File[projects];
+        for (int i = 0; i < projects; i++) {
+            projectDirectories[i] = BenchmarkInputs.createProject(workspace, "project" + i, BenchmarkInputs.natureOf(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(workspace);
+    }
+
+    @Benchmark
+    public int classifyProjects() throws MojoFailureException {
+        int classified = 0;
+        for (String projectName : EclipseProjectUtils.getWorkspaceProjects(workspace)) {
+            File projectDirectory = new File(workspace, projectName);
+            if (EclipseProjectUtils.isApplication(projectDirectory, log)
+                    || EclipseProjectUtils.isLibrary(projectDirectory, log)
+                    || EclipseProjectUtils.isSharedLibrary(projectDirectory, log)
+                    || EclipseProjectUtils.isPolicyProject(projectDirectory, log)
+                    || EclipseProjectUtils.isTestProject(projectDirectory, log)) {
+                classified++;
+            }
+        }
+        return classified;
+    }
+
+    @Benchmark
+    public boolean isApplication() throws MojoFailureException {
+        return EclipseProjectUtils.isApplication(projectDirectories[0], log);
+    }
+}
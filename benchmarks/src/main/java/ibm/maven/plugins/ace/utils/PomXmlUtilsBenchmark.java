@@ -0,0 +1,63 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+import ibm.maven.plugins.ace.generated.maven_pom.Model;
+
+/**
+ * Unmarshalling of a project's pom.xml with JAXB, compared with reading only its artifactId with StAX, as done for
+ * every project of the workspace.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PomXmlUtilsBenchmark {
+
+    @Param({ "0", "20", "500" })
+    public int dependencies;
+
+    private File directory;
+    private File pomFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("pom-xml");
+        pomFile = BenchmarkInputs.createPom(new File(directory, "pom.xml"), dependencies);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public Model unmarshallPomFile() throws JAXBException {
+        return PomXmlUtils.unmarshallPomFile(pomFile);
+    }
+
+    @Benchmark
+    public String readArtifactId() throws IOException {
+        return PomXmlUtils.readCoordinates(pomFile, "artifactId").getArtifactId();
+    }
+}
@@ -0,0 +1,64 @@
+package ibm.maven.plugins.ace.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ibm.maven.plugins.ace.benchmarks.BenchmarkInputs;
+
+/**
+ * Removal of the jar files from a bar file, including indexing the remaining entries. Every invocation works on a fresh copy of the generated bar file; copying
+ * it is not part of the measured time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZipUtilsBenchmark {
+
+    @Param({ "100", "1000", "5000" })
+    public int entries;
+
+    private File directory;
+    private File template;
+    private File zipFile;
+
+    @Setup(Level.Trial)
+    public void createTemplate() throws IOException {
+        directory = BenchmarkInputs.createTempDirectory("zip-utils");
+        template = BenchmarkInputs.createZip(new File(directory, "template.bar"), entries);
+        zipFile = new File(directory, "benchmark.bar");
+    }
+
+    @Setup(Level.Invocation)
+    public void copyTemplate() throws IOException {
+        FileUtils.copyFile(template, zipFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkInputs.delete(directory);
+    }
+
+    @Benchmark
+    public BarIndex removeFiles() throws IOException {
+        return ZipUtils.removeFiles(zipFile, "**/*.jar");
+    }
+}